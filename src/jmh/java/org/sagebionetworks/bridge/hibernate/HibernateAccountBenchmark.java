@@ -0,0 +1,139 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import org.sagebionetworks.bridge.Roles;
+import org.sagebionetworks.bridge.models.accounts.AccountStatus;
+
+/**
+ * Time to load one account, and a page of accounts, when accounts have many consents and attributes, as well as 
+ * roles, data groups, languages and substudies. The accounts are stored in an in-memory H2 database whose schema is 
+ * generated from the Hibernate mappings, so this measures the queries Hibernate issues and the rows it reads, 
+ * rather than the network.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HibernateAccountBenchmark {
+
+    private static final String STUDY_ID = "benchmark-study";
+    private static final int ACCOUNT_COUNT = 50;
+    private static final int PAGE_SIZE = 50;
+    private static final DateTime CREATED_ON = DateTime.parse("2019-01-01T09:00:00.000Z");
+
+    /** The number of consents, and of attributes, of each account. */
+    @Param({"5", "50"})
+    int collectionSize;
+
+    private SessionFactory sessionFactory;
+    private List<String> accountIds;
+    private int nextAccount;
+
+    @Setup
+    public void setup() {
+        Properties props = new Properties();
+        props.put("hibernate.connection.driver_class", "org.h2.Driver");
+        props.put("hibernate.connection.url", "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        props.put("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        props.put("hibernate.hbm2ddl.auto", "create");
+        StandardServiceRegistry reg = new StandardServiceRegistryBuilder().applySettings(props).build();
+
+        MetadataSources metadataSources = new MetadataSources(reg);
+        metadataSources.addAnnotatedClass(HibernateAccount.class);
+        metadataSources.addAnnotatedClass(HibernateAccountSubstudy.class);
+        sessionFactory = metadataSources.buildMetadata().buildSessionFactory();
+
+        ImmutableList.Builder<String> ids = new ImmutableList.Builder<>();
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            for (int i=0; i < ACCOUNT_COUNT; i++) {
+                HibernateAccount account = account();
+                session.save(account);
+                for (int j=0; j < 3; j++) {
+                    session.save(new HibernateAccountSubstudy(STUDY_ID, "substudy" + j, account.getId()));
+                }
+                ids.add(account.getId());
+            }
+            session.getTransaction().commit();
+        }
+        accountIds = ids.build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    /** As loaded by AccountDao.getAccount, and on every sign in. */
+    @Benchmark
+    public HibernateAccount getAccount() {
+        nextAccount = (nextAccount + 1) % ACCOUNT_COUNT;
+        try (Session session = sessionFactory.openSession()) {
+            return session.get(HibernateAccount.class, accountIds.get(nextAccount));
+        }
+    }
+
+    /** As loaded when paging through the accounts of a study. */
+    @Benchmark
+    public List<HibernateAccount> getAccountPage() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createQuery("from HibernateAccount where studyId = :studyId", HibernateAccount.class)
+                    .setParameter("studyId", STUDY_ID).setMaxResults(PAGE_SIZE).list();
+        }
+    }
+
+    private HibernateAccount account() {
+        HibernateAccount account = new HibernateAccount();
+        account.setId(UUID.randomUUID().toString());
+        account.setStudyId(STUDY_ID);
+        account.setHealthCode(UUID.randomUUID().toString());
+        account.setEmail(account.getId() + "@example.com");
+        account.setCreatedOn(CREATED_ON);
+        account.setModifiedOn(CREATED_ON);
+        account.setStatus(AccountStatus.ENABLED);
+        account.setRoles(EnumSet.of(Roles.DEVELOPER, Roles.RESEARCHER));
+        account.setDataGroups(Sets.newHashSet("group1", "group2", "group3"));
+        account.setLanguages(Lists.newArrayList("en", "fr", "de"));
+        for (int i=0; i < collectionSize; i++) {
+            account.getAttributes().put("attribute" + i, "value" + i);
+
+            HibernateAccountConsent consent = new HibernateAccountConsent();
+            consent.setBirthdate("1980-01-01");
+            consent.setName("Test User");
+            consent.setConsentCreatedOn(CREATED_ON.getMillis());
+            account.getConsents().put(new HibernateAccountConsentKey("subpop" + (i % 5),
+                    CREATED_ON.plusDays(i).getMillis()), consent);
+        }
+        return account;
+    }
+}
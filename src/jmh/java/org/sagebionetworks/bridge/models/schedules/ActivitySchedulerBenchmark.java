@@ -0,0 +1,79 @@
+package org.sagebionetworks.bridge.models.schedules;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Throughput of each kind of ActivityScheduler, over windows of increasing length. When schedulersReused is true,
+ * the plans are held in a SchedulePlanSnapshot, as they are when served by the SchedulePlanService, so each schedule
+ * creates its scheduler once; otherwise a scheduler is created for each call.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActivitySchedulerBenchmark {
+
+    @Param({"7", "90", "365"})
+    int windowDays;
+
+    @Param({"true", "false"})
+    boolean schedulersReused;
+
+    private SchedulePlan intervalPlan;
+    private SchedulePlan cronPlan;
+    private SchedulePlan multipleEventPlan;
+    private SchedulePlan persistentPlan;
+    private ScheduleContext context;
+
+    @Setup
+    public void setup() {
+        intervalPlan = ScheduleFixtures.simplePlan("intervalPlan", ScheduleFixtures.intervalSchedule());
+        cronPlan = ScheduleFixtures.simplePlan("cronPlan", ScheduleFixtures.cronSchedule());
+        multipleEventPlan = ScheduleFixtures.simplePlan("multipleEventPlan",
+                ScheduleFixtures.multipleEventSchedule());
+        persistentPlan = ScheduleFixtures.simplePlan("persistentPlan", ScheduleFixtures.persistentSchedule());
+        if (schedulersReused) {
+            new SchedulePlanSnapshot("benchmark",
+                    ImmutableList.of(intervalPlan, cronPlan, multipleEventPlan, persistentPlan));
+        }
+        context = ScheduleFixtures.context("healthCode", windowDays, ImmutableSet.of());
+    }
+
+    @Benchmark
+    public List<ScheduledActivity> interval() {
+        return ScheduleFixtures.schedule(intervalPlan, context);
+    }
+
+    @Benchmark
+    public List<ScheduledActivity> cron() {
+        return ScheduleFixtures.schedule(cronPlan, context);
+    }
+
+    @Benchmark
+    public List<ScheduledActivity> intervalWithManyEvents() {
+        return ScheduleFixtures.schedule(multipleEventPlan, context);
+    }
+
+    @Benchmark
+    public List<ScheduledActivity> persistent() {
+        return ScheduleFixtures.schedule(persistentPlan, context);
+    }
+}
@@ -0,0 +1,147 @@
+package org.sagebionetworks.bridge.models.schedules;
+
+import static org.sagebionetworks.bridge.models.schedules.ScheduleType.PERSISTENT;
+import static org.sagebionetworks.bridge.models.schedules.ScheduleType.RECURRING;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalTime;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.sagebionetworks.bridge.dynamodb.DynamoSchedulePlan;
+
+/**
+ * Schedules, plans and contexts for the scheduling benchmarks. They are modeled on the larger studies in production:
+ * several activities, many times of day, and participants with a long history of events.
+ */
+final class ScheduleFixtures {
+
+    static final String STUDY_ID = "benchmark-study";
+    static final DateTime ENROLLMENT = DateTime.parse("2019-01-01T09:00:00.000Z");
+    static final DateTimeZone USER_TIME_ZONE = DateTimeZone.forOffsetHours(-7);
+    static final int TIMES_PER_DAY = 8;
+    static final int ACTIVITY_COUNT = 3;
+    static final int PERSISTENT_ACTIVITY_COUNT = 20;
+    static final int CUSTOM_EVENT_COUNT = 10;
+
+    private ScheduleFixtures() {
+    }
+
+    /** A daily schedule with many times of day (every two hours, from 6am), each expiring after two hours. */
+    static Schedule intervalSchedule() {
+        Schedule schedule = new Schedule();
+        schedule.setScheduleType(RECURRING);
+        schedule.setInterval("P1D");
+        schedule.setExpires("PT2H");
+        for (int i=0; i < TIMES_PER_DAY; i++) {
+            schedule.addTimes(new LocalTime(6 + (i*2), 0));
+        }
+        addActivities(schedule, ACTIVITY_COUNT);
+        return schedule;
+    }
+
+    /** The cron equivalent of intervalSchedule(). */
+    static Schedule cronSchedule() {
+        Schedule schedule = new Schedule();
+        schedule.setScheduleType(RECURRING);
+        schedule.setCronTrigger("0 0 6,8,10,12,14,16,18,20 ? * * *");
+        schedule.setExpires("PT2H");
+        addActivities(schedule, ACTIVITY_COUNT);
+        return schedule;
+    }
+
+    /**
+     * A thirty day sequence of daily activities, started by each of many custom events, so there is one scheduling
+     * window for each event.
+     */
+    static Schedule multipleEventSchedule() {
+        Schedule schedule = intervalSchedule();
+        StringBuilder eventIds = new StringBuilder();
+        for (int i=0; i < CUSTOM_EVENT_COUNT; i++) {
+            eventIds.append((i == 0) ? "" : ",").append(customEventId(i));
+        }
+        schedule.setEventId(eventIds.toString());
+        schedule.setSequencePeriod("P30D");
+        return schedule;
+    }
+
+    /** A persistent schedule with many activities, about half of which have been finished at least once. */
+    static Schedule persistentSchedule() {
+        Schedule schedule = new Schedule();
+        schedule.setScheduleType(PERSISTENT);
+        schedule.setEventId("enrollment");
+        addActivities(schedule, PERSISTENT_ACTIVITY_COUNT);
+        return schedule;
+    }
+
+    static SchedulePlan plan(String guid, ScheduleStrategy strategy) {
+        SchedulePlan plan = new DynamoSchedulePlan();
+        plan.setGuid(guid);
+        plan.setLabel(guid);
+        plan.setStudyKey(STUDY_ID);
+        plan.setStrategy(strategy);
+        return plan;
+    }
+
+    static SchedulePlan simplePlan(String guid, Schedule schedule) {
+        SimpleScheduleStrategy strategy = new SimpleScheduleStrategy();
+        strategy.setSchedule(schedule);
+        return plan(guid, strategy);
+    }
+
+    /**
+     * A context for a participant who enrolled on ENROLLMENT, and is requesting activities for the given number of
+     * days after enrollment. Activities of the persistent schedule are finished every few days, and each custom
+     * event occurred a few days apart.
+     */
+    static ScheduleContext context(String healthCode, int windowDays, Set<String> dataGroups) {
+        ImmutableMap.Builder<String, DateTime> events = new ImmutableMap.Builder<>();
+        events.put("enrollment", ENROLLMENT);
+        for (int i=0; i < CUSTOM_EVENT_COUNT; i++) {
+            events.put(customEventId(i), ENROLLMENT.plusDays(i*3));
+        }
+        for (int i=0; i < PERSISTENT_ACTIVITY_COUNT; i += 2) {
+            events.put("activity:" + activityGuid(i) + ":finished", ENROLLMENT.plusDays(i).plusHours(3));
+        }
+        return context(healthCode, windowDays, dataGroups, events.build());
+    }
+
+    private static ScheduleContext context(String healthCode, int windowDays, Set<String> dataGroups,
+            Map<String, DateTime> events) {
+        return new ScheduleContext.Builder()
+                .withStudyIdentifier(STUDY_ID)
+                .withHealthCode(healthCode)
+                .withUserDataGroups(dataGroups)
+                .withInitialTimeZone(USER_TIME_ZONE)
+                .withAccountCreatedOn(ENROLLMENT)
+                .withStartsOn(ENROLLMENT.withZone(USER_TIME_ZONE))
+                .withEndsOn(ENROLLMENT.plusDays(windowDays).withZone(USER_TIME_ZONE))
+                .withEvents(events).build();
+    }
+
+    static List<ScheduledActivity> schedule(SchedulePlan plan, ScheduleContext context) {
+        Schedule schedule = plan.getStrategy().getScheduleForUser(plan, context);
+        return (schedule == null) ? ImmutableList.of() : schedule.getScheduler().getScheduledActivities(plan, context);
+    }
+
+    private static void addActivities(Schedule schedule, int count) {
+        for (int i=0; i < count; i++) {
+            schedule.addActivity(new Activity.Builder().withGuid(activityGuid(i)).withLabel("Activity " + i)
+                    .withTask("task" + i).build());
+        }
+    }
+
+    private static String activityGuid(int i) {
+        return "activity" + i + "guid";
+    }
+
+    private static String customEventId(int i) {
+        return "custom:event" + i;
+    }
+}
@@ -0,0 +1,98 @@
+package org.sagebionetworks.bridge.models.schedules;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import org.sagebionetworks.bridge.models.Criteria;
+
+/**
+ * Throughput of selecting a schedule for each of a number of participants, and scheduling their activities, for
+ * plans with many A/B test groups, and plans with many schedule criteria. The plans are held in a
+ * SchedulePlanSnapshot, as they are when served by the SchedulePlanService.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScheduleStrategyBenchmark {
+
+    private static final int PARTICIPANT_COUNT = 100;
+    private static final int GROUP_COUNT = 10;
+    private static final int CRITERIA_COUNT = 20;
+
+    @Param({"7", "90"})
+    int windowDays;
+
+    private SchedulePlan abTestPlan;
+    private SchedulePlan criteriaPlan;
+    private List<ScheduleContext> contexts;
+    private int nextContext;
+
+    @Setup
+    public void setup() {
+        // Each group has a schedule with a different number of times of day, so that participants don't all have
+        // the same amount of work.
+        ABTestScheduleStrategy abTestStrategy = new ABTestScheduleStrategy();
+        for (int i=0; i < GROUP_COUNT; i++) {
+            Schedule schedule = ScheduleFixtures.intervalSchedule();
+            int timesPerDay = 1 + (i % ScheduleFixtures.TIMES_PER_DAY);
+            schedule.setTimes(Lists.newArrayList(schedule.getTimes().subList(0, timesPerDay)));
+            abTestStrategy.addGroup(100 / GROUP_COUNT, schedule);
+        }
+        abTestPlan = ScheduleFixtures.plan(UUID.randomUUID().toString(), abTestStrategy);
+
+        // Participants are in one of the data groups, so on average they match after half of the criteria have
+        // been evaluated.
+        CriteriaScheduleStrategy criteriaStrategy = new CriteriaScheduleStrategy();
+        for (int i=0; i < CRITERIA_COUNT; i++) {
+            Criteria criteria = Criteria.create();
+            criteria.setAllOfGroups(ImmutableSet.of("group" + i));
+            Schedule schedule = (i % 2 == 0) ? ScheduleFixtures.intervalSchedule() : ScheduleFixtures.cronSchedule();
+            criteriaStrategy.addCriteria(new ScheduleCriteria(schedule, criteria));
+        }
+        criteriaPlan = ScheduleFixtures.plan("criteriaPlan", criteriaStrategy);
+
+        new SchedulePlanSnapshot("benchmark", ImmutableList.of(abTestPlan, criteriaPlan));
+
+        ImmutableList.Builder<ScheduleContext> builder = new ImmutableList.Builder<>();
+        for (int i=0; i < PARTICIPANT_COUNT; i++) {
+            builder.add(ScheduleFixtures.context(UUID.randomUUID().toString(), windowDays,
+                    ImmutableSet.of("group" + (i % CRITERIA_COUNT))));
+        }
+        contexts = builder.build();
+    }
+
+    @Benchmark
+    public List<ScheduledActivity> abTestStrategy() {
+        return ScheduleFixtures.schedule(abTestPlan, nextContext());
+    }
+
+    @Benchmark
+    public List<ScheduledActivity> criteriaStrategy() {
+        return ScheduleFixtures.schedule(criteriaPlan, nextContext());
+    }
+
+    private ScheduleContext nextContext() {
+        nextContext = (nextContext + 1) % PARTICIPANT_COUNT;
+        return contexts.get(nextContext);
+    }
+}
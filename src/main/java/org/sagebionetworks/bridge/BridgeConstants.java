@@ -56,6 +56,12 @@ public class BridgeConstants {
     
     public static final String CLEAR_SITE_DATA_VALUE = "\"cache\", \"cookies\", \"storage\", \"executionContexts\"";
 
+    /** 
+     * If "true", reads that are normally made from a replica (such as participant searches) are made from the primary 
+     * database, so they include changes made by the caller's previous requests.
+     */
+    public static final String PRIMARY_READ_HEADER = "Bridge-Primary-Read";
+
     /** Used by Heroku to pass in the request ID */
     public static final String X_REQUEST_ID_HEADER = "X-Request-Id";
 
@@ -89,6 +95,18 @@ public class BridgeConstants {
     // 1 minute
     public static final int BRIDGE_STUDY_EMAIL_STATUS_IN_SECONDS = 60;
     
+    // 1 minute. Studies held in a node's local memory; bounds staleness if an invalidation message is missed
+    public static final int STUDY_NEAR_CACHE_EXPIRE_IN_SECONDS = 60;
+    
+    // 1 hour. User's activity events held in Redis, until one of them changes
+    public static final int ACTIVITY_EVENT_MAP_EXPIRE_IN_SECONDS = 60 * 60;
+    
+    // 30 seconds. After a user's activity events change, reads that began before the change cannot cache them
+    public static final int ACTIVITY_EVENT_MAP_TOMBSTONE_EXPIRE_IN_SECONDS = 30;
+    
+    // 1 minute. Activity event maps held in a node's local memory; bounds staleness if an invalidation is missed
+    public static final int ACTIVITY_EVENT_NEAR_CACHE_EXPIRE_IN_SECONDS = 60;
+    
     // 15 seconds
     public static final int REAUTH_TOKEN_CACHE_LOOKUP_IN_SECONDS = 15;
 
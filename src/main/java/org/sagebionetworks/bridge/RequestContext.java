@@ -16,7 +16,7 @@ import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
 public class RequestContext {
     
     public static final RequestContext NULL_INSTANCE = new RequestContext(null, null, null, ImmutableSet.of(),
-            ImmutableSet.of(), null, UNKNOWN_CLIENT, ImmutableList.of(), null);
+            ImmutableSet.of(), null, UNKNOWN_CLIENT, ImmutableList.of(), null, false);
 
     private final String requestId;
     private final StudyIdentifier callerStudyId;
@@ -27,10 +27,11 @@ public class RequestContext {
     private final List<String> callerLanguages;    
     private final Metrics metrics;
     private final String callerIpAddress;
+    private final boolean primaryReadRequired;
     
     private RequestContext(Metrics metrics, String requestId, String callerStudyId, Set<String> callerSubstudies,
             Set<Roles> callerRoles, String callerUserId, ClientInfo callerClientInfo, List<String> callerLanguages,
-            String callerIpAddress) {
+            String callerIpAddress, boolean primaryReadRequired) {
         this.requestId = requestId;
         this.callerStudyId = (callerStudyId == null) ? null : new StudyIdentifierImpl(callerStudyId);
         this.callerSubstudies = callerSubstudies;
@@ -40,6 +41,7 @@ public class RequestContext {
         this.callerLanguages = callerLanguages;
         this.metrics = metrics;
         this.callerIpAddress = callerIpAddress;
+        this.primaryReadRequired = primaryReadRequired;
     }
     
     public Metrics getMetrics() {
@@ -83,6 +85,13 @@ public class RequestContext {
     public String getCallerIpAddress() {
         return callerIpAddress;
     }
+    /**
+     * If true, reads that would normally tolerate replication lag must also be made from the primary database (for 
+     * example, a search made right after an account is created, which should find that account).
+     */
+    public boolean isPrimaryReadRequired() {
+        return primaryReadRequired;
+    }
     public RequestContext.Builder toBuilder() {
         return new RequestContext.Builder()
             .withRequestId(requestId)
@@ -93,7 +102,8 @@ public class RequestContext {
             .withCallerSubstudies(callerSubstudies)
             .withCallerUserId(callerUserId)
             .withMetrics(metrics)
-            .withCallerIpAddress(callerIpAddress);
+            .withCallerIpAddress(callerIpAddress)
+            .withPrimaryReadRequired(primaryReadRequired);
     }
     
     public static class Builder {
@@ -106,6 +116,7 @@ public class RequestContext {
         private ClientInfo callerClientInfo;
         private List<String> callerLanguages;
         private String callerIpAddress;
+        private boolean primaryReadRequired;
 
         public Builder withMetrics(Metrics metrics) {
             this.metrics = metrics;
@@ -143,6 +154,10 @@ public class RequestContext {
             this.callerIpAddress = callerIpAddress;
             return this;
         }
+        public Builder withPrimaryReadRequired(boolean primaryReadRequired) {
+            this.primaryReadRequired = primaryReadRequired;
+            return this;
+        }
         
         public RequestContext build() {
             if (requestId == null) {
@@ -164,7 +179,7 @@ public class RequestContext {
                 metrics = new Metrics(requestId);
             }
             return new RequestContext(metrics, requestId, callerStudyId, callerSubstudies, callerRoles, callerUserId,
-                    callerClientInfo, callerLanguages, callerIpAddress);
+                    callerClientInfo, callerLanguages, callerIpAddress, primaryReadRequired);
         }
     }
 
@@ -173,6 +188,7 @@ public class RequestContext {
         return "RequestContext [requestId=" + requestId + ", callerStudyId=" + callerStudyId + ", callerSubstudies="
                 + callerSubstudies + ", callerRoles=" + callerRoles + ", callerUserId=" + callerUserId
                 + ", callerClientInfo=" + callerClientInfo + ", callerIpAddress=" + callerIpAddress
-                + ", callerLanguages=" + callerLanguages + ", metrics=" + metrics + "]";
+                + ", callerLanguages=" + callerLanguages + ", primaryReadRequired=" + primaryReadRequired
+                + ", metrics=" + metrics + "]";
     }
 }
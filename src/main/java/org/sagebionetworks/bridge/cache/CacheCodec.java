@@ -0,0 +1,99 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Converts objects to and from the bytes we store in Redis. Binary values start with a format byte, so they 
+ * can be told apart from the JSON text written before this codec existed (JSON never starts with a control 
+ * character). Every codec reads all formats regardless of how it is configured to write, so the format 
+ * can be changed without flushing the cache. Nodes running earlier versions of the server can only read JSON, 
+ * so switch to SMILE once every node has been upgraded.
+ */
+public class CacheCodec {
+    
+    public enum Format {
+        /** Plain JSON text, readable by any version of the server. */
+        JSON,
+        /** Binary Jackson Smile, deflated if it is larger than the compression threshold. */
+        SMILE
+    }
+    
+    static final byte SMILE_FORMAT = 0x01;
+    static final byte DEFLATED_SMILE_FORMAT = 0x02;
+    
+    private static final ObjectMapper SMILE_MAPPER = new BridgeObjectMapper(
+            new SmileFactory().enable(JsonGenerator.Feature.STRICT_DUPLICATE_DETECTION));
+    
+    private final Format format;
+    private final int compressionThreshold;
+    
+    public CacheCodec(Format format, int compressionThreshold) {
+        this.format = checkNotNull(format);
+        this.compressionThreshold = compressionThreshold;
+    }
+    
+    public Format getFormat() {
+        return format;
+    }
+    
+    public byte[] encode(Object object) throws IOException {
+        return encode(object, null);
+    }
+    
+    /**
+     * Encode the object, applying the filters (which may be null) in the same way as a filtered 
+     * BridgeObjectMapper writer.
+     */
+    public byte[] encode(Object object, FilterProvider filters) throws IOException {
+        checkNotNull(object);
+        if (format == Format.JSON) {
+            return writer(BridgeObjectMapper.get(), filters).writeValueAsBytes(object);
+        }
+        byte[] smile = writer(SMILE_MAPPER, filters).writeValueAsBytes(object);
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream(smile.length + 1);
+        if (smile.length > compressionThreshold) {
+            out.write(DEFLATED_SMILE_FORMAT);
+            try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+                deflater.write(smile);
+            }
+        } else {
+            out.write(SMILE_FORMAT);
+            out.write(smile);
+        }
+        return out.toByteArray();
+    }
+    
+    public <T> T decode(byte[] bytes, Class<T> clazz) throws IOException {
+        checkNotNull(bytes);
+        checkNotNull(clazz);
+        
+        if (bytes.length > 0 && bytes[0] == SMILE_FORMAT) {
+            return SMILE_MAPPER.readValue(bytes, 1, bytes.length - 1, clazz);
+        } else if (bytes.length > 0 && bytes[0] == DEFLATED_SMILE_FORMAT) {
+            try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+                return SMILE_MAPPER.readValue(in, clazz);
+            }
+        }
+        return BridgeObjectMapper.get().readValue(bytes, clazz);
+    }
+    
+    private static ObjectWriter writer(ObjectMapper mapper, FilterProvider filters) {
+        return (filters == null) ? mapper.writer() : mapper.writer(filters);
+    }
+}
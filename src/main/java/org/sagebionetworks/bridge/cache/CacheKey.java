@@ -3,6 +3,7 @@ package org.sagebionetworks.bridge.cache;
 import java.util.List;
 import java.util.Objects;
 
+import org.sagebionetworks.bridge.models.ClientInfo;
 import org.sagebionetworks.bridge.models.ThrottleRequestType;
 import org.sagebionetworks.bridge.models.accounts.Phone;
 import org.sagebionetworks.bridge.models.accounts.SignIn;
@@ -20,7 +21,8 @@ import com.google.common.collect.Lists;
 public final class CacheKey {
     
     private static final String[] PUBLIC_KEYS = new String[] { "emailVerificationStatus", "AppConfigList",
-            "channel-throttling", "lock", "study", "Subpopulation", "SubpopulationList", "view" };
+            "channel-throttling", "lock", "ResolvedReferences", "ResolvedReferencesList", "SchedulePlanSnapshot",
+            "SchedulePlanVersion", "study", "Subpopulation", "SubpopulationList", "view" };
     
     public final static boolean isPublic(String key) {
         for (String suffix : PUBLIC_KEYS) {
@@ -31,9 +33,26 @@ public final class CacheKey {
         return false;
     }
 
+    public static final CacheKey activityEventMap(String healthCode) {
+        return new CacheKey(healthCode, "ActivityEventMap");
+    }
     public static final CacheKey reauthTokenLookupKey(String userId, StudyIdentifier studyId) {
         return new CacheKey(userId, studyId.getIdentifier(), "ReauthToken");
     }
+    public static final CacheKey resolvedReferences(StudyIdentifier studyId, ClientInfo clientInfo) {
+        // Unknown clients have no OS name or app version
+        return new CacheKey(String.valueOf(clientInfo.getOsName()), String.valueOf(clientInfo.getAppVersion()),
+                studyId.getIdentifier(), "ResolvedReferences");
+    }
+    public static final CacheKey resolvedReferencesList(StudyIdentifier studyId) {
+        return new CacheKey(studyId.getIdentifier(), "ResolvedReferencesList");
+    }
+    public static final CacheKey schedulePlanSnapshot(StudyIdentifier studyId) {
+        return new CacheKey(studyId.getIdentifier(), "SchedulePlanSnapshot");
+    }
+    public static final CacheKey schedulePlanVersion(StudyIdentifier studyId) {
+        return new CacheKey(studyId.getIdentifier(), "SchedulePlanVersion");
+    }
     public static final CacheKey shortenUrl(String token) {
         return new CacheKey(token, "ShortenedUrl");
     }
@@ -71,10 +90,10 @@ public final class CacheKey {
         return new CacheKey(value, clazz.getCanonicalName(), "lock");
     }
     public static final CacheKey passwordResetForEmail(String sptoken, String studyId) {
-        return new CacheKey(sptoken, studyId); // no type, not great
+        return new CacheKey(PASSWORD_RESET_NAMESPACE, new String[] {sptoken, studyId}); // no type, not great
     }
     public static final CacheKey passwordResetForPhone(String sptoken, String studyId) { 
-        return new CacheKey(sptoken, "phone", studyId); // no type, not great
+        return new CacheKey(PASSWORD_RESET_NAMESPACE, new String[] {sptoken, "phone", studyId}); // no type, not great
     }
     public static final CacheKey phoneSignInRequest(SignIn signIn) {
         return new CacheKey(signIn.getPhone().getNumber(), signIn.getStudyId(),"phoneSignInRequest");
@@ -92,28 +111,44 @@ public final class CacheKey {
         return new CacheKey(studyId.getIdentifier(), "SubpopulationList");
     }
     public static final CacheKey userIdToSession(String userId) {
-        return new CacheKey(userId, "session2", "user");
+        return new CacheKey(SESSION_NAMESPACE, new String[] {userId, "session2", "user"});
     }
     public static final CacheKey tokenToUserId(String sessionToken) {
-        return new CacheKey(sessionToken, "session2");
+        return new CacheKey(SESSION_NAMESPACE, new String[] {sessionToken, "session2"});
     }
     
     public static final CacheKey verificationToken(String sptoken) {
-        return new CacheKey(sptoken); // no type, not great
+        return new CacheKey(VERIFICATION_TOKEN_NAMESPACE, new String[] {sptoken}); // no type, not great
     }
     public static final CacheKey viewKey(Class<?> clazz, String... elements) {
         List<String> list = Lists.newArrayList(elements);
         list.add(clazz.getSimpleName());
         list.add("view");
-        return new CacheKey(COLON_JOINER.join(list));
+        return new CacheKey(list.toArray(new String[list.size()]));
     }
     
     private static final Joiner COLON_JOINER = Joiner.on(":");
+    private static final String PASSWORD_RESET_NAMESPACE = "passwordReset";
+    private static final String SESSION_NAMESPACE = "session";
+    private static final String VERIFICATION_TOKEN_NAMESPACE = "verificationToken";
     
     private final String key;
+    private final String namespace;
     
+    /** The namespace of the key is its type, the last element of the key. */
     private CacheKey(String... elements) {
+        this(elements[elements.length-1], elements);
+    }
+    private CacheKey(String namespace, String[] elements) {
         this.key = COLON_JOINER.join(elements);
+        this.namespace = namespace;
+    }
+    /**
+     * The family of keys this key belongs to (e.g. "study", "session", "view"). Unlike the key itself, 
+     * namespaces never contain identifiers, so they can be used to aggregate cache metrics.
+     */
+    public String getNamespace() {
+        return namespace;
     }
     @Override
     public String toString() {
@@ -121,7 +156,7 @@ public final class CacheKey {
     }
     @Override
     public int hashCode() {
-        return Objects.hashCode(key);
+        return Objects.hash(key, namespace);
     }
     @Override
     public boolean equals(Object obj) {
@@ -130,6 +165,6 @@ public final class CacheKey {
         if (obj == null || getClass() != obj.getClass())
             return false;
         CacheKey other = (CacheKey) obj;
-        return Objects.equals(this.key, other.key);
+        return Objects.equals(this.key, other.key) && Objects.equals(this.namespace, other.namespace);
     }
 }
@@ -0,0 +1,121 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.models.Metrics;
+
+import com.google.common.collect.ImmutableSortedMap;
+
+/**
+ * Hit, miss, size, and latency counts for Redis operations on this node, aggregated by the namespace of the
+ * cache key (see {@link CacheKey#getNamespace()}). Each operation is also added to the metrics of the request
+ * in which it occurs, if any. Sizes are the number of bytes of the serialized value. The round trip of a multi-key
+ * operation is recorded once for each key, so the latency counts always sum to the number of reads and writes.
+ */
+public class CacheMetrics {
+
+    /** Upper bounds (inclusive) of the latency histogram buckets, in milliseconds. A final bucket holds the rest. */
+    static final long[] LATENCY_BUCKET_MILLIS = new long[] { 1, 2, 5, 10, 25, 50, 100, 250, 1000 };
+
+    private final ConcurrentMap<String, NamespaceCounters> namespaces = new ConcurrentHashMap<>();
+
+    /** Record a read of one key. A null value is a miss. */
+    void recordRead(CacheKey cacheKey, Object value, int size, long startNanos) {
+        long micros = elapsedMicros(startNanos);
+        boolean hit = (value != null);
+        getCounters(cacheKey).recordRead(hit, size, micros);
+
+        Metrics metrics = BridgeUtils.getRequestContext().getMetrics();
+        if (metrics != null) {
+            metrics.recordCacheRead(cacheKey.getNamespace(), hit, size, micros);
+        }
+    }
+
+    /** Record a write of one key. */
+    void recordWrite(CacheKey cacheKey, int size, long startNanos) {
+        long micros = elapsedMicros(startNanos);
+        getCounters(cacheKey).recordWrite(size, micros);
+
+        Metrics metrics = BridgeUtils.getRequestContext().getMetrics();
+        if (metrics != null) {
+            metrics.recordCacheWrite(cacheKey.getNamespace(), size, micros);
+        }
+    }
+
+    /** A snapshot of the counts for each namespace that has been used on this node, ordered by namespace. */
+    public Map<String, CacheNamespaceStats> getStats() {
+        ImmutableSortedMap.Builder<String, CacheNamespaceStats> builder = ImmutableSortedMap.naturalOrder();
+        for (Map.Entry<String, NamespaceCounters> entry : namespaces.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return builder.build();
+    }
+
+    /** Reset all counts to zero. */
+    public void reset() {
+        namespaces.clear();
+    }
+
+    private NamespaceCounters getCounters(CacheKey cacheKey) {
+        checkNotNull(cacheKey);
+        return namespaces.computeIfAbsent(cacheKey.getNamespace(), (key) -> new NamespaceCounters());
+    }
+
+    private static long elapsedMicros(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+
+    private static class NamespaceCounters {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder writes = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+        private final LongAdder totalMicros = new LongAdder();
+        private final LongAdder[] latencyBuckets = new LongAdder[LATENCY_BUCKET_MILLIS.length + 1];
+
+        NamespaceCounters() {
+            for (int i=0; i < latencyBuckets.length; i++) {
+                latencyBuckets[i] = new LongAdder();
+            }
+        }
+
+        void recordRead(boolean hit, int size, long micros) {
+            (hit ? hits : misses).increment();
+            bytesRead.add(size);
+            recordLatency(micros);
+        }
+
+        void recordWrite(int size, long micros) {
+            writes.increment();
+            bytesWritten.add(size);
+            recordLatency(micros);
+        }
+
+        private void recordLatency(long micros) {
+            totalMicros.add(micros);
+            int i = 0;
+            while (i < LATENCY_BUCKET_MILLIS.length && micros > LATENCY_BUCKET_MILLIS[i] * 1000L) {
+                i++;
+            }
+            latencyBuckets[i].increment();
+        }
+
+        CacheNamespaceStats snapshot() {
+            ImmutableSortedMap.Builder<Long, Long> histogram = ImmutableSortedMap.naturalOrder();
+            for (int i=0; i < LATENCY_BUCKET_MILLIS.length; i++) {
+                histogram.put(LATENCY_BUCKET_MILLIS[i], latencyBuckets[i].sum());
+            }
+            histogram.put(Long.MAX_VALUE, latencyBuckets[LATENCY_BUCKET_MILLIS.length].sum());
+            return new CacheNamespaceStats(hits.sum(), misses.sum(), writes.sum(), bytesRead.sum(),
+                    bytesWritten.sum(), totalMicros.sum(), histogram.build());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.sagebionetworks.bridge.cache;
+
+import java.util.Map;
+
+/**
+ * A snapshot of the cache metrics for one namespace of cache keys on this node.
+ */
+public final class CacheNamespaceStats {
+    private final long hits;
+    private final long misses;
+    private final long writes;
+    private final long bytesRead;
+    private final long bytesWritten;
+    private final long totalLatencyMicros;
+    private final Map<Long, Long> latencyHistogram;
+
+    CacheNamespaceStats(long hits, long misses, long writes, long bytesRead, long bytesWritten,
+            long totalLatencyMicros, Map<Long, Long> latencyHistogram) {
+        this.hits = hits;
+        this.misses = misses;
+        this.writes = writes;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.totalLatencyMicros = totalLatencyMicros;
+        this.latencyHistogram = latencyHistogram;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+    public long getMisses() {
+        return misses;
+    }
+    /** The fraction of reads that were hits, or zero if there have been no reads. */
+    public double getHitRate() {
+        long reads = hits + misses;
+        return (reads == 0L) ? 0.0 : ((double)hits / reads);
+    }
+    public long getWrites() {
+        return writes;
+    }
+    public long getBytesRead() {
+        return bytesRead;
+    }
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+    public long getTotalLatencyMicros() {
+        return totalLatencyMicros;
+    }
+    /**
+     * The number of operations by latency, keyed by the upper bound of each bucket in milliseconds. The last
+     * bucket (Long.MAX_VALUE) holds all operations slower than the bucket before it.
+     */
+    public Map<Long, Long> getLatencyHistogram() {
+        return latencyHistogram;
+    }
+}
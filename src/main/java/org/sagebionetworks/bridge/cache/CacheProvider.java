@@ -2,9 +2,20 @@ package org.sagebionetworks.bridge.cache;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 
 import org.sagebionetworks.bridge.BridgeConstants;
@@ -18,29 +29,262 @@ import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.redis.JedisOps;
 import org.sagebionetworks.bridge.redis.JedisTransaction;
 
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
+import redis.clients.util.SafeEncoder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.base.Utf8;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
- * A wrapper around our use of Redis.
+ * A wrapper around our use of Redis. Once Redis cannot be reached a number of times in a row, reads are served 
+ * from a local fallback cache (so callers generally see a cache miss and load from their DAO) and writes go to the 
+ * fallback cache, until Redis is available again (see {@link RedisCircuitBreaker} and {@link LocalFallbackCache}).
+ * Then the values changed in the meantime are deleted from Redis, except sessions, which are written to Redis from 
+ * the fallback cache so their users remain signed in.
  */
 @Component
 public class CacheProvider {
+    private static final Logger LOG = LoggerFactory.getLogger(CacheProvider.class);
     private static final String LOCAL_SERVICE_ERROR = "Cannot find cache service, have you started Redis? (original message: %s)";
+    
+    /** Channel on which nodes announce that a study has changed, so all nodes drop their near cache copy. */
+    static final String STUDY_INVALIDATION_CHANNEL = "study-invalidation";
+    static final int STUDY_NEAR_CACHE_MAX_SIZE = 1000;
+    /** Channel on which nodes announce that a user's activity events have changed. */
+    static final String ACTIVITY_EVENT_INVALIDATION_CHANNEL = "activity-event-invalidation";
+    static final int ACTIVITY_EVENT_NEAR_CACHE_MAX_SIZE = 10000;
+    /** Number of stale keys deleted with each DEL command, once Redis is available again. */
+    static final int STALE_KEY_BATCH_SIZE = 1000;
+    
+    /** The part of a userIdToSession key that follows the user ID. */
+    static final String USER_ID_TO_SESSION_SUFFIX = CacheKey.userIdToSession("").toString();
+    
+    /**
+     * Follows the session token --> userId --> session keys on the server, so a session lookup is one round trip 
+     * to Redis. KEYS[1] is the tokenToUserId key, ARGV[1] is the userIdToSession key suffix. Returns nil if 
+     * either key is missing.
+     */
+    static final String GET_SESSION_BY_TOKEN_SCRIPT = 
+            "local userId = redis.call('GET', KEYS[1]) " +
+            "if not userId then return false end " +
+            "return redis.call('GET', userId .. ARGV[1])";
+    private static final byte[] GET_SESSION_BY_TOKEN_SCRIPT_BYTES = SafeEncoder.encode(GET_SESSION_BY_TOKEN_SCRIPT);
+    
+    /**
+     * Replaces a cached value in Redis when it changes, for a short time. It reads as a cache miss (it is JSON null), 
+     * and prevents a read that loaded the value before the change from caching it, as long as that value is only 
+     * written if absent (see setActivityEventMap() and setObjectIfAbsent()).
+     */
+    static final String TOMBSTONE = "null";
+    
+    /** Activity events are stored in Redis as epoch milliseconds, as they are in DynamoDB. */
+    private static final TypeReference<Map<String, Long>> EVENT_TIMESTAMPS_TYPE = 
+            new TypeReference<Map<String, Long>>() {};
+    
     private JedisOps jedisOps;
+    private JedisPool jedisPool;
+    private CacheCodec cacheCodec;
     private int sessionExpireInSeconds;
+    private InvalidationSubscriber studyInvalidationSubscriber;
+    private InvalidationSubscriber activityEventInvalidationSubscriber;
+    private RedisCircuitBreaker circuitBreaker;
+    private LocalFallbackCache fallbackCache;
+    private ScheduledExecutorService circuitProbeExecutor;
+    
+    /**
+     * Studies are read on nearly every request, so each node keeps copies in front of Redis. Callers modify the 
+     * studies they are given, so the near cache holds the encoded study, and each read decodes a new instance.
+     */
+    private final Cache<String, byte[]> studyNearCache = CacheBuilder.newBuilder()
+            .maximumSize(STUDY_NEAR_CACHE_MAX_SIZE)
+            .expireAfterWrite(BridgeConstants.STUDY_NEAR_CACHE_EXPIRE_IN_SECONDS, TimeUnit.SECONDS)
+            .recordStats().build();
+    
+    /**
+     * Incremented on every study invalidation. A study read from Redis is only placed in the near cache if 
+     * no invalidation happened during the read, so a concurrent update cannot be overwritten by stale data.
+     */
+    private final AtomicLong studyInvalidationCount = new AtomicLong();
+    
+    /**
+     * Activity events are read every time a user's activities are scheduled, and rarely change, so each node 
+     * also keeps the event maps of recently active users, keyed by health code. Like studies, these are 
+     * invalidated on all nodes when a user's events change.
+     */
+    private final Cache<String, Map<String, DateTime>> activityEventNearCache = CacheBuilder.newBuilder()
+            .maximumSize(ACTIVITY_EVENT_NEAR_CACHE_MAX_SIZE)
+            .expireAfterWrite(BridgeConstants.ACTIVITY_EVENT_NEAR_CACHE_EXPIRE_IN_SECONDS, TimeUnit.SECONDS)
+            .recordStats().build();
+    
+    private final AtomicLong activityEventInvalidationCount = new AtomicLong();
+    
+    private final CacheMetrics cacheMetrics = new CacheMetrics();
 
     @Resource(name = "jedisOps")
     final void setJedisOps(JedisOps jedisOps) {
         this.jedisOps = jedisOps;
     }
+    
+    @Resource(name = "jedisPool")
+    final void setJedisPool(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    /** Serializes sessions and studies, our largest cached values. */
+    @Resource(name = "cacheCodec")
+    final void setCacheCodec(CacheCodec cacheCodec) {
+        this.cacheCodec = cacheCodec;
+    }
+
+    @Resource(name = "redisCircuitBreaker")
+    final void setCircuitBreaker(RedisCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+    
+    @Resource(name = "localFallbackCache")
+    final void setFallbackCache(LocalFallbackCache fallbackCache) {
+        this.fallbackCache = fallbackCache;
+    }
 
     @Resource(name = "sessionExpireInSeconds")
     final void setSessionExpireInSeconds(@SuppressWarnings("SameParameterValue") int sessionExpireInSeconds) {
         this.sessionExpireInSeconds = sessionExpireInSeconds;
     }
     
+    @PostConstruct
+    public void startInvalidationSubscriber() {
+        studyInvalidationSubscriber = new InvalidationSubscriber(jedisPool, STUDY_INVALIDATION_CHANNEL,
+                this::invalidateLocalStudy, this::invalidateAllLocalStudies);
+        startSubscriberThread(studyInvalidationSubscriber, "study-invalidation-subscriber");
+        
+        activityEventInvalidationSubscriber = new InvalidationSubscriber(jedisPool,
+                ACTIVITY_EVENT_INVALIDATION_CHANNEL, this::invalidateLocalActivityEventMap,
+                this::invalidateAllLocalActivityEventMaps);
+        startSubscriberThread(activityEventInvalidationSubscriber, "activity-event-invalidation-subscriber");
+    }
+    
+    private void startSubscriberThread(InvalidationSubscriber subscriber, String name) {
+        Thread thread = new Thread(subscriber, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    @PreDestroy
+    public void stopInvalidationSubscriber() {
+        if (studyInvalidationSubscriber != null) {
+            studyInvalidationSubscriber.shutdown();
+        }
+        if (activityEventInvalidationSubscriber != null) {
+            activityEventInvalidationSubscriber.shutdown();
+        }
+    }
+    
+    @PostConstruct
+    public void startCircuitProbe() {
+        circuitProbeExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-circuit-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int interval = circuitBreaker.getProbeIntervalSeconds();
+        circuitProbeExecutor.scheduleWithFixedDelay(this::probeRedis, interval, interval, TimeUnit.SECONDS);
+    }
+    
+    @PreDestroy
+    public void stopCircuitProbe() {
+        if (circuitProbeExecutor != null) {
+            circuitProbeExecutor.shutdownNow();
+        }
+    }
+    
+    /**
+     * If the circuit is open, or there are stale keys that have not been deleted from Redis, check whether Redis 
+     * is available. If it is, delete the stale keys (and the members of stale sets of keys), write the sessions 
+     * written while it was unavailable (so those users stay signed in), then close the circuit. Keys can be marked 
+     * stale just after the circuit closes (by calls that found it open), so this runs whatever the state of the 
+     * circuit.
+     */
+    void probeRedis() {
+        Set<String> staleKeys = fallbackCache.getStaleKeys();
+        Set<String> staleSetKeys = fallbackCache.getStaleSetKeys();
+        Map<String, String> staleSessions = fallbackCache.getStaleSessions();
+        if (!circuitBreaker.isOpen() && staleKeys.isEmpty() && staleSetKeys.isEmpty() && staleSessions.isEmpty()) {
+            return;
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.ping();
+            for (String setKey : staleSetKeys) {
+                Set<String> members = jedis.smembers(setKey);
+                for (List<String> keys : Iterables.partition(members, STALE_KEY_BATCH_SIZE)) {
+                    jedis.del(keys.toArray(new String[keys.size()]));
+                }
+                jedis.del(setKey);
+            }
+            fallbackCache.removeStaleSetKeys(staleSetKeys);
+            for (List<String> keys : Iterables.partition(staleKeys, STALE_KEY_BATCH_SIZE)) {
+                jedis.del(keys.toArray(new String[keys.size()]));
+            }
+            fallbackCache.removeStaleKeys(staleKeys);
+            // After the stale keys, so a session removed and then written again is written.
+            int sessionsWritten = 0;
+            for (Map.Entry<String, String> entry : staleSessions.entrySet()) {
+                if (writeStaleSession(jedis, entry.getKey(), entry.getValue(), staleKeys)) {
+                    sessionsWritten++;
+                }
+            }
+            fallbackCache.removeStaleSessions(staleSessions);
+            if (circuitBreaker.isOpen()) {
+                circuitBreaker.close();
+                fallbackCache.clearObjects();
+            }
+            LOG.info("Deleted " + staleKeys.size() + " keys and " + staleSetKeys.size()
+                    + " sets of keys, and wrote " + sessionsWritten + " sessions, changed while Redis was unavailable");
+        } catch(Throwable e) {
+            LOG.debug("Redis is still unavailable", e);
+        }
+    }
+    
+    /**
+     * Write a session that was written while Redis was unavailable from the fallback cache to Redis. If the fallback 
+     * cache no longer holds it (it was evicted), its keys are deleted instead, unless they were already deleted as 
+     * stale keys (it was removed). Returns true if the session was written.
+     */
+    private boolean writeStaleSession(Jedis jedis, String sessionToken, String userId, Set<String> deletedKeys) {
+        CacheKey tokenToUserIdKey = CacheKey.tokenToUserId(sessionToken);
+        CacheKey userIdToSessionKey = CacheKey.userIdToSession(userId);
+        byte[] ser = fallbackCache.getSessionByToken(sessionToken);
+        if (ser == null) {
+            if (!deletedKeys.contains(tokenToUserIdKey.toString())) {
+                jedis.del(tokenToUserIdKey.toString(), userIdToSessionKey.toString());
+            }
+            return false;
+        }
+        Transaction transaction = jedis.multi();
+        transaction.setex(tokenToUserIdKey.toString(), sessionExpireInSeconds, userId);
+        transaction.setex(toBytes(userIdToSessionKey), sessionExpireInSeconds, ser);
+        transaction.exec();
+        return true;
+    }
+    
     /**
      * Take existing data in the request info object and augment with any new information 
      * in the request info object passed as a parameter, then persist that. Different calls
@@ -87,27 +331,42 @@ public class CacheProvider {
         CacheKey tokenToUserIdKey = CacheKey.tokenToUserId(session.getSessionToken());
         CacheKey userIdToSessionKey = CacheKey.userIdToSession(session.getId());
         
-        try (JedisTransaction transaction = jedisOps.getTransaction()) {
-            // If the key exists, get the remaining time to expiration. If it doesn't exist
-            // then save with the full expiration period.
-            Long ttl = jedisOps.ttl(userIdToSessionKey.toString());
-            int expiration = (ttl != null && ttl > 0L) ? ttl.intValue() : sessionExpireInSeconds;
-                   
-            String ser = StudyParticipant.CACHE_WRITER.writeValueAsString(session);
-            
-            List<Object> results = transaction
-                .setex(tokenToUserIdKey.toString(), expiration, session.getId())
-                .setex(userIdToSessionKey.toString(), expiration, ser)
-                .exec();
+        try {
+            byte[] ser = cacheCodec.encode(session, StudyParticipant.CACHE_FILTER);
+            fallbackCache.putSession(session.getSessionToken(), session.getId(), ser);
             
-            if (results == null) {
-                throw new BridgeServiceException("Session storage error.");
-            }
-            for (Object result : results) {
-                if (!"OK".equals(result)) {
-                    throw new BridgeServiceException("Session storage error.");
+            callRedis(() -> {
+                long start = System.nanoTime();
+                try (Jedis jedis = jedisPool.getResource()) {
+                    // If the key exists, get the remaining time to expiration. If it doesn't exist
+                    // then save with the full expiration period.
+                    Long ttl = jedis.ttl(userIdToSessionKey.toString());
+                    int expiration = (ttl != null && ttl > 0L) ? ttl.intValue() : sessionExpireInSeconds;
+                    
+                    Transaction transaction = jedis.multi();
+                    transaction.setex(tokenToUserIdKey.toString(), expiration, session.getId());
+                    transaction.setex(toBytes(userIdToSessionKey), expiration, ser);
+                    List<Object> results = transaction.exec();
+                    
+                    if (results == null) {
+                        throw new BridgeServiceException("Session storage error.");
+                    }
+                    for (Object result : results) {
+                        if (!"OK".equals(result)) {
+                            throw new BridgeServiceException("Session storage error.");
+                        }
+                    }
                 }
-            }
+                cacheMetrics.recordWrite(tokenToUserIdKey, size(session.getId()), start);
+                cacheMetrics.recordWrite(userIdToSessionKey, ser.length, start);
+                return null;
+            }, () -> {
+                // Written to Redis from the fallback cache once it is available again
+                if (!fallbackCache.markStaleSession(session.getSessionToken(), session.getId())) {
+                    throw new BridgeServiceException("Too many cache keys changed while Redis is unavailable");
+                }
+                return null;
+            });
         } catch (Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
@@ -119,23 +378,30 @@ public class CacheProvider {
         checkNotNull(sessionToken);
         try {
             CacheKey tokenToUserIdKey = CacheKey.tokenToUserId(sessionToken);
-            String userId = jedisOps.get(tokenToUserIdKey.toString());
-            if (userId != null) {
-                CacheKey userIdToSessionKey = CacheKey.userIdToSession(userId);
-                String ser = jedisOps.get(userIdToSessionKey.toString());
-                if (ser != null) {
-                    UserSession session = BridgeObjectMapper.get().readValue(ser, UserSession.class);
-                    // The token --> userId look up is not replaced on session invalidation. 
-                    // Check here and only return if the sessionToken is valid. It is possible 
-                    // to successfully sign in and then have this fail due to concurrent requests.
-                    // The client needs to manage concurrent requests if it doesn't want to 
-                    // invalidate its own session.
-                    if (session.getSessionToken().equals(sessionToken)) {
-                        return session;
-                    }
-                    // Otherwise, delete the key sessionToken key (it's known to be invalid)
-                    removeObject(tokenToUserIdKey);
+            byte[] ser = callRedis(() -> {
+                long start = System.nanoTime();
+                byte[] bytes = null;
+                try (Jedis jedis = jedisPool.getResource()) {
+                    bytes = (byte[])jedis.eval(GET_SESSION_BY_TOKEN_SCRIPT_BYTES, 
+                            ImmutableList.of(toBytes(tokenToUserIdKey)),
+                            ImmutableList.of(SafeEncoder.encode(USER_ID_TO_SESSION_SUFFIX)));
                 }
+                cacheMetrics.recordRead(tokenToUserIdKey, bytes, size(bytes), start);
+                return bytes;
+            }, () -> fallbackCache.getSessionByToken(sessionToken));
+            if (ser != null) {
+                UserSession session = cacheCodec.decode(ser, UserSession.class);
+                // The token --> userId look up is not replaced on session invalidation. 
+                // Check here and only return if the sessionToken is valid. It is possible 
+                // to successfully sign in and then have this fail due to concurrent requests.
+                // The client needs to manage concurrent requests if it doesn't want to 
+                // invalidate its own session.
+                if (session.getSessionToken().equals(sessionToken)) {
+                    fallbackCache.putSession(sessionToken, session.getId(), ser);
+                    return session;
+                }
+                // Otherwise, delete the key sessionToken key (it's known to be invalid)
+                removeObject(tokenToUserIdKey);
             }
             return null;
         } catch (Throwable e) {
@@ -149,11 +415,18 @@ public class CacheProvider {
         
         try {
             CacheKey userIdToSessionKey = CacheKey.userIdToSession(userId);
-            String ser = jedisOps.get(userIdToSessionKey.toString());
+            byte[] ser = callRedis(() -> {
+                long start = System.nanoTime();
+                try (Jedis jedis = jedisPool.getResource()) {
+                    byte[] bytes = jedis.get(toBytes(userIdToSessionKey));
+                    cacheMetrics.recordRead(userIdToSessionKey, bytes, size(bytes), start);
+                    return bytes;
+                }
+            }, () -> fallbackCache.getSessionByUserId(userId));
             if (ser == null) {
                 return null;
             }
-            return BridgeObjectMapper.get().readValue(ser, UserSession.class);
+            return cacheCodec.decode(ser, UserSession.class);
         } catch(Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
@@ -168,13 +441,20 @@ public class CacheProvider {
         CacheKey tokenToUserIdKey = CacheKey.tokenToUserId(session.getSessionToken());
         CacheKey userIdToSessionKey = CacheKey.userIdToSession(session.getId());
 
+        fallbackCache.removeSession(session.getSessionToken(), session.getId());
         try {
-            try (JedisTransaction transaction = jedisOps.getTransaction()) {
-                transaction
-                    .del(tokenToUserIdKey.toString())
-                    .del(userIdToSessionKey.toString())
-                    .exec();
-            }
+            callRedis(() -> {
+                try (JedisTransaction transaction = jedisOps.getTransaction()) {
+                    transaction
+                        .del(tokenToUserIdKey.toString())
+                        .del(userIdToSessionKey.toString())
+                        .exec();
+                }
+                return null;
+            }, () -> {
+                markStale(tokenToUserIdKey, userIdToSessionKey);
+                return null;
+            });
         } catch(Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
@@ -193,26 +473,185 @@ public class CacheProvider {
     public void setStudy(Study study) {
         checkNotNull(study);
         CacheKey redisKey = CacheKey.study(study.getIdentifier());
-        setObject(redisKey, study, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS);
+        setEncodedObject(redisKey, study, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS);
+        // The near cache is not populated with the caller's instance, which it may continue to modify.
+        publishStudyInvalidation(study.getIdentifier());
     }
 
+    /**
+     * Get the study from this node's near cache, or failing that, from Redis (resetting its expiration 
+     * period there). 
+     */
     public Study getStudy(String identifier) {
         checkNotNull(identifier);
-        CacheKey redisKey = CacheKey.study(identifier);
-        return getObject(redisKey, Study.class, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS);
+        byte[] ser = studyNearCache.getIfPresent(identifier);
+        if (ser == null) {
+            long invalidationCount = studyInvalidationCount.get();
+            CacheKey redisKey = CacheKey.study(identifier);
+            ser = getEncodedBytes(redisKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS);
+            if (ser == null) {
+                return null;
+            }
+            if (invalidationCount == studyInvalidationCount.get()) {
+                studyNearCache.put(identifier, ser);
+            }
+        }
+        try {
+            return cacheCodec.decode(ser, Study.class);
+        } catch (IOException e) {
+            throw new BridgeServiceException(e);
+        }
     }
 
     public void removeStudy(String identifier) {
         checkNotNull(identifier);
         CacheKey redisKey = CacheKey.study(identifier);
         removeObject(redisKey);
+        publishStudyInvalidation(identifier);
+    }
+    
+    /** Hit, miss, size, and latency counts for Redis operations on this node, by cache key namespace. */
+    public CacheMetrics getCacheMetrics() {
+        return cacheMetrics;
+    }
+    
+    /** Hit, miss, and eviction counts for the study near cache on this node. */
+    public CacheStats getStudyNearCacheStats() {
+        return studyNearCache.stats();
+    }
+    
+    /**
+     * Get a user's activity events from this node's near cache, or failing that, from Redis. Returns null if 
+     * they are not cached. 
+     */
+    public Map<String, DateTime> getActivityEventMap(String healthCode) {
+        checkNotNull(healthCode);
+        Map<String, DateTime> events = activityEventNearCache.getIfPresent(healthCode);
+        if (events != null) {
+            return events;
+        }
+        long invalidationCount = activityEventInvalidationCount.get();
+        // The tombstone is JSON null, so it is read as a miss
+        Map<String, Long> timestamps = getObject(CacheKey.activityEventMap(healthCode), EVENT_TIMESTAMPS_TYPE);
+        if (timestamps == null) {
+            return null;
+        }
+        ImmutableMap.Builder<String, DateTime> builder = ImmutableMap.builder();
+        for (Map.Entry<String, Long> entry : timestamps.entrySet()) {
+            builder.put(entry.getKey(), new DateTime(entry.getValue(), DateTimeZone.UTC));
+        }
+        events = builder.build();
+        if (invalidationCount == activityEventInvalidationCount.get()) {
+            activityEventNearCache.put(healthCode, events);
+        }
+        return events;
+    }
+    
+    /**
+     * Cache a user's activity events, as read from the database. They are placed in the near cache when 
+     * they are next read from Redis. The events are only cached if there is no value for the user in Redis, 
+     * so if the events changed after they were read (replacing them with a tombstone), they are not cached.
+     */
+    public void setActivityEventMap(String healthCode, Map<String, DateTime> events) {
+        checkNotNull(healthCode);
+        checkNotNull(events);
+        ImmutableMap.Builder<String, Long> timestamps = ImmutableMap.builder();
+        for (Map.Entry<String, DateTime> entry : events.entrySet()) {
+            timestamps.put(entry.getKey(), entry.getValue().getMillis());
+        }
+        CacheKey cacheKey = CacheKey.activityEventMap(healthCode);
+        try {
+            String ser = BridgeObjectMapper.get().writeValueAsString(timestamps.build());
+            callRedis(() -> {
+                long start = System.nanoTime();
+                try (Jedis jedis = jedisPool.getResource()) {
+                    // Returns null if the key exists, which is not an error
+                    jedis.set(cacheKey.toString(), ser, "NX", "EX", 
+                            BridgeConstants.ACTIVITY_EVENT_MAP_EXPIRE_IN_SECONDS);
+                }
+                cacheMetrics.recordWrite(cacheKey, size(ser), start);
+                return null;
+            }, () -> putLocalObject(cacheKey, ser));
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+    
+    /** 
+     * Remove a user's activity events from the cache, on all nodes. They are replaced in Redis with a tombstone 
+     * for a short time, so that a read that began before they changed cannot cache the events it read. 
+     */
+    public void removeActivityEventMap(String healthCode) {
+        checkNotNull(healthCode);
+        CacheKey cacheKey = CacheKey.activityEventMap(healthCode);
+        try {
+            callRedis(() -> jedisOps.setex(cacheKey.toString(), 
+                    BridgeConstants.ACTIVITY_EVENT_MAP_TOMBSTONE_EXPIRE_IN_SECONDS, 
+                    TOMBSTONE), () -> {
+                fallbackCache.removeObject(cacheKey.toString());
+                markStale(cacheKey);
+                return null;
+            });
+        } catch(Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+        invalidateLocalActivityEventMap(healthCode);
+        publishInvalidation(ACTIVITY_EVENT_INVALIDATION_CHANNEL, healthCode);
+    }
+    
+    /** Hit, miss, and eviction counts for the activity event near cache on this node. */
+    public CacheStats getActivityEventNearCacheStats() {
+        return activityEventNearCache.stats();
+    }
+    
+    void invalidateLocalActivityEventMap(String healthCode) {
+        activityEventInvalidationCount.incrementAndGet();
+        activityEventNearCache.invalidate(healthCode);
+    }
+    
+    void invalidateAllLocalActivityEventMaps() {
+        LOG.info("Clearing activity event near cache");
+        activityEventInvalidationCount.incrementAndGet();
+        activityEventNearCache.invalidateAll();
+    }
+    
+    private void publishStudyInvalidation(String identifier) {
+        // Drop the local copy now, rather than waiting for our own message to come back from Redis.
+        invalidateLocalStudy(identifier);
+        publishInvalidation(STUDY_INVALIDATION_CHANNEL, identifier);
+    }
+    
+    private void publishInvalidation(String channel, String key) {
+        try {
+            callRedis(() -> {
+                try (Jedis jedis = jedisPool.getResource()) {
+                    return jedis.publish(channel, key);
+                }
+            }, () -> null);
+        } catch(Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+    
+    void invalidateLocalStudy(String identifier) {
+        studyInvalidationCount.incrementAndGet();
+        studyNearCache.invalidate(identifier);
+    }
+    
+    void invalidateAllLocalStudies() {
+        LOG.info("Clearing study near cache");
+        studyInvalidationCount.incrementAndGet();
+        studyNearCache.invalidateAll();
     }
 
     public <T> T getObject(CacheKey cacheKey, Class<T> clazz) {
         checkNotNull(cacheKey);
         checkNotNull(clazz);
         try {
-            String ser = jedisOps.get(cacheKey.toString());
+            String ser = getSerializedObject(cacheKey);
             if (ser != null) {
                 return BridgeObjectMapper.get().readValue(ser, clazz);
             }
@@ -227,7 +666,7 @@ public class CacheProvider {
         checkNotNull(cacheKey);
         checkNotNull(typeRef);
         try {
-            String ser = jedisOps.get(cacheKey.toString());
+            String ser = getSerializedObject(cacheKey);
             if (ser != null) {
                 return BridgeObjectMapper.get().readValue(ser, typeRef);
             }
@@ -238,6 +677,40 @@ public class CacheProvider {
         return null;
     }
     
+    /**
+     * Get the object and the time remaining until it expires, in one round trip to Redis. Returns null if 
+     * the object is not in the cache.
+     */
+    public <T> CachedObject<T> getObjectWithExpiration(CacheKey cacheKey, Class<T> clazz) {
+        checkNotNull(cacheKey);
+        checkNotNull(clazz);
+        try {
+            CachedObject<String> ser = callRedis(() -> {
+                long start = System.nanoTime();
+                try (Jedis jedis = jedisPool.getResource()) {
+                    Pipeline pipeline = jedis.pipelined();
+                    Response<String> value = pipeline.get(cacheKey.toString());
+                    Response<Long> ttl = pipeline.ttl(cacheKey.toString());
+                    pipeline.sync();
+                    cacheMetrics.recordRead(cacheKey, value.get(), size(value.get()), start);
+                    return (value.get() == null) ? null : new CachedObject<>(value.get(), ttl.get());
+                }
+            }, () -> {
+                // Objects held locally have no expiration to report
+                String value = (String)fallbackCache.getObject(cacheKey.toString());
+                return (value == null) ? null : new CachedObject<>(value, -1L);
+            });
+            if (ser != null) {
+                return new CachedObject<>(BridgeObjectMapper.get().readValue(ser.getObject(), clazz),
+                        ser.getSecondsToExpire());
+            }
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+        return null;
+    }
+    
     /**
      * Get the object, resetting its expiration period.
      */
@@ -245,9 +718,16 @@ public class CacheProvider {
         checkNotNull(cacheKey);
         checkNotNull(clazz);
         try {
-            String ser = jedisOps.get(cacheKey.toString());
+            String ser = callRedis(() -> {
+                long start = System.nanoTime();
+                String value = jedisOps.get(cacheKey.toString());
+                cacheMetrics.recordRead(cacheKey, value, size(value), start);
+                if (value != null) {
+                    jedisOps.expire(cacheKey.toString(), expireInSeconds);
+                }
+                return value;
+            }, () -> (String)fallbackCache.getObject(cacheKey.toString()));
             if (ser != null) {
-                jedisOps.expire(cacheKey.toString(), expireInSeconds);
                 return BridgeObjectMapper.get().readValue(ser, clazz);
             }
         } catch (Throwable e) {
@@ -261,7 +741,7 @@ public class CacheProvider {
     public void setExpiration(CacheKey cacheKey, int expireInSeconds) {
         checkNotNull(cacheKey);
         try {
-            jedisOps.expire(cacheKey.toString(), expireInSeconds);
+            callRedis(() -> jedisOps.expire(cacheKey.toString(), expireInSeconds), () -> null);
         } catch (Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
@@ -276,7 +756,12 @@ public class CacheProvider {
         checkNotNull(object);
         try {
             String ser = BridgeObjectMapper.get().writeValueAsString(object);
-            String result = jedisOps.set(cacheKey.toString(), ser);
+            String result = callRedis(() -> {
+                long start = System.nanoTime();
+                String value = jedisOps.set(cacheKey.toString(), ser);
+                cacheMetrics.recordWrite(cacheKey, size(ser), start);
+                return value;
+            }, () -> putLocalObject(cacheKey, ser));
             if (!"OK".equals(result)) {
                 throw new BridgeServiceException(object.getClass().getSimpleName() + " storage error");
             }
@@ -294,7 +779,12 @@ public class CacheProvider {
         checkNotNull(object);
         try {
             String ser = BridgeObjectMapper.get().writeValueAsString(object);
-            String result = jedisOps.setex(cacheKey.toString(), expireInSeconds, ser);
+            String result = callRedis(() -> {
+                long start = System.nanoTime();
+                String value = jedisOps.setex(cacheKey.toString(), expireInSeconds, ser);
+                cacheMetrics.recordWrite(cacheKey, size(ser), start);
+                return value;
+            }, () -> putLocalObject(cacheKey, ser));
             if (!"OK".equals(result)) {
                 throw new BridgeServiceException(object.getClass().getSimpleName() + " storage error");
             }
@@ -304,13 +794,160 @@ public class CacheProvider {
         }
     }
     
+    /**
+     * Set an object in the cache with an expiration in seconds, unless the key already has a value (including a 
+     * tombstone left by removeSetOfCacheKeys(CacheKey, int)). Returns true if the object was cached.
+     */
+    public boolean setObjectIfAbsent(CacheKey cacheKey, Object object, int expireInSeconds) {
+        checkNotNull(cacheKey);
+        checkNotNull(object);
+        try {
+            String ser = BridgeObjectMapper.get().writeValueAsString(object);
+            String result = callRedis(() -> {
+                long start = System.nanoTime();
+                String value;
+                try (Jedis jedis = jedisPool.getResource()) {
+                    // Returns null if the key exists
+                    value = jedis.set(cacheKey.toString(), ser, "NX", "EX", expireInSeconds);
+                }
+                cacheMetrics.recordWrite(cacheKey, size(ser), start);
+                return value;
+            }, () -> putLocalObject(cacheKey, ser));
+            return "OK".equals(result);
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+    
+    /**
+     * Get several objects of different types in one round trip to Redis. The returned map only contains 
+     * entries for the keys that were found in the cache.
+     */
+    public Map<CacheKey, Object> getObjects(Map<CacheKey, Class<?>> keysToClasses) {
+        checkNotNull(keysToClasses);
+        
+        List<CacheKey> cacheKeys = ImmutableList.copyOf(keysToClasses.keySet());
+        List<String> sers = getSerializedObjects(cacheKeys);
+        try {
+            Map<CacheKey, Object> objects = Maps.newHashMap();
+            for (int i=0; i < cacheKeys.size(); i++) {
+                String ser = sers.get(i);
+                if (ser != null) {
+                    CacheKey cacheKey = cacheKeys.get(i);
+                    objects.put(cacheKey, BridgeObjectMapper.get().readValue(ser, keysToClasses.get(cacheKey)));
+                }
+            }
+            return objects;
+        } catch (IOException e) {
+            throw new BridgeServiceException(e);
+        }
+    }
+    
+    /**
+     * Get several objects of the same type in one round trip to Redis. The returned map only contains 
+     * entries for the keys that were found in the cache.
+     */
+    public <T> Map<CacheKey, T> getObjects(Collection<CacheKey> cacheKeys, Class<T> clazz) {
+        checkNotNull(cacheKeys);
+        checkNotNull(clazz);
+        
+        List<CacheKey> keyList = ImmutableList.copyOf(cacheKeys);
+        List<String> sers = getSerializedObjects(keyList);
+        try {
+            Map<CacheKey, T> objects = Maps.newHashMap();
+            for (int i=0; i < keyList.size(); i++) {
+                String ser = sers.get(i);
+                if (ser != null) {
+                    objects.put(keyList.get(i), BridgeObjectMapper.get().readValue(ser, clazz));
+                }
+            }
+            return objects;
+        } catch (IOException e) {
+            throw new BridgeServiceException(e);
+        }
+    }
+    
+    /**
+     * Set several objects in the cache with no expiration, in one round trip to Redis.
+     */
+    public void setObjects(Map<CacheKey, ?> objects) {
+        checkNotNull(objects);
+        if (objects.isEmpty()) {
+            return;
+        }
+        try {
+            Map<CacheKey, String> sers = serialize(objects);
+            List<String> keysAndValues = Lists.newArrayListWithCapacity(sers.size() * 2);
+            for (Map.Entry<CacheKey, String> entry : sers.entrySet()) {
+                keysAndValues.add(entry.getKey().toString());
+                keysAndValues.add(entry.getValue());
+            }
+            String result = callRedis(() -> {
+                long start = System.nanoTime();
+                try (Jedis jedis = jedisPool.getResource()) {
+                    String value = jedis.mset(keysAndValues.toArray(new String[keysAndValues.size()]));
+                    recordWrites(sers, start);
+                    return value;
+                }
+            }, () -> putLocalObjects(sers));
+            if (!"OK".equals(result)) {
+                throw new BridgeServiceException("Cache storage error");
+            }
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+    
+    /**
+     * Set several objects in the cache with an expiration in seconds, in one round trip to Redis.
+     */
+    public void setObjects(Map<CacheKey, ?> objects, int expireInSeconds) {
+        checkNotNull(objects);
+        if (objects.isEmpty()) {
+            return;
+        }
+        try {
+            Map<CacheKey, String> sers = serialize(objects);
+            String result = callRedis(() -> {
+                long start = System.nanoTime();
+                try (Jedis jedis = jedisPool.getResource()) {
+                    Pipeline pipeline = jedis.pipelined();
+                    List<Response<String>> results = Lists.newArrayListWithCapacity(sers.size());
+                    for (Map.Entry<CacheKey, String> entry : sers.entrySet()) {
+                        results.add(pipeline.setex(entry.getKey().toString(), expireInSeconds, entry.getValue()));
+                    }
+                    pipeline.sync();
+                    recordWrites(sers, start);
+                    for (Response<String> response : results) {
+                        if (!"OK".equals(response.get())) {
+                            return response.get();
+                        }
+                    }
+                    return "OK";
+                }
+            }, () -> putLocalObjects(sers));
+            if (!"OK".equals(result)) {
+                throw new BridgeServiceException("Cache storage error");
+            }
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+    
     /**
      * Remove object from cache, if it exists.
      */
     public void removeObject(CacheKey cacheKey) {
         checkNotNull(cacheKey);
         try {
-            jedisOps.del(cacheKey.toString());
+            callRedis(() -> jedisOps.del(cacheKey.toString()), () -> {
+                fallbackCache.removeObject(cacheKey.toString());
+                markStale(cacheKey);
+                return null;
+            });
         } catch(Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
@@ -321,7 +958,12 @@ public class CacheProvider {
         checkNotNull(cacheKeyOfSet);
         checkNotNull(cacheKeyInSet);
         try {
-            jedisOps.sadd(cacheKeyOfSet.toString(), cacheKeyInSet);
+            // While Redis is unavailable, a value written for the key is marked stale, and is removed from Redis 
+            // once it is available again, so the set is only tracked locally, to remove the local values.
+            callRedis(() -> jedisOps.sadd(cacheKeyOfSet.toString(), cacheKeyInSet), () -> {
+                fallbackCache.addToSet(cacheKeyOfSet.toString(), cacheKeyInSet);
+                return null;
+            });
         } catch(Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
@@ -329,24 +971,209 @@ public class CacheProvider {
     }
     
     public void removeSetOfCacheKeys(CacheKey cacheKeyOfSet) {
+        removeSetOfCacheKeys(cacheKeyOfSet, 0);
+    }
+    
+    /**
+     * Remove the keys in the set, and the set. If tombstoneExpireInSeconds is greater than zero, each key is replaced 
+     * with a tombstone for that long rather than deleted, so a value read before the removal cannot be written back 
+     * with setObjectIfAbsent().
+     */
+    public void removeSetOfCacheKeys(CacheKey cacheKeyOfSet, int tombstoneExpireInSeconds) {
         checkNotNull(cacheKeyOfSet);
         
         try {
-            Set<String> members = jedisOps.smembers(cacheKeyOfSet.toString());
-            if (members != null && !members.isEmpty()) {
-                try (JedisTransaction transaction = jedisOps.getTransaction()) {
-                    for (String oneMember : members) {
-                        transaction.del(oneMember);
+            callRedis(() -> {
+                Set<String> members = jedisOps.smembers(cacheKeyOfSet.toString());
+                if (members != null && !members.isEmpty()) {
+                    try (JedisTransaction transaction = jedisOps.getTransaction()) {
+                        for (String oneMember : members) {
+                            if (tombstoneExpireInSeconds > 0) {
+                                transaction.setex(oneMember, tombstoneExpireInSeconds, TOMBSTONE);
+                            } else {
+                                transaction.del(oneMember);
+                            }
+                        }
+                        transaction.del(cacheKeyOfSet.toString());
+                        transaction.exec();
                     }
-                    transaction.del(cacheKeyOfSet.toString());
-                    transaction.exec();
                 }
-            }
+                return null;
+            }, () -> {
+                // The members in Redis cannot be read until it is available again, so they are deleted then.
+                if (!fallbackCache.markStaleSet(cacheKeyOfSet.toString())) {
+                    throw new BridgeServiceException("Too many cache keys changed while Redis is unavailable");
+                }
+                for (String oneMember : fallbackCache.removeSet(cacheKeyOfSet.toString())) {
+                    fallbackCache.removeObject(oneMember);
+                }
+                return null;
+            });
         } catch(Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
         }        
     }
+    
+    /**
+     * Call Redis, unless it is known to be unavailable. If it is, or if the call fails because Redis cannot 
+     * be reached, return the result of the fallback (which uses the local fallback cache) instead. 
+     */
+    private <T> T callRedis(Callable<T> redisCall, Supplier<T> fallback) throws Exception {
+        if (circuitBreaker.isOpen()) {
+            return fallback.get();
+        }
+        try {
+            T result = redisCall.call();
+            circuitBreaker.recordSuccess();
+            return result;
+        } catch(Exception e) {
+            if (circuitBreaker.recordFailure(e)) {
+                return fallback.get();
+            }
+            throw e;
+        }
+    }
+    
+    /** GET the value of the key, or failing that, the value in the local fallback cache. */
+    private String getSerializedObject(CacheKey cacheKey) throws Exception {
+        return callRedis(() -> {
+            long start = System.nanoTime();
+            String ser = jedisOps.get(cacheKey.toString());
+            cacheMetrics.recordRead(cacheKey, ser, size(ser), start);
+            return ser;
+        }, () -> (String)fallbackCache.getObject(cacheKey.toString()));
+    }
+
+    /** MGET the values of the keys, returning a list with a null for each key that is not in the cache. */
+    private List<String> getSerializedObjects(List<CacheKey> cacheKeys) {
+        if (cacheKeys.isEmpty()) {
+            return ImmutableList.of();
+        }
+        String[] keys = new String[cacheKeys.size()];
+        for (int i=0; i < cacheKeys.size(); i++) {
+            keys[i] = cacheKeys.get(i).toString();
+        }
+        try {
+            return callRedis(() -> {
+                long start = System.nanoTime();
+                try (Jedis jedis = jedisPool.getResource()) {
+                    List<String> sers = jedis.mget(keys);
+                    for (int i=0; i < cacheKeys.size(); i++) {
+                        cacheMetrics.recordRead(cacheKeys.get(i), sers.get(i), size(sers.get(i)), start);
+                    }
+                    return sers;
+                }
+            }, () -> {
+                List<String> sers = Lists.newArrayListWithCapacity(keys.length);
+                for (String key : keys) {
+                    sers.add((String)fallbackCache.getObject(key));
+                }
+                return sers;
+            });
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+    
+    /**
+     * Get the bytes of an object stored through the cache codec, resetting its expiration period.
+     */
+    private byte[] getEncodedBytes(CacheKey cacheKey, int expireInSeconds) {
+        try {
+            return callRedis(() -> {
+                long start = System.nanoTime();
+                try (Jedis jedis = jedisPool.getResource()) {
+                    byte[] value = jedis.get(toBytes(cacheKey));
+                    cacheMetrics.recordRead(cacheKey, value, size(value), start);
+                    if (value != null) {
+                        jedis.expire(cacheKey.toString(), expireInSeconds);
+                    }
+                    return value;
+                }
+            }, () -> (byte[])fallbackCache.getObject(cacheKey.toString()));
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+    
+    /**
+     * Set an object in the cache using the cache codec, with an expiration in seconds.
+     */
+    private void setEncodedObject(CacheKey cacheKey, Object object, int expireInSeconds) {
+        try {
+            byte[] ser = cacheCodec.encode(object);
+            String result = callRedis(() -> {
+                long start = System.nanoTime();
+                try (Jedis jedis = jedisPool.getResource()) {
+                    String value = jedis.setex(toBytes(cacheKey), expireInSeconds, ser);
+                    cacheMetrics.recordWrite(cacheKey, ser.length, start);
+                    return value;
+                }
+            }, () -> putLocalObject(cacheKey, ser));
+            if (!"OK".equals(result)) {
+                throw new BridgeServiceException(object.getClass().getSimpleName() + " storage error");
+            }
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+    
+    /** Hold a serialized object locally while Redis is unavailable. Returns "OK", as Redis would. */
+    private String putLocalObject(CacheKey cacheKey, Object ser) {
+        markStale(cacheKey);
+        fallbackCache.putObject(cacheKey.toString(), ser);
+        return "OK";
+    }
+    
+    private String putLocalObjects(Map<CacheKey, String> sers) {
+        for (Map.Entry<CacheKey, String> entry : sers.entrySet()) {
+            putLocalObject(entry.getKey(), entry.getValue());
+        }
+        return "OK";
+    }
+    
+    /**
+     * Record that these keys have changed locally, and must be deleted from Redis once it is available. If this 
+     * node cannot track any more stale keys, the change fails, rather than leave other nodes reading stale values.
+     */
+    private void markStale(CacheKey... cacheKeys) {
+        for (CacheKey cacheKey : cacheKeys) {
+            if (!fallbackCache.markStale(cacheKey.toString())) {
+                throw new BridgeServiceException("Too many cache keys changed while Redis is unavailable");
+            }
+        }
+    }
+    
+    private static Map<CacheKey, String> serialize(Map<CacheKey, ?> objects) throws JsonProcessingException {
+        Map<CacheKey, String> sers = Maps.newLinkedHashMap();
+        for (Map.Entry<CacheKey, ?> entry : objects.entrySet()) {
+            sers.put(entry.getKey(), BridgeObjectMapper.get().writeValueAsString(checkNotNull(entry.getValue())));
+        }
+        return sers;
+    }
+    
+    private void recordWrites(Map<CacheKey, String> sers, long start) {
+        for (Map.Entry<CacheKey, String> entry : sers.entrySet()) {
+            cacheMetrics.recordWrite(entry.getKey(), size(entry.getValue()), start);
+        }
+    }
+    
+    /** The number of bytes Redis stores for the string, which is encoded as UTF-8. */
+    private static int size(String ser) {
+        return (ser == null) ? 0 : Utf8.encodedLength(ser);
+    }
+    
+    private static int size(byte[] ser) {
+        return (ser == null) ? 0 : ser.length;
+    }
+    
+    private static byte[] toBytes(CacheKey cacheKey) {
+        return SafeEncoder.encode(cacheKey.toString());
+    }
 
     private void promptToStartRedisIfLocal(Throwable e) {
         if (BridgeConfigFactory.getConfig().isLocal()) {
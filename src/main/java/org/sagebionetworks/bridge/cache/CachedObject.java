@@ -0,0 +1,23 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An object read from the cache, along with the number of seconds until it expires in the cache 
+ * (-1 if it does not expire).
+ */
+public final class CachedObject<T> {
+    private final T object;
+    private final long secondsToExpire;
+    
+    public CachedObject(T object, long secondsToExpire) {
+        this.object = checkNotNull(object);
+        this.secondsToExpire = secondsToExpire;
+    }
+    public T getObject() {
+        return object;
+    }
+    public long getSecondsToExpire() {
+        return secondsToExpire;
+    }
+}
@@ -0,0 +1,78 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+
+/**
+ * Subscribes to a Redis pub/sub channel on a dedicated connection and hands each message (a key that has
+ * changed on another node) to a callback. Redis does not buffer pub/sub messages for disconnected
+ * subscribers, so whenever the subscription is (re-)established, the reset callback is called so the
+ * owner can discard anything it may have missed.
+ */
+class InvalidationSubscriber extends JedisPubSub implements Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(InvalidationSubscriber.class);
+
+    static final long RECONNECT_DELAY_MILLIS = 5000L;
+
+    private final JedisPool jedisPool;
+    private final String channel;
+    private final Consumer<String> onInvalidate;
+    private final Runnable onReset;
+    private volatile boolean running = true;
+
+    InvalidationSubscriber(JedisPool jedisPool, String channel, Consumer<String> onInvalidate, Runnable onReset) {
+        this.jedisPool = checkNotNull(jedisPool);
+        this.channel = checkNotNull(channel);
+        this.onInvalidate = checkNotNull(onInvalidate);
+        this.onReset = checkNotNull(onReset);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                // Blocks until unsubscribed or the connection fails
+                jedis.subscribe(this, channel);
+            } catch (Exception e) {
+                if (running) {
+                    LOG.warn("Lost subscription to Redis channel '" + channel + "', retrying", e);
+                    sleepBeforeReconnect();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onSubscribe(String channel, int subscribedChannels) {
+        onReset.run();
+    }
+
+    @Override
+    public void onMessage(String channel, String message) {
+        onInvalidate.accept(message);
+    }
+
+    void shutdown() {
+        running = false;
+        if (isSubscribed()) {
+            unsubscribe();
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
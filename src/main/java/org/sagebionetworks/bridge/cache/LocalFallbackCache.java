@@ -0,0 +1,168 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * What the CacheProvider serves while Redis is unavailable. Values are held in their serialized form, so
+ * callers never share instances.
+ * <ul>
+ *   <li>Objects written while Redis is unavailable (generally, values the caller has just loaded from a DAO
+ *       after a cache miss) are held for a short time, so each request does not go to the DAO;</li>
+ *   <li>Recently used sessions are always copied here, so users remain signed in if Redis fails. Sessions 
+ *       written while Redis is unavailable are recorded, so they can be written to Redis when it is available 
+ *       again;</li>
+ *   <li>The keys of all values changed while Redis is unavailable are recorded, so the stale copies in
+ *       Redis can be deleted when it is available again. Sets of keys removed while Redis is unavailable
+ *       are recorded in the same way, and their members are deleted from Redis.</li>
+ * </ul>
+ */
+public class LocalFallbackCache {
+
+    private final Cache<String, Object> objects;
+    private final Cache<String, byte[]> sessionsByToken;
+    private final Cache<String, String> userIdToToken;
+    private final Set<String> staleKeys = ConcurrentHashMap.newKeySet();
+    private final Set<String> staleSetKeys = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<String, Set<String>> sets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> staleSessions = new ConcurrentHashMap<>();
+    private final int maxStaleKeys;
+
+    public LocalFallbackCache(int expireInSeconds, int maxSessions, int sessionExpireInSeconds, int maxStaleKeys) {
+        checkArgument(expireInSeconds > 0);
+        checkArgument(maxSessions > 0);
+        checkArgument(sessionExpireInSeconds > 0);
+        checkArgument(maxStaleKeys > 0);
+        this.maxStaleKeys = maxStaleKeys;
+        this.objects = CacheBuilder.newBuilder().expireAfterWrite(expireInSeconds, TimeUnit.SECONDS).build();
+        this.sessionsByToken = CacheBuilder.newBuilder().maximumSize(maxSessions)
+                .expireAfterWrite(sessionExpireInSeconds, TimeUnit.SECONDS).build();
+        this.userIdToToken = CacheBuilder.newBuilder().maximumSize(maxSessions)
+                .expireAfterWrite(sessionExpireInSeconds, TimeUnit.SECONDS).build();
+    }
+
+    /** The serialized object (a String or byte array), or null if there is none. */
+    Object getObject(String key) {
+        return objects.getIfPresent(key);
+    }
+
+    void putObject(String key, Object ser) {
+        objects.put(key, checkNotNull(ser));
+    }
+
+    void removeObject(String key) {
+        objects.invalidate(key);
+    }
+
+    byte[] getSessionByToken(String sessionToken) {
+        return sessionsByToken.getIfPresent(sessionToken);
+    }
+
+    byte[] getSessionByUserId(String userId) {
+        String sessionToken = userIdToToken.getIfPresent(userId);
+        return (sessionToken == null) ? null : sessionsByToken.getIfPresent(sessionToken);
+    }
+
+    void putSession(String sessionToken, String userId, byte[] ser) {
+        sessionsByToken.put(sessionToken, checkNotNull(ser));
+        if (userId != null) {
+            userIdToToken.put(userId, sessionToken);
+        }
+    }
+
+    void removeSession(String sessionToken, String userId) {
+        sessionsByToken.invalidate(sessionToken);
+        if (userId != null) {
+            userIdToToken.invalidate(userId);
+        }
+    }
+
+    /**
+     * Record that the value of this key in Redis is out of date. Returns false if the key could not be recorded, 
+     * because the maximum number of stale keys has been reached, in which case the change should not be made.
+     */
+    boolean markStale(String key) {
+        if (!staleKeys.contains(key) && isFull()) {
+            return false;
+        }
+        staleKeys.add(key);
+        return true;
+    }
+
+    /** Record that this set of keys was removed, so its members in Redis are out of date. */
+    boolean markStaleSet(String setKey) {
+        if (!staleSetKeys.contains(setKey) && isFull()) {
+            return false;
+        }
+        staleSetKeys.add(setKey);
+        return true;
+    }
+
+    /** Record that this session (token and user ID) was written while Redis is unavailable. */
+    boolean markStaleSession(String sessionToken, String userId) {
+        if (!staleSessions.containsKey(sessionToken) && isFull()) {
+            return false;
+        }
+        staleSessions.put(sessionToken, userId);
+        return true;
+    }
+
+    private boolean isFull() {
+        return staleKeys.size() + staleSetKeys.size() + staleSessions.size() >= maxStaleKeys;
+    }
+
+    Set<String> getStaleKeys() {
+        return ImmutableSet.copyOf(staleKeys);
+    }
+
+    void removeStaleKeys(Set<String> keys) {
+        staleKeys.removeAll(keys);
+    }
+
+    Set<String> getStaleSetKeys() {
+        return ImmutableSet.copyOf(staleSetKeys);
+    }
+
+    void removeStaleSetKeys(Set<String> setKeys) {
+        staleSetKeys.removeAll(setKeys);
+    }
+
+    /** The user IDs of sessions written while Redis was unavailable, by session token. */
+    Map<String, String> getStaleSessions() {
+        return ImmutableMap.copyOf(staleSessions);
+    }
+
+    void removeStaleSessions(Map<String, String> sessions) {
+        for (Map.Entry<String, String> entry : sessions.entrySet()) {
+            staleSessions.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /** Add a key to a set of keys held while Redis is unavailable. */
+    void addToSet(String setKey, String key) {
+        sets.computeIfAbsent(setKey, k -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    /** Remove a set of keys held while Redis is unavailable, returning its members. */
+    Set<String> removeSet(String setKey) {
+        Set<String> members = sets.remove(setKey);
+        return (members == null) ? ImmutableSet.of() : members;
+    }
+
+    /** Drop the objects held while Redis was unavailable. Recently used sessions are retained. */
+    void clearObjects() {
+        objects.invalidateAll();
+        sets.clear();
+    }
+}
@@ -0,0 +1,87 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * Tracks whether Redis is available. After a number of consecutive calls fail because Redis cannot be
+ * reached, the circuit opens and the CacheProvider stops calling Redis, serving what it can from local
+ * caches instead. The CacheProvider probes Redis while the circuit is open, and closes it once Redis
+ * responds again.
+ */
+public class RedisCircuitBreaker {
+    private static final Logger LOG = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    private final int failureThreshold;
+    private final int probeIntervalSeconds;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile boolean open;
+
+    public RedisCircuitBreaker(int failureThreshold, int probeIntervalSeconds) {
+        checkArgument(failureThreshold > 0);
+        checkArgument(probeIntervalSeconds > 0);
+        this.failureThreshold = failureThreshold;
+        this.probeIntervalSeconds = probeIntervalSeconds;
+    }
+
+    public int getProbeIntervalSeconds() {
+        return probeIntervalSeconds;
+    }
+
+    /** True if Redis is considered unavailable, and should not be called. */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /** Record a call to Redis that succeeded. */
+    public void recordSuccess() {
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    /**
+     * Record a call to Redis that failed. If the failure shows Redis is unavailable (rather than, say, that a
+     * value could not be deserialized), and there have been too many such failures in a row, opens the circuit.
+     * Returns true if the circuit is open, in which case the caller should fall back to local data. Below the
+     * threshold, the caller should fail, as it would without the circuit breaker: a change that was only made
+     * locally (such as deleting a session) would not be seen by other nodes.
+     */
+    public boolean recordFailure(Throwable throwable) {
+        if (!isUnavailable(throwable)) {
+            return false;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && !open) {
+            open = true;
+            LOG.error("Redis is unavailable, opening circuit", throwable);
+        }
+        return open;
+    }
+
+    /** Close the circuit, once Redis is known to be available again. */
+    public void close() {
+        consecutiveFailures.set(0);
+        if (open) {
+            open = false;
+            LOG.info("Redis is available, closing circuit");
+        }
+    }
+
+    static boolean isUnavailable(Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t instanceof JedisConnectionException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,117 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+import java.util.function.Function;
+
+import javax.annotation.Resource;
+
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.dao.DistributedLockDao;
+import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A lock held in Redis, so it is shared by all nodes. Locks always expire, so a node that dies while holding
+ * a lock cannot block other nodes indefinitely. Calls go through the Redis circuit breaker shared with the
+ * CacheProvider: while the circuit is open, locks cannot be acquired (a ServiceUnavailableException is thrown
+ * without calling Redis), and releasing a lock does nothing (it expires).
+ */
+@Component
+public class RedisDistributedLockDao implements DistributedLockDao {
+
+    static final int DEFAULT_LOCK_EXPIRE_IN_SECONDS = 60;
+
+    /** Deletes KEYS[1] only if it still holds the lock ARGV[1], so an expired lock taken by another caller
+     * is not released. */
+    static final String RELEASE_LOCK_SCRIPT =
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+            "return 0";
+
+    private JedisPool jedisPool;
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Resource(name = "jedisPool")
+    final void setJedisPool(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    @Resource(name = "redisCircuitBreaker")
+    final void setCircuitBreaker(RedisCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public String acquireLock(Class<?> clazz, String identifier) {
+        return acquireLock(clazz, identifier, DEFAULT_LOCK_EXPIRE_IN_SECONDS);
+    }
+
+    /**
+     * Acquire the lock, returning a value that must be provided to release it.
+     *
+     * @throws ConcurrentModificationException
+     *      if the lock is currently held by another caller
+     * @throws ServiceUnavailableException
+     *      if Redis is unavailable (the circuit is open)
+     */
+    @Override
+    public String acquireLock(Class<?> clazz, String identifier, int expireInSeconds) {
+        checkNotNull(clazz);
+        checkArgument(isNotBlank(identifier));
+        checkArgument(expireInSeconds > 0);
+
+        String lockKey = CacheKey.lock(identifier, clazz).toString();
+        String lock = BridgeUtils.generateGuid();
+        // Set and expire in one command, so the lock cannot be left behind without an expiration
+        String result = callRedis(jedis -> jedis.set(lockKey, lock, "NX", "EX", expireInSeconds));
+        if (!"OK".equals(result)) {
+            throw new ConcurrentModificationException("Lock already set.");
+        }
+        return lock;
+    }
+
+    @Override
+    public boolean releaseLock(Class<?> clazz, String identifier, String lock) {
+        checkNotNull(clazz);
+        checkArgument(isNotBlank(identifier));
+        checkArgument(isNotBlank(lock));
+
+        String lockKey = CacheKey.lock(identifier, clazz).toString();
+        try {
+            Object result = callRedis(jedis -> jedis.eval(RELEASE_LOCK_SCRIPT, ImmutableList.of(lockKey),
+                    ImmutableList.of(lock)));
+            return Long.valueOf(1L).equals(result);
+        } catch(ServiceUnavailableException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Call Redis, unless the circuit is open. If it is, or if this call opens it, throws a 
+     * ServiceUnavailableException.
+     */
+    private <T> T callRedis(Function<Jedis, T> redisCall) {
+        if (circuitBreaker.isOpen()) {
+            throw new ServiceUnavailableException("Redis is unavailable");
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            T result = redisCall.apply(jedis);
+            circuitBreaker.recordSuccess();
+            return result;
+        } catch(RuntimeException e) {
+            if (circuitBreaker.recordFailure(e)) {
+                throw new ServiceUnavailableException(e);
+            }
+            throw e;
+        }
+    }
+}
@@ -1,7 +1,20 @@
 package org.sagebionetworks.bridge.cache;
 
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.dao.DistributedLockDao;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,9 +26,22 @@ public class ViewCache {
     
     private static final Logger logger = LoggerFactory.getLogger(ViewCache.class);
     
+    /** How long to wait for another node to cache a view, before building it ourselves. */
+    static final long LOCK_WAIT_MILLIS = 2000L;
+    static final long LOCK_POLL_INTERVAL_MILLIS = 100L;
+    
     private CacheProvider cache;
     private ObjectMapper objectMapper;
     private int cachePeriod;
+    private DistributedLockDao lockDao;
+    private int lockExpireInSeconds;
+    private int softExpireInSeconds;
+    private ExecutorService refreshExecutor;
+    
+    /** Views being built on this node. Callers that miss the cache while a view is being built wait for it. */
+    private final ConcurrentMap<CacheKey, CompletableFuture<String>> viewsInProgress = new ConcurrentHashMap<>();
+    /** Stale views being refreshed in the background on this node. */
+    private final Set<CacheKey> viewsRefreshing = ConcurrentHashMap.newKeySet();
     
     public final void setCacheProvider(CacheProvider cacheProvider) {
         this.cache = cacheProvider;
@@ -29,27 +55,50 @@ public class ViewCache {
         this.cachePeriod = cachePeriod;
     }
     
+    /**
+     * Optional. If set, only one node at a time builds a view that is missing from the cache; other nodes
+     * wait briefly for it to appear in Redis. The lock expires after lockExpireInSeconds in case the node
+     * building the view fails.
+     */
+    public final void setLockDao(DistributedLockDao lockDao, int lockExpireInSeconds) {
+        this.lockDao = lockDao;
+        this.lockExpireInSeconds = lockExpireInSeconds;
+    }
+    
+    /**
+     * Optional. If set, a view that has been cached for longer than softExpireInSeconds is stale: it is 
+     * still returned, but the supplier is called on the refresh executor to re-cache the view. Views are
+     * only rebuilt while callers wait if they are missing, or have not been read (and so not refreshed) 
+     * within the cache period. The soft expiration should be shorter than the cache period.
+     */
+    public final void setSoftExpiration(int softExpireInSeconds, ExecutorService refreshExecutor) {
+        this.softExpireInSeconds = softExpireInSeconds;
+        this.refreshExecutor = refreshExecutor;
+    }
+    
     /**
      * Get the JSON for the viewCacheKey, or if nothing has been cached, call the supplier, 
-     * cache the JSON representation of the object returned, and return that JSON.
+     * cache the JSON representation of the object returned, and return that JSON. On each node,
+     * only one caller at a time calls the supplier for a given key; concurrent callers receive
+     * its result (or exception). If a soft expiration is set, stale views are returned and then
+     * refreshed in the background.
      * @param key
      * @param supplier
      * @return
      */
     public <T> String getView(CacheKey key, Supplier<T> supplier) {
-        try {
-            String value = cache.getObject(key, String.class);
-            if (value == null) {
-                value = cacheView(key, supplier);
-            } else {
-                logger.debug("Retrieving "+key+"' JSON from cache");
-            }
-            return value;
-        } catch(JsonProcessingException e) {
-            throw new BridgeServiceException(e);
+        if (refreshExecutor != null) {
+            return getViewWithSoftExpiration(key, supplier);
+        }
+        String value = cache.getObject(key, String.class);
+        if (value == null) {
+            value = loadView(key, supplier);
+        } else {
+            logger.debug("Retrieving "+key+"' JSON from cache");
         }
+        return value;
     }
-
+    
     /**
      * Remove the JSON for the view represented by the viewCacheKey.
      * @param key
@@ -70,11 +119,151 @@ public class ViewCache {
         return CacheKey.viewKey(clazz, identifiers);
     }
     
-    private <T> String cacheView(CacheKey key, Supplier<T> supplier) throws JsonProcessingException {
+    private <T> String getViewWithSoftExpiration(CacheKey key, Supplier<T> supplier) {
+        CachedObject<String> cached = cache.getObjectWithExpiration(key, String.class);
+        if (cached == null) {
+            return loadView(key, supplier);
+        }
+        long secondsCached = cachePeriod - cached.getSecondsToExpire();
+        if (cached.getSecondsToExpire() >= 0 && secondsCached >= softExpireInSeconds) {
+            refreshView(key, supplier);
+        }
+        logger.debug("Retrieving "+key+"' JSON from cache");
+        return cached.getObject();
+    }
+    
+    private <T> void refreshView(CacheKey key, Supplier<T> supplier) {
+        if (!viewsRefreshing.add(key)) {
+            return;
+        }
+        // Suppliers may depend on the caller's request context
+        RequestContext context = BridgeUtils.getRequestContext();
+        try {
+            refreshExecutor.execute(() -> {
+                BridgeUtils.setRequestContext(context);
+                try {
+                    refreshViewWithLock(key, supplier);
+                } catch(RuntimeException e) {
+                    logger.warn("Error refreshing JSON for "+key+"'", e);
+                } finally {
+                    viewsRefreshing.remove(key);
+                    BridgeUtils.setRequestContext(null);
+                }
+            });
+        } catch(RejectedExecutionException e) {
+            // The stale view is served until a later read can refresh it
+            viewsRefreshing.remove(key);
+            logger.warn("Too many views being refreshed, skipping refresh of "+key+"'");
+        }
+    }
+    
+    private <T> void refreshViewWithLock(CacheKey key, Supplier<T> supplier) {
+        if (lockDao == null) {
+            cacheView(key, supplier);
+            return;
+        }
+        String lock;
+        try {
+            lock = lockDao.acquireLock(ViewCache.class, key.toString(), lockExpireInSeconds);
+        } catch(ConcurrentModificationException e) {
+            // Another node is building this view
+            return;
+        } catch(ServiceUnavailableException e) {
+            // Redis is unavailable, so the view is built without the lock
+            cacheView(key, supplier);
+            return;
+        }
+        try {
+            cacheView(key, supplier);
+        } finally {
+            lockDao.releaseLock(ViewCache.class, key.toString(), lock);
+        }
+    }
+    
+    private <T> String loadView(CacheKey key, Supplier<T> supplier) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = viewsInProgress.putIfAbsent(key, future);
+        if (existing != null) {
+            logger.debug("Waiting for JSON for "+key+"' to be cached");
+            return awaitView(existing);
+        }
+        try {
+            String value = (lockDao == null) ? cacheView(key, supplier) : cacheViewWithLock(key, supplier);
+            future.complete(value);
+            return value;
+        } catch(RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            viewsInProgress.remove(key, future);
+        }
+    }
+    
+    private String awaitView(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch(CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new BridgeServiceException(cause);
+        }
+    }
+    
+    private <T> String cacheViewWithLock(CacheKey key, Supplier<T> supplier) {
+        String lock = null;
+        try {
+            lock = lockDao.acquireLock(ViewCache.class, key.toString(), lockExpireInSeconds);
+        } catch(ConcurrentModificationException e) {
+            String value = waitForView(key);
+            if (value != null) {
+                return value;
+            }
+            logger.debug("Timed out waiting for JSON for "+key+"', caching it anyway");
+        } catch(ServiceUnavailableException e) {
+            // Redis is unavailable, so the view is loaded without the lock
+            return cacheView(key, supplier);
+        }
+        try {
+            // Another node may have cached the view before we took the lock
+            String value = cache.getObject(key, String.class);
+            return (value != null) ? value : cacheView(key, supplier);
+        } finally {
+            if (lock != null) {
+                lockDao.releaseLock(ViewCache.class, key.toString(), lock);
+            }
+        }
+    }
+    
+    private String waitForView(CacheKey key) {
+        long deadline = System.currentTimeMillis() + LOCK_WAIT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(LOCK_POLL_INTERVAL_MILLIS);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            String value = cache.getObject(key, String.class);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+    
+    private <T> String cacheView(CacheKey key, Supplier<T> supplier) {
         logger.debug("Caching JSON for "+key+"'");
-        T object = supplier.get();
-        String value = objectMapper.writeValueAsString(object);
-        cache.setObject(key, value, cachePeriod);
-        return value;
+        try {
+            T object = supplier.get();
+            String value = objectMapper.writeValueAsString(object);
+            cache.setObject(key, value, cachePeriod);
+            return value;
+        } catch(JsonProcessingException e) {
+            throw new BridgeServiceException(e);
+        }
     }
 }
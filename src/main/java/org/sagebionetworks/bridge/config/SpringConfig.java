@@ -10,8 +10,12 @@ import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Resource;
 import javax.servlet.Filter;
@@ -40,11 +44,13 @@ import com.google.common.collect.ImmutableMap;
 import com.mchange.v2.c3p0.DriverManagerDataSource;
 
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.MetadataSources;
 import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.liquibase.LiquibaseDataSource;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
@@ -55,10 +61,14 @@ import org.springframework.core.annotation.Order;
 
 import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.CacheCodec;
+import org.sagebionetworks.bridge.cache.LocalFallbackCache;
+import org.sagebionetworks.bridge.cache.RedisCircuitBreaker;
 import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.cache.ViewCache;
 import org.sagebionetworks.bridge.crypto.CmsEncryptor;
 import org.sagebionetworks.bridge.crypto.CmsEncryptorCacheLoader;
+import org.sagebionetworks.bridge.dao.DistributedLockDao;
 import org.sagebionetworks.bridge.dynamodb.AnnotationBasedTableCreator;
 import org.sagebionetworks.bridge.dynamodb.DynamoActivityEvent;
 import org.sagebionetworks.bridge.dynamodb.DynamoAppConfig;
@@ -328,6 +338,35 @@ public class SpringConfig {
         return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("async.worker.thread.count"));
     }
 
+    /** Refreshes stale views. Bounded so a burst of stale views cannot queue work without limit; a view whose
+     * refresh is rejected is served stale until a later read refreshes it. */
+    @Bean(name = "viewRefreshExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService viewRefreshExecutorService(BridgeConfig bridgeConfig) {
+        int threadCount = bridgeConfig.getPropertyAsInt("view.cache.refresh.thread.count");
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(bridgeConfig.getPropertyAsInt("view.cache.refresh.queue.size")));
+    }
+
+    /** Runs the queries for a user's persisted activities in parallel. When all threads are busy, the requesting
+     * thread runs the query itself, so a burst of requests slows down rather than fails. */
+    @Bean(name = "activityQueryExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService activityQueryExecutorService(BridgeConfig bridgeConfig) {
+        int threadCount = bridgeConfig.getPropertyAsInt("activity.query.thread.count");
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(bridgeConfig.getPropertyAsInt("activity.query.queue.size")),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /** Schedules the plans of studies with many schedule plans in parallel. The pool is shared by all requests, and
+     * each requesting thread waits for its plans, so a burst of requests queues work rather than adding threads. */
+    @Bean(name = "schedulePlanPool")
+    @Resource(name = "bridgeConfig")
+    public ForkJoinPool schedulePlanPool(BridgeConfig bridgeConfig) {
+        return new ForkJoinPool(bridgeConfig.getPropertyAsInt("schedule.plan.parallel.thread.count"));
+    }
+
     @Bean(name = "supportEmail")
     @Resource(name = "bridgeConfig")
     public String supportEmail(BridgeConfig bridgeConfig) {
@@ -585,9 +624,12 @@ public class SpringConfig {
     }
     
     private String databaseURL() {
+        return databaseURL(bridgeConfig().get("hibernate.connection.url"));
+    }
+
+    private String databaseURL(String url) {
         BridgeConfig config = bridgeConfig();
         
-        String url = config.get("hibernate.connection.url");
         // Append SSL props to URL
         boolean useSsl = Boolean.valueOf(config.get("hibernate.connection.useSSL"));
         url += "?serverTimezone=UTC&requireSSL="+useSsl+"&useSSL="+useSsl+"&verifyServerCertificate="+useSsl;
@@ -596,7 +638,30 @@ public class SpringConfig {
     }
 
     @Bean
+    @Primary
     public SessionFactory hibernateSessionFactory() {
+        return buildSessionFactory(databaseURL());
+    }
+
+    // Searches that can tolerate replication lag (see HibernateHelper) read from the replica. If no replica is 
+    // configured, they read from the primary database, through the primary session factory and its connection pool, 
+    // unless hibernate.search.separate.pool is set. Then they get a second pool to the primary database, so slow 
+    // searches cannot use up the connections needed by other requests (at the cost of more database connections).
+    @Bean(name = "replicaSessionFactory")
+    public SessionFactory replicaSessionFactory() {
+        BridgeConfig config = bridgeConfig();
+        String replicaUrl = config.get("hibernate.replica.connection.url");
+        if (StringUtils.isNotBlank(replicaUrl)) {
+            return buildSessionFactory(databaseURL(replicaUrl));
+        }
+        if (Boolean.valueOf(config.get("hibernate.search.separate.pool"))) {
+            return buildSessionFactory(databaseURL());
+        }
+        // Both beans close this one session factory on shutdown, which Hibernate ignores the second time.
+        return hibernateSessionFactory();
+    }
+
+    private SessionFactory buildSessionFactory(String databaseURL) {
         ClassLoader classLoader = getClass().getClassLoader();
 
         // Need to set env vars to find the truststore so we can validate Amazon's RDS SSL certificate. Note that
@@ -623,6 +688,12 @@ public class SpringConfig {
         props.put("hibernate.connection.driver_class", "com.mysql.jdbc.Driver");
         props.put("hibernate.connection.useUnicode", true);
         props.put("hibernate.dialect", "org.hibernate.dialect.MySQLDialect");
+        
+        // Send the statements of a transaction that writes many rows (such as the batched updates of request 
+        // infos) to the database in batches.
+        props.put("hibernate.jdbc.batch_size", 50);
+        props.put("hibernate.order_inserts", true);
+        props.put("hibernate.order_updates", true);
 
         // c3p0 connection pool properties
         props.put("hibernate.c3p0.min_size", 5);
@@ -634,7 +705,7 @@ public class SpringConfig {
         BridgeConfig config = bridgeConfig();
         props.put("hibernate.connection.password", config.get("hibernate.connection.password"));
         props.put("hibernate.connection.username", config.get("hibernate.connection.username"));
-        props.put("hibernate.connection.url", databaseURL());
+        props.put("hibernate.connection.url", databaseURL);
 
         StandardServiceRegistry reg = new StandardServiceRegistryBuilder().applySettings(props).build();
 
@@ -671,22 +742,25 @@ public class SpringConfig {
     @Bean(name = "basicHibernateHelper")
     @Autowired
     public HibernateHelper basicHibernateHelper(SessionFactory sessionFactory,
+            @Qualifier("replicaSessionFactory") SessionFactory replicaSessionFactory,
             BasicPersistenceExceptionConverter converter) {
-        return new HibernateHelper(sessionFactory, converter);
+        return new HibernateHelper(sessionFactory, replicaSessionFactory, converter);
     }
     
     @Bean(name = "substudyHibernateHelper")
     @Autowired
     public HibernateHelper substudyHibernateHelper(SessionFactory sessionFactory,
+            @Qualifier("replicaSessionFactory") SessionFactory replicaSessionFactory,
             SubstudyPersistenceExceptionConverter converter) {
-        return new HibernateHelper(sessionFactory, converter);
+        return new HibernateHelper(sessionFactory, replicaSessionFactory, converter);
     }
     
     @Bean(name = "accountHibernateHelper")
     @Autowired
     public HibernateHelper accountHibernateHelper(SessionFactory sessionFactory,
+            @Qualifier("replicaSessionFactory") SessionFactory replicaSessionFactory,
             AccountPersistenceExceptionConverter converter) {
-        return new HibernateHelper(sessionFactory, converter);
+        return new HibernateHelper(sessionFactory, replicaSessionFactory, converter);
     }
     
     @Bean(name = "sessionExpireInSeconds")
@@ -702,13 +776,41 @@ public class SpringConfig {
         return synapseClient;
     }
 
+    @Bean(name = "cacheCodec")
+    public CacheCodec cacheCodec() {
+        CacheCodec.Format format = CacheCodec.Format.valueOf(bridgeConfig().get("cache.codec.format").toUpperCase());
+        return new CacheCodec(format, bridgeConfig().getPropertyAsInt("cache.codec.compression.threshold"));
+    }
+
+    @Bean(name = "redisCircuitBreaker")
+    public RedisCircuitBreaker redisCircuitBreaker() {
+        return new RedisCircuitBreaker(bridgeConfig().getPropertyAsInt("redis.circuit.failure.threshold"),
+                bridgeConfig().getPropertyAsInt("redis.circuit.probe.interval.seconds"));
+    }
+
+    @Bean(name = "localFallbackCache")
+    public LocalFallbackCache localFallbackCache() {
+        return new LocalFallbackCache(bridgeConfig().getPropertyAsInt("redis.fallback.expire.seconds"),
+                bridgeConfig().getPropertyAsInt("redis.fallback.session.cache.size"),
+                bridgeConfig().getPropertyAsInt("redis.fallback.session.expire.seconds"),
+                bridgeConfig().getPropertyAsInt("redis.fallback.stale.keys.max"));
+    }
+
     @Bean(name = "genericViewCache")
     @Autowired
-    public ViewCache genericViewCache(CacheProvider cacheProvider) {
+    public ViewCache genericViewCache(CacheProvider cacheProvider, DistributedLockDao lockDao) {
         ViewCache cache = new ViewCache();
         cache.setCacheProvider(cacheProvider);
         cache.setObjectMapper(BridgeObjectMapper.get());
         cache.setCachePeriod(BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS);
+        int lockExpireInSeconds = bridgeConfig().getPropertyAsInt("view.cache.lock.expire.seconds");
+        if (lockExpireInSeconds > 0) {
+            cache.setLockDao(lockDao, lockExpireInSeconds);
+        }
+        int softExpireInSeconds = bridgeConfig().getPropertyAsInt("view.cache.soft.expire.seconds");
+        if (softExpireInSeconds > 0) {
+            cache.setSoftExpiration(softExpireInSeconds, viewRefreshExecutorService(bridgeConfig()));
+        }
         return cache;
     }
     
@@ -5,6 +5,7 @@ import java.util.Optional;
 import java.util.function.Consumer;
 
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
@@ -61,4 +62,17 @@ public interface AccountDao {
      *      paging parameters.
      */
     PagedResourceList<AccountSummary> getPagedAccountSummaries(Study study, AccountSummarySearch search);
+    
+    /**
+     * Get a page of lightweight account summaries, ordered by the date the accounts were created. Rather than an 
+     * offset, the page starts after the account identified by the search's offsetKey (the nextPageOffsetKey of 
+     * the previous page), and the total number of matching accounts is not counted.
+     * @param study
+     *      retrieve participants in this study
+     * @param search
+     *      all the parameters necessary to perform a filtered search of user account summaries, including
+     *      paging parameters. The offsetBy is ignored.
+     */
+    ForwardCursorPagedResourceList<AccountSummary> getAccountSummariesByCursor(Study study,
+            AccountSummarySearch search);
 }    
@@ -1,5 +1,8 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.Map;
+import java.util.Set;
+
 import org.sagebionetworks.bridge.models.Criteria;
 
 public interface CriteriaDao {
@@ -15,6 +18,12 @@ public interface CriteriaDao {
      * an EntityNotFoundException).
      */
     Criteria getCriteria(String key);
+    
+    /**
+     * Get the criteria objects with the given keys in one batch, mapped by their keys. Keys that do not 
+     * exist are absent from the map.
+     */
+    Map<String, Criteria> batchGetCriteria(Set<String> keys);
 
     /**
      * Delete the criteria if it exists (if criteria does not exist, does not throw
@@ -1,5 +1,7 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.Collection;
+
 import org.sagebionetworks.bridge.models.RequestInfo;
 
 public interface RequestInfoDao {
@@ -7,10 +9,17 @@ public interface RequestInfoDao {
     /**
      * Take existing data in the request info object and augment with any new information 
      * in the request info object passed as a parameter, then persist that. Different calls
-     * contribute some different fields to the total RequestInfo object.
+     * contribute some different fields to the total RequestInfo object. Throws a ConstraintViolationException 
+     * if the user's account no longer exists.
      */    
     public void updateRequestInfo(RequestInfo requestInfo);
     
+    /**
+     * Update a batch of request info objects (for different users) as updateRequestInfo() would, but with one 
+     * read and one transaction for the whole batch.
+     */
+    public void updateRequestInfos(Collection<RequestInfo> requestInfos);
+    
     public RequestInfo getRequestInfo(String userId);
     
     public void removeRequestInfo(String userId);
@@ -1,6 +1,7 @@
 package org.sagebionetworks.bridge.dao;
 
 import java.util.List;
+import java.util.Set;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -34,6 +35,21 @@ public interface ScheduledActivityDao {
      */
     List<ScheduledActivity> getActivities(DateTimeZone timeZone, List<ScheduledActivity> activities);
     
+    /**
+     * Load the activities with the given GUIDs for a user. Activities that do not exist are not returned. Time zone 
+     * is set to UTC.
+     */
+    List<ScheduledActivity> getActivities(String healthCode, Set<String> guids);
+    
+    /**
+     * Get all the persisted activities that may replace the activities generated by the scheduler: every activity 
+     * scheduled within the time window under one of the scheduled activities' activity GUIDs (even if the 
+     * scheduler did not generate it), plus any of the scheduled activities themselves that were persisted, 
+     * regardless of when they are scheduled. Activities are returned in the time zone of scheduledOnStart.
+     */
+    List<ScheduledActivity> getPersistedActivities(String healthCode, DateTime scheduledOnStart,
+            DateTime scheduledOnEnd, List<ScheduledActivity> scheduledActivities);
+    
     /**
      * Save activities (activities will only be saved if they are not in the database).
      */
@@ -20,8 +20,14 @@ import org.springframework.stereotype.Component;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBSaveExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedQueryList;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ConditionalOperator;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
 import com.google.common.collect.ImmutableSet;
@@ -30,6 +36,8 @@ import com.google.common.collect.Lists;
 @Component
 public class DynamoActivityEventDao implements ActivityEventDao {
 
+    private static final String HEALTH_CODE = "healthCode";
+    private static final String TIMESTAMP = "timestamp";
     private static final String ANSWERED_EVENT_POSTFIX = ":"+ActivityEventType.ANSWERED.name().toLowerCase();
     private static final Set<String> IMMUTABLE_EVENTS = ImmutableSet.of(
             ActivityEventObjectType.ENROLLMENT.name().toLowerCase(),
@@ -41,20 +49,21 @@ public class DynamoActivityEventDao implements ActivityEventDao {
         this.mapper = mapper;
     }
     
+    /**
+     * Saves the event if it is new, or if it can be changed and is later than the saved event. These rules are 
+     * checked by DynamoDB as a condition of the write, so publishing is one call, and when events are published 
+     * concurrently, the rules hold for whichever is saved last.
+     */
     @Override
     public boolean publishEvent(ActivityEvent event) {
         checkNotNull(event);
         
-        DynamoActivityEvent hashKey = new DynamoActivityEvent();
-        hashKey.setHealthCode(event.getHealthCode());
-        hashKey.setEventId(event.getEventId());
-        
-        ActivityEvent savedEvent = mapper.load(hashKey);
-        if (isNewOrMutable(savedEvent, event) && isLater(savedEvent, event)) {
-            mapper.save(event);
+        try {
+            mapper.save(event, getPublishExpression(event));
             return true;
+        } catch(ConditionalCheckFailedException e) {
+            return false;
         }
-        return false;
     }
 
     @Override
@@ -95,21 +104,20 @@ public class DynamoActivityEventDao implements ActivityEventDao {
         }
     }
     
-    // Some events can only be recorded once. 
-    private boolean isNewOrMutable(ActivityEvent savedEvent, ActivityEvent event) {
-        if (savedEvent == null) {
-            return true;
-        }
-        return (!IMMUTABLE_EVENTS.contains(event.getEventId()));
-    }
-    
-    // Events cannot be recorded unless the timestamp submitted is later than the currently
-    // recorded timestamp.
-    private boolean isLater(ActivityEvent savedEvent, ActivityEvent event) {
-        if (savedEvent == null) {
-            return true;
+    /**
+     * Events can always be recorded if they are new. Some events can only be recorded once. Otherwise, events cannot
+     * be recorded unless the timestamp submitted is later than the currently recorded timestamp.
+     */
+    private static DynamoDBSaveExpression getPublishExpression(ActivityEvent event) {
+        DynamoDBSaveExpression expression = new DynamoDBSaveExpression()
+                .withExpectedEntry(HEALTH_CODE, new ExpectedAttributeValue().withExists(false));
+        if (!IMMUTABLE_EVENTS.contains(event.getEventId())) {
+            expression.withExpectedEntry(TIMESTAMP, new ExpectedAttributeValue()
+                    .withComparisonOperator(ComparisonOperator.LT)
+                    .withAttributeValueList(new AttributeValue().withN(event.getTimestamp().toString())))
+                .withConditionalOperator(ConditionalOperator.OR);
         }
-        return event.getTimestamp() > savedEvent.getTimestamp();
+        return expression;
     }
 
     /**
@@ -5,7 +5,10 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
 import javax.annotation.Resource;
@@ -73,10 +76,20 @@ public class DynamoSchedulePlanDao implements SchedulePlanDao {
         
         List<DynamoSchedulePlan> dynamoPlans = mapper.queryPage(DynamoSchedulePlan.class, query).getResults();
         
+        // Load the criteria of all the plans in one batch, rather than one at a time
+        Set<String> criteriaKeys = new HashSet<>();
+        for(DynamoSchedulePlan dynamoPlan : dynamoPlans) {
+            forEachCriteria(dynamoPlan, scheduleCriteria -> {
+                criteriaKeys.add(scheduleCriteria.getCriteria().getKey());
+                return null;
+            });
+        }
+        Map<String, Criteria> criteriaByKey = criteriaDao.batchGetCriteria(criteriaKeys);
+        
         ArrayList<SchedulePlan> plans = Lists.newArrayListWithCapacity(dynamoPlans.size());
         for(DynamoSchedulePlan dynamoPlan : dynamoPlans) {
             plans.add(dynamoPlan);
-            forEachCriteria(dynamoPlan, scheduleCriteria -> loadCriteria(scheduleCriteria));
+            forEachCriteria(dynamoPlan, scheduleCriteria -> criteriaByKey.get(scheduleCriteria.getCriteria().getKey()));
         }
         return plans;
     }
@@ -9,6 +9,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import javax.annotation.Resource;
 
@@ -16,6 +21,7 @@ import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.dao.ScheduledActivityDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.ResourceList;
@@ -41,6 +47,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 @Component
 public class DynamoScheduledActivityDao implements ScheduledActivityDao {
@@ -53,10 +60,15 @@ public class DynamoScheduledActivityDao implements ScheduledActivityDao {
 
     private static final String INVALID_KEY_MSG = "Invalid offsetKey (may exceed maximum seek for value range): ";
     
+    /** DynamoDB's limit on the number of items in one BatchGetItem request. */
+    static final int BATCH_LOAD_SIZE = 100;
+    
     private DynamoDBMapper mapper;
     
     private DynamoIndexHelper referentIndex;
     
+    private ExecutorService queryExecutorService;
+    
     @Resource(name = "activityDdbMapper")
     final void setDdbMapper(DynamoDBMapper mapper) {
         this.mapper = mapper;
@@ -67,6 +79,11 @@ public class DynamoScheduledActivityDao implements ScheduledActivityDao {
         this.referentIndex = index;
     }
     
+    @Resource(name = "activityQueryExecutorService")
+    final void setQueryExecutorService(ExecutorService queryExecutorService) {
+        this.queryExecutorService = queryExecutorService;
+    }
+    
     @Override
     public ForwardCursorPagedResourceList<ScheduledActivity> getActivityHistoryV2(String healthCode,
             String activityGuid, DateTime scheduledOnStart, DateTime scheduledOnEnd, String offsetKey, int pageSize) {
@@ -288,6 +305,106 @@ public class DynamoScheduledActivityDao implements ScheduledActivityDao {
         return results;
     }
     
+    /** {@inheritDoc} */
+    @Override
+    public List<ScheduledActivity> getActivities(String healthCode, Set<String> guids) {
+        checkNotNull(healthCode);
+        checkNotNull(guids);
+        
+        List<DynamoScheduledActivity> keys = Lists.newArrayListWithCapacity(guids.size());
+        for (String guid : guids) {
+            DynamoScheduledActivity key = new DynamoScheduledActivity();
+            key.setHealthCode(healthCode);
+            key.setGuid(guid);
+            keys.add(key);
+        }
+        return batchLoad(keys, DateTimeZone.UTC);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public List<ScheduledActivity> getPersistedActivities(String healthCode, DateTime scheduledOnStart,
+            DateTime scheduledOnEnd, List<ScheduledActivity> scheduledActivities) {
+        checkNotNull(healthCode);
+        checkNotNull(scheduledOnStart);
+        checkNotNull(scheduledOnEnd);
+        checkNotNull(scheduledActivities);
+        
+        if (scheduledActivities.isEmpty()) {
+            return ImmutableList.of();
+        }
+        List<String> activityGuids = scheduledActivities.stream()
+                .map(activity -> activity.getGuid().split(":")[0])
+                .distinct().collect(Collectors.toList());
+        
+        // The history query for each activity GUID is independent of the others, so run them in parallel. The 
+        // first query runs on the calling thread, so the common case of a single activity GUID doesn't wait on 
+        // the executor.
+        List<Future<ForwardCursorPagedResourceList<ScheduledActivity>>> futures = Lists
+                .newArrayListWithCapacity(activityGuids.size() - 1);
+        for (String activityGuid : activityGuids.subList(1, activityGuids.size())) {
+            futures.add(queryExecutorService.submit(() -> getActivityHistoryV2(healthCode, activityGuid,
+                    scheduledOnStart, scheduledOnEnd, null, API_MAXIMUM_PAGE_SIZE)));
+        }
+        Map<String, ScheduledActivity> persisted = Maps.newHashMap();
+        addAll(persisted, getActivityHistoryV2(healthCode, activityGuids.get(0), scheduledOnStart, scheduledOnEnd,
+                null, API_MAXIMUM_PAGE_SIZE).getItems());
+        for (Future<ForwardCursorPagedResourceList<ScheduledActivity>> future : futures) {
+            addAll(persisted, awaitQuery(future).getItems());
+        }
+        
+        // Activities outside of the time window (e.g. a one-time activity scheduled before the window) are not 
+        // returned by the queries above. Load any remaining scheduled activities by key.
+        List<DynamoScheduledActivity> keysToLoad = Lists.newArrayList();
+        Set<String> guidsToLoad = Sets.newHashSet();
+        for (ScheduledActivity activity : scheduledActivities) {
+            if (!persisted.containsKey(activity.getGuid()) && guidsToLoad.add(activity.getGuid())) {
+                DynamoScheduledActivity key = new DynamoScheduledActivity();
+                key.setHealthCode(healthCode);
+                key.setGuid(activity.getGuid());
+                keysToLoad.add(key);
+            }
+        }
+        addAll(persisted, batchLoad(keysToLoad, scheduledOnStart.getZone()));
+        return ImmutableList.copyOf(persisted.values());
+    }
+    
+    /** Load activities by key, in as many batches as necessary. */
+    private List<ScheduledActivity> batchLoad(List<DynamoScheduledActivity> keys, DateTimeZone timeZone) {
+        List<ScheduledActivity> results = Lists.newArrayListWithCapacity(keys.size());
+        for (List<DynamoScheduledActivity> batch : Lists.partition(keys, BATCH_LOAD_SIZE)) {
+            Map<String, List<Object>> resultMap = mapper.batchLoad(batch);
+            for (List<Object> list : resultMap.values()) {
+                for (Object oneResult : list) {
+                    ScheduledActivity activity = (ScheduledActivity)oneResult;
+                    activity.setTimeZone(timeZone);
+                    results.add(activity);
+                }
+            }
+        }
+        return results;
+    }
+    
+    private void addAll(Map<String, ScheduledActivity> map, List<ScheduledActivity> activities) {
+        for (ScheduledActivity activity : activities) {
+            map.put(activity.getGuid(), activity);
+        }
+    }
+    
+    private <T> T awaitQuery(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BridgeServiceException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new BridgeServiceException(e.getCause());
+        }
+    }
+    
     /** {@inheritDoc} */
     @Override
     public void saveActivities(List<ScheduledActivity> activities) {
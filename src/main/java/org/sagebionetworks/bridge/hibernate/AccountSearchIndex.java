@@ -0,0 +1,109 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import java.util.regex.Pattern;
+
+import com.google.common.base.CharMatcher;
+
+import org.sagebionetworks.bridge.models.accounts.Account;
+
+/**
+ * The email and phone filters of an account search match any substring, which MySQL cannot find with an index on
+ * the column itself (LIKE '%filter%' scans every account in the study). Instead, each account stores every three
+ * character substring (trigram) of its email and phone number in the AccountSearchTrigrams table, indexed by
+ * trigram. An account can only contain the filter if it has all of the filter's trigrams, so the search first looks
+ * up the accounts with those trigrams in the index, and the LIKE is then only evaluated for those accounts.
+ * <p>
+ * The trigram column has the same case- and accent-insensitive collation as the email and phone columns, so the
+ * index matches whatever the LIKE matches. Trigrams are also folded to lower case without accents here, so an account
+ * never stores two trigrams that the database considers equal, and a filter never requires two such trigrams.
+ * <p>
+ * Servers that predate the index do not write trigrams. Accounts they create or change during a rolling deploy are
+ * missing from searches until the backfill in changeset 14 of the changelog is run again after the deploy.
+ */
+final class AccountSearchIndex {
+    static final int TRIGRAM_LENGTH = 3;
+    /** Trigrams of the email and phone number share one table, so each is prefixed with the field it came from. */
+    static final String EMAIL_PREFIX = "e:";
+    static final String PHONE_PREFIX = "p:";
+
+    /**
+     * These characters are wildcards (or the escape character) in a LIKE pattern, so a trigram of the filter that
+     * contains one does not need to appear in a matching account, and cannot be used to search the index.
+     */
+    private static final CharMatcher LIKE_SPECIAL_CHARS = CharMatcher.anyOf("%_\\");
+    /** Accents left as separate combining marks once a value is decomposed. */
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private AccountSearchIndex() {
+    }
+
+    /** The trigrams of the account's email and phone number, with the account's study, to be stored with it. */
+    static Set<HibernateAccountSearchTrigram> getSearchTrigrams(Account account) {
+        Set<HibernateAccountSearchTrigram> searchTrigrams = new LinkedHashSet<>();
+        for (String trigram : getTrigrams(account)) {
+            searchTrigrams.add(new HibernateAccountSearchTrigram(account.getStudyId(), trigram));
+        }
+        return searchTrigrams;
+    }
+
+    /** All the trigrams of the account's email and phone number. */
+    static Set<String> getTrigrams(Account account) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        addTrigrams(trigrams, EMAIL_PREFIX, account.getEmail(), false);
+        if (account.getPhone() != null) {
+            addTrigrams(trigrams, PHONE_PREFIX, account.getPhone().getNumber(), false);
+        }
+        return trigrams;
+    }
+
+    /**
+     * The trigrams an account must have for its email to contain this filter. This is empty if the filter is too
+     * short to search the index, in which case the LIKE is evaluated for every account.
+     */
+    static Set<String> getEmailFilterTrigrams(String emailFilter) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        addTrigrams(trigrams, EMAIL_PREFIX, emailFilter, true);
+        return trigrams;
+    }
+
+    /** The trigrams an account must have for its phone number to contain this filter (already reduced to digits). */
+    static Set<String> getPhoneFilterTrigrams(String phoneFilter) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        addTrigrams(trigrams, PHONE_PREFIX, phoneFilter, true);
+        return trigrams;
+    }
+
+    private static void addTrigrams(Set<String> trigrams, String prefix, String value, boolean isFilter) {
+        if (value == null) {
+            return;
+        }
+        String foldedValue = fold(value);
+        for (int i=0; i + TRIGRAM_LENGTH <= foldedValue.length(); i++) {
+            String trigram = foldedValue.substring(i, i + TRIGRAM_LENGTH);
+            if (!isFilter || LIKE_SPECIAL_CHARS.matchesNoneOf(trigram)) {
+                trigrams.add(prefix + trigram);
+            }
+        }
+    }
+
+    /**
+     * MySQL compares the columns without regard to case or accents, so the trigrams are lower-cased and stripped of
+     * accents on both sides. Accents are only removed when they decompose into a separate character, so the value
+     * keeps its length and the trigrams line up with the substrings the LIKE compares.
+     */
+    static String fold(String value) {
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        String unaccented = COMBINING_MARKS.matcher(decomposed).replaceAll("");
+        if (unaccented.codePointCount(0, unaccented.length()) != value.codePointCount(0, value.length())) {
+            // Something decomposed into more than a base character and its accents (a ligature, say). Leave the
+            // value alone rather than shift the trigrams.
+            unaccented = value;
+        }
+        return unaccented.toLowerCase(Locale.ROOT);
+    }
+}
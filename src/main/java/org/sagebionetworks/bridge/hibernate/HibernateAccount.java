@@ -30,6 +30,9 @@ import javax.persistence.Table;
 import javax.persistence.Transient;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 import org.joda.time.DateTime;
@@ -48,6 +51,14 @@ import com.fasterxml.jackson.databind.JsonNode;
 @Entity
 @Table(name = "Accounts")
 public class HibernateAccount implements Account {
+    /**
+     * The collections of an account are each loaded with their own select, rather than joined to the account (and 
+     * to each other), which would return a row for every combination of their elements. When a query returns 
+     * several accounts, the collections of up to this many accounts are loaded together. This matches the maximum 
+     * page size of the API.
+     */
+    static final int COLLECTION_BATCH_SIZE = 100;
+    
     private String id;
     private String studyId;
     private String email;
@@ -77,6 +88,7 @@ public class HibernateAccount implements Account {
     private List<String> languages;
     private int migrationVersion;
     private Set<AccountSubstudy> accountSubstudies; 
+    private Set<HibernateAccountSearchTrigram> searchTrigrams;
     
     /**
      * No args constructor, required and used by Hibernate for full object initialization.
@@ -181,6 +193,8 @@ public class HibernateAccount implements Account {
             referencedColumnName = "id"))
     @Column(name = "attributeValue")
     @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = COLLECTION_BATCH_SIZE)
     @MapKeyColumn(name = "attributeKey")
     public Map<String, String> getAttributes() {
         if (attributes == null) {
@@ -199,6 +213,8 @@ public class HibernateAccount implements Account {
     @CollectionTable(name = "AccountConsents", joinColumns = @JoinColumn(name = "accountId",
             referencedColumnName = "id"))
     @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = COLLECTION_BATCH_SIZE)
     @MapKeyClass(HibernateAccountConsentKey.class)
     public Map<HibernateAccountConsentKey, HibernateAccountConsent> getConsents() {
         if (consents == null) {
@@ -310,6 +326,8 @@ public class HibernateAccount implements Account {
     @CollectionTable(name = "AccountRoles", joinColumns = @JoinColumn(name = "accountId", referencedColumnName = "id"))
     @Column(name = "role")
     @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = COLLECTION_BATCH_SIZE)
     @Enumerated(EnumType.STRING)
     public Set<Roles> getRoles() {
         if (roles == null) {
@@ -399,6 +417,8 @@ public class HibernateAccount implements Account {
     @CollectionTable(name = "AccountDataGroups", joinColumns = @JoinColumn(name = "accountId", referencedColumnName = "id"))
     @Column(name = "dataGroup")
     @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = COLLECTION_BATCH_SIZE)
     public Set<String> getDataGroups() {
         if (dataGroups == null) {
             dataGroups = new HashSet<>();
@@ -417,6 +437,8 @@ public class HibernateAccount implements Account {
     @Column(name = "language")
     @OrderColumn(name="order_index", insertable=true, updatable=true)
     @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = COLLECTION_BATCH_SIZE)
     public List<String> getLanguages() {
         if (languages == null) {
             languages = new ArrayList<>();
@@ -429,6 +451,27 @@ public class HibernateAccount implements Account {
         this.languages = languages;
     }
 
+    /**
+     * The trigrams of this account's email and phone number, used to search for accounts by a substring of either 
+     * (see AccountSearchIndex). They are only needed to write the account, so they are not loaded with it.
+     */
+    @CollectionTable(name = "AccountSearchTrigrams", joinColumns = @JoinColumn(name = "accountId",
+            referencedColumnName = "id"))
+    @ElementCollection(fetch = FetchType.LAZY)
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = COLLECTION_BATCH_SIZE)
+    public Set<HibernateAccountSearchTrigram> getSearchTrigrams() {
+        if (searchTrigrams == null) {
+            searchTrigrams = new HashSet<>();
+        }
+        return searchTrigrams;
+    }
+
+    /** @see #getSearchTrigrams */
+    public void setSearchTrigrams(Set<HibernateAccountSearchTrigram> searchTrigrams) {
+        this.searchTrigrams = searchTrigrams;
+    }
+
     /** Used internally to track migration of data to/from this table. */
     public int getMigrationVersion() {
         return migrationVersion;
@@ -450,6 +493,8 @@ public class HibernateAccount implements Account {
     
     @OneToMany(mappedBy = "accountId", cascade = CascadeType.ALL, orphanRemoval = true, 
         fetch = FetchType.EAGER, targetEntity=HibernateAccountSubstudy.class)
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = COLLECTION_BATCH_SIZE)
     @OnDelete(action=OnDeleteAction.CASCADE)
     @Override
     public Set<AccountSubstudy> getAccountSubstudies() {
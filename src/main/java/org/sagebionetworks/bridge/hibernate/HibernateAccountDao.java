@@ -12,6 +12,7 @@ import javax.annotation.Resource;
 
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -23,8 +24,10 @@ import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.BridgeUtils.SubstudyAssociations;
 import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.dao.AccountDao;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.time.DateUtils;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.ResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
@@ -48,6 +51,9 @@ public class HibernateAccountDao implements AccountDao {
     
     static final String COUNT_QUERY = "SELECT COUNT(DISTINCT acct.id) FROM HibernateAccount AS acct";
     
+    /** The nextPageOffsetKey of a page of account summaries is the createdOn and ID of its last account. */
+    static final String OFFSET_KEY_SEPARATOR = ":";
+    
     private HibernateHelper hibernateHelper;
 
     /** This makes interfacing with Hibernate easier. */
@@ -76,15 +82,23 @@ public class HibernateAccountDao implements AccountDao {
     /** {@inheritDoc} */
     @Override
     public void createAccount(Study study, Account account, Consumer<Account> afterPersistConsumer) {
+        updateSearchTrigrams(account);
         hibernateHelper.create(account, afterPersistConsumer);
     }
 
     /** {@inheritDoc} */
     @Override
     public void updateAccount(Account account, Consumer<Account> afterPersistConsumer) {
+        updateSearchTrigrams(account);
         hibernateHelper.update(account, afterPersistConsumer);
     }
     
+    // The search trigrams are recalculated on every write, so they follow any change to the email or phone. 
+    // Hibernate only writes the trigrams that were added or removed.
+    private void updateSearchTrigrams(Account account) {
+        ((HibernateAccount) account).setSearchTrigrams(AccountSearchIndex.getSearchTrigrams(account));
+    }
+    
     /** {@inheritDoc} */
     @Override
     public Optional<Account> getAccount(AccountId accountId) {
@@ -118,6 +132,15 @@ public class HibernateAccountDao implements AccountDao {
     }
     
     QueryBuilder makeQuery(String prefix, String studyId, AccountId accountId, AccountSummarySearch search, boolean isCount) {
+        QueryBuilder builder = makeFilteredQuery(prefix, studyId, accountId, search);
+        if (!isCount) {
+            builder.append("GROUP BY acct.id");        
+        }
+        return builder;
+    }
+    
+    private QueryBuilder makeFilteredQuery(String prefix, String studyId, AccountId accountId,
+            AccountSummarySearch search) {
         RequestContext context = BridgeUtils.getRequestContext();
         
         QueryBuilder builder = new QueryBuilder();
@@ -145,10 +168,13 @@ public class HibernateAccountDao implements AccountDao {
         if (search != null) {
             // Note: emailFilter can be any substring, not just prefix/suffix. Same with phone.
             if (StringUtils.isNotBlank(search.getEmailFilter())) {
+                builder.searchTrigrams(AccountSearchIndex.getEmailFilterTrigrams(search.getEmailFilter()),
+                        "emailTrigram");
                 builder.append("AND acct.email LIKE :email", "email", "%"+search.getEmailFilter()+"%");
             }
             if (StringUtils.isNotBlank(search.getPhoneFilter())) {
                 String phoneString = search.getPhoneFilter().replaceAll("\\D*", "");
+                builder.searchTrigrams(AccountSearchIndex.getPhoneFilterTrigrams(phoneString), "phoneTrigram");
                 builder.append("AND acct.phone.number LIKE :number", "number", "%"+phoneString+"%");
             }
             // Note: start- and endTime are inclusive.            
@@ -168,9 +194,6 @@ public class HibernateAccountDao implements AccountDao {
         if (!callerSubstudies.isEmpty()) {
             builder.append("AND acctSubstudy.substudyId IN (:substudies)", "substudies", callerSubstudies);
         }
-        if (!isCount) {
-            builder.append("GROUP BY acct.id");        
-        }
         return builder;
     }
 
@@ -185,15 +208,15 @@ public class HibernateAccountDao implements AccountDao {
     public PagedResourceList<AccountSummary> getPagedAccountSummaries(Study study, AccountSummarySearch search) {
         QueryBuilder builder = makeQuery(SUMMARY_QUERY, study.getIdentifier(), null, search, false);
 
-        // Get page of accounts.
-        List<HibernateAccount> hibernateAccountList = hibernateHelper.queryGet(builder.getQuery(), builder.getParameters(),
-                search.getOffsetBy(), search.getPageSize(), HibernateAccount.class);
+        // Get page of accounts. Searches can tolerate replication lag, so they are made from the replica.
+        List<HibernateAccount> hibernateAccountList = hibernateHelper.queryGetFromReplica(builder.getQuery(),
+                builder.getParameters(), search.getOffsetBy(), search.getPageSize(), HibernateAccount.class);
         List<AccountSummary> accountSummaryList = hibernateAccountList.stream()
                 .map(this::unmarshallAccountSummary).collect(Collectors.toList());
 
         // Get count of accounts.
         builder = makeQuery(COUNT_QUERY, study.getIdentifier(), null, search, true);
-        int count = hibernateHelper.queryCount(builder.getQuery(), builder.getParameters());
+        int count = hibernateHelper.queryCountFromReplica(builder.getQuery(), builder.getParameters());
         
         // Package results and return.
         return new PagedResourceList<>(accountSummaryList, count)
@@ -208,6 +231,55 @@ public class HibernateAccountDao implements AccountDao {
                 .withRequestParam(ResourceList.NONE_OF_GROUPS, search.getNoneOfGroups());
     }
     
+    /** {@inheritDoc} */
+    @Override
+    public ForwardCursorPagedResourceList<AccountSummary> getAccountSummariesByCursor(Study study,
+            AccountSummarySearch search) {
+        // Accounts are ordered by (createdOn, id), and each page starts after the last account of the previous 
+        // page, so the database reads no more than a page of rows from the study's createdOn index, however deep 
+        // the page.
+        QueryBuilder builder = makeFilteredQuery(SUMMARY_QUERY, study.getIdentifier(), null, search);
+        if (search.getOffsetKey() != null) {
+            String[] offsetKey = search.getOffsetKey().split(OFFSET_KEY_SEPARATOR, 2);
+            DateTime offsetCreatedOn;
+            try {
+                offsetCreatedOn = new DateTime(Long.parseLong(offsetKey[0]), DateTimeZone.UTC);
+            } catch(NumberFormatException e) {
+                throw new BadRequestException("Invalid offsetKey: " + search.getOffsetKey());
+            }
+            if (offsetKey.length != 2) {
+                throw new BadRequestException("Invalid offsetKey: " + search.getOffsetKey());
+            }
+            builder.append("AND (acct.createdOn > :offsetCreatedOn OR (acct.createdOn = :offsetCreatedOn "
+                    + "AND acct.id > :offsetId))", "offsetCreatedOn", offsetCreatedOn, "offsetId", offsetKey[1]);
+        }
+        builder.append("GROUP BY acct.id ORDER BY acct.createdOn, acct.id");
+        
+        // Get one more account than the page size, to find out if there is another page.
+        int pageSize = search.getPageSize();
+        List<HibernateAccount> hibernateAccountList = hibernateHelper.queryGetFromReplica(builder.getQuery(),
+                builder.getParameters(), null, pageSize + 1, HibernateAccount.class);
+        String nextPageOffsetKey = null;
+        if (hibernateAccountList.size() > pageSize) {
+            hibernateAccountList = hibernateAccountList.subList(0, pageSize);
+            HibernateAccount lastAccount = hibernateAccountList.get(pageSize - 1);
+            nextPageOffsetKey = lastAccount.getCreatedOn().getMillis() + OFFSET_KEY_SEPARATOR + lastAccount.getId();
+        }
+        List<AccountSummary> accountSummaryList = hibernateAccountList.stream()
+                .map(this::unmarshallAccountSummary).collect(Collectors.toList());
+        
+        return new ForwardCursorPagedResourceList<>(accountSummaryList, nextPageOffsetKey)
+                .withRequestParam(ResourceList.OFFSET_KEY, search.getOffsetKey())
+                .withRequestParam(ResourceList.PAGE_SIZE, pageSize)
+                .withRequestParam(ResourceList.EMAIL_FILTER, search.getEmailFilter())
+                .withRequestParam(ResourceList.PHONE_FILTER, search.getPhoneFilter())
+                .withRequestParam(ResourceList.START_TIME, search.getStartTime())
+                .withRequestParam(ResourceList.END_TIME, search.getEndTime())
+                .withRequestParam(ResourceList.LANGUAGE, search.getLanguage())
+                .withRequestParam(ResourceList.ALL_OF_GROUPS, search.getAllOfGroups())
+                .withRequestParam(ResourceList.NONE_OF_GROUPS, search.getNoneOfGroups());
+    }
+    
     // Callers of AccountDao assume that an Account will always a health code and health ID. All accounts created
     // through the DAO will automatically have health code and ID populated, but accounts created in the DB directly
     // are left in a bad state. This method validates the health code mapping on a HibernateAccount and updates it as
@@ -236,7 +308,7 @@ public class HibernateAccountDao implements AccountDao {
         // avoid this 1+N query.
         SubstudyAssociations assoc = null;
         if (hibernateAccount.getId() != null) {
-            List<HibernateAccountSubstudy> accountSubstudies = hibernateHelper.queryGet(
+            List<HibernateAccountSubstudy> accountSubstudies = hibernateHelper.queryGetFromReplica(
                     "FROM HibernateAccountSubstudy WHERE accountId=:accountId",
                     ImmutableMap.of("accountId", hibernateAccount.getId()), null, null, HibernateAccountSubstudy.class);
             
@@ -0,0 +1,61 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import java.util.Objects;
+import javax.persistence.Access;
+import javax.persistence.AccessType;
+import javax.persistence.Embeddable;
+
+/**
+ * A search trigram of an account (see AccountSearchIndex). The trigram is stored with the account's study, so the
+ * trigrams of one study can be found in the index without reading those of every other study. This class does not
+ * include account ID as Hibernate embeds this object directly into HibernateAccount.
+ */
+// Like HibernateAccountConsentKey, Hibernate requires that this class be mutable and accesses the member variables
+// directly, but it is held in a set. There are no setters on the member variables.
+@Access(AccessType.FIELD)
+@Embeddable
+public final class HibernateAccountSearchTrigram {
+    private String studyId;
+    private String trigram;
+
+    /** No arg constructor, required by Hibernate. */
+    @SuppressWarnings("unused")
+    public HibernateAccountSearchTrigram() {
+    }
+
+    /** Constructs the search trigram. */
+    public HibernateAccountSearchTrigram(String studyId, String trigram) {
+        this.studyId = studyId;
+        this.trigram = trigram;
+    }
+
+    /** The study of the account. */
+    public String getStudyId() {
+        return studyId;
+    }
+
+    /** The trigram, prefixed with the field it came from. */
+    public String getTrigram() {
+        return trigram;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HibernateAccountSearchTrigram)) {
+            return false;
+        }
+        HibernateAccountSearchTrigram that = (HibernateAccountSearchTrigram) o;
+        return Objects.equals(studyId, that.studyId) &&
+                Objects.equals(trigram, that.trigram);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return Objects.hash(studyId, trigram);
+    }
+}
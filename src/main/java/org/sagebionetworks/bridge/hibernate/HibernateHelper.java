@@ -1,10 +1,13 @@
 package org.sagebionetworks.bridge.hibernate;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import javax.persistence.PersistenceException;
 
@@ -12,15 +15,29 @@ import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.query.Query;
+import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 
-/** Encapsulates common scenarios for using Hibernate to make it easier to use. */
+/**
+ * Encapsulates common scenarios for using Hibernate to make it easier to use. 
+ * 
+ * Reads that can tolerate replication lag (such as searches and listings) can be made through the "FromReplica" 
+ * methods, which use the replica session factory, unless the request requires reads from the primary database 
+ * (see RequestContext.isPrimaryReadRequired()). All other operations use the primary session factory.
+ */
 public class HibernateHelper {
     private SessionFactory hibernateSessionFactory;
+    private SessionFactory replicaSessionFactory;
     private PersistenceExceptionConverter exceptionConverter;
 
     public HibernateHelper(SessionFactory hibernateSessionFactory, PersistenceExceptionConverter exceptionConverter) {
+        this(hibernateSessionFactory, hibernateSessionFactory, exceptionConverter);
+    }
+
+    public HibernateHelper(SessionFactory hibernateSessionFactory, SessionFactory replicaSessionFactory,
+            PersistenceExceptionConverter exceptionConverter) {
         this.hibernateSessionFactory = hibernateSessionFactory;
+        this.replicaSessionFactory = replicaSessionFactory;
         this.exceptionConverter = exceptionConverter;
     }
 
@@ -61,9 +78,16 @@ public class HibernateHelper {
      * Executes the query and returns the count. The query should be a count based query.
      */
     public int queryCount(String queryString, Map<String,Object> parameters) {
-        // Hibernate returns a long for a count. However, we never expect more than 2 billion rows, for obvious
-        // reasons.
-        Long count = executeWithExceptionHandling(null, session -> {
+        return toInt(executeWithExceptionHandling(null, countFunction(queryString, parameters)));
+    }
+
+    /** Like queryCount(), but the count may be read from a replica, and may not include the latest changes. */
+    public int queryCountFromReplica(String queryString, Map<String,Object> parameters) {
+        return toInt(executeOnReplicaWithExceptionHandling(countFunction(queryString, parameters)));
+    }
+
+    private static Function<Session, Long> countFunction(String queryString, Map<String,Object> parameters) {
+        return session -> {
             Query<Long> query = session.createQuery(queryString, Long.class);
             if (parameters != null) {
                 for (Map.Entry<String, Object> entry : parameters.entrySet()) {
@@ -71,7 +95,12 @@ public class HibernateHelper {
                 }
             }
             return query.uniqueResult();
-        });
+        };
+    }
+
+    private static int toInt(Long count) {
+        // Hibernate returns a long for a count. However, we never expect more than 2 billion rows, for obvious
+        // reasons.
         if (count != null) {
             return count.intValue();
         } else {
@@ -85,7 +114,18 @@ public class HibernateHelper {
      * and limit for pagination.
      */
     public <T> List<T> queryGet(String queryString, Map<String,Object> parameters, Integer offset, Integer limit, Class<T> clazz) {
-        return executeWithExceptionHandling(null, session -> {
+        return executeWithExceptionHandling(null, getFunction(queryString, parameters, offset, limit, clazz));
+    }
+
+    /** Like queryGet(), but the results may be read from a replica, and may not include the latest changes. */
+    public <T> List<T> queryGetFromReplica(String queryString, Map<String,Object> parameters, Integer offset,
+            Integer limit, Class<T> clazz) {
+        return executeOnReplicaWithExceptionHandling(getFunction(queryString, parameters, offset, limit, clazz));
+    }
+
+    private static <T> Function<Session, List<T>> getFunction(String queryString, Map<String,Object> parameters,
+            Integer offset, Integer limit, Class<T> clazz) {
+        return session -> {
             Query<T> query = session.createQuery(queryString, clazz);
             if (parameters != null) {
                 for (Map.Entry<String, Object> entry : parameters.entrySet()) {
@@ -99,7 +139,7 @@ public class HibernateHelper {
                 query.setMaxResults(limit);
             }
             return query.list();
-        });
+        };
     }
 
     /**
@@ -144,9 +184,44 @@ public class HibernateHelper {
         });
     }
     
+    /**
+     * Creates or updates each of the given objects (keyed by their IDs), in a single transaction. The existing 
+     * objects are loaded with a single query. An object that does not exist yet is created; otherwise the existing 
+     * object is replaced with the result of the merge function, given the existing and the new object.
+     */
+    public <T> void createOrUpdateAll(Class<T> clazz, Map<? extends Serializable, T> objs,
+            BinaryOperator<T> mergeFunction) {
+        if (objs.isEmpty()) {
+            return;
+        }
+        executeWithExceptionHandling(null, session -> {
+            List<Serializable> ids = new ArrayList<>(objs.keySet());
+            // Objects are returned in the order of the IDs, with null for those that don't exist.
+            List<T> existingObjs = session.byMultipleIds(clazz).multiLoad(ids);
+            for (int i=0; i < ids.size(); i++) {
+                T obj = objs.get(ids.get(i));
+                T existingObj = existingObjs.get(i);
+                if (existingObj == null) {
+                    session.save(obj);
+                } else {
+                    session.merge(mergeFunction.apply(existingObj, obj));
+                }
+            }
+            return null;
+        });
+    }
+    
     <T> T executeWithExceptionHandling(T originalEntity, Function<Session, T> function) {
+        return convertExceptions(originalEntity, () -> execute(function));
+    }
+
+    <T> T executeOnReplicaWithExceptionHandling(Function<Session, T> function) {
+        return convertExceptions(null, () -> executeOnReplica(function));
+    }
+
+    private <T> T convertExceptions(T originalEntity, Supplier<T> supplier) {
         try {
-            return execute(function);
+            return supplier.get();
         } catch(PersistenceException pe) {
             RuntimeException ex = exceptionConverter.convert(pe, originalEntity);
             if (ex == pe) {
@@ -160,8 +235,24 @@ public class HibernateHelper {
     // Helper function, which handles opening and closing sessions and transactions.
     // Package-scoped to facilitate unit tests.
     <T> T execute(Function<Session, T> function) {
+        return execute(hibernateSessionFactory, false, function);
+    }
+
+    // As execute(), but with a read-only session of the replica session factory, unless the request requires reads 
+    // from the primary database. Package-scoped to facilitate unit tests.
+    <T> T executeOnReplica(Function<Session, T> function) {
+        if (BridgeUtils.getRequestContext().isPrimaryReadRequired()) {
+            return execute(hibernateSessionFactory, true, function);
+        }
+        return execute(replicaSessionFactory, true, function);
+    }
+
+    private <T> T execute(SessionFactory sessionFactory, boolean readOnly, Function<Session, T> function) {
         T retval;
-        try (Session session = hibernateSessionFactory.openSession()) {
+        try (Session session = sessionFactory.openSession()) {
+            if (readOnly) {
+                session.setDefaultReadOnly(true);
+            }
             Transaction transaction = session.beginTransaction();
             retval = function.apply(session);
             transaction.commit();
@@ -2,15 +2,29 @@ package org.sagebionetworks.bridge.hibernate;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.annotation.Resource;
 
+import com.google.common.base.Throwables;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.dao.RequestInfoDao;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.exceptions.ConstraintViolationException;
 import org.sagebionetworks.bridge.models.RequestInfo;
 
 @Component
 public class HibernateRequestInfoDao implements RequestInfoDao {
+    /** The foreign key from a request info to its account. */
+    static final String USER_ID_CONSTRAINT = "RequestInfo-UserId-Constraint";
+    /** MySQL error when a foreign key refers to a row that does not exist. */
+    static final int MYSQL_NO_REFERENCED_ROW = 1452;
+    /** MySQL error when a row has the same primary (or unique) key as another. */
+    static final int MYSQL_DUPLICATE_ENTRY = 1062;
+    
     private HibernateHelper hibernateHelper;
     
     @Resource(name = "basicHibernateHelper")
@@ -21,14 +35,62 @@ public class HibernateRequestInfoDao implements RequestInfoDao {
     @Override
     public void updateRequestInfo(RequestInfo requestInfo) {
         RequestInfo existingRequestInfo = getRequestInfo(requestInfo.getUserId());
-        if (existingRequestInfo != null) {
-            RequestInfo.Builder builder = new RequestInfo.Builder();    
-            builder.copyOf(existingRequestInfo);
-            builder.copyOf(requestInfo);
-            hibernateHelper.update(builder.build(), null);
-        } else {
-            hibernateHelper.create(requestInfo, null);
-        }        
+        try {
+            if (existingRequestInfo != null) {
+                update(existingRequestInfo, requestInfo);
+            } else {
+                hibernateHelper.create(requestInfo, null);
+            }
+        } catch (BridgeServiceException e) {
+            org.hibernate.exception.ConstraintViolationException violation = getConstraintViolation(e);
+            if (violation == null) {
+                throw e;
+            }
+            if (violation.getErrorCode() == MYSQL_NO_REFERENCED_ROW
+                    || USER_ID_CONSTRAINT.equals(violation.getConstraintName())) {
+                throw new ConstraintViolationException.Builder().withMessage("Account no longer exists.")
+                        .withEntityKey("userId", requestInfo.getUserId()).withEntityKey("type", "RequestInfo")
+                        .build();
+            }
+            // Another server created the request info after it was read here (both found no request info and 
+            // inserted one). Update the request info it created instead.
+            if (existingRequestInfo == null && violation.getErrorCode() == MYSQL_DUPLICATE_ENTRY) {
+                RequestInfo createdRequestInfo = getRequestInfo(requestInfo.getUserId());
+                if (createdRequestInfo != null) {
+                    update(createdRequestInfo, requestInfo);
+                    return;
+                }
+            }
+            throw e;
+        }
+    }
+    
+    private void update(RequestInfo existingRequestInfo, RequestInfo requestInfo) {
+        RequestInfo.Builder builder = new RequestInfo.Builder();    
+        builder.copyOf(existingRequestInfo);
+        builder.copyOf(requestInfo);
+        hibernateHelper.update(builder.build(), null);
+    }
+    
+    private static org.hibernate.exception.ConstraintViolationException getConstraintViolation(Throwable e) {
+        for (Throwable cause : Throwables.getCausalChain(e)) {
+            if (cause instanceof org.hibernate.exception.ConstraintViolationException) {
+                return (org.hibernate.exception.ConstraintViolationException) cause;
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public void updateRequestInfos(Collection<RequestInfo> requestInfos) {
+        checkNotNull(requestInfos);
+        
+        Map<String, RequestInfo> requestInfoMap = new HashMap<>();
+        for (RequestInfo requestInfo : requestInfos) {
+            requestInfoMap.put(requestInfo.getUserId(), requestInfo);
+        }
+        hibernateHelper.createOrUpdateAll(RequestInfo.class, requestInfoMap, (existingRequestInfo, requestInfo) -> 
+                new RequestInfo.Builder().copyOf(existingRequestInfo).copyOf(requestInfo).build());
     }
 
     @Override
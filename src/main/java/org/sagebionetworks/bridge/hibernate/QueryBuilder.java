@@ -42,6 +42,22 @@ class QueryBuilder {
             phrases.add("AND (" + Joiner.on(" AND ").join(clauses) + ")");
         }
     }
+    /**
+     * Limits the query to accounts with all of the given search trigrams (see AccountSearchIndex). The trigram 
+     * index (keyed by study and trigram) is searched first, so the rest of the query is only evaluated for the 
+     * accounts in the study that have them.
+     */
+    public void searchTrigrams(Set<String> trigrams, String name) {
+        if (!BridgeUtils.isEmpty(trigrams)) {
+            String alias = name + "Acct";
+            phrases.add("AND acct.id IN (SELECT " + alias + ".id FROM HibernateAccount AS " + alias + " JOIN " + 
+                    alias + ".searchTrigrams AS " + name + " WHERE " + name + ".studyId = :studyId AND " + 
+                    name + ".trigram IN (:" + name + "s) GROUP BY " + alias + ".id HAVING COUNT(" + name + 
+                    ".trigram) = :" + name + "Count)");
+            params.put(name + "s", trigrams);
+            params.put(name + "Count", (long) trigrams.size());
+        }
+    }
     public String getQuery() {
         return BridgeUtils.SPACE_JOINER.join(phrases);
     }
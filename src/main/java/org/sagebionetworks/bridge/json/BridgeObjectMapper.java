@@ -4,8 +4,10 @@ import java.io.IOException;
 import java.lang.reflect.Method;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
 import com.fasterxml.jackson.databind.BeanDescription;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonSerializer;
@@ -56,7 +58,15 @@ public class BridgeObjectMapper extends ObjectMapper {
     }
 
     public BridgeObjectMapper() {
-        super();
+        this(null);
+    }
+    
+    /**
+     * A mapper with the same configuration that reads and writes through the given factory, e.g. a binary 
+     * format. Null uses the default JSON factory.
+     */
+    public BridgeObjectMapper(JsonFactory factory) {
+        super(factory);
         this.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         // This is a default, but I wanted to note explicitly
         this.configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, false);
@@ -131,7 +141,11 @@ public class BridgeObjectMapper extends ObjectMapper {
                     // for duplicates, but this is a "try and throw exception" feature... you can't test ahead
                     // of time. Not ideal but only filtered objects have this duplication problem.
                     try {
-                        jgen.configure(JsonGenerator.Feature.STRICT_DUPLICATE_DETECTION, true);
+                        // Text generators attach the duplicate check to the current context when it is enabled.
+                        // Binary generators (used to cache objects) only support it if enabled on their factory.
+                        if (jgen instanceof JsonGeneratorImpl) {
+                            jgen.configure(JsonGenerator.Feature.STRICT_DUPLICATE_DETECTION, true);
+                        }
                         jgen.writeStringField("type", typeName);
                     } catch(JsonGenerationException e) {
                         if (!e.getMessage().equals("Duplicate field 'type'")) {
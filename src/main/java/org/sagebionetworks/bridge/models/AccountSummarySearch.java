@@ -18,6 +18,7 @@ public final class AccountSummarySearch implements BridgeEntity {
     
     public static final AccountSummarySearch EMPTY_SEARCH = new AccountSummarySearch.Builder().build();
     private final int offsetBy;
+    private final String offsetKey;
     private final int pageSize;
     private final String emailFilter;
     private final String phoneFilter;
@@ -27,9 +28,11 @@ public final class AccountSummarySearch implements BridgeEntity {
     private final DateTime startTime;
     private final DateTime endTime;
 
-    private AccountSummarySearch(int offsetBy, int pageSize, String emailFilter, String phoneFilter,
-            Set<String> allOfGroups, Set<String> noneOfGroups, String language, DateTime startTime, DateTime endTime) {
+    private AccountSummarySearch(int offsetBy, String offsetKey, int pageSize, String emailFilter,
+            String phoneFilter, Set<String> allOfGroups, Set<String> noneOfGroups, String language,
+            DateTime startTime, DateTime endTime) {
         this.offsetBy = offsetBy;
+        this.offsetKey = offsetKey;
         this.pageSize = pageSize;
         this.emailFilter = emailFilter;
         this.phoneFilter = phoneFilter;
@@ -43,6 +46,13 @@ public final class AccountSummarySearch implements BridgeEntity {
     public int getOffsetBy() {
         return offsetBy;
     }
+    /**
+     * The nextPageOffsetKey of the previous page, when paging through accounts with a cursor rather than an offset. 
+     * Not used by offset paging.
+     */
+    public String getOffsetKey() {
+        return offsetKey;
+    }
     public int getPageSize() {
         return pageSize;
     }
@@ -77,7 +87,7 @@ public final class AccountSummarySearch implements BridgeEntity {
         // versus ISOChronology[-07:00] if that's the offset at the time of serialization). Using the ISO String
         // representation of the DateTime gives us equality across serialization.
         return Objects.hash(allOfGroups, emailFilter, nullsafeDateString(endTime), language, noneOfGroups, offsetBy,
-                pageSize, phoneFilter, nullsafeDateString(startTime));
+                offsetKey, pageSize, phoneFilter, nullsafeDateString(startTime));
     }
 
     @Override
@@ -94,7 +104,8 @@ public final class AccountSummarySearch implements BridgeEntity {
         return Objects.equals(allOfGroups, other.allOfGroups) && Objects.equals(emailFilter, other.emailFilter)
                 && Objects.equals(nullsafeDateString(endTime),  nullsafeDateString(other.endTime))
                 && Objects.equals(language, other.language) && Objects.equals(noneOfGroups, other.noneOfGroups)
-                && Objects.equals(offsetBy, other.offsetBy) && Objects.equals(pageSize, other.pageSize)
+                && Objects.equals(offsetBy, other.offsetBy) && Objects.equals(offsetKey, other.offsetKey)
+                && Objects.equals(pageSize, other.pageSize)
                 && Objects.equals(phoneFilter, other.phoneFilter)
                 && Objects.equals(nullsafeDateString(startTime), nullsafeDateString(other.startTime));
     }
@@ -105,13 +116,15 @@ public final class AccountSummarySearch implements BridgeEntity {
     
     @Override
     public String toString() {
-        return "AccountSummarySearch [offsetBy=" + offsetBy + ", pageSize=" + pageSize + ", emailFilter=" + emailFilter
-                + ", phoneFilter=" + phoneFilter + ", allOfGroups=" + allOfGroups + ", noneOfGroups=" + noneOfGroups
-                + ", language=" + language + ", startTime=" + startTime + ", endTime=" + endTime + "]";
+        return "AccountSummarySearch [offsetBy=" + offsetBy + ", offsetKey=" + offsetKey + ", pageSize=" + pageSize
+                + ", emailFilter=" + emailFilter + ", phoneFilter=" + phoneFilter + ", allOfGroups=" + allOfGroups
+                + ", noneOfGroups=" + noneOfGroups + ", language=" + language + ", startTime=" + startTime
+                + ", endTime=" + endTime + "]";
     }
     
     public static class Builder {
         private Integer offsetBy;
+        private String offsetKey;
         private Integer pageSize;
         private String emailFilter;
         private String phoneFilter;
@@ -125,6 +138,10 @@ public final class AccountSummarySearch implements BridgeEntity {
             this.offsetBy = offsetBy;
             return this;
         }
+        public Builder withOffsetKey(String offsetKey) {
+            this.offsetKey = offsetKey;
+            return this;
+        }
         public Builder withPageSize(Integer pageSize) {
             this.pageSize = pageSize;
             return this;
@@ -167,8 +184,8 @@ public final class AccountSummarySearch implements BridgeEntity {
         public AccountSummarySearch build() {
             int defaultedOffsetBy = (offsetBy == null) ? 0 : offsetBy;
             int defaultedPageSize = (pageSize == null) ? API_DEFAULT_PAGE_SIZE : pageSize;
-            return new AccountSummarySearch(defaultedOffsetBy, defaultedPageSize, emailFilter, phoneFilter, allOfGroups,
-                    noneOfGroups, language, startTime, endTime);
+            return new AccountSummarySearch(defaultedOffsetBy, offsetKey, defaultedPageSize, emailFilter, phoneFilter,
+                    allOfGroups, noneOfGroups, language, startTime, endTime);
         }
     }
 
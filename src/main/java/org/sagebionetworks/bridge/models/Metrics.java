@@ -120,6 +120,34 @@ public class Metrics {
         json.put("upload_size", uploadSize);
     }
 
+    /**
+     * Count a read from the cache, aggregated by the namespace of the cache key. A cache may be read by a 
+     * background task on behalf of the request, so this is synchronized.
+     */
+    public synchronized void recordCacheRead(String namespace, boolean hit, int bytes, long micros) {
+        ObjectNode node = getCacheNamespaceNode(namespace);
+        increment(node, hit ? "hits" : "misses", 1L);
+        increment(node, "bytes_read", bytes);
+        increment(node, "micros", micros);
+    }
+
+    /** Count a write to the cache, aggregated by the namespace of the cache key. */
+    public synchronized void recordCacheWrite(String namespace, int bytes, long micros) {
+        ObjectNode node = getCacheNamespaceNode(namespace);
+        increment(node, "writes", 1L);
+        increment(node, "bytes_written", bytes);
+        increment(node, "micros", micros);
+    }
+
+    private ObjectNode getCacheNamespaceNode(String namespace) {
+        ObjectNode cacheNode = json.has("cache") ? (ObjectNode)json.get("cache") : json.putObject("cache");
+        return cacheNode.has(namespace) ? (ObjectNode)cacheNode.get(namespace) : cacheNode.putObject(namespace);
+    }
+
+    private static void increment(ObjectNode node, String field, long value) {
+        node.put(field, node.path(field).asLong() + value);
+    }
+
     private void put(final String field, final String value) {
         if (isNotBlank(value)) {
             json.put(field, value);
@@ -3,7 +3,10 @@ package org.sagebionetworks.bridge.models.schedules;
 import static org.sagebionetworks.bridge.models.schedules.ScheduleType.ONCE;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import com.google.common.collect.ImmutableList;
 import org.joda.time.DateTime;
@@ -14,12 +17,36 @@ import org.joda.time.LocalTime;
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.models.RangeTuple;
 
+/**
+ * Generates the scheduled activities of one schedule. Everything about the schedule that does not depend on the 
+ * user (the IDs of the events to schedule from, which activities are persistent, and in subclasses, the parsed cron 
+ * expression) is worked out when the scheduler is created, so for each user, only the date arithmetic remains. As a 
+ * result, a scheduler does not reflect changes made to its schedule after it is created. Schedulers are not changed 
+ * after they are created, and can be shared between threads.
+ */
 public abstract class ActivityScheduler {
     
+    private static final String DEFAULT_EVENT_ID = "enrollment";
+    
     protected final Schedule schedule;
+    protected final List<String> eventIds;
+    private final Set<Activity> persistentActivities;
 
     ActivityScheduler(Schedule schedule) {
         this.schedule = schedule;
+        // If no event is specified, it's enrollment by default.
+        String eventIdString = (schedule.getEventId() == null) ? DEFAULT_EVENT_ID : schedule.getEventId();
+        this.eventIds = ImmutableList.copyOf(Schedule.EVENT_ID_SPLITTER.split(eventIdString.trim()));
+        
+        Set<Activity> persistentActivities = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (schedule.getActivities() != null) {
+            for (Activity activity : schedule.getActivities()) {
+                if (activity.isPersistentlyRescheduledBy(schedule)) {
+                    persistentActivities.add(activity);
+                }
+            }
+        }
+        this.persistentActivities = Collections.unmodifiableSet(persistentActivities);
     }
     
     public abstract List<ScheduledActivity> getScheduledActivities(SchedulePlan plan, ScheduleContext context);
@@ -35,16 +62,10 @@ public abstract class ActivityScheduler {
             return ImmutableList.of();
         }
 
-        // If no event is specified, it's enrollment by default.
-        String eventIdString = schedule.getEventId();
-        if (eventIdString == null) {
-            eventIdString = "enrollment";
-        }
-
         // For one-time and persistent schedules, schedule off the first event specified in the list. For recurring
         // schedules, schedule off _all_ events specified.
         boolean getAll = schedule.getScheduleType() == ScheduleType.RECURRING;
-        List<DateTime> eventTimeList = getEventDateTimes(context, eventIdString, getAll);
+        List<DateTime> eventTimeList = getEventDateTimes(context, eventIds, getAll);
 
         List<RangeTuple<DateTime>> scheduleWindowList = new ArrayList<>();
         for (DateTime oneEventTime : eventTimeList) {
@@ -107,7 +128,7 @@ public abstract class ActivityScheduler {
                 LocalDateTime localScheduledOn = localDate.toLocalDateTime(localTime);
                 schActivity.setLocalScheduledOn(localScheduledOn);
                 schActivity.setGuid(activity.getGuid() + ":" + localDate.toLocalDateTime(localTime));
-                schActivity.setPersistent(activity.isPersistentlyRescheduledBy(schedule));
+                schActivity.setPersistent(persistentActivities.contains(activity));
                 schActivity.setReferentGuid(BridgeUtils.createReferentGuidIndex(activity, localDate.toLocalDateTime(localTime)));
                 if (expiresOn != null) {
                     schActivity.setLocalExpiresOn(expiresOn);
@@ -150,24 +171,22 @@ public abstract class ActivityScheduler {
      *
      * @param context
      *         schedule context, which contains the event map
-     * @param eventIdsString
-     *         event ID string as specified by the schedule; this is a comma-delimited list
+     * @param eventIds
+     *         event IDs, in the order they are specified by the schedule
      * @param getAll
      *         true to get all events; false to just get any one event (generally useful for persistent activities)
      * @return list of one or all specified event date-times
      */
-    protected List<DateTime> getEventDateTimes(ScheduleContext context, String eventIdsString, boolean getAll) {
+    protected List<DateTime> getEventDateTimes(ScheduleContext context, List<String> eventIds, boolean getAll) {
         List<DateTime> eventDateTimeList = new ArrayList<>();
-        if (eventIdsString != null) {
-            Iterable<String> eventIds = Schedule.EVENT_ID_SPLITTER.split(eventIdsString.trim());
-            for (String thisEventId : eventIds) {
-                if (context.getEvent(thisEventId) != null) {
-                    eventDateTimeList.add(context.getEvent(thisEventId));
-
-                    if (!getAll) {
-                        // We only wanted one event, and we found it, so break.
-                        break;
-                    }
+        for (String thisEventId : eventIds) {
+            DateTime eventDateTime = context.getEvent(thisEventId);
+            if (eventDateTime != null) {
+                eventDateTimeList.add(eventDateTime);
+
+                if (!getAll) {
+                    // We only wanted one event, and we found it, so break.
+                    break;
                 }
             }
         }
@@ -1,12 +1,12 @@
 package org.sagebionetworks.bridge.models.schedules;
 
+import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
-import org.quartz.CronScheduleBuilder;
-import org.quartz.spi.MutableTrigger;
+import org.quartz.CronExpression;
 
 import com.google.common.collect.Lists;
 
@@ -14,8 +14,12 @@ import org.sagebionetworks.bridge.models.RangeTuple;
 
 class CronActivityScheduler extends ActivityScheduler {
 
+    // Only read after it is created, which is safe to do from multiple threads.
+    private final CronExpression cronExpression;
+    
     CronActivityScheduler(Schedule schedule) {
         super(schedule);
+        this.cronExpression = parseCronExpression(schedule.getCronTrigger());
     }
     
     @Override
@@ -25,14 +29,13 @@ class CronActivityScheduler extends ActivityScheduler {
 
         for (RangeTuple<DateTime> oneScheduleWindow : scheduleWindowList) {
             DateTime scheduledTime = oneScheduleWindow.getStart();
-            MutableTrigger trigger = parseTrigger(scheduledTime);
             
             while (shouldContinueScheduling(context, scheduledTime, oneScheduleWindow, scheduledActivities)) {
                 // We use the scheduler to generate times in UTC (cron doesn't specify time zones
                 // and is usually in UTC), but when we add them, we add using localDate and 
                 // localTime, and then shift that to the user's time zone. So '0 0 10 1/1 * ? *' 
                 // is at 10am in the user's time zone. 
-                Date next = trigger.getFireTimeAfter(scheduledTime.toDate());
+                Date next = cronExpression.getTimeAfter(scheduledTime.toDate());
                 scheduledTime = new DateTime(next, DateTimeZone.UTC);
                 
                 if (shouldContinueScheduling(context, scheduledTime, oneScheduleWindow, scheduledActivities)) {
@@ -43,12 +46,14 @@ class CronActivityScheduler extends ActivityScheduler {
         return trimScheduledActivities(scheduledActivities);
     }
     
-    private MutableTrigger parseTrigger(DateTime scheduledTime) {
-        MutableTrigger mutable = CronScheduleBuilder
-            .cronSchedule(schedule.getCronTrigger())
-            .inTimeZone(DateTimeZone.UTC.toTimeZone()).build();
-        mutable.setStartTime(scheduledTime.toDate());
-        return mutable;
+    private static CronExpression parseCronExpression(String cronTrigger) {
+        try {
+            CronExpression expression = new CronExpression(cronTrigger);
+            expression.setTimeZone(DateTimeZone.UTC.toTimeZone());
+            return expression;
+        } catch (ParseException e) {
+            throw new RuntimeException("CronExpression '" + cronTrigger + "' is invalid.", e);
+        }
     }
 
 }
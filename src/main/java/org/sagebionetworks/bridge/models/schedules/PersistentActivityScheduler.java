@@ -4,6 +4,7 @@ import java.util.List;
 
 import org.joda.time.DateTime;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
 public class PersistentActivityScheduler extends ActivityScheduler {
@@ -14,10 +15,6 @@ public class PersistentActivityScheduler extends ActivityScheduler {
     
     @Override
     public List<ScheduledActivity> getScheduledActivities(SchedulePlan plan, ScheduleContext context) {
-        // similar to a safety check in ActivityScheduler.getScheduleWindowsBasedOnEvents
-        if (schedule.getEventId() == null) {
-            schedule.setEventId("enrollment");
-        }
         List<ScheduledActivity> scheduledActivities = Lists.newArrayList();
         for (Activity activity : schedule.getActivities()) {
 
@@ -26,8 +23,8 @@ public class PersistentActivityScheduler extends ActivityScheduler {
             // when creating a schedule. It's clearer if you don't include this "finished" event, though it 
             // won't break anything if a user does include it in the eventId.
             String finishedId = "activity:"+activity.getGuid()+":finished";
-            List<DateTime> scheduledTimeList = getEventDateTimes(context,
-                    finishedId+"," + schedule.getEventId(), false);
+            List<String> activityEventIds = ImmutableList.<String>builder().add(finishedId).addAll(eventIds).build();
+            List<DateTime> scheduledTimeList = getEventDateTimes(context, activityEventIds, false);
 
             if (!scheduledTimeList.isEmpty()) {
                 DateTime scheduledTime = scheduledTimeList.get(0);
@@ -0,0 +1,50 @@
+package org.sagebionetworks.bridge.models.schedules;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The results of looking up activity references for a study and client app version, so they can be shared between 
+ * requests: the most recently published version of surveys (by survey GUID), the latest schema revisions for the 
+ * app version (by schema ID), and the compound activities of compound activity definitions (by task identifier). 
+ * These are the references as loaded from their services, before any app config overrides are applied. The maps 
+ * are thread-safe, as the schedule plans of a request may be resolved in parallel.
+ */
+public final class ResolvedReferences {
+    private final Map<String, SurveyReference> surveys;
+    private final Map<String, SchemaReference> schemas;
+    private final Map<String, CompoundActivity> compoundActivities;
+    
+    public ResolvedReferences() {
+        this(null, null, null);
+    }
+    
+    @JsonCreator
+    public ResolvedReferences(@JsonProperty("surveys") Map<String, SurveyReference> surveys,
+            @JsonProperty("schemas") Map<String, SchemaReference> schemas,
+            @JsonProperty("compoundActivities") Map<String, CompoundActivity> compoundActivities) {
+        this.surveys = synchronizedCopy(surveys);
+        this.schemas = synchronizedCopy(schemas);
+        this.compoundActivities = synchronizedCopy(compoundActivities);
+    }
+    
+    public Map<String, SurveyReference> getSurveys() {
+        return surveys;
+    }
+    
+    public Map<String, SchemaReference> getSchemas() {
+        return schemas;
+    }
+    
+    public Map<String, CompoundActivity> getCompoundActivities() {
+        return compoundActivities;
+    }
+    
+    private static <T> Map<String, T> synchronizedCopy(Map<String, T> map) {
+        return Collections.synchronizedMap((map == null) ? new HashMap<>() : new HashMap<>(map));
+    }
+}
@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 
 import com.google.common.base.Splitter;
@@ -57,6 +58,9 @@ public class Schedule implements BridgeEntity {
     private DateTime endsOn;
     private List<LocalTime> times = Lists.newArrayList();
     private List<Activity> activities = Lists.newArrayList();
+    // Schedules in a SchedulePlanSnapshot are not changed, so their scheduler can be created once and reused. 
+    // Null unless the scheduler is reused.
+    private transient volatile AtomicReference<ActivityScheduler> reusedScheduler;
     
     public List<Activity> getActivities() {
         return activities;
@@ -192,6 +196,22 @@ public class Schedule implements BridgeEntity {
     @JsonIgnore
     @DynamoDBIgnore
     public ActivityScheduler getScheduler() {
+        AtomicReference<ActivityScheduler> reference = reusedScheduler;
+        if (reference == null) {
+            return createScheduler();
+        }
+        return reference.updateAndGet(scheduler -> (scheduler == null) ? createScheduler() : scheduler);
+    }
+    /**
+     * Once this is called, the scheduler returned by getScheduler() is created once and reused. It will not 
+     * reflect later changes to the schedule, so this should only be called on schedules that won't be changed.
+     */
+    void reuseScheduler() {
+        if (reusedScheduler == null) {
+            reusedScheduler = new AtomicReference<>();
+        }
+    }
+    private ActivityScheduler createScheduler() {
         if (getCronTrigger() != null) {
             return new CronActivityScheduler(this);
         } else if (scheduleType == ScheduleType.PERSISTENT) {
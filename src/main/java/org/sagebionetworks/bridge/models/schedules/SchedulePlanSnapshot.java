@@ -0,0 +1,45 @@
+package org.sagebionetworks.bridge.models.schedules;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The schedule plans of a study that have not been deleted, with their criteria loaded. Snapshots are shared 
+ * between requests, so neither the snapshot nor its plans should be modified. The version identifies the state of 
+ * the study's plans that the snapshot was loaded from; it changes whenever a plan is created, updated or deleted.
+ * Because the plans don't change, the scheduler of each of their schedules is created once, when it is first used, 
+ * and reused for the lifetime of the snapshot.
+ */
+public final class SchedulePlanSnapshot {
+    private final String version;
+    private final List<SchedulePlan> schedulePlans;
+    
+    @JsonCreator
+    public SchedulePlanSnapshot(@JsonProperty("version") String version,
+            @JsonProperty("schedulePlans") List<SchedulePlan> schedulePlans) {
+        this.version = checkNotNull(version);
+        this.schedulePlans = (schedulePlans == null) ? ImmutableList.of() : ImmutableList.copyOf(schedulePlans);
+        for (SchedulePlan plan : this.schedulePlans) {
+            if (plan.getStrategy() != null) {
+                for (Schedule schedule : plan.getStrategy().getAllPossibleSchedules()) {
+                    if (schedule != null) {
+                        schedule.reuseScheduler();
+                    }
+                }
+            }
+        }
+    }
+    
+    public String getVersion() {
+        return version;
+    }
+    
+    public List<SchedulePlan> getSchedulePlans() {
+        return schedulePlans;
+    }
+}
@@ -34,6 +34,7 @@ import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
@@ -299,6 +300,24 @@ public class AccountService {
         return accountDao.getPagedAccountSummaries(study, search);
     }
     
+    /**
+     * Get a page of lightweight account summaries, starting after the account identified by the search's 
+     * offsetKey. Unlike getPagedAccountSummaries(), this does not count the total number of matching accounts, 
+     * and the cost of a page does not grow with its depth into the results.
+     * @param study
+     *      retrieve participants in this study
+     * @param search
+     *      all the parameters necessary to perform a filtered search of user account summaries, including
+     *      paging parameters.
+     */
+    public ForwardCursorPagedResourceList<AccountSummary> getAccountSummariesByCursor(Study study,
+            AccountSummarySearch search) {
+        checkNotNull(study);
+        checkNotNull(search);
+        
+        return accountDao.getAccountSummariesByCursor(study, search);
+    }
+    
     /**
      * For MailChimp, and other external systems, we need a way to get a healthCode for a given email.
      */
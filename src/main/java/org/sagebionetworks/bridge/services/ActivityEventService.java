@@ -5,7 +5,10 @@ import static org.sagebionetworks.bridge.BridgeUtils.COMMA_JOINER;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.ImmutableMap.Builder;
@@ -16,6 +19,7 @@ import org.joda.time.Period;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.dao.ActivityEventDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoActivityEvent;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
@@ -31,16 +35,32 @@ import org.sagebionetworks.bridge.models.surveys.SurveyAnswer;
 
 @Component
 public class ActivityEventService {
+    static final int ACTIVITIES_RETRIEVED_MAX_SIZE = 100000;
+    static final int ACTIVITIES_RETRIEVED_EXPIRE_MINUTES = 60;
 
     private ActivityEventDao activityEventDao;
+    private CacheProvider cacheProvider;
     private ParticipantService participantService;
     private StudyService studyService;
     
+    // The activities_retrieved event can only be recorded once, so once it has been published for a user, later 
+    // calls do nothing. Remembering the health codes of these users saves a read of the event on each call. An 
+    // entry expires so that a user whose events have been deleted through another server is eventually recorded 
+    // again.
+    private final Cache<String, Boolean> activitiesRetrievedPublished = CacheBuilder.newBuilder()
+            .maximumSize(ACTIVITIES_RETRIEVED_MAX_SIZE)
+            .expireAfterWrite(ACTIVITIES_RETRIEVED_EXPIRE_MINUTES, TimeUnit.MINUTES).build();
+    
     @Autowired
     final void setActivityEventDao(ActivityEventDao activityEventDao) {
         this.activityEventDao = activityEventDao;
     }
     
+    @Autowired
+    final void setCacheProvider(CacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+    
     @Autowired
     final void setParticipantService(ParticipantService participantService) {
         this.participantService = participantService;
@@ -71,7 +91,7 @@ public class ActivityEventService {
                 .withObjectId(eventKey)
                 .withTimestamp(timestamp).build();
         
-        if (activityEventDao.publishEvent(event)) {
+        if (publishEvent(event)) {
             // Create automatic events, as defined in the study
             createAutomaticCustomEvents(study, healthCode, event);
         }
@@ -92,25 +112,35 @@ public class ActivityEventService {
             .withTimestamp(enrollment)
             .withObjectType(ActivityEventObjectType.ENROLLMENT).build();
         
-        if (activityEventDao.publishEvent(event)) {
+        if (publishEvent(event)) {
             // Create automatic events, as defined in the study
             createAutomaticCustomEvents(study, healthCode, event);
         }
     }
     
+    /**
+     * Publishes the activities_retrieved event for a user, the first time their activities are retrieved, as well as 
+     * all of the automatic custom events that trigger on it. After that, this is called on every request for 
+     * activities, but the event will not change, so this does nothing.
+     */
     public void publishActivitiesRetrieved(Study study, String healthCode, DateTime timestamp) {
         checkNotNull(healthCode);
         checkNotNull(timestamp);
         
+        if (activitiesRetrievedPublished.getIfPresent(healthCode) != null) {
+            return;
+        }
         ActivityEvent event = new DynamoActivityEvent.Builder()
             .withHealthCode(healthCode)
             .withTimestamp(timestamp)
             .withObjectType(ActivityEventObjectType.ACTIVITIES_RETRIEVED).build();
         
-        if (activityEventDao.publishEvent(event)) {
+        if (publishEvent(event)) {
             // Create automatic events, as defined in the study
             createAutomaticCustomEvents(study, healthCode, event);
         }
+        // Whether or not this call saved it, the event is now recorded.
+        activitiesRetrievedPublished.put(healthCode, Boolean.TRUE);
     }
     
     public void publishQuestionAnsweredEvent(String healthCode, SurveyAnswer answer) {
@@ -124,7 +154,7 @@ public class ActivityEventService {
             .withObjectId(answer.getQuestionGuid())
             .withEventType(ActivityEventType.ANSWERED)
             .withAnswerValue(COMMA_JOINER.join(answer.getAnswers())).build();
-        activityEventDao.publishEvent(event);
+        publishEvent(event);
     }
     
     public void publishActivityFinishedEvent(ScheduledActivity schActivity) {
@@ -143,7 +173,7 @@ public class ActivityEventService {
                 .withTimestamp(schActivity.getFinishedOn())
                 .build();
 
-            activityEventDao.publishEvent(event);
+            publishEvent(event);
         }
     }
     
@@ -154,7 +184,7 @@ public class ActivityEventService {
                 .withHealthCode(healthCode)
                 .withTimestamp(createdOn)
                 .withObjectType(ActivityEventObjectType.CREATED_ON).build();
-        activityEventDao.publishEvent(event);
+        publishEvent(event);
     }
     
     /**
@@ -165,15 +195,21 @@ public class ActivityEventService {
      */
     public void publishActivityEvent(ActivityEvent event) {
         checkNotNull(event);
-        activityEventDao.publishEvent(event);
+        publishEvent(event);
     }
     
     /**
-    * Gets the activity events times for a specific user in order to schedule against them.
+    * Gets the activity events times for a specific user in order to schedule against them. The user's events 
+    * are cached until one of them changes. If an event is published while they are read from the DAO, the 
+    * cache does not accept the events that were read (see CacheProvider.setActivityEventMap()).
     */
     public Map<String, DateTime> getActivityEventMap(String studyId, String healthCode) {
         checkNotNull(healthCode);
-        Map<String, DateTime> activityMap = activityEventDao.getActivityEventMap(healthCode);
+        Map<String, DateTime> activityMap = cacheProvider.getActivityEventMap(healthCode);
+        if (activityMap == null) {
+            activityMap = activityEventDao.getActivityEventMap(healthCode);
+            cacheProvider.setActivityEventMap(healthCode, activityMap);
+        }
         Builder<String, DateTime> builder = ImmutableMap.<String, DateTime>builder();
         
         DateTime activitiesRetrieved = activityMap.get(ActivityEventObjectType.ACTIVITIES_RETRIEVED.name().toLowerCase());
@@ -218,6 +254,21 @@ public class ActivityEventService {
     public void deleteActivityEvents(String healthCode) {
         checkNotNull(healthCode);
         activityEventDao.deleteActivityEvents(healthCode);
+        cacheProvider.removeActivityEventMap(healthCode);
+        activitiesRetrievedPublished.invalidate(healthCode);
+    }
+    
+    /**
+     * Saves the event if it is new or later than the existing event. A user's cached events are removed 
+     * whenever one of them changes, rather than updated, so concurrent publishes cannot overwrite each other's 
+     * changes in the cache.
+     */
+    private boolean publishEvent(ActivityEvent event) {
+        boolean published = activityEventDao.publishEvent(event);
+        if (published) {
+            cacheProvider.removeActivityEventMap(event.getHealthCode());
+        }
+        return published;
     }
 
     private void createAutomaticCustomEvents(Study study, String healthCode, ActivityEvent event) {
@@ -237,7 +288,7 @@ public class ActivityEventService {
                         .withObjectType(ActivityEventObjectType.CUSTOM)
                         .withObjectId(automaticEventKey)
                         .withTimestamp(automaticEventTime).build();
-                activityEventDao.publishEvent(automaticEvent);
+                publishEvent(automaticEvent);
             }
         }        
     }
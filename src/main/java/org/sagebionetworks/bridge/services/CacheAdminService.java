@@ -1,46 +1,120 @@
 package org.sagebionetworks.bridge.services;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.sagebionetworks.bridge.BridgeConstants.API_MAXIMUM_PAGE_SIZE;
+import static org.sagebionetworks.bridge.BridgeConstants.API_MINIMUM_PAGE_SIZE;
+import static org.sagebionetworks.bridge.BridgeConstants.PAGE_SIZE_ERROR;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Resource;
 
 import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheNamespaceStats;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
+import org.sagebionetworks.bridge.models.ResourceList;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
+/**
+ * Administrative access to the public keys in the cache. Keys are enumerated with SCAN, which examines a 
+ * small number of keys per call, rather than KEYS, which blocks Redis while it examines every key.
+ */
 @Component
 public class CacheAdminService {
     
+    /** Keys examined by each SCAN call when enumerating the whole keyspace. */
+    static final int SCAN_BATCH_SIZE = 1000;
+    /** Limit on SCAN calls made for one page, since most keys (sessions) are not public. */
+    static final int MAX_SCANS_PER_PAGE = 100;
+    static final String ALL_KEYS_PATTERN = "*";
+    
     private JedisPool jedisPool;
+    
+    private CacheProvider cacheProvider;
 
     @Resource(name = "jedisPool")
     public void setJedisPool(JedisPool jedisPool) {
         this.jedisPool = jedisPool;
     }
+    
+    @Autowired
+    public void setCacheProvider(CacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+    
+    /**
+     * Returns hit, miss, size, and latency counts for the cache on this node (only), by the namespace of 
+     * the cache keys.
+     */
+    public Map<String, CacheNamespaceStats> getCacheStats() {
+        return cacheProvider.getCacheMetrics().getStats();
+    }
 
     /**
      * Returns all keys in the cache that are not user session keys.
      * @return
      */
     public Set<String> listItems() {
+        Set<String> set = Sets.newHashSet();
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> allKeys = jedis.keys("*");
-            Set<String> set = Sets.newHashSet();
-            for (String key : allKeys) {
-                if (CacheKey.isPublic(key)) {
-                    set.add(key);
-                }
-            }
-            return set;
+            ScanParams params = new ScanParams().match(ALL_KEYS_PATTERN).count(SCAN_BATCH_SIZE);
+            String cursor = ScanParams.SCAN_POINTER_START;
+            do {
+                ScanResult<String> result = jedis.scan(cursor, params);
+                addPublicKeys(result.getResult(), set);
+                cursor = result.getStringCursor();
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
         }
+        return set;
+    }
+    
+    /**
+     * Returns a page of keys in the cache that match the pattern (a Redis glob-style pattern, all keys if 
+     * blank) and are not user session keys. As with Redis SCAN, a page may contain somewhat more or fewer 
+     * keys than the page size (even no keys when there are more pages), and a key may appear on more than 
+     * one page. There are no more keys when there is no nextPageOffsetKey.
+     */
+    public ForwardCursorPagedResourceList<String> listItems(String offsetKey, String pattern, int pageSize) {
+        if (pageSize < API_MINIMUM_PAGE_SIZE || pageSize > API_MAXIMUM_PAGE_SIZE) {
+            throw new BadRequestException(PAGE_SIZE_ERROR);
+        }
+        String match = isBlank(pattern) ? ALL_KEYS_PATTERN : pattern;
+        String cursor = isBlank(offsetKey) ? ScanParams.SCAN_POINTER_START : offsetKey;
+        
+        List<String> items = Lists.newArrayList();
+        try (Jedis jedis = jedisPool.getResource()) {
+            ScanParams params = new ScanParams().match(match).count(pageSize);
+            int scans = 0;
+            do {
+                ScanResult<String> result = jedis.scan(cursor, params);
+                addPublicKeys(result.getResult(), items);
+                cursor = result.getStringCursor();
+                scans++;
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor) && items.size() < pageSize
+                    && scans < MAX_SCANS_PER_PAGE);
+        }
+        String nextPageOffsetKey = ScanParams.SCAN_POINTER_START.equals(cursor) ? null : cursor;
+        return new ForwardCursorPagedResourceList<>(items, nextPageOffsetKey)
+                .withRequestParam(ResourceList.OFFSET_KEY, offsetKey)
+                .withRequestParam(ResourceList.PATTERN, pattern)
+                .withRequestParam(ResourceList.PAGE_SIZE, pageSize);
     }
 
     /**
@@ -61,4 +135,37 @@ public class CacheAdminService {
         }
     }
     
+    /**
+     * Delete all items whose keys match the pattern (a Redis glob-style pattern), other than user session 
+     * keys. Keys are found with SCAN and deleted in batches as they are found, so Redis is never blocked 
+     * for long. Returns the number of items deleted.
+     */
+    public long removeItems(String pattern) {
+        if (isBlank(pattern)) {
+            throw new BadRequestException("pattern is required");
+        }
+        long removed = 0L;
+        try (Jedis jedis = jedisPool.getResource()) {
+            ScanParams params = new ScanParams().match(pattern).count(SCAN_BATCH_SIZE);
+            String cursor = ScanParams.SCAN_POINTER_START;
+            do {
+                ScanResult<String> result = jedis.scan(cursor, params);
+                List<String> keys = Lists.newArrayList();
+                addPublicKeys(result.getResult(), keys);
+                if (!keys.isEmpty()) {
+                    removed += jedis.del(keys.toArray(new String[keys.size()]));
+                }
+                cursor = result.getStringCursor();
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+        }
+        return removed;
+    }
+    
+    private static void addPublicKeys(List<String> keys, Collection<String> publicKeys) {
+        for (String key : keys) {
+            if (CacheKey.isPublic(key)) {
+                publicKeys.add(key);
+            }
+        }
+    }
 }
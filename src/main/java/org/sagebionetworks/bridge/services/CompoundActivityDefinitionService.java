@@ -25,6 +25,8 @@ public class CompoundActivityDefinitionService {
     private SchedulePlanService schedulePlanService;
     
     private CompoundActivityDefinitionDao compoundActivityDefDao;
+    
+    private ResolvedReferenceCache resolvedReferenceCache;
 
     @Autowired
     public final void setSchedulePlanService(SchedulePlanService schedulePlanService) {
@@ -36,6 +38,12 @@ public class CompoundActivityDefinitionService {
     public final void setCompoundActivityDefDao(CompoundActivityDefinitionDao compoundActivityDefDao) {
         this.compoundActivityDefDao = compoundActivityDefDao;
     }
+    
+    /** Compound activities resolved for scheduling are removed when their definitions change. */
+    @Autowired
+    public final void setResolvedReferenceCache(ResolvedReferenceCache resolvedReferenceCache) {
+        this.resolvedReferenceCache = resolvedReferenceCache;
+    }
 
     /** Creates a compound activity definition. */
     public CompoundActivityDefinition createCompoundActivityDefinition(StudyIdentifier studyId,
@@ -60,6 +68,7 @@ public class CompoundActivityDefinitionService {
         
         // call through to dao
         compoundActivityDefDao.deleteCompoundActivityDefinition(studyId, taskId);
+        resolvedReferenceCache.removeResolvedReferences(studyId);
     }
 
     /** Deletes all compound activity definitions in the specified study. Used when we physically delete a study. */
@@ -106,7 +115,10 @@ public class CompoundActivityDefinitionService {
         Validate.entityThrowingException(CompoundActivityDefinitionValidator.INSTANCE, compoundActivityDefinition);
 
         // call through to dao
-        return compoundActivityDefDao.updateCompoundActivityDefinition(compoundActivityDefinition);
+        CompoundActivityDefinition updated = compoundActivityDefDao
+                .updateCompoundActivityDefinition(compoundActivityDefinition);
+        resolvedReferenceCache.removeResolvedReferences(studyId);
+        return updated;
     }
     
     private void checkConstraintViolations(StudyIdentifier studyId, String taskId) {
@@ -13,6 +13,7 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -336,9 +337,15 @@ public class ConsentService {
         AccountId accountId = AccountId.forId(study.getIdentifier(), participant.getId());
         Account account = accountService.getAccount(accountId);
         
+        Set<SubpopulationGuid> withdrawnSubpopGuids = new HashSet<>();
         for (SubpopulationGuid subpopGuid : account.getAllConsentSignatureHistories().keySet()) {
             if (withdrawSignatures(account, subpopGuid, withdrewOn)) {
-                Subpopulation subpop = subpopService.getSubpopulation(study.getStudyIdentifier(), subpopGuid);
+                withdrawnSubpopGuids.add(subpopGuid);
+            }
+        }
+        if (!withdrawnSubpopGuids.isEmpty()) {
+            for (Subpopulation subpop : subpopService
+                    .getSubpopulations(study.getStudyIdentifier(), withdrawnSubpopGuids).values()) {
                 account.getDataGroups().removeAll(subpop.getDataGroupsAssignedWhileConsented());
             }
         }
@@ -357,6 +357,15 @@ public class ParticipantService {
         
         return accountService.getPagedAccountSummaries(study, search);
     }
+    
+    public ForwardCursorPagedResourceList<AccountSummary> getAccountSummariesByCursor(Study study,
+            AccountSummarySearch search) {
+        checkNotNull(study);
+        
+        Validate.entityThrowingException(new AccountSummarySearchValidator(study.getDataGroups()), search);
+        
+        return accountService.getAccountSummariesByCursor(study, search);
+    }
 
     /**
      * Gets the timestamp representing when the participant started the study. Canonically, we define this as
@@ -1,6 +1,7 @@
 package org.sagebionetworks.bridge.services;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,6 +13,7 @@ import org.sagebionetworks.bridge.models.schedules.Activity;
 import org.sagebionetworks.bridge.models.schedules.ActivityType;
 import org.sagebionetworks.bridge.models.schedules.CompoundActivity;
 import org.sagebionetworks.bridge.models.schedules.CompoundActivityDefinition;
+import org.sagebionetworks.bridge.models.schedules.ResolvedReferences;
 import org.sagebionetworks.bridge.models.schedules.ScheduledActivity;
 import org.sagebionetworks.bridge.models.schedules.SchemaReference;
 import org.sagebionetworks.bridge.models.schedules.SurveyReference;
@@ -29,6 +31,13 @@ import org.slf4j.LoggerFactory;
  * recently published survey. In compound activities we resolve all references in the schema and survey 
  * lists. Finally, if a compound activity only contains a taskIdentifier, we load the full compound 
  * activity, resolve it, and return that in the scheduled activity. 
+ * 
+ * The surveys, schemas and compound activity definitions loaded from their services are recorded in a 
+ * {@link ResolvedReferences} object, which can be shared between requests. Surveys and schemas specified by the app 
+ * config always take precedence over those references.
+ * 
+ * A resolver is thread-safe, so the activities of several schedule plans can be resolved in parallel. Threads 
+ * that need the same reference at the same time may each load it; the loaded references are identical.
  */
 class ReferenceResolver {
     private static final Logger LOG = LoggerFactory.getLogger(ReferenceResolver.class);
@@ -42,23 +51,35 @@ class ReferenceResolver {
     private final Map<String,SurveyReference> surveyReferences;
     private final Map<String,SchemaReference> schemaReferences;
     
-    private final Map<String, CompoundActivity> compoundActivityCache = new HashMap<>();
-    private final Map<String, SchemaReference> schemaCache = new HashMap<>();
-    private final Map<String, SurveyReference> surveyCache = new HashMap<>();
+    private final ResolvedReferences resolvedReferences;
+    private volatile boolean hasNewResolvedReferences;
+    
+    private final Map<String, CompoundActivity> compoundActivityCache = Collections.synchronizedMap(new HashMap<>());
     
     ReferenceResolver(CompoundActivityDefinitionService compoundActivityDefinitionService,
             UploadSchemaService schemaService, SurveyService surveyService,
             Map<String, SurveyReference> surveyReferences, Map<String, SchemaReference> schemaReferences,
-            ClientInfo clientInfo, StudyIdentifier studyId) {
+            ResolvedReferences resolvedReferences, ClientInfo clientInfo, StudyIdentifier studyId) {
         this.compoundActivityDefinitionService = compoundActivityDefinitionService;
         this.schemaService = schemaService;
         this.surveyService = surveyService;
         this.surveyReferences = surveyReferences;
         this.schemaReferences = schemaReferences;
+        this.resolvedReferences = resolvedReferences;
         this.clientInfo = clientInfo;
         this.studyId = studyId;
     }
 
+    /** The references loaded so far, including those loaded by earlier requests. */
+    ResolvedReferences getResolvedReferences() {
+        return resolvedReferences;
+    }
+    
+    /** True if this resolver has loaded references that were not in the resolved references it was given. */
+    boolean hasNewResolvedReferences() {
+        return hasNewResolvedReferences;
+    }
+
     void resolve(ScheduledActivity schActivity) {
         Activity activity = schActivity.getActivity();
         ActivityType activityType = activity.getActivityType();
@@ -109,15 +130,20 @@ class ReferenceResolver {
         if (resolvedCompoundActivity == null) {
             if (compoundActivity.isReference()) {
                 // Compound activity has no schemas or surveys defined. Resolve it with its definition.
-                CompoundActivityDefinition compoundActivityDef;
-                try {
-                    compoundActivityDef = compoundActivityDefinitionService.getCompoundActivityDefinition(studyId,
-                            taskId);
-                } catch (EntityNotFoundException ex) {
-                    LOG.error("Schedule references non-existent compound activity " + taskId);
-                    return null;
+                resolvedCompoundActivity = resolvedReferences.getCompoundActivities().get(taskId);
+                if (resolvedCompoundActivity == null) {
+                    CompoundActivityDefinition compoundActivityDef;
+                    try {
+                        compoundActivityDef = compoundActivityDefinitionService.getCompoundActivityDefinition(studyId,
+                                taskId);
+                    } catch (EntityNotFoundException ex) {
+                        LOG.error("Schedule references non-existent compound activity " + taskId);
+                        return null;
+                    }
+                    resolvedCompoundActivity = compoundActivityDef.getCompoundActivity();
+                    resolvedReferences.getCompoundActivities().put(taskId, resolvedCompoundActivity);
+                    hasNewResolvedReferences = true;
                 }
-                resolvedCompoundActivity = compoundActivityDef.getCompoundActivity();
             } else {
                 // Compound activity has schemas and surveys defined. Use the schemas and surveys from the lists, but
                 // we may need to resolve individual schema and survey refs at a later step.
@@ -169,9 +195,9 @@ class ReferenceResolver {
         }
 
         String schemaId = schemaRef.getId();
-        SchemaReference resolvedSchemaRef = schemaCache.get(schemaId);
+        SchemaReference resolvedSchemaRef = schemaReferences.get(schemaId);
         if (resolvedSchemaRef == null) {
-            resolvedSchemaRef = schemaReferences.get(schemaId);
+            resolvedSchemaRef = resolvedReferences.getSchemas().get(schemaId);
         }
         if (resolvedSchemaRef == null) {
             UploadSchema schema;
@@ -182,7 +208,8 @@ class ReferenceResolver {
                 return null;
             }
             resolvedSchemaRef = new SchemaReference(schemaId, schema.getRevision());
-            schemaCache.put(schemaId, resolvedSchemaRef);
+            resolvedReferences.getSchemas().put(schemaId, resolvedSchemaRef);
+            hasNewResolvedReferences = true;
         }
         return resolvedSchemaRef;
     }
@@ -194,9 +221,9 @@ class ReferenceResolver {
         }
 
         String surveyGuid = surveyRef.getGuid();
-        SurveyReference resolvedSurveyRef = surveyCache.get(surveyGuid);
+        SurveyReference resolvedSurveyRef = surveyReferences.get(surveyGuid);
         if (resolvedSurveyRef == null) {
-            resolvedSurveyRef = surveyReferences.get(surveyGuid);
+            resolvedSurveyRef = resolvedReferences.getSurveys().get(surveyGuid);
         }
         if (resolvedSurveyRef == null) {
             Survey survey;
@@ -208,7 +235,8 @@ class ReferenceResolver {
             }
             resolvedSurveyRef = new SurveyReference(survey.getIdentifier(), surveyGuid,
                     new DateTime(survey.getCreatedOn()));
-            surveyCache.put(surveyGuid, resolvedSurveyRef);
+            resolvedReferences.getSurveys().put(surveyGuid, resolvedSurveyRef);
+            hasNewResolvedReferences = true;
         }
         return resolvedSurveyRef;
     }
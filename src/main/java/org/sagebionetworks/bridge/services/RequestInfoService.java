@@ -3,19 +3,57 @@ package org.sagebionetworks.bridge.services;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.google.common.collect.Iterables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.RequestInfoDao;
+import org.sagebionetworks.bridge.exceptions.ConstraintViolationException;
 import org.sagebionetworks.bridge.models.RequestInfo;
 
+/**
+ * Request infos are updated on most authenticated requests. Rather than writing each update to the database, updates
+ * are merged in memory per user, and written in batches at a fixed interval (and when the server shuts down). Reads
+ * include the updates that have not been written yet. If a batch fails, its updates are written one at a time, so
+ * one update that cannot be written (for example, because the account was deleted) does not hold up the others.
+ */
 @Component
 public class RequestInfoService {
-    
+    private static final Logger LOG = LoggerFactory.getLogger(RequestInfoService.class);
+
+    static final String CONFIG_KEY_FLUSH_INTERVAL_SECONDS = "request.info.flush.interval.seconds";
+    /** The number of request infos written to the database in each transaction. */
+    static final int FLUSH_BATCH_SIZE = 100;
+    /** An update that still cannot be written after this many flushes is dropped. */
+    static final int MAX_FLUSH_ATTEMPTS = 5;
+
     private CacheProvider cacheProvider;
     private RequestInfoDao requestInfoDao;
-    
+    private int flushIntervalSeconds;
+    private final ConcurrentMap<String, RequestInfo> pendingRequestInfos = new ConcurrentHashMap<>();
+    /** The number of failed writes of each pending update, guarded by flushLock. */
+    private final Map<String, Integer> flushAttempts = new HashMap<>();
+    /** Held while writing pending updates, so a removed request info is not written again by a flush in progress. */
+    private final Object flushLock = new Object();
+    private ScheduledExecutorService flushExecutor;
+
     @Autowired
     final void setCacheProvider(CacheProvider cacheProvider) {
         this.cacheProvider = cacheProvider;
@@ -24,16 +62,53 @@ public class RequestInfoService {
     final void setRequestInfoDao(RequestInfoDao requestInfoDao) {
         this.requestInfoDao = requestInfoDao;
     }
-    
+    /** Updates are written in batches at this interval. If it is 0, each update is written immediately. */
+    @Autowired
+    final void setBridgeConfig(BridgeConfig config) {
+        this.flushIntervalSeconds = config.getPropertyAsInt(CONFIG_KEY_FLUSH_INTERVAL_SECONDS);
+    }
+
+    @PostConstruct
+    public void startFlush() {
+        if (flushIntervalSeconds > 0) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "request-info-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flushExecutor.scheduleWithFixedDelay(this::flush, flushIntervalSeconds, flushIntervalSeconds,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stopFlush() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+            try {
+                flushExecutor.awaitTermination(flushIntervalSeconds, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flushExecutor = null;
+        }
+        // Write whatever is left, after the last scheduled flush
+        flush();
+    }
+
     public void updateRequestInfo(RequestInfo requestInfo) {
         checkNotNull(requestInfo);
-        
-        requestInfoDao.updateRequestInfo(requestInfo);
+
+        if (flushExecutor == null) {
+            requestInfoDao.updateRequestInfo(requestInfo);
+        } else {
+            pendingRequestInfos.merge(requestInfo.getUserId(), requestInfo, RequestInfoService::merge);
+        }
     }
-    
+
     public RequestInfo getRequestInfo(String userId) {
         isNotBlank(userId);
-        
+
         RequestInfo requestInfo = requestInfoDao.getRequestInfo(userId);
         if (requestInfo == null) {
             requestInfo = cacheProvider.getRequestInfo(userId);
@@ -41,13 +116,89 @@ public class RequestInfoService {
                 requestInfoDao.updateRequestInfo(requestInfo);
             }
         }
+        RequestInfo pendingRequestInfo = pendingRequestInfos.get(userId);
+        if (pendingRequestInfo != null) {
+            requestInfo = (requestInfo == null) ? pendingRequestInfo : merge(requestInfo, pendingRequestInfo);
+        }
         return requestInfo;
     }
-    
+
     public void removeRequestInfo(String userId) {
         isNotBlank(userId);
-        
-        requestInfoDao.removeRequestInfo(userId);
+
+        synchronized (flushLock) {
+            pendingRequestInfos.remove(userId);
+            flushAttempts.remove(userId);
+            requestInfoDao.removeRequestInfo(userId);
+        }
         cacheProvider.removeRequestInfo(userId);
     }
+
+    /**
+     * Write the pending updates to the database, in batches. If a batch fails, its updates are written one at a time.
+     * An update that violates a constraint (its account has been deleted) is dropped. Any other failure returns the
+     * update to the pending updates (under any that were made since) to be tried again on the next flush, along with
+     * the rest of the batch, until it has failed MAX_FLUSH_ATTEMPTS times.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            List<RequestInfo> requestInfos = new ArrayList<>();
+            for (String userId : pendingRequestInfos.keySet()) {
+                RequestInfo requestInfo = pendingRequestInfos.remove(userId);
+                if (requestInfo != null) {
+                    requestInfos.add(requestInfo);
+                }
+            }
+            for (List<RequestInfo> batch : Iterables.partition(requestInfos, FLUSH_BATCH_SIZE)) {
+                try {
+                    requestInfoDao.updateRequestInfos(batch);
+                    for (RequestInfo requestInfo : batch) {
+                        flushAttempts.remove(requestInfo.getUserId());
+                    }
+                } catch (RuntimeException e) {
+                    LOG.warn("Error writing " + batch.size() + " request infos, writing them one at a time", e);
+                    flushEach(batch);
+                }
+            }
+        }
+    }
+
+    private void flushEach(List<RequestInfo> batch) {
+        for (int i=0; i < batch.size(); i++) {
+            RequestInfo requestInfo = batch.get(i);
+            String userId = requestInfo.getUserId();
+            try {
+                requestInfoDao.updateRequestInfo(requestInfo);
+                flushAttempts.remove(userId);
+            } catch (ConstraintViolationException e) {
+                LOG.info("Dropping request info update for user " + userId + ", account no longer exists");
+                flushAttempts.remove(userId);
+            } catch (RuntimeException e) {
+                int attempts = flushAttempts.merge(userId, 1, Integer::sum);
+                if (attempts >= MAX_FLUSH_ATTEMPTS) {
+                    LOG.error("Dropping request info update for user " + userId + " after " + attempts
+                            + " failed attempts", e);
+                    flushAttempts.remove(userId);
+                } else {
+                    LOG.error("Error writing request info for user " + userId + ", will retry", e);
+                    retry(requestInfo);
+                }
+                // The database is most likely unavailable. Keep the rest of the batch for the next flush.
+                for (RequestInfo untried : batch.subList(i + 1, batch.size())) {
+                    retry(untried);
+                }
+                return;
+            }
+        }
+    }
+
+    private void retry(RequestInfo requestInfo) {
+        pendingRequestInfos.merge(requestInfo.getUserId(), requestInfo,
+                (laterRequestInfo, failedRequestInfo) -> merge(failedRequestInfo, laterRequestInfo));
+    }
+
+    /** The values of the update replace those of the request info, except where the update has no value. */
+    private static RequestInfo merge(RequestInfo requestInfo, RequestInfo update) {
+        return new RequestInfo.Builder().copyOf(requestInfo).copyOf(update).build();
+    }
 }
@@ -0,0 +1,75 @@
+package org.sagebionetworks.bridge.services;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.models.ClientInfo;
+import org.sagebionetworks.bridge.models.schedules.ResolvedReferences;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+
+/**
+ * Shares the activity references resolved while scheduling between requests. Entries are kept for each study and 
+ * client app version, and all the entries for a study are removed when a survey is published, a schema revision is 
+ * created or changed, or a compound activity definition is changed. They are replaced with a tombstone for a short 
+ * time, and references are only cached if there is no entry, so a request that read the references before such a 
+ * change cannot cache them afterward. As a result, references resolved by a request that found an entry are not 
+ * added to it; they are cached once the entry expires.
+ */
+@Component
+public class ResolvedReferenceCache {
+    static final String CONFIG_KEY_EXPIRE_SECONDS = "resolved.reference.cache.expire.seconds";
+    /** Longer than a request takes to schedule activities, after reading the references. */
+    static final int TOMBSTONE_EXPIRE_SECONDS = 30;
+    
+    private CacheProvider cacheProvider;
+    private int expireInSeconds;
+    
+    @Autowired
+    final void setCacheProvider(CacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+    
+    @Autowired
+    final void setBridgeConfig(BridgeConfig config) {
+        this.expireInSeconds = config.getPropertyAsInt(CONFIG_KEY_EXPIRE_SECONDS);
+    }
+    
+    /** The references resolved by earlier requests, or an empty set of references if there are none. */
+    public ResolvedReferences getResolvedReferences(StudyIdentifier studyId, ClientInfo clientInfo) {
+        checkNotNull(studyId);
+        checkNotNull(clientInfo);
+        
+        CacheKey cacheKey = CacheKey.resolvedReferences(studyId, clientInfo);
+        ResolvedReferences references = cacheProvider.getObject(cacheKey, ResolvedReferences.class);
+        if (references == null) {
+            // Track the key before the references are resolved, so a change while they are being resolved leaves a 
+            // tombstone that stops them from being cached.
+            cacheProvider.addCacheKeyToSet(CacheKey.resolvedReferencesList(studyId), cacheKey.toString());
+            return new ResolvedReferences();
+        }
+        return references;
+    }
+    
+    public void setResolvedReferences(StudyIdentifier studyId, ClientInfo clientInfo, ResolvedReferences references) {
+        checkNotNull(studyId);
+        checkNotNull(clientInfo);
+        checkNotNull(references);
+        
+        CacheKey cacheKey = CacheKey.resolvedReferences(studyId, clientInfo);
+        // So we can delete all the cached references for a study, keep track of them under the study
+        cacheProvider.addCacheKeyToSet(CacheKey.resolvedReferencesList(studyId), cacheKey.toString());
+        cacheProvider.setObjectIfAbsent(cacheKey, references, expireInSeconds);
+    }
+    
+    /** Remove the resolved references of every client app version, after references in the study have changed. */
+    public void removeResolvedReferences(StudyIdentifier studyId) {
+        checkNotNull(studyId);
+        
+        cacheProvider.removeSetOfCacheKeys(CacheKey.resolvedReferencesList(studyId), TOMBSTONE_EXPIRE_SECONDS);
+    }
+}
@@ -7,6 +7,9 @@ import java.util.List;
 import java.util.Set;
 
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.SchedulePlanDao;
 import org.sagebionetworks.bridge.models.ClientInfo;
 import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolder;
@@ -14,6 +17,7 @@ import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolderImpl;
 import org.sagebionetworks.bridge.models.schedules.Activity;
 import org.sagebionetworks.bridge.models.schedules.Schedule;
 import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
+import org.sagebionetworks.bridge.models.schedules.SchedulePlanSnapshot;
 import org.sagebionetworks.bridge.models.schedules.SurveyReference;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
@@ -22,18 +26,34 @@ import org.sagebionetworks.bridge.models.surveys.Survey;
 import org.sagebionetworks.bridge.validators.SchedulePlanValidator;
 import org.sagebionetworks.bridge.validators.Validate;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Sets;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 
+/**
+ * Schedule plans are read to schedule activities on nearly every request, so a snapshot of each study's plans 
+ * (with their criteria) is kept in Redis, and each node keeps deserialized copies of the snapshots. A version 
+ * for each study's plans is also kept in Redis, and replaced after any change to the study's plans, so snapshots 
+ * on every node are replaced as soon as a plan changes. Only the version is read from Redis when this node has a 
+ * current snapshot.
+ */
 @Component
 public class SchedulePlanService {
+    static final String CONFIG_KEY_SNAPSHOT_EXPIRE_SECONDS = "schedule.plan.snapshot.expire.seconds";
+    static final int LOCAL_SNAPSHOT_MAX_SIZE = 1000;
     
     private SchedulePlanDao schedulePlanDao;
     private SurveyService surveyService;
     private SubstudyService substudyService;
+    private CacheProvider cacheProvider;
+    private int snapshotExpireInSeconds;
+    
+    private final Cache<String, SchedulePlanSnapshot> localSnapshots = CacheBuilder.newBuilder()
+            .maximumSize(LOCAL_SNAPSHOT_MAX_SIZE).build();
 
     @Autowired
     public final void setSchedulePlanDao(SchedulePlanDao schedulePlanDao) {
@@ -47,10 +67,25 @@ public class SchedulePlanService {
     public final void setSubstudyService(SubstudyService substudyService) {
         this.substudyService = substudyService;
     }
+    @Autowired
+    public final void setCacheProvider(CacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+    @Autowired
+    public final void setBridgeConfig(BridgeConfig config) {
+        this.snapshotExpireInSeconds = config.getPropertyAsInt(CONFIG_KEY_SNAPSHOT_EXPIRE_SECONDS);
+    }
 
+    /**
+     * Get the study's schedule plans. Plans that have not been deleted are returned from a snapshot shared with 
+     * other requests; these plans must not be modified.
+     */
     public List<SchedulePlan> getSchedulePlans(ClientInfo clientInfo, StudyIdentifier studyIdentifier,
             boolean includeDeleted) {
-        return schedulePlanDao.getSchedulePlans(clientInfo, studyIdentifier, includeDeleted);
+        if (includeDeleted) {
+            return schedulePlanDao.getSchedulePlans(clientInfo, studyIdentifier, true);
+        }
+        return getSnapshot(clientInfo, studyIdentifier).getSchedulePlans();
     }
 
     public SchedulePlan getSchedulePlan(StudyIdentifier studyIdentifier, String guid) {
@@ -85,7 +120,9 @@ public class SchedulePlanService {
                 new SchedulePlanValidator(study.getDataGroups(), substudyIds, study.getTaskIdentifiers()), plan);
 
         lookupSurveyReferenceIdentifiers(study.getStudyIdentifier(), plan);
-        return schedulePlanDao.createSchedulePlan(study.getStudyIdentifier(), plan);
+        SchedulePlan created = schedulePlanDao.createSchedulePlan(study.getStudyIdentifier(), plan);
+        invalidateSnapshots(study.getStudyIdentifier());
+        return created;
     }
     
     public SchedulePlan updateSchedulePlan(Study study, SchedulePlan plan) {
@@ -120,7 +157,9 @@ public class SchedulePlanService {
         
         StudyIdentifier studyId = new StudyIdentifierImpl(plan.getStudyKey());
         lookupSurveyReferenceIdentifiers(studyId, plan);
-        return schedulePlanDao.updateSchedulePlan(studyId, plan);
+        SchedulePlan updated = schedulePlanDao.updateSchedulePlan(studyId, plan);
+        invalidateSnapshots(studyId);
+        return updated;
     }
 
     public void deleteSchedulePlan(StudyIdentifier studyIdentifier, String guid) {
@@ -128,6 +167,7 @@ public class SchedulePlanService {
         checkNotNull(isNotBlank(guid));
         
         schedulePlanDao.deleteSchedulePlan(studyIdentifier, guid);
+        invalidateSnapshots(studyIdentifier);
     }
     
     public void deleteSchedulePlanPermanently(StudyIdentifier studyIdentifier, String guid) {
@@ -135,6 +175,49 @@ public class SchedulePlanService {
         checkNotNull(isNotBlank(guid));
         
         schedulePlanDao.deleteSchedulePlanPermanently(studyIdentifier, guid);
+        invalidateSnapshots(studyIdentifier);
+    }
+    
+    /**
+     * Get the current snapshot of the study's plans from this node, or failing that from Redis, or failing that, 
+     * load the plans and save a new snapshot. The version is read (or set) before plans are loaded, and plans are 
+     * changed before the version is replaced, so a snapshot can never be saved with a version that is newer than 
+     * its plans.
+     */
+    private SchedulePlanSnapshot getSnapshot(ClientInfo clientInfo, StudyIdentifier studyId) {
+        CacheKey versionKey = CacheKey.schedulePlanVersion(studyId);
+        CacheKey snapshotKey = CacheKey.schedulePlanSnapshot(studyId);
+        
+        String version = cacheProvider.getObject(versionKey, String.class);
+        if (version == null) {
+            version = BridgeUtils.generateGuid();
+            cacheProvider.setObject(versionKey, version);
+        } else {
+            SchedulePlanSnapshot snapshot = localSnapshots.getIfPresent(studyId.getIdentifier());
+            if (snapshot != null && snapshot.getVersion().equals(version)) {
+                return snapshot;
+            }
+            snapshot = cacheProvider.getObject(snapshotKey, SchedulePlanSnapshot.class);
+            if (snapshot != null && snapshot.getVersion().equals(version)) {
+                // The study is not included in a plan's JSON
+                for (SchedulePlan plan : snapshot.getSchedulePlans()) {
+                    plan.setStudyKey(studyId.getIdentifier());
+                }
+                localSnapshots.put(studyId.getIdentifier(), snapshot);
+                return snapshot;
+            }
+        }
+        List<SchedulePlan> plans = schedulePlanDao.getSchedulePlans(clientInfo, studyId, false);
+        SchedulePlanSnapshot snapshot = new SchedulePlanSnapshot(version, plans);
+        cacheProvider.setObject(snapshotKey, snapshot, snapshotExpireInSeconds);
+        localSnapshots.put(studyId.getIdentifier(), snapshot);
+        return snapshot;
+    }
+    
+    /** Replace the version of the study's plans, so no node uses its current snapshot. */
+    private void invalidateSnapshots(StudyIdentifier studyId) {
+        cacheProvider.setObject(CacheKey.schedulePlanVersion(studyId), BridgeUtils.generateGuid());
+        localSnapshots.invalidate(studyId.getIdentifier());
     }
     
     /**
@@ -3,6 +3,7 @@ package org.sagebionetworks.bridge.services;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.sagebionetworks.bridge.BridgeConstants.API_MAXIMUM_PAGE_SIZE;
 import static org.sagebionetworks.bridge.BridgeConstants.API_MINIMUM_PAGE_SIZE;
@@ -19,22 +20,30 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
+
+import javax.annotation.Resource;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import org.joda.time.DateTime;
-import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.BridgeConstants;
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.ScheduledActivityDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.models.ClientInfo;
 import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.RangeTuple;
 import org.sagebionetworks.bridge.models.appconfig.AppConfig;
@@ -47,6 +56,7 @@ import org.sagebionetworks.bridge.models.schedules.ScheduledActivityStatus;
 import org.sagebionetworks.bridge.models.schedules.SchemaReference;
 import org.sagebionetworks.bridge.models.schedules.SurveyReference;
 import org.sagebionetworks.bridge.models.studies.Study;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.sagebionetworks.bridge.time.DateUtils;
 import org.sagebionetworks.bridge.validators.ScheduleContextValidator;
 import org.sagebionetworks.bridge.validators.Validate;
@@ -72,6 +82,8 @@ public class ScheduledActivityService {
     private static final String ENROLLMENT = "enrollment";
 
     private static final ScheduleContextValidator VALIDATOR = new ScheduleContextValidator();
+    
+    static final String CONFIG_KEY_PARALLEL_PLAN_THRESHOLD = "schedule.plan.parallel.threshold";
 
     private ScheduledActivityDao activityDao;
 
@@ -87,6 +99,12 @@ public class ScheduledActivityService {
     
     private AppConfigService appConfigService;
     
+    private ResolvedReferenceCache resolvedReferenceCache;
+    
+    private ForkJoinPool schedulePlanPool;
+    
+    private int parallelPlanThreshold;
+    
     @Autowired
     final void setScheduledActivityDao(ScheduledActivityDao activityDao) {
         this.activityDao = activityDao;
@@ -125,6 +143,23 @@ public class ScheduledActivityService {
     final void setAppConfigService(AppConfigService appConfigService) {
         this.appConfigService = appConfigService;
     }
+    
+    /** Shares resolved survey, schema and compound activity references between requests. */
+    @Autowired
+    final void setResolvedReferenceCache(ResolvedReferenceCache resolvedReferenceCache) {
+        this.resolvedReferenceCache = resolvedReferenceCache;
+    }
+    
+    @Resource(name = "schedulePlanPool")
+    final void setSchedulePlanPool(ForkJoinPool schedulePlanPool) {
+        this.schedulePlanPool = schedulePlanPool;
+    }
+    
+    /** Studies with at least this many schedule plans have their plans scheduled in parallel (0 disables this). */
+    @Autowired
+    final void setBridgeConfig(BridgeConfig config) {
+        this.parallelPlanThreshold = config.getPropertyAsInt(CONFIG_KEY_PARALLEL_PLAN_THRESHOLD);
+    }
 
     public ForwardCursorPagedResourceList<ScheduledActivity> getActivityHistory(String healthCode,
             String activityGuid, DateTime scheduledOnStart, DateTime scheduledOnEnd, String offsetKey,
@@ -256,7 +291,10 @@ public class ScheduledActivityService {
                 // activity guid concatenated with scheduled time. So when the scheduler regenerates the scheduled
                 // activity, it always has the same guid.
                 scheduledActivities.set(i, dbActivity);
-            } else if (activity.getStatus() != ScheduledActivityStatus.EXPIRED) {
+            } else if (activity.getStatus() != ScheduledActivityStatus.EXPIRED
+                    && (dbActivity == null || hasUpdatedSchedule(activity, dbActivity))) {
+                // The user hasn't interacted with the persisted activity, so it only needs to be rewritten if 
+                // regenerating it changed it.
                 saves.add(activity);
             }
         }
@@ -265,36 +303,17 @@ public class ScheduledActivityService {
     
     private Map<String, ScheduledActivity> retrieveAllPersistedActivitiesIntoMap(ScheduleContext context,
             List<ScheduledActivity> scheduledActivities) {
-        
-        Set<String> activityGuids = scheduledActivities.stream().map((activity) -> {
-            return activity.getGuid().split(":")[0];
-        }).collect(Collectors.toSet());
-        
-        Map<String,ScheduledActivity> dbMap = Maps.newHashMap();
         // IA-545: If a schedule has an identical activity but a new GUID (say if we change the schedule on the user), the user can 
         // lose existing activities. So during the time window the user is looking at, we will return any activities that exist.
-        for (String activityGuid : activityGuids) {
-            ForwardCursorPagedResourceList<ScheduledActivity> list = activityDao.getActivityHistoryV2(
-                    context.getCriteriaContext().getHealthCode(), activityGuid,
-                    context.getStartsOn(), context.getEndsOn(), null,
-                    API_MAXIMUM_PAGE_SIZE);
-            if (list != null) {
-                for(ScheduledActivity activity : list.getItems()) {
-                    dbMap.put(activity.getGuid(), activity);
-                }
-            }
-        }
-        // IA-587: When a one-time task falls outside the schedule window, it's not returned by the 
-        // query above, so it is recreated, and it loses its finished state. Load all remaining scheduled activities.
-        String healthCode = context.getCriteriaContext().getHealthCode();
-        for (ScheduledActivity activity : scheduledActivities) {
-            if (!dbMap.containsKey(activity.getGuid())) {
-                ScheduledActivity dbActivity = activityDao.getActivity(context.getStartsOn().getZone(), healthCode,
-                        activity.getGuid(), false);
-                if (dbActivity != null) {
-                    dbMap.put(dbActivity.getGuid(), dbActivity);    
-                }
-            }
+        // IA-587: When a one-time task falls outside the schedule window, it's not returned by the time window queries, 
+        // so it is recreated, and it loses its finished state. So all remaining scheduled activities are also loaded.
+        List<ScheduledActivity> dbActivities = activityDao.getPersistedActivities(
+                context.getCriteriaContext().getHealthCode(), context.getStartsOn(), context.getEndsOn(),
+                scheduledActivities);
+        
+        Map<String,ScheduledActivity> dbMap = Maps.newHashMap();
+        for (ScheduledActivity dbActivity : dbActivities) {
+            dbMap.put(dbActivity.getGuid(), dbActivity);
         }
         return dbMap;
     }
@@ -303,14 +322,8 @@ public class ScheduledActivityService {
         checkArgument(isNotBlank(healthCode));
         checkNotNull(scheduledActivities);
         
-        // Remove duplicates sent by the client because these lead to an error when persisting the records
-        // (BRIDGE-2350). Preserve the order the activities were submitted in the list, mostly because tests 
-        // expect that order to be preserved.
-        Set<String> activitiesAlreadySeen = new HashSet<>();
-        List<ScheduledActivity> activitiesToSave = new LinkedList<>();
-        
-        // According to the client team, the last activity is most likely to be correct, so iterate from 
-        // the last one
+        // Validate the submission before loading any of the persisted activities
+        Set<String> guids = new HashSet<>();
         for (int i=scheduledActivities.size()-1; i >= 0; i--) {
             ScheduledActivity schActivity = scheduledActivities.get(i);
             if (schActivity == null) {
@@ -323,19 +336,31 @@ public class ScheduledActivityService {
                 throw new BadRequestException("Client data too large ("+CLIENT_DATA_MAX_BYTES+" bytes limit) for task "
                         + schActivity.getGuid());
             }
-
-            // This isn't returned to the client, so the exact time zone used does not matter.
-            ScheduledActivity dbActivity = activityDao.getActivity(DateTimeZone.UTC, healthCode, schActivity.getGuid(), true);
-            String key = dbActivity.getHealthCode()+":"+dbActivity.getGuid();
-            if (activitiesAlreadySeen.contains(key)) {
-                ScheduledActivity previouslyAdded = activitiesToSave.stream().filter((sch) -> {
-                    return sch.getHealthCode().equals(dbActivity.getHealthCode()) && 
-                            sch.getGuid().equals(dbActivity.getGuid()); 
-                }).findFirst().get();
-                LOG.warn("Duplicate activities submitted to server, activity to persist: " + previouslyAdded + ", duplicate: " + dbActivity);
+            guids.add(schActivity.getGuid());
+        }
+        Map<String, ScheduledActivity> dbActivities = Maps.newHashMapWithExpectedSize(guids.size());
+        for (ScheduledActivity dbActivity : activityDao.getActivities(healthCode, guids)) {
+            dbActivities.put(dbActivity.getGuid(), dbActivity);
+        }
+        
+        // Remove duplicates sent by the client because these lead to an error when persisting the records
+        // (BRIDGE-2350). Preserve the order the activities were submitted in the list, mostly because tests 
+        // expect that order to be preserved.
+        Set<String> activitiesAlreadySeen = new HashSet<>();
+        List<ScheduledActivity> activitiesToSave = new LinkedList<>();
+        
+        // According to the client team, the last activity is most likely to be correct, so iterate from 
+        // the last one
+        for (int i=scheduledActivities.size()-1; i >= 0; i--) {
+            ScheduledActivity schActivity = scheduledActivities.get(i);
+            if (!activitiesAlreadySeen.add(schActivity.getGuid())) {
+                LOG.warn("Duplicate activities submitted to server, ignoring duplicate: " + schActivity);
                 continue;
             }
-            activitiesAlreadySeen.add(key);
+            ScheduledActivity dbActivity = dbActivities.get(schActivity.getGuid());
+            if (dbActivity == null) {
+                throw new EntityNotFoundException(ScheduledActivity.class);
+            }
             
             boolean addToSaves = false;
             if (hasUpdatedClientData(schActivity, dbActivity)) {
@@ -354,7 +379,6 @@ public class ScheduledActivityService {
             if (addToSaves) {
                 activitiesToSave.add(0, dbActivity);
             }
-            
         }
         activityDao.updateActivities(healthCode, activitiesToSave);
     }
@@ -383,6 +407,25 @@ public class ScheduledActivityService {
         return !Objects.equals(schNode, dbNode);
     }
 
+    /**
+     * If the scheduler generated an activity that differs from the persisted copy in any of the fields it sets 
+     * (e.g. because the schedule plan was edited, or a survey reference was resolved to a newer revision), the 
+     * persisted copy is out of date and should be replaced.
+     */
+    protected boolean hasUpdatedSchedule(ScheduledActivity activity, ScheduledActivity dbActivity) {
+        return !Objects.equals(activity.getActivity(), dbActivity.getActivity()) ||
+                !Objects.equals(toLocal(activity.getScheduledOn()), toLocal(dbActivity.getScheduledOn())) ||
+                !Objects.equals(toLocal(activity.getExpiresOn()), toLocal(dbActivity.getExpiresOn())) ||
+                !Objects.equals(activity.getSchedulePlanGuid(), dbActivity.getSchedulePlanGuid()) ||
+                !Objects.equals(activity.getReferentGuid(), dbActivity.getReferentGuid()) ||
+                activity.getPersistent() != dbActivity.getPersistent();
+    }
+
+    /** Scheduled times are persisted without a time zone, and the two activities may be in different zones. */
+    private LocalDateTime toLocal(DateTime dateTime) {
+        return (dateTime == null) ? null : dateTime.toLocalDateTime();
+    }
+
     private int byteLength(JsonNode node) {
         try {
             return (node == null) ? 0 : node.toString().getBytes("UTF-8").length;
@@ -416,21 +459,52 @@ public class ScheduledActivityService {
         Map<String, SchemaReference> schemaReferences = (appConfig == null) ? ImmutableMap.of()
                 : Maps.uniqueIndex(appConfig.getSchemaReferences(), SchemaReference::getId);
 
+        ClientInfo clientInfo = context.getCriteriaContext().getClientInfo();
+        StudyIdentifier studyId = context.getCriteriaContext().getStudyIdentifier();
         ReferenceResolver resolver = new ReferenceResolver(compoundActivityDefinitionService, schemaService,
-                surveyService, surveyReferences, schemaReferences, context.getCriteriaContext().getClientInfo(),
-                context.getCriteriaContext().getStudyIdentifier());
+                surveyService, surveyReferences, schemaReferences,
+                resolvedReferenceCache.getResolvedReferences(studyId, clientInfo), clientInfo, studyId);
         
-        for (SchedulePlan plan : plans) {
-            Schedule schedule = plan.getStrategy().getScheduleForUser(plan, context);
-            if (schedule != null) {
-                List<ScheduledActivity> activities = schedule.getScheduler().getScheduledActivities(plan, context);
-                for (ScheduledActivity schActivity : activities) {
-                    resolver.resolve(schActivity);
-                }
+        if (schedulePlanPool != null && parallelPlanThreshold > 0 && plans.size() >= parallelPlanThreshold) {
+            // The plans are independent of each other. Collecting the stream keeps each plan's activities in plan 
+            // order, so the result is the same as when the plans are scheduled one after another. The workers 
+            // use the caller's request context (for its metrics, among other things).
+            RequestContext requestContext = BridgeUtils.getRequestContext();
+            List<List<ScheduledActivity>> activitiesByPlan = schedulePlanPool.submit(() -> plans.parallelStream()
+                    .map(plan -> {
+                        BridgeUtils.setRequestContext(requestContext);
+                        try {
+                            return scheduleActivitiesForPlan(plan, context, resolver);
+                        } finally {
+                            BridgeUtils.setRequestContext(null);
+                        }
+                    })
+                    .collect(toList())).join();
+            for (List<ScheduledActivity> activities : activitiesByPlan) {
                 scheduledActivities.addAll(activities);
             }
+        } else {
+            for (SchedulePlan plan : plans) {
+                scheduledActivities.addAll(scheduleActivitiesForPlan(plan, context, resolver));
+            }
+        }
+        if (resolver.hasNewResolvedReferences()) {
+            resolvedReferenceCache.setResolvedReferences(studyId, clientInfo, resolver.getResolvedReferences());
         }
         return scheduledActivities;
     }
+    
+    private List<ScheduledActivity> scheduleActivitiesForPlan(SchedulePlan plan, ScheduleContext context,
+            ReferenceResolver resolver) {
+        Schedule schedule = plan.getStrategy().getScheduleForUser(plan, context);
+        if (schedule == null) {
+            return ImmutableList.of();
+        }
+        List<ScheduledActivity> activities = schedule.getScheduler().getScheduledActivities(plan, context);
+        for (ScheduledActivity schActivity : activities) {
+            resolver.resolve(schActivity);
+        }
+        return activities;
+    }
 
 }
@@ -5,6 +5,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
@@ -14,6 +15,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.validation.Validator;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.collect.Maps;
 
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.cache.CacheProvider;
@@ -174,7 +176,13 @@ public class SubpopulationService {
         List<Subpopulation> subpops = cacheProvider.getObject(subpopListKey, SURVEY_LIST_REF);
         if (subpops == null) {
             subpops = subpopDao.getSubpopulations(studyId, true, includeDeleted);
-            cacheProvider.setObject(subpopListKey, subpops);
+            // Cache the individual subpopulations as well, in the same round trip
+            Map<CacheKey, Object> objects = Maps.newHashMap();
+            objects.put(subpopListKey, subpops);
+            for (Subpopulation subpop : subpops) {
+                objects.put(CacheKey.subpop(subpop.getGuid(), studyId), subpop);
+            }
+            cacheProvider.setObjects(objects);
         }
         return subpops;
     }
@@ -198,6 +206,38 @@ public class SubpopulationService {
         return subpop;
     }
     
+    /**
+     * Get several specific subpopulations, reading those that are cached in one round trip to the cache.
+     * @param studyId
+     * @param subpopGuids
+     * @return map of subpopulations by their guids
+     * @throws EntityNotFoundException if any of the subpopulations does not exist
+     */
+    public Map<SubpopulationGuid, Subpopulation> getSubpopulations(StudyIdentifier studyId,
+            Set<SubpopulationGuid> subpopGuids) {
+        checkNotNull(studyId);
+        checkNotNull(subpopGuids);
+        
+        Map<SubpopulationGuid, CacheKey> subpopKeys = Maps.newHashMap();
+        for (SubpopulationGuid subpopGuid : subpopGuids) {
+            subpopKeys.put(subpopGuid, CacheKey.subpop(subpopGuid, studyId));
+        }
+        Map<CacheKey, Subpopulation> cached = cacheProvider.getObjects(subpopKeys.values(), Subpopulation.class);
+        
+        Map<SubpopulationGuid, Subpopulation> subpops = Maps.newHashMap();
+        Map<CacheKey, Subpopulation> loaded = Maps.newHashMap();
+        for (Map.Entry<SubpopulationGuid, CacheKey> entry : subpopKeys.entrySet()) {
+            Subpopulation subpop = cached.get(entry.getValue());
+            if (subpop == null) {
+                subpop = subpopDao.getSubpopulation(studyId, entry.getKey());
+                loaded.put(entry.getValue(), subpop);
+            }
+            subpops.put(entry.getKey(), subpop);
+        }
+        cacheProvider.setObjects(loaded);
+        return subpops;
+    }
+    
     /**
      * Get all subpopulations for a user that match the provided CriteriaContext information. 
      * Returns an empty list if no subpopulations match.
@@ -51,6 +51,7 @@ public class SurveyService {
     private SchedulePlanService schedulePlanService;
     private SharedModuleMetadataService sharedModuleMetadataService;
     private StudyService studyService;
+    private ResolvedReferenceCache resolvedReferenceCache;
 
     @Autowired
     final void setSurveyDao(SurveyDao surveyDao) {
@@ -77,6 +78,12 @@ public class SurveyService {
         this.studyService = studyService;
     }
     
+    /** Survey references resolved for scheduling are removed when the published versions of surveys change. */
+    @Autowired
+    public final void setResolvedReferenceCache(ResolvedReferenceCache resolvedReferenceCache) {
+        this.resolvedReferenceCache = resolvedReferenceCache;
+    }
+    
     public Survey getSurvey(StudyIdentifier studyIdentifier, GuidCreatedOnVersionHolder keys, boolean includeElements, boolean throwException) {
         Survey survey = surveyDao.getSurvey(studyIdentifier, keys, includeElements);
         if (!isInStudy(studyIdentifier, survey)) {
@@ -139,7 +146,10 @@ public class SurveyService {
             if (existing.isDeleted() && !survey.isDeleted()) {
                 existing = surveyDao.getSurvey(studyIdentifier, survey, true); // get all the children for the update
                 existing.setDeleted(false);
-                return surveyDao.updateSurvey(studyIdentifier, existing);
+                Survey undeleted = surveyDao.updateSurvey(studyIdentifier, existing);
+                // The most recently published version of the survey may have changed
+                resolvedReferenceCache.removeResolvedReferences(studyIdentifier);
+                return undeleted;
             } else {
                 throw new PublishedSurveyException(survey);
             }
@@ -170,7 +180,9 @@ public class SurveyService {
         }
         Validate.entityThrowingException(publishValidator, existing);
 
-        return surveyDao.publishSurvey(studyIdentifier, existing, newSchemaRev);
+        Survey published = surveyDao.publishSurvey(studyIdentifier, existing, newSchemaRev);
+        resolvedReferenceCache.removeResolvedReferences(studyIdentifier);
+        return published;
     }
 
     /**
@@ -206,6 +218,7 @@ public class SurveyService {
         verifySharedModuleExistence(keys);
 
         surveyDao.deleteSurvey(existing);
+        resolvedReferenceCache.removeResolvedReferences(studyIdentifier);
     }
 
     /**
@@ -231,6 +244,7 @@ public class SurveyService {
         }
         checkConstraintsBeforePhysicalDelete(studyIdentifier, keys);
         surveyDao.deleteSurveyPermanently(studyIdentifier, keys);
+        resolvedReferenceCache.removeResolvedReferences(studyIdentifier);
     }
 
     // Helper method to verify if there is any shared module related to specified survey
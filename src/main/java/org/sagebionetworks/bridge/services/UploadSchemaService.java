@@ -42,6 +42,7 @@ import org.sagebionetworks.bridge.validators.Validate;
 public class UploadSchemaService {
     private SharedModuleMetadataService sharedModuleMetadataService;
     private UploadSchemaDao uploadSchemaDao;
+    private ResolvedReferenceCache resolvedReferenceCache;
 
     /** DAO for upload schemas. This is configured by Spring. */
     @Autowired
@@ -54,6 +55,12 @@ public class UploadSchemaService {
         this.sharedModuleMetadataService = sharedModuleMetadataService;
     }
 
+    /** Schema references resolved for scheduling are removed when schema revisions change. */
+    @Autowired
+    public final void setResolvedReferenceCache(ResolvedReferenceCache resolvedReferenceCache) {
+        this.resolvedReferenceCache = resolvedReferenceCache;
+    }
+
     /**
      * Creates a schema revision using the new V4 semantics. The schema ID and revision will be taken from the
      * UploadSchema object. If the revision isn't specified, we'll get the latest schema rev for the schema ID and use
@@ -79,7 +86,9 @@ public class UploadSchemaService {
         Validate.entityThrowingException(UploadSchemaValidator.INSTANCE, schema);
 
         // call through to DAO
-        return uploadSchemaDao.createSchemaRevision(schema);
+        UploadSchema created = uploadSchemaDao.createSchemaRevision(schema);
+        resolvedReferenceCache.removeResolvedReferences(studyId);
+        return created;
     }
 
     /**
@@ -115,7 +124,9 @@ public class UploadSchemaService {
         Validate.entityThrowingException(UploadSchemaValidator.INSTANCE, schema);
 
         // call through to DAO
-        return uploadSchemaDao.createSchemaRevision(schema);
+        UploadSchema created = uploadSchemaDao.createSchemaRevision(schema);
+        resolvedReferenceCache.removeResolvedReferences(studyId);
+        return created;
     }
 
     /**
@@ -220,6 +231,7 @@ public class UploadSchemaService {
 
         List<UploadSchema> schemaList = getSchemaRevisionsForDelete(studyId, schemaId);
         uploadSchemaDao.deleteUploadSchemas(schemaList);
+        resolvedReferenceCache.removeResolvedReferences(studyId);
     }
 
     public void deleteUploadSchemaByIdPermanently(StudyIdentifier studyId, String schemaId) {
@@ -227,6 +239,7 @@ public class UploadSchemaService {
 
         List<UploadSchema> schemaList = getSchemaRevisionsForDelete(studyId, schemaId);
         uploadSchemaDao.deleteUploadSchemasPermanently(schemaList);
+        resolvedReferenceCache.removeResolvedReferences(studyId);
     }
 
     protected List<UploadSchema> getSchemaRevisionsForDelete(StudyIdentifier studyId, String schemaId) {
@@ -260,7 +273,8 @@ public class UploadSchemaService {
         if (schema == null || schema.isDeleted()) {
             throw new EntityNotFoundException(UploadSchema.class);
         }
-        uploadSchemaDao.deleteUploadSchemas(ImmutableList.of(schema));    
+        uploadSchemaDao.deleteUploadSchemas(ImmutableList.of(schema));
+        resolvedReferenceCache.removeResolvedReferences(studyId);
     }
     
     public void deleteUploadSchemaByIdAndRevisionPermanently(StudyIdentifier studyId, String schemaId, int rev) {
@@ -270,7 +284,8 @@ public class UploadSchemaService {
         if (schema == null) {
             throw new EntityNotFoundException(UploadSchema.class);
         }
-        uploadSchemaDao.deleteUploadSchemasPermanently(ImmutableList.of(schema));    
+        uploadSchemaDao.deleteUploadSchemasPermanently(ImmutableList.of(schema));
+        resolvedReferenceCache.removeResolvedReferences(studyId);
     }
 
     /** Returns all revisions of all schemas. */
@@ -513,7 +528,9 @@ public class UploadSchemaService {
         }
 
         // Call through to the DAO
-        return uploadSchemaDao.updateSchemaRevision(schemaToUpdate);
+        UploadSchema updated = uploadSchemaDao.updateSchemaRevision(schemaToUpdate);
+        resolvedReferenceCache.removeResolvedReferences(studyId);
+        return updated;
     }
 
     // Helper method to get a map of fields by name for an Upload Schema. Returns a TreeMap so our error messaging has
@@ -1,7 +1,10 @@
 package org.sagebionetworks.bridge.spring.controllers;
 
+import static org.sagebionetworks.bridge.BridgeConstants.API_DEFAULT_PAGE_SIZE;
+import static org.sagebionetworks.bridge.BridgeUtils.getIntOrDefault;
 import static org.sagebionetworks.bridge.Roles.SUPERADMIN;
 
+import java.util.Map;
 import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,8 +13,11 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import org.sagebionetworks.bridge.cache.CacheNamespaceStats;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.StatusMessage;
 import org.sagebionetworks.bridge.services.CacheAdminService;
 
@@ -34,6 +40,31 @@ public class CacheAdminController extends BaseController {
         return cacheAdminService.listItems();
     }
     
+    @GetMapping("keys")
+    public ForwardCursorPagedResourceList<String> listItemsPage(@RequestParam(required = false) String offsetKey,
+            @RequestParam(required = false) String pattern, @RequestParam(required = false) String pageSize) {
+        getAuthenticatedSession(SUPERADMIN);
+        
+        int pageSizeInt = getIntOrDefault(pageSize, API_DEFAULT_PAGE_SIZE);
+        return cacheAdminService.listItems(offsetKey, pattern, pageSizeInt);
+    }
+    
+    @GetMapping("stats")
+    public Map<String, CacheNamespaceStats> getCacheStats() {
+        getAuthenticatedSession(SUPERADMIN);
+        
+        return cacheAdminService.getCacheStats();
+    }
+    
+    @DeleteMapping
+    public StatusMessage removeItems(@RequestParam(required = false) String pattern) {
+        getAuthenticatedSession(SUPERADMIN);
+        
+        long removed = cacheAdminService.removeItems(pattern);
+        
+        return new StatusMessage(removed + " items removed from cache.");
+    }
+    
     @DeleteMapping("{cacheKey}")
     public StatusMessage removeItem(@PathVariable String cacheKey) throws Exception {
         getAuthenticatedSession(SUPERADMIN);
@@ -248,6 +248,15 @@ public class ParticipantController extends BaseController {
         return participantService.getPagedAccountSummaries(study, search);
     }
     
+    @PostMapping("/v4/participants/search")
+    public ForwardCursorPagedResourceList<AccountSummary> searchForAccountSummariesByCursor() throws Exception {
+        UserSession session = getAuthenticatedSession(RESEARCHER);
+        Study study = studyService.getStudy(session.getStudyIdentifier());
+        
+        AccountSummarySearch search = parseJson(AccountSummarySearch.class);
+        return participantService.getAccountSummariesByCursor(study, search);
+    }
+    
     @Deprecated
     @GetMapping("/v3/studies/{studyId}/participants")
     public JsonNode getParticipantsForWorker(@PathVariable String studyId,
@@ -271,6 +280,16 @@ public class ParticipantController extends BaseController {
         return participantService.getPagedAccountSummaries(study, search);
     }
 
+    @PostMapping("/v4/studies/{studyId}/participants/search")
+    public ForwardCursorPagedResourceList<AccountSummary> searchForAccountSummariesByCursorForWorker(
+            @PathVariable String studyId) throws Exception {
+        getAuthenticatedSession(WORKER);
+        Study study = studyService.getStudy(studyId);
+        
+        AccountSummarySearch search = parseJson(AccountSummarySearch.class);
+        return participantService.getAccountSummariesByCursor(study, search);
+    }
+
     @PostMapping("/v3/participants")
     @ResponseStatus(HttpStatus.CREATED)
     public IdentifierHolder createParticipant() throws Exception {
@@ -4,6 +4,7 @@ import static java.util.stream.Collectors.toCollection;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.sagebionetworks.bridge.BridgeConstants.BRIDGE_API_STATUS_HEADER;
+import static org.sagebionetworks.bridge.BridgeConstants.PRIMARY_READ_HEADER;
 import static org.sagebionetworks.bridge.BridgeConstants.WARN_NO_ACCEPT_LANGUAGE;
 import static org.sagebionetworks.bridge.BridgeConstants.WARN_NO_USER_AGENT;
 import static org.sagebionetworks.bridge.BridgeConstants.X_FORWARDED_FOR_HEADER;
@@ -91,7 +92,8 @@ public class RequestFilter implements Filter {
                 .withRequestId(requestId)
                 .withCallerIpAddress(parseIpAddress(getRemoteAddress(request)))
                 .withCallerClientInfo(getClientInfoFromUserAgentHeader(request, response))
-                .withCallerLanguages(getLanguagesFromAcceptLanguageHeader(request, response));
+                .withCallerLanguages(getLanguagesFromAcceptLanguageHeader(request, response))
+                .withPrimaryReadRequired(Boolean.parseBoolean(request.getHeader(PRIMARY_READ_HEADER)));
         setRequestContext(builder.build());
 
         req = new RequestIdWrapper(request, requestId);
@@ -267,3 +267,48 @@ CREATE INDEX `Accounts-SynapseUserId-Index` ON `Accounts`(`synapseUserId`);
 ALTER TABLE `AccountRoles`
 MODIFY COLUMN `role` enum('DEVELOPER','RESEARCHER','ADMIN','TEST_USERS','WORKER','SUPERADMIN') NOT NULL;
 
+-- changeset bridge:13
+
+CREATE INDEX `Accounts-StudyId-CreatedOn-Id-Index` ON `Accounts`(`studyId`,`createdOn`,`id`);
+
+-- changeset bridge:14
+
+-- Trigrams are stored with the study of the account, and keyed by study first, so a search only reads the index 
+-- entries of its own study. They use the collation of the email and phone columns, so a trigram matches the same 
+-- accented and unaccented characters that the LIKE on those columns does. HibernateAccountDao indexes new and 
+-- updated accounts, and the statements below index existing accounts.
+--
+-- Accounts written by servers without the index (during a rolling deploy) have missing or out-of-date trigrams. 
+-- Out-of-date trigrams only cost a LIKE evaluation, but missing trigrams hide the account from searches, so the two 
+-- INSERT IGNORE statements below should be run again once the deploy is complete. They only add missing rows.
+
+CREATE TABLE IF NOT EXISTS `AccountSearchTrigrams` (
+  `accountId` varchar(255) NOT NULL,
+  `studyId` varchar(255) NOT NULL,
+  `trigram` varchar(5) NOT NULL,
+  PRIMARY KEY (`studyId`,`trigram`,`accountId`),
+  KEY `AccountSearchTrigrams-AccountId-Index` (`accountId`),
+  CONSTRAINT `AccountSearchTrigrams-Id-Constraint` FOREIGN KEY (`accountId`) REFERENCES `Accounts` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_unicode_ci;
+
+INSERT IGNORE INTO `AccountSearchTrigrams` (`accountId`, `studyId`, `trigram`)
+SELECT acct.`id`, acct.`studyId`, CONCAT('e:', LOWER(SUBSTRING(acct.`email`, positions.i, 3))) FROM `Accounts` acct
+JOIN (
+  SELECT ones.d + tens.d*10 + hundreds.d*100 + 1 AS i FROM
+    (SELECT 0 AS d UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4
+      UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9) ones
+    CROSS JOIN (SELECT 0 AS d UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4
+      UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9) tens
+    CROSS JOIN (SELECT 0 AS d UNION ALL SELECT 1 UNION ALL SELECT 2) hundreds
+) positions ON positions.i <= CHAR_LENGTH(acct.`email`) - 2;
+
+INSERT IGNORE INTO `AccountSearchTrigrams` (`accountId`, `studyId`, `trigram`)
+SELECT acct.`id`, acct.`studyId`, CONCAT('p:', LOWER(SUBSTRING(acct.`phone`, positions.i, 3))) FROM `Accounts` acct
+JOIN (
+  SELECT ones.d + tens.d*10 + hundreds.d*100 + 1 AS i FROM
+    (SELECT 0 AS d UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4
+      UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9) ones
+    CROSS JOIN (SELECT 0 AS d UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4
+      UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9) tens
+    CROSS JOIN (SELECT 0 AS d UNION ALL SELECT 1 UNION ALL SELECT 2) hundreds
+) positions ON positions.i <= CHAR_LENGTH(acct.`phone`) - 2;
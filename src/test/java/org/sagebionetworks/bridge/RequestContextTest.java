@@ -72,6 +72,7 @@ public class RequestContextTest {
         assertNull(NULL_INSTANCE.getMetrics());
         assertTrue(NULL_INSTANCE.getCallerLanguages().isEmpty());
         assertEquals(NULL_INSTANCE.getCallerClientInfo(), UNKNOWN_CLIENT);
+        assertFalse(NULL_INSTANCE.isPrimaryReadRequired());
     }
 
     @Test
@@ -83,7 +84,8 @@ public class RequestContextTest {
         
         RequestContext context = new RequestContext.Builder().withRequestId(REQUEST_ID).withCallerStudyId(TEST_STUDY)
                 .withCallerSubstudies(SUBSTUDIES).withMetrics(metrics).withCallerRoles(ROLES).withCallerUserId(USER_ID)
-                .withCallerLanguages(LANGUAGES).withCallerClientInfo(clientInfo).build();
+                .withCallerLanguages(LANGUAGES).withCallerClientInfo(clientInfo).withPrimaryReadRequired(true)
+                .build();
 
         assertEquals(context.getId(), REQUEST_ID);
         assertEquals(context.getCallerStudyId(), TEST_STUDY_IDENTIFIER);
@@ -94,6 +96,7 @@ public class RequestContextTest {
         assertEquals(context.getCallerLanguages(), LANGUAGES);
         assertEquals(context.getCallerClientInfo(), clientInfo);
         assertEquals(context.getMetrics(), metrics);
+        assertTrue(context.isPrimaryReadRequired());
     }
     
     @Test
@@ -105,7 +108,8 @@ public class RequestContextTest {
         
         RequestContext context = new RequestContext.Builder().withRequestId(REQUEST_ID).withCallerStudyId(TEST_STUDY)
                 .withCallerSubstudies(SUBSTUDIES).withMetrics(metrics).withCallerRoles(ROLES).withCallerUserId(USER_ID)
-                .withCallerLanguages(LANGUAGES).withCallerClientInfo(clientInfo).build();        
+                .withCallerLanguages(LANGUAGES).withCallerClientInfo(clientInfo).withPrimaryReadRequired(true)
+                .build();        
         
         RequestContext copy = context.toBuilder().withRequestId("did-change-this").build();
         
@@ -118,6 +122,7 @@ public class RequestContextTest {
         assertEquals(copy.getCallerLanguages(), LANGUAGES);
         assertEquals(copy.getCallerClientInfo(), clientInfo);
         assertEquals(copy.getMetrics(), metrics);
+        assertTrue(copy.isPrimaryReadRequired());
     }
     
     @Test
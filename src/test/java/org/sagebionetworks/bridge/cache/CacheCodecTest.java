@@ -0,0 +1,98 @@
+package org.sagebionetworks.bridge.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
+import org.sagebionetworks.bridge.models.studies.Study;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class CacheCodecTest {
+
+    private static final StudyParticipant PARTICIPANT = new StudyParticipant.Builder().withFirstName("First")
+            .withLastName("Last").withEmail("email@email.com").withHealthCode("healthCode").build();
+
+    @Test
+    public void jsonRoundTrip() throws Exception {
+        CacheCodec codec = new CacheCodec(CacheCodec.Format.JSON, 1024);
+        Study study = TestUtils.getValidStudy(CacheCodecTest.class);
+
+        byte[] bytes = codec.encode(study);
+        assertEquals(bytes[0], (byte)'{');
+
+        Study decoded = codec.decode(bytes, Study.class);
+        assertEquals(decoded.getIdentifier(), study.getIdentifier());
+        assertEquals(decoded.getName(), study.getName());
+    }
+
+    @Test
+    public void smileRoundTrip() throws Exception {
+        CacheCodec codec = new CacheCodec(CacheCodec.Format.SMILE, Integer.MAX_VALUE);
+        Study study = TestUtils.getValidStudy(CacheCodecTest.class);
+
+        byte[] bytes = codec.encode(study);
+        assertEquals(bytes[0], CacheCodec.SMILE_FORMAT);
+
+        Study decoded = codec.decode(bytes, Study.class);
+        assertEquals(decoded.getIdentifier(), study.getIdentifier());
+        assertEquals(decoded.getName(), study.getName());
+    }
+
+    @Test
+    public void smileDeflatedAboveThreshold() throws Exception {
+        CacheCodec codec = new CacheCodec(CacheCodec.Format.SMILE, 0);
+        Study study = TestUtils.getValidStudy(CacheCodecTest.class);
+
+        byte[] bytes = codec.encode(study);
+        assertEquals(bytes[0], CacheCodec.DEFLATED_SMILE_FORMAT);
+        assertTrue(bytes.length < BridgeObjectMapper.get().writeValueAsBytes(study).length);
+
+        Study decoded = codec.decode(bytes, Study.class);
+        assertEquals(decoded.getIdentifier(), study.getIdentifier());
+        assertEquals(decoded.getName(), study.getName());
+    }
+
+    @Test
+    public void smileCodecReadsLegacyJson() throws Exception {
+        CacheCodec codec = new CacheCodec(CacheCodec.Format.SMILE, 1024);
+        byte[] json = "{\"firstName\":\"First\",\"lastName\":\"Last\"}".getBytes(UTF_8);
+
+        StudyParticipant decoded = codec.decode(json, StudyParticipant.class);
+        assertEquals(decoded.getFirstName(), "First");
+        assertEquals(decoded.getLastName(), "Last");
+    }
+
+    @Test
+    public void jsonCodecReadsSmile() throws Exception {
+        byte[] bytes = new CacheCodec(CacheCodec.Format.SMILE, 0).encode(PARTICIPANT);
+
+        StudyParticipant decoded = new CacheCodec(CacheCodec.Format.JSON, 0).decode(bytes,
+                StudyParticipant.class);
+        assertEquals(decoded.getEmail(), "email@email.com");
+    }
+
+    @Test
+    public void filterIsApplied() throws Exception {
+        for (CacheCodec.Format format : CacheCodec.Format.values()) {
+            CacheCodec codec = new CacheCodec(format, 1024);
+
+            byte[] bytes = codec.encode(PARTICIPANT, StudyParticipant.CACHE_FILTER);
+            JsonNode node = codec.decode(bytes, JsonNode.class);
+            assertEquals(node.get("email").textValue(), "email@email.com");
+            assertFalse(node.has("healthCode"));
+            assertTrue(node.has("encryptedHealthCode"));
+        }
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void nullFormatRejected() {
+        new CacheCodec(null, 1024);
+    }
+}
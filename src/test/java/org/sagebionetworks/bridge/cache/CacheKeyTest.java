@@ -7,6 +7,7 @@ import static org.testng.Assert.assertTrue;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.models.ClientInfo;
 import org.sagebionetworks.bridge.models.ThrottleRequestType;
 import org.sagebionetworks.bridge.models.accounts.SignIn;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
@@ -22,11 +23,28 @@ public class CacheKeyTest {
         EqualsVerifier.forClass(CacheKey.class).allFieldsShouldBeUsed().verify();
     }
     
+    @Test
+    public void namespaces() {
+        assertEquals(CacheKey.study("api").getNamespace(), "study");
+        assertEquals(CacheKey.subpopList(TestConstants.TEST_STUDY).getNamespace(), "SubpopulationList");
+        assertEquals(CacheKey.viewKey(SubpopulationGuid.class, "a", "b").getNamespace(), "view");
+        assertEquals(CacheKey.userIdToSession("userId").getNamespace(), "session");
+        assertEquals(CacheKey.tokenToUserId("token").getNamespace(), "session");
+        assertEquals(CacheKey.passwordResetForEmail("sptoken", "api").getNamespace(), "passwordReset");
+        assertEquals(CacheKey.passwordResetForPhone("sptoken", "api").getNamespace(), "passwordReset");
+        assertEquals(CacheKey.verificationToken("sptoken").getNamespace(), "verificationToken");
+    }
+    
     @Test(expectedExceptions = NullPointerException.class)
     public void nullsRejected() {
         CacheKey.appConfigList(null);
     }
     
+    @Test
+    public void activityEventMap() {
+        assertEquals(CacheKey.activityEventMap("healthCode").toString(), "healthCode:ActivityEventMap");
+    }
+    
     @Test
     public void reauthTokenLookupKey() {
         assertEquals(CacheKey.reauthTokenLookupKey("ABC", TestConstants.TEST_STUDY).toString(), "ABC:api:ReauthToken");
@@ -42,6 +60,25 @@ public class CacheKeyTest {
         assertEquals(CacheKey.appConfigList(TestConstants.TEST_STUDY).toString(), "api:AppConfigList");
     }
 
+    @Test
+    public void resolvedReferences() {
+        ClientInfo clientInfo = new ClientInfo.Builder().withOsName("iPhone OS").withAppVersion(25).build();
+        assertEquals(CacheKey.resolvedReferences(TestConstants.TEST_STUDY, clientInfo).toString(),
+                "iPhone OS:25:api:ResolvedReferences");
+    }
+    
+    @Test
+    public void resolvedReferencesUnknownClient() {
+        assertEquals(CacheKey.resolvedReferences(TestConstants.TEST_STUDY, ClientInfo.UNKNOWN_CLIENT).toString(),
+                "null:null:api:ResolvedReferences");
+    }
+    
+    @Test
+    public void resolvedReferencesList() {
+        assertEquals(CacheKey.resolvedReferencesList(TestConstants.TEST_STUDY).toString(),
+                "api:ResolvedReferencesList");
+    }
+
     @Test
     public void channelSignInToSessionToken() {
         assertEquals(CacheKey.channelSignInToSessionToken("ABC").toString(),
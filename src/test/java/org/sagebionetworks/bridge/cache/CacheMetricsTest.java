@@ -0,0 +1,112 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.models.Metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableList;
+
+public class CacheMetricsTest {
+
+    private static final CacheKey STUDY_KEY = CacheKey.study("api");
+    private static final CacheKey SESSION_KEY = CacheKey.userIdToSession("userId");
+
+    @AfterMethod
+    public void after() {
+        BridgeUtils.setRequestContext(null);
+    }
+
+    @Test
+    public void recordsByNamespace() {
+        CacheMetrics metrics = new CacheMetrics();
+        long start = System.nanoTime();
+        metrics.recordRead(STUDY_KEY, "value", 100, start);
+        metrics.recordRead(CacheKey.study("other"), null, 0, start);
+        metrics.recordWrite(STUDY_KEY, 200, start);
+        metrics.recordRead(SESSION_KEY, "value", 50, start);
+
+        Map<String, CacheNamespaceStats> stats = metrics.getStats();
+        assertEquals(stats.keySet(), ImmutableList.of("session", "study"));
+
+        CacheNamespaceStats study = stats.get("study");
+        assertEquals(study.getHits(), 1L);
+        assertEquals(study.getMisses(), 1L);
+        assertEquals(study.getHitRate(), 0.5);
+        assertEquals(study.getWrites(), 1L);
+        assertEquals(study.getBytesRead(), 100L);
+        assertEquals(study.getBytesWritten(), 200L);
+        long operations = study.getLatencyHistogram().values().stream().mapToLong(Long::longValue).sum();
+        assertEquals(operations, 3L);
+
+        CacheNamespaceStats session = stats.get("session");
+        assertEquals(session.getHits(), 1L);
+        assertEquals(session.getMisses(), 0L);
+        assertEquals(session.getHitRate(), 1.0);
+    }
+
+    @Test
+    public void latencyHistogram() {
+        CacheMetrics metrics = new CacheMetrics();
+        metrics.recordRead(STUDY_KEY, "value", 1, System.nanoTime());
+        // Started 30ms ago
+        metrics.recordRead(STUDY_KEY, "value", 1, System.nanoTime() - 30000000L);
+
+        Map<Long, Long> histogram = metrics.getStats().get("study").getLatencyHistogram();
+        assertEquals(histogram.size(), CacheMetrics.LATENCY_BUCKET_MILLIS.length + 1);
+        assertEquals(histogram.get(1L), Long.valueOf(1L));
+        assertEquals(histogram.get(50L), Long.valueOf(1L));
+        assertEquals(histogram.get(Long.MAX_VALUE), Long.valueOf(0L));
+        assertTrue(metrics.getStats().get("study").getTotalLatencyMicros() >= 30000L);
+    }
+
+    @Test
+    public void noReadsHasZeroHitRate() {
+        CacheMetrics metrics = new CacheMetrics();
+        metrics.recordWrite(STUDY_KEY, 10, System.nanoTime());
+
+        assertEquals(metrics.getStats().get("study").getHitRate(), 0.0);
+    }
+
+    @Test
+    public void reset() {
+        CacheMetrics metrics = new CacheMetrics();
+        metrics.recordWrite(STUDY_KEY, 10, System.nanoTime());
+        metrics.reset();
+
+        assertTrue(metrics.getStats().isEmpty());
+    }
+
+    @Test
+    public void recordsInRequestMetrics() {
+        Metrics requestMetrics = new Metrics("requestId");
+        BridgeUtils.setRequestContext(new RequestContext.Builder().withMetrics(requestMetrics).build());
+
+        CacheMetrics metrics = new CacheMetrics();
+        metrics.recordRead(STUDY_KEY, null, 0, System.nanoTime());
+        metrics.recordWrite(STUDY_KEY, 10, System.nanoTime());
+
+        JsonNode node = requestMetrics.getJson().get("cache").get("study");
+        assertEquals(node.get("misses").asLong(), 1L);
+        assertEquals(node.get("writes").asLong(), 1L);
+        assertEquals(node.get("bytes_written").asLong(), 10L);
+        assertFalse(node.has("hits"));
+    }
+
+    @Test
+    public void noRequestMetrics() {
+        CacheMetrics metrics = new CacheMetrics();
+        metrics.recordRead(STUDY_KEY, "value", 10, System.nanoTime());
+
+        assertEquals(metrics.getStats().get("study").getHits(), 1L);
+    }
+}
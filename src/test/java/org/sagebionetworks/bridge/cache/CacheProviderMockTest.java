@@ -1,23 +1,28 @@
 package org.sagebionetworks.bridge.cache;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyList;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.eq;
-import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +41,7 @@ import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.config.Environment;
 import org.sagebionetworks.bridge.crypto.AesGcmEncryptor;
 import org.sagebionetworks.bridge.crypto.Encryptor;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.RequestInfo;
 import org.sagebionetworks.bridge.models.accounts.ConsentStatus;
@@ -44,14 +50,23 @@ import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.studies.OAuthProvider;
 import org.sagebionetworks.bridge.models.studies.Study;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 import org.sagebionetworks.bridge.redis.JedisOps;
 import org.sagebionetworks.bridge.redis.JedisTransaction;
 
+import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -59,6 +74,8 @@ import com.google.common.collect.Sets;
 public class CacheProviderMockTest {
     private static final CacheKey CACHE_KEY = CacheKey.study("key");
     private static final Encryptor ENCRYPTOR = new AesGcmEncryptor(BridgeConfigFactory.getConfig().getProperty("bridge.healthcode.redis.key"));
+    private static final String ACTIVITY_EVENT_MAP_KEY = "healthCode:ActivityEventMap";
+    private static final String HEALTH_CODE = "healthCode";
     private static final String REQUEST_INFO_KEY = "userId:request-info";
     private static final String STUDY_ID = "studyId";
     private static final String STUDY_ID_KEY = "studyId:study";
@@ -67,6 +84,7 @@ public class CacheProviderMockTest {
     private static final String DECRYPTED_SESSION_TOKEN = "ccea2978-f5b9-4377-8194-f887a3e2a19b";
     private static final CacheKey TOKEN_TO_USER_ID = CacheKey.tokenToUserId(DECRYPTED_SESSION_TOKEN);
     private static final CacheKey USER_ID_TO_SESSION = CacheKey.userIdToSession(USER_ID);
+    private static final byte[] USER_ID_TO_SESSION_BYTES = USER_ID_TO_SESSION.toString().getBytes(UTF_8);
 
     private CacheProvider cacheProvider;
 
@@ -75,14 +93,32 @@ public class CacheProviderMockTest {
 
     @Mock
     private JedisOps jedisOps;
+    
+    @Mock
+    private JedisPool jedisPool;
+    
+    @Mock
+    private Jedis jedis;
+    
+    @Mock
+    private Transaction redisTransaction;
 
+    private RedisCircuitBreaker circuitBreaker;
+    
+    private LocalFallbackCache fallbackCache;
+    
     @Captor
     private ArgumentCaptor<String> stringCaptor;
+    
+    @Captor
+    private ArgumentCaptor<byte[]> byteCaptor;
 
     @Test
     public void addAndRemoveViewFromCacheProvider() throws Exception {
         final CacheProvider simpleCacheProvider = new CacheProvider();
         simpleCacheProvider.setJedisOps(getJedisOps());
+        simpleCacheProvider.setCircuitBreaker(new RedisCircuitBreaker(5, 5));
+        simpleCacheProvider.setFallbackCache(new LocalFallbackCache(60, 100, 60, 100));
 
         final Study study = TestUtils.getValidStudy(CacheProviderMockTest.class);
         study.setIdentifier("test");
@@ -114,13 +150,12 @@ public class CacheProviderMockTest {
         verify(jedisOps).sadd(CACHE_KEY.toString(), "member");
     }
 
+    private void mockSessionLookup(String json) {
+        when(jedis.eval(any(byte[].class), anyList(), anyList())).thenReturn(json == null ? null : json.getBytes(UTF_8));
+    }
+    
     private void assertSession(String json) {
-        JedisOps jedisOps = mock(JedisOps.class);
-        
-        when(jedisOps.get(TOKEN_TO_USER_ID.toString())).thenReturn(USER_ID);
-        when(jedisOps.get(USER_ID_TO_SESSION.toString())).thenReturn(json);
-        
-        cacheProvider.setJedisOps(jedisOps);
+        mockSessionLookup(json);
         
         UserSession session = cacheProvider.getUserSession(DECRYPTED_SESSION_TOKEN);
 
@@ -161,8 +196,18 @@ public class CacheProviderMockTest {
         when(jedisOps.getTransaction()).thenReturn(transaction);
         when(jedisOps.get(TOKEN_TO_USER_ID.toString())).thenReturn(USER_ID);
 
+        when(jedisPool.getResource()).thenReturn(jedis);
+        when(jedis.multi()).thenReturn(redisTransaction);
+        when(redisTransaction.exec()).thenReturn(Arrays.asList((Object)"OK", "OK"));
+
         cacheProvider = new CacheProvider();
         cacheProvider.setJedisOps(jedisOps);
+        cacheProvider.setJedisPool(jedisPool);
+        cacheProvider.setCacheCodec(new CacheCodec(CacheCodec.Format.JSON, 1024));
+        circuitBreaker = new RedisCircuitBreaker(2, 5);
+        cacheProvider.setCircuitBreaker(circuitBreaker);
+        fallbackCache = new LocalFallbackCache(60, 100, 60, 100);
+        cacheProvider.setFallbackCache(fallbackCache);
     }
 
     private UserSession createUserSession() {
@@ -274,6 +319,41 @@ public class CacheProviderMockTest {
         verify(jedisOps).get(CACHE_KEY.toString());
     }
     
+    @Test
+    public void getObjectRecordsMetrics() throws Exception {
+        when(jedisOps.get(CACHE_KEY.toString())).thenReturn("\"Test\"");
+        
+        cacheProvider.getObject(CACHE_KEY, String.class);
+        cacheProvider.getObject(CacheKey.study("missing"), String.class);
+        
+        CacheNamespaceStats stats = cacheProvider.getCacheMetrics().getStats().get(CACHE_KEY.getNamespace());
+        assertEquals(stats.getHits(), 1L);
+        assertEquals(stats.getMisses(), 1L);
+        assertEquals(stats.getBytesRead(), 6L);
+    }
+    
+    @Test
+    public void setObjectRecordsMetrics() throws Exception {
+        when(jedisOps.set(CACHE_KEY.toString(), "\"test\"")).thenReturn("OK");
+        
+        cacheProvider.setObject(CACHE_KEY, "test");
+        
+        CacheNamespaceStats stats = cacheProvider.getCacheMetrics().getStats().get(CACHE_KEY.getNamespace());
+        assertEquals(stats.getWrites(), 1L);
+        assertEquals(stats.getBytesWritten(), 6L);
+    }
+    
+    @Test
+    public void setObjectRecordsUtf8Bytes() throws Exception {
+        when(jedisOps.set(CACHE_KEY.toString(), "\"\u00e9t\u00e9\"")).thenReturn("OK");
+        
+        cacheProvider.setObject(CACHE_KEY, "\u00e9t\u00e9");
+        
+        // Five characters, but each \u00e9 is two bytes in UTF-8
+        CacheNamespaceStats stats = cacheProvider.getCacheMetrics().getStats().get(CACHE_KEY.getNamespace());
+        assertEquals(stats.getBytesWritten(), 7L);
+    }
+    
     @Test
     public void getObjectOfString() throws Exception {
         String ser = BridgeObjectMapper.get().writeValueAsString("Test");
@@ -337,7 +417,7 @@ public class CacheProviderMockTest {
         UserSession session = new UserSession();
         session.setSessionToken(DECRYPTED_SESSION_TOKEN);
         String ser = BridgeObjectMapper.get().writeValueAsString(session);
-        when(jedisOps.get(USER_ID_TO_SESSION.toString())).thenReturn(ser);
+        when(jedis.get(USER_ID_TO_SESSION_BYTES)).thenReturn(ser.getBytes(UTF_8));
         
         UserSession retrieved = cacheProvider.getUserSessionByUserId(USER_ID);
         assertEquals(retrieved.getSessionToken(), DECRYPTED_SESSION_TOKEN);
@@ -348,11 +428,12 @@ public class CacheProviderMockTest {
         UserSession session = new UserSession(new StudyParticipant.Builder().build());
         session.setSessionToken("notTheSessionTokenWereLookingFor");
         
-        when(jedisOps.get(USER_ID_TO_SESSION.toString()))
-                .thenReturn(BridgeObjectMapper.get().writeValueAsString(session));
+        mockSessionLookup(BridgeObjectMapper.get().writeValueAsString(session));
 
         UserSession retrieved = cacheProvider.getUserSession(DECRYPTED_SESSION_TOKEN);
         assertNull(retrieved);
+        // The stale token --> userId mapping is removed
+        verify(jedisOps).del(TOKEN_TO_USER_ID.toString());
     }
 
     @Test
@@ -360,17 +441,18 @@ public class CacheProviderMockTest {
         UserSession session = new UserSession(new StudyParticipant.Builder().build());
         session.setSessionToken(DECRYPTED_SESSION_TOKEN);
         
-        when(jedisOps.get(USER_ID_TO_SESSION.toString()))
-                .thenReturn(BridgeObjectMapper.get().writeValueAsString(session));
+        mockSessionLookup(BridgeObjectMapper.get().writeValueAsString(session));
 
         UserSession retrieved = cacheProvider.getUserSession(DECRYPTED_SESSION_TOKEN);
         assertEquals(retrieved.getSessionToken(), session.getSessionToken());
+        // One round trip, nothing through the two-step lookup
+        verify(jedisOps, never()).get(anyString());
     }
     
     @Test
     public void getUserSessionTokenNotFound() {
         // When nothing is mocked, the session token is not found
-        reset(jedisOps);
+        reset(jedis);
         
         UserSession retrieved = cacheProvider.getUserSession(DECRYPTED_SESSION_TOKEN);
         assertNull(retrieved);
@@ -378,7 +460,9 @@ public class CacheProviderMockTest {
     
     @Test
     public void getUserSessionUserHasNoSession() {
-        // When token --> userId mapping is mocked, but there's no session, return null
+        // When the script finds no session (token or session key is missing), return null
+        mockSessionLookup(null);
+        
         UserSession retrieved = cacheProvider.getUserSession(DECRYPTED_SESSION_TOKEN);
         assertNull(retrieved);
     }
@@ -447,6 +531,34 @@ public class CacheProviderMockTest {
         verify(transaction).exec();
     }
 
+    @Test
+    public void removeSetOfCacheKeysLeavesTombstones() {
+        doReturn(Sets.newHashSet("key1", "key2")).when(jedisOps).smembers(CACHE_KEY.toString());
+        
+        cacheProvider.removeSetOfCacheKeys(CACHE_KEY, 30);
+        verify(transaction).setex("key1", 30, CacheProvider.TOMBSTONE);
+        verify(transaction).setex("key2", 30, CacheProvider.TOMBSTONE);
+        verify(transaction, never()).del("key1");
+        verify(transaction).del(CACHE_KEY.toString());
+        verify(transaction).exec();
+    }
+    
+    @Test
+    public void setObjectIfAbsent() throws Exception {
+        String ser = BridgeObjectMapper.get().writeValueAsString("test");
+        when(jedis.set(CACHE_KEY.toString(), ser, "NX", "EX", 100)).thenReturn("OK");
+        
+        assertTrue(cacheProvider.setObjectIfAbsent(CACHE_KEY, "test", 100));
+    }
+    
+    @Test
+    public void setObjectIfAbsentWhenKeyExists() throws Exception {
+        String ser = BridgeObjectMapper.get().writeValueAsString("test");
+        when(jedis.set(CACHE_KEY.toString(), ser, "NX", "EX", 100)).thenReturn(null);
+        
+        assertFalse(cacheProvider.setObjectIfAbsent(CACHE_KEY, "test", 100));
+    }
+
     @Test
     public void setExpiration() {
         cacheProvider.setExpiration(CACHE_KEY, 100);
@@ -488,7 +600,7 @@ public class CacheProviderMockTest {
         CacheProvider mockCacheProvider = spy(cacheProvider);
         mockCacheProvider.getUserSessionByUserId(USER_ID);
         
-        verify(jedisOps).get("userId:session2:user");
+        verify(jedis).get("userId:session2:user".getBytes(UTF_8));
     }
     
     @Test
@@ -511,7 +623,7 @@ public class CacheProviderMockTest {
         UserSession session = createUserSession();
         String ser = BridgeObjectMapper.get().writeValueAsString(session);
 
-        when(jedisOps.get(USER_ID_TO_SESSION.toString())).thenReturn(ser);
+        when(jedis.get(USER_ID_TO_SESSION_BYTES)).thenReturn(ser.getBytes(UTF_8));
         
         cacheProvider.removeSessionByUserId(USER_ID);
         
@@ -525,9 +637,15 @@ public class CacheProviderMockTest {
         UserSession session = createUserSession();
         cacheProvider.setUserSession(session);
         
-        verify(transaction).setex(eq(TOKEN_TO_USER_ID.toString()), anyInt(), eq(USER_ID));
-        verify(transaction).setex(eq(USER_ID_TO_SESSION.toString()), anyInt(), anyString());
-        verify(transaction).exec();
+        verify(redisTransaction).setex(eq(TOKEN_TO_USER_ID.toString()), anyInt(), eq(USER_ID));
+        verify(redisTransaction).setex(eq(USER_ID_TO_SESSION_BYTES), anyInt(), byteCaptor.capture());
+        verify(redisTransaction).exec();
+        
+        // Stored without the plaintext health code
+        UserSession stored = BridgeObjectMapper.get().readValue(byteCaptor.getValue(), UserSession.class);
+        assertEquals(stored.getId(), USER_ID);
+        assertTrue(new String(byteCaptor.getValue(), UTF_8).contains("encryptedHealthCode"));
+        assertFalse(new String(byteCaptor.getValue(), UTF_8).contains("\"healthCode\""));
     }
     
     @Test
@@ -545,9 +663,9 @@ public class CacheProviderMockTest {
         } catch(Throwable e) {
             fail(e.getMessage());
         }
-        verify(transaction, never()).setex(eq(TOKEN_TO_USER_ID.toString()), anyInt(), anyString());
-        verify(transaction, never()).setex(eq(USER_ID_TO_SESSION.toString()), anyInt(), eq(DECRYPTED_SESSION_TOKEN));
-        verify(transaction, never()).exec();
+        verify(redisTransaction, never()).setex(eq(TOKEN_TO_USER_ID.toString()), anyInt(), anyString());
+        verify(redisTransaction, never()).setex(any(byte[].class), anyInt(), any(byte[].class));
+        verify(redisTransaction, never()).exec();
     }
     
     @Test
@@ -561,9 +679,9 @@ public class CacheProviderMockTest {
         } catch(Throwable e) {
             fail(e.getMessage());
         }
-        verify(transaction, never()).setex(eq(TOKEN_TO_USER_ID.toString()), anyInt(), anyString());
-        verify(transaction, never()).setex(eq(USER_ID_TO_SESSION.toString()), anyInt(), eq(DECRYPTED_SESSION_TOKEN));
-        verify(transaction, never()).exec();
+        verify(redisTransaction, never()).setex(eq(TOKEN_TO_USER_ID.toString()), anyInt(), anyString());
+        verify(redisTransaction, never()).setex(any(byte[].class), anyInt(), any(byte[].class));
+        verify(redisTransaction, never()).exec();
     }
     
     @Test
@@ -581,9 +699,9 @@ public class CacheProviderMockTest {
         } catch(Throwable e) {
             fail(e.getMessage());
         }
-        verify(transaction, never()).setex(eq(TOKEN_TO_USER_ID.toString()), anyInt(), anyString());
-        verify(transaction, never()).setex(eq(USER_ID_TO_SESSION.toString()), anyInt(), eq(DECRYPTED_SESSION_TOKEN));
-        verify(transaction, never()).exec();
+        verify(redisTransaction, never()).setex(eq(TOKEN_TO_USER_ID.toString()), anyInt(), anyString());
+        verify(redisTransaction, never()).setex(any(byte[].class), anyInt(), any(byte[].class));
+        verify(redisTransaction, never()).exec();
     }
 
     @Test
@@ -592,11 +710,12 @@ public class CacheProviderMockTest {
         study.setIdentifier(STUDY_ID);
         String ser = BridgeObjectMapper.get().writeValueAsString(study);
 
-        when(jedisOps.setex(any(), anyInt(), any())).thenReturn("OK");
+        when(jedis.setex(any(byte[].class), anyInt(), any(byte[].class))).thenReturn("OK");
 
         cacheProvider.setStudy(study);
 
-        verify(jedisOps).setex(STUDY_ID_KEY, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS, ser);
+        verify(jedis).setex(STUDY_ID_KEY.getBytes(UTF_8), BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS,
+                ser.getBytes(UTF_8));
     }
 
     @Test
@@ -605,13 +724,13 @@ public class CacheProviderMockTest {
         study.setIdentifier(STUDY_ID);
         String ser = BridgeObjectMapper.get().writeValueAsString(study);
 
-        when(jedisOps.get(STUDY_ID_KEY)).thenReturn(ser);
+        when(jedis.get(STUDY_ID_KEY.getBytes(UTF_8))).thenReturn(ser.getBytes(UTF_8));
 
         Study returned = cacheProvider.getStudy(STUDY_ID);
         assertEquals(study, returned);
 
-        verify(jedisOps).get(STUDY_ID_KEY);
-        verify(jedisOps).expire(STUDY_ID_KEY, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS);
+        verify(jedis).get(STUDY_ID_KEY.getBytes(UTF_8));
+        verify(jedis).expire(STUDY_ID_KEY, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS);
     }
 
     @Test
@@ -619,4 +738,527 @@ public class CacheProviderMockTest {
         cacheProvider.removeStudy(STUDY_ID);
         verify(jedisOps).del(STUDY_ID_KEY);
     }
+
+    @Test
+    public void setStudyPublishesInvalidation() throws Exception {
+        Study study = Study.create();
+        study.setIdentifier(STUDY_ID);
+        when(jedis.setex(any(byte[].class), anyInt(), any(byte[].class))).thenReturn("OK");
+        
+        cacheProvider.setStudy(study);
+        
+        verify(jedis).publish(CacheProvider.STUDY_INVALIDATION_CHANNEL, STUDY_ID);
+    }
+    
+    @Test
+    public void removeStudyPublishesInvalidation() {
+        cacheProvider.removeStudy(STUDY_ID);
+        
+        verify(jedis).publish(CacheProvider.STUDY_INVALIDATION_CHANNEL, STUDY_ID);
+    }
+    
+    @Test
+    public void getStudyUsesNearCache() throws Exception {
+        Study study = Study.create();
+        study.setIdentifier(STUDY_ID);
+        when(jedis.get(STUDY_ID_KEY.getBytes(UTF_8))).thenReturn(BridgeObjectMapper.get().writeValueAsBytes(study));
+        
+        Study first = cacheProvider.getStudy(STUDY_ID);
+        Study second = cacheProvider.getStudy(STUDY_ID);
+        assertEquals(first, study);
+        assertEquals(second, study);
+        
+        verify(jedis, times(1)).get(STUDY_ID_KEY.getBytes(UTF_8));
+        assertEquals(cacheProvider.getStudyNearCacheStats().hitCount(), 1L);
+        assertEquals(cacheProvider.getStudyNearCacheStats().missCount(), 1L);
+    }
+    
+    @Test
+    public void getStudyFromNearCacheReturnsNewInstance() throws Exception {
+        Study study = Study.create();
+        study.setIdentifier(STUDY_ID);
+        study.setName("name");
+        when(jedis.get(STUDY_ID_KEY.getBytes(UTF_8))).thenReturn(BridgeObjectMapper.get().writeValueAsBytes(study));
+        
+        Study first = cacheProvider.getStudy(STUDY_ID);
+        first.setName("changed by caller");
+        Study second = cacheProvider.getStudy(STUDY_ID);
+        assertNotSame(first, second);
+        assertEquals(second.getName(), "name");
+        
+        verify(jedis, times(1)).get(STUDY_ID_KEY.getBytes(UTF_8));
+        assertEquals(cacheProvider.getStudyNearCacheStats().hitCount(), 1L);
+        assertEquals(cacheProvider.getStudyNearCacheStats().missCount(), 1L);
+    }
+    
+    @Test
+    public void getStudyAfterInvalidationReadsRedis() throws Exception {
+        Study study = Study.create();
+        study.setIdentifier(STUDY_ID);
+        when(jedis.get(STUDY_ID_KEY.getBytes(UTF_8))).thenReturn(BridgeObjectMapper.get().writeValueAsBytes(study));
+        
+        cacheProvider.getStudy(STUDY_ID);
+        // As if received from another node
+        cacheProvider.invalidateLocalStudy(STUDY_ID);
+        cacheProvider.getStudy(STUDY_ID);
+        
+        verify(jedis, times(2)).get(STUDY_ID_KEY.getBytes(UTF_8));
+    }
+    
+    @Test
+    public void getStudyAfterSetStudyReadsRedis() throws Exception {
+        Study study = Study.create();
+        study.setIdentifier(STUDY_ID);
+        when(jedis.get(STUDY_ID_KEY.getBytes(UTF_8))).thenReturn(BridgeObjectMapper.get().writeValueAsBytes(study));
+        when(jedis.setex(any(byte[].class), anyInt(), any(byte[].class))).thenReturn("OK");
+        
+        cacheProvider.getStudy(STUDY_ID);
+        cacheProvider.setStudy(study);
+        cacheProvider.getStudy(STUDY_ID);
+        
+        verify(jedis, times(2)).get(STUDY_ID_KEY.getBytes(UTF_8));
+    }
+    
+    @Test
+    public void getStudyNotFoundIsNotCached() {
+        assertNull(cacheProvider.getStudy(STUDY_ID));
+        assertNull(cacheProvider.getStudy(STUDY_ID));
+        
+        verify(jedis, times(2)).get(STUDY_ID_KEY.getBytes(UTF_8));
+    }
+    
+    @Test
+    public void setActivityEventMapStoresTimestamps() {
+        DateTime enrollment = DateTime.parse("2019-01-01T10:00:00.000-07:00");
+        
+        cacheProvider.setActivityEventMap(HEALTH_CODE, ImmutableMap.of("enrollment", enrollment));
+        
+        // Only set if there is no value (or tombstone) for the user
+        verify(jedis).set(ACTIVITY_EVENT_MAP_KEY, "{\"enrollment\":" + enrollment.getMillis() + "}", "NX", "EX",
+                BridgeConstants.ACTIVITY_EVENT_MAP_EXPIRE_IN_SECONDS);
+    }
+    
+    @Test
+    public void getActivityEventMapTombstoneIsMiss() {
+        when(jedisOps.get(ACTIVITY_EVENT_MAP_KEY)).thenReturn(CacheProvider.TOMBSTONE);
+        
+        assertNull(cacheProvider.getActivityEventMap(HEALTH_CODE));
+        assertEquals(cacheProvider.getActivityEventNearCacheStats().hitCount(), 0L);
+    }
+    
+    @Test
+    public void getActivityEventMapUsesNearCache() {
+        DateTime enrollment = DateTime.parse("2019-01-01T17:00:00.000Z");
+        when(jedisOps.get(ACTIVITY_EVENT_MAP_KEY)).thenReturn("{\"enrollment\":" + enrollment.getMillis() + "}");
+        
+        Map<String, DateTime> first = cacheProvider.getActivityEventMap(HEALTH_CODE);
+        Map<String, DateTime> second = cacheProvider.getActivityEventMap(HEALTH_CODE);
+        assertEquals(first, ImmutableMap.of("enrollment", enrollment));
+        assertTrue(first == second);
+        
+        verify(jedisOps, times(1)).get(ACTIVITY_EVENT_MAP_KEY);
+        assertEquals(cacheProvider.getActivityEventNearCacheStats().hitCount(), 1L);
+    }
+    
+    @Test
+    public void getActivityEventMapAfterInvalidationReadsRedis() {
+        when(jedisOps.get(ACTIVITY_EVENT_MAP_KEY)).thenReturn("{}");
+        
+        cacheProvider.getActivityEventMap(HEALTH_CODE);
+        // As if received from another node
+        cacheProvider.invalidateLocalActivityEventMap(HEALTH_CODE);
+        cacheProvider.getActivityEventMap(HEALTH_CODE);
+        
+        verify(jedisOps, times(2)).get(ACTIVITY_EVENT_MAP_KEY);
+    }
+    
+    @Test
+    public void getActivityEventMapNotFound() {
+        assertNull(cacheProvider.getActivityEventMap(HEALTH_CODE));
+    }
+    
+    @Test
+    public void removeActivityEventMapPublishesInvalidation() {
+        when(jedisOps.get(ACTIVITY_EVENT_MAP_KEY)).thenReturn("{}");
+        cacheProvider.getActivityEventMap(HEALTH_CODE);
+        
+        cacheProvider.removeActivityEventMap(HEALTH_CODE);
+        cacheProvider.getActivityEventMap(HEALTH_CODE);
+        
+        verify(jedisOps).setex(ACTIVITY_EVENT_MAP_KEY, BridgeConstants.ACTIVITY_EVENT_MAP_TOMBSTONE_EXPIRE_IN_SECONDS,
+                CacheProvider.TOMBSTONE);
+        verify(jedis).publish(CacheProvider.ACTIVITY_EVENT_INVALIDATION_CHANNEL, HEALTH_CODE);
+        verify(jedisOps, times(2)).get(ACTIVITY_EVENT_MAP_KEY);
+    }
+    
+    @Test
+    public void getObjectWithExpiration() throws Exception {
+        Pipeline pipeline = mockPipeline("\"value\"", 100L);
+        
+        CachedObject<String> cached = cacheProvider.getObjectWithExpiration(CACHE_KEY, String.class);
+        assertEquals(cached.getObject(), "value");
+        assertEquals(cached.getSecondsToExpire(), 100L);
+        verify(pipeline).get(CACHE_KEY.toString());
+        verify(pipeline).ttl(CACHE_KEY.toString());
+        verify(pipeline).sync();
+        verify(jedis).close();
+    }
+    
+    @Test
+    public void getObjectWithExpirationNotFound() throws Exception {
+        mockPipeline(null, -2L);
+        
+        assertNull(cacheProvider.getObjectWithExpiration(CACHE_KEY, String.class));
+    }
+    
+    @Test
+    public void getObjects() throws Exception {
+        CacheKey otherKey = CacheKey.subpopList(new StudyIdentifierImpl("other"));
+        CacheKey missingKey = CacheKey.subpopList(new StudyIdentifierImpl("missing"));
+        OAuthProvider provider = new OAuthProvider("clientId", "secret", "endpoint", "callbackUrl", null);
+        when(jedis.mget(CACHE_KEY.toString(), otherKey.toString(), missingKey.toString())).thenReturn(
+                Lists.newArrayList(BridgeObjectMapper.get().writeValueAsString(provider), "\"value\"", null));
+        
+        Map<CacheKey, Class<?>> keysToClasses = new LinkedHashMap<>();
+        keysToClasses.put(CACHE_KEY, OAuthProvider.class);
+        keysToClasses.put(otherKey, String.class);
+        keysToClasses.put(missingKey, String.class);
+        
+        Map<CacheKey, Object> results = cacheProvider.getObjects(keysToClasses);
+        assertEquals(results, ImmutableMap.of(CACHE_KEY, provider, otherKey, "value"));
+        verify(jedis).close();
+    }
+    
+    @Test
+    public void getObjectsOfOneType() throws Exception {
+        CacheKey otherKey = CacheKey.subpopList(new StudyIdentifierImpl("other"));
+        when(jedis.mget(CACHE_KEY.toString(), otherKey.toString())).thenReturn(
+                Lists.newArrayList(null, "\"value\""));
+        
+        Map<CacheKey, String> results = cacheProvider.getObjects(ImmutableList.of(CACHE_KEY, otherKey),
+                String.class);
+        assertEquals(results, ImmutableMap.of(otherKey, "value"));
+    }
+    
+    @Test
+    public void getObjectsNoKeys() {
+        Map<CacheKey, String> results = cacheProvider.getObjects(ImmutableList.of(), String.class);
+        assertTrue(results.isEmpty());
+        verify(jedisPool, never()).getResource();
+    }
+    
+    @Test
+    public void setObjects() throws Exception {
+        CacheKey otherKey = CacheKey.subpopList(new StudyIdentifierImpl("other"));
+        when(jedis.mset(CACHE_KEY.toString(), "\"value1\"", otherKey.toString(), "\"value2\"")).thenReturn("OK");
+        
+        Map<CacheKey, Object> objects = new LinkedHashMap<>();
+        objects.put(CACHE_KEY, "value1");
+        objects.put(otherKey, "value2");
+        cacheProvider.setObjects(objects);
+        
+        verify(jedis).mset(CACHE_KEY.toString(), "\"value1\"", otherKey.toString(), "\"value2\"");
+        verify(jedis).close();
+    }
+    
+    @Test
+    public void setObjectsNoObjects() {
+        cacheProvider.setObjects(ImmutableMap.of());
+        verify(jedisPool, never()).getResource();
+    }
+    
+    @Test(expectedExceptions = BridgeServiceException.class)
+    public void setObjectsFails() {
+        when(jedis.mset(CACHE_KEY.toString(), "\"value\"")).thenReturn(null);
+        cacheProvider.setObjects(ImmutableMap.of(CACHE_KEY, "value"));
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Test
+    public void setObjectsWithExpire() {
+        CacheKey otherKey = CacheKey.subpopList(new StudyIdentifierImpl("other"));
+        Response<String> response = mock(Response.class);
+        when(response.get()).thenReturn("OK");
+        Pipeline pipeline = mock(Pipeline.class);
+        when(pipeline.setex(any(String.class), anyInt(), any(String.class))).thenReturn(response);
+        when(jedis.pipelined()).thenReturn(pipeline);
+        
+        cacheProvider.setObjects(ImmutableMap.of(CACHE_KEY, "value1", otherKey, "value2"), 100);
+        
+        verify(pipeline).setex(CACHE_KEY.toString(), 100, "\"value1\"");
+        verify(pipeline).setex(otherKey.toString(), 100, "\"value2\"");
+        verify(pipeline).sync();
+        verify(jedis).close();
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Test(expectedExceptions = BridgeServiceException.class)
+    public void setObjectsWithExpireFails() {
+        Response<String> response = mock(Response.class);
+        Pipeline pipeline = mock(Pipeline.class);
+        when(pipeline.setex(any(String.class), anyInt(), any(String.class))).thenReturn(response);
+        when(jedis.pipelined()).thenReturn(pipeline);
+        
+        cacheProvider.setObjects(ImmutableMap.of(CACHE_KEY, "value"), 100);
+    }
+    
+    @Test
+    public void getObjectIsMissWhenRedisUnavailable() {
+        when(jedisOps.get(CACHE_KEY.toString())).thenThrow(new JedisConnectionException("Connection refused"));
+        
+        // Below the threshold, the failure is not hidden from the caller
+        try {
+            cacheProvider.getObject(CACHE_KEY, String.class);
+            fail("Should have thrown exception");
+        } catch(BridgeServiceException e) {
+        }
+        assertFalse(circuitBreaker.isOpen());
+        
+        // The caller loads the object from its DAO
+        assertNull(cacheProvider.getObject(CACHE_KEY, String.class));
+        assertTrue(circuitBreaker.isOpen());
+        
+        // Redis is no longer called
+        assertNull(cacheProvider.getObject(CACHE_KEY, String.class));
+        verify(jedisOps, times(2)).get(CACHE_KEY.toString());
+    }
+    
+    @Test(expectedExceptions = BridgeServiceException.class)
+    public void getObjectRedisErrorIsNotUnavailability() {
+        when(jedisOps.get(CACHE_KEY.toString())).thenThrow(new JedisDataException("WRONGTYPE"));
+        
+        cacheProvider.getObject(CACHE_KEY, String.class);
+    }
+    
+    @Test
+    public void objectsHeldLocallyWhileRedisUnavailable() {
+        openCircuit();
+        
+        cacheProvider.setObject(CACHE_KEY, "value", 100);
+        cacheProvider.setObjects(ImmutableMap.of(CacheKey.study("other"), "otherValue"));
+        
+        assertEquals(cacheProvider.getObject(CACHE_KEY, String.class), "value");
+        assertEquals(cacheProvider.getObjectWithExpiration(CACHE_KEY, String.class).getObject(), "value");
+        assertEquals(cacheProvider.getObjects(ImmutableList.of(CACHE_KEY, CacheKey.study("other")), String.class),
+                ImmutableMap.of(CACHE_KEY, "value", CacheKey.study("other"), "otherValue"));
+        assertEquals(fallbackCache.getStaleKeys(), ImmutableSet.of(CACHE_KEY.toString(), "other:study"));
+        
+        cacheProvider.removeObject(CACHE_KEY);
+        assertNull(cacheProvider.getObject(CACHE_KEY, String.class));
+        
+        verify(jedisOps, never()).setex(anyString(), anyInt(), anyString());
+        verify(jedisPool, never()).getResource();
+    }
+    
+    @Test
+    public void studyHeldLocallyWhileRedisUnavailable() throws Exception {
+        openCircuit();
+        Study study = TestUtils.getValidStudy(CacheProviderMockTest.class);
+        study.setIdentifier(STUDY_ID);
+        
+        cacheProvider.setStudy(study);
+        // Not cached in the near cache, so this is from the fallback cache
+        assertEquals(cacheProvider.getStudy(STUDY_ID).getName(), study.getName());
+        verify(jedisPool, never()).getResource();
+    }
+    
+    @Test
+    public void sessionsServedLocallyWhileRedisUnavailable() throws Exception {
+        UserSession session = new UserSession(new StudyParticipant.Builder().withId(USER_ID).build());
+        session.setSessionToken(DECRYPTED_SESSION_TOKEN);
+        cacheProvider.setUserSession(session);
+        openCircuit();
+        
+        assertEquals(cacheProvider.getUserSession(DECRYPTED_SESSION_TOKEN).getId(), USER_ID);
+        assertEquals(cacheProvider.getUserSessionByUserId(USER_ID).getSessionToken(), DECRYPTED_SESSION_TOKEN);
+        
+        cacheProvider.removeSession(session);
+        assertNull(cacheProvider.getUserSession(DECRYPTED_SESSION_TOKEN));
+        assertNull(cacheProvider.getUserSessionByUserId(USER_ID));
+        assertEquals(fallbackCache.getStaleKeys(), ImmutableSet.of(TOKEN_TO_USER_ID.toString(), 
+                CacheKey.userIdToSession(USER_ID).toString()));
+        verify(jedisOps, never()).getTransaction();
+    }
+    
+    @Test
+    public void addToSetSkippedWhileRedisUnavailable() {
+        openCircuit();
+        
+        cacheProvider.addCacheKeyToSet(CACHE_KEY, "member");
+        
+        verify(jedisOps, never()).sadd(anyString(), anyString());
+    }
+    
+    @Test
+    public void probeClosesCircuitWhenRedisAvailable() {
+        openCircuit();
+        cacheProvider.setObject(CACHE_KEY, "value");
+        
+        cacheProvider.probeRedis();
+        
+        verify(jedis).ping();
+        verify(jedis).del(new String[] { CACHE_KEY.toString() });
+        assertFalse(circuitBreaker.isOpen());
+        assertTrue(fallbackCache.getStaleKeys().isEmpty());
+        assertNull(fallbackCache.getObject(CACHE_KEY.toString()));
+    }
+    
+    @Test
+    public void probeWritesSessionsWrittenWhileRedisUnavailable() {
+        openCircuit();
+        UserSession session = new UserSession(new StudyParticipant.Builder().withId(USER_ID).build());
+        session.setSessionToken(DECRYPTED_SESSION_TOKEN);
+        cacheProvider.setUserSession(session);
+        verify(jedis, never()).multi();
+        assertTrue(fallbackCache.getStaleKeys().isEmpty());
+        
+        cacheProvider.probeRedis();
+        
+        // The user is still signed in once Redis is available
+        verify(redisTransaction).setex(eq(TOKEN_TO_USER_ID.toString()), anyInt(), eq(USER_ID));
+        verify(redisTransaction).setex(eq(USER_ID_TO_SESSION_BYTES), anyInt(), any(byte[].class));
+        verify(redisTransaction).exec();
+        verify(jedis, never()).del(TOKEN_TO_USER_ID.toString(), USER_ID_TO_SESSION.toString());
+        assertTrue(fallbackCache.getStaleSessions().isEmpty());
+        assertFalse(circuitBreaker.isOpen());
+    }
+    
+    @Test
+    public void probeDeletesSessionsRemovedWhileRedisUnavailable() {
+        openCircuit();
+        UserSession session = new UserSession(new StudyParticipant.Builder().withId(USER_ID).build());
+        session.setSessionToken(DECRYPTED_SESSION_TOKEN);
+        cacheProvider.setUserSession(session);
+        cacheProvider.removeSession(session);
+        
+        cacheProvider.probeRedis();
+        
+        verify(jedis, never()).multi();
+        verify(jedis).del(new String[] { TOKEN_TO_USER_ID.toString(), USER_ID_TO_SESSION.toString() });
+        assertTrue(fallbackCache.getStaleSessions().isEmpty());
+    }
+    
+    @Test
+    public void probeDeletesSessionsEvictedWhileRedisUnavailable() {
+        openCircuit();
+        UserSession session = new UserSession(new StudyParticipant.Builder().withId(USER_ID).build());
+        session.setSessionToken(DECRYPTED_SESSION_TOKEN);
+        cacheProvider.setUserSession(session);
+        fallbackCache.removeSession(DECRYPTED_SESSION_TOKEN, USER_ID);
+        
+        cacheProvider.probeRedis();
+        
+        verify(jedis, never()).multi();
+        verify(jedis).del(TOKEN_TO_USER_ID.toString(), USER_ID_TO_SESSION.toString());
+    }
+    
+    @Test
+    public void probeLeavesCircuitOpenWhileRedisUnavailable() {
+        openCircuit();
+        cacheProvider.setObject(CACHE_KEY, "value");
+        when(jedis.ping()).thenThrow(new JedisConnectionException("Connection refused"));
+        
+        cacheProvider.probeRedis();
+        
+        assertTrue(circuitBreaker.isOpen());
+        assertEquals(fallbackCache.getStaleKeys(), ImmutableSet.of(CACHE_KEY.toString()));
+        assertEquals(cacheProvider.getObject(CACHE_KEY, String.class), "value");
+    }
+    
+    @Test
+    public void removeSetOfCacheKeysWhileRedisUnavailable() {
+        CacheKey setKey = CacheKey.resolvedReferencesList(new StudyIdentifierImpl(STUDY_ID));
+        openCircuit();
+        cacheProvider.addCacheKeyToSet(setKey, CACHE_KEY.toString());
+        cacheProvider.setObject(CACHE_KEY, "value");
+        
+        cacheProvider.removeSetOfCacheKeys(setKey);
+        
+        assertNull(cacheProvider.getObject(CACHE_KEY, String.class));
+        assertEquals(fallbackCache.getStaleSetKeys(), ImmutableSet.of(setKey.toString()));
+        verify(jedisOps, never()).smembers(anyString());
+        
+        // Once Redis is available, the members cached there before it failed are deleted
+        when(jedis.smembers(setKey.toString())).thenReturn(ImmutableSet.of("member"));
+        cacheProvider.probeRedis();
+        
+        verify(jedis).del(new String[] { "member" });
+        verify(jedis).del(setKey.toString());
+        assertTrue(fallbackCache.getStaleSetKeys().isEmpty());
+        assertFalse(circuitBreaker.isOpen());
+    }
+    
+    @Test
+    public void removeSessionFailsBelowThreshold() {
+        UserSession session = new UserSession(new StudyParticipant.Builder().withId(USER_ID).build());
+        session.setSessionToken(DECRYPTED_SESSION_TOKEN);
+        when(jedisOps.getTransaction()).thenThrow(new JedisConnectionException("Connection refused"));
+        
+        try {
+            cacheProvider.removeSession(session);
+            fail("Should have thrown exception");
+        } catch(BridgeServiceException e) {
+        }
+        assertFalse(circuitBreaker.isOpen());
+        assertTrue(fallbackCache.getStaleKeys().isEmpty());
+    }
+    
+    @Test
+    public void changesFailWhenTooManyKeysAreStale() {
+        fallbackCache = new LocalFallbackCache(60, 100, 60, 1);
+        cacheProvider.setFallbackCache(fallbackCache);
+        openCircuit();
+        
+        cacheProvider.setObject(CACHE_KEY, "value");
+        // The same key can be changed again
+        cacheProvider.setObject(CACHE_KEY, "value2");
+        try {
+            cacheProvider.setObject(CacheKey.study("other"), "otherValue");
+            fail("Should have thrown exception");
+        } catch(BridgeServiceException e) {
+        }
+        assertNull(cacheProvider.getObject(CacheKey.study("other"), String.class));
+        assertEquals(fallbackCache.getStaleKeys(), ImmutableSet.of(CACHE_KEY.toString()));
+    }
+    
+    @Test
+    public void probeDeletesStaleKeysWhenCircuitClosed() {
+        openCircuit();
+        cacheProvider.setObject(CACHE_KEY, "value");
+        // As if another request closed the circuit after this change was made
+        circuitBreaker.close();
+        
+        cacheProvider.probeRedis();
+        
+        verify(jedis).del(new String[] { CACHE_KEY.toString() });
+        assertTrue(fallbackCache.getStaleKeys().isEmpty());
+    }
+    
+    @Test
+    public void probeDoesNothingWhenCircuitClosed() {
+        cacheProvider.probeRedis();
+        
+        verify(jedisPool, never()).getResource();
+    }
+    
+    private void openCircuit() {
+        JedisConnectionException e = new JedisConnectionException("Connection refused");
+        circuitBreaker.recordFailure(e);
+        circuitBreaker.recordFailure(e);
+        assertTrue(circuitBreaker.isOpen());
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Pipeline mockPipeline(String value, Long ttl) {
+        Response<String> valueResponse = mock(Response.class);
+        when(valueResponse.get()).thenReturn(value);
+        Response<Long> ttlResponse = mock(Response.class);
+        when(ttlResponse.get()).thenReturn(ttl);
+        
+        Pipeline pipeline = mock(Pipeline.class);
+        when(pipeline.get(CACHE_KEY.toString())).thenReturn(valueResponse);
+        when(pipeline.ttl(CACHE_KEY.toString())).thenReturn(ttlResponse);
+        when(jedis.pipelined()).thenReturn(pipeline);
+        return pipeline;
+    }
 }
@@ -0,0 +1,78 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+public class RedisCircuitBreakerTest {
+
+    private static final JedisConnectionException CONNECTION_EXCEPTION = new JedisConnectionException("Refused");
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(3, 5);
+
+        // Below the threshold, callers do not fall back to local data
+        assertFalse(breaker.recordFailure(CONNECTION_EXCEPTION));
+        assertFalse(breaker.recordFailure(CONNECTION_EXCEPTION));
+        assertFalse(breaker.isOpen());
+
+        assertTrue(breaker.recordFailure(CONNECTION_EXCEPTION));
+        assertTrue(breaker.isOpen());
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(2, 5);
+
+        breaker.recordFailure(CONNECTION_EXCEPTION);
+        breaker.recordSuccess();
+        breaker.recordFailure(CONNECTION_EXCEPTION);
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void otherFailuresDoNotCount() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(1, 5);
+
+        assertFalse(breaker.recordFailure(new JedisDataException("WRONGTYPE")));
+        assertFalse(breaker.recordFailure(new IllegalStateException()));
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void wrappedConnectionFailureCounts() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(1, 5);
+
+        assertTrue(breaker.recordFailure(new BridgeServiceException(CONNECTION_EXCEPTION)));
+        assertTrue(breaker.isOpen());
+    }
+
+    @Test
+    public void failuresWhileOpenFallBack() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(1, 5);
+        breaker.recordFailure(CONNECTION_EXCEPTION);
+
+        assertTrue(breaker.recordFailure(CONNECTION_EXCEPTION));
+    }
+
+    @Test
+    public void close() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(1, 5);
+        breaker.recordFailure(CONNECTION_EXCEPTION);
+
+        breaker.close();
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void thresholdMustBePositive() {
+        new RedisCircuitBreaker(0, 5);
+    }
+}
@@ -0,0 +1,163 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+import org.sagebionetworks.bridge.models.studies.Study;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import com.google.common.collect.ImmutableList;
+
+public class RedisDistributedLockDaoTest {
+
+    private static final String LOCK_KEY = CacheKey.lock("id", Study.class).toString();
+
+    @Mock
+    private JedisPool mockJedisPool;
+
+    @Mock
+    private Jedis mockJedis;
+
+    private RedisCircuitBreaker circuitBreaker;
+
+    private RedisDistributedLockDao dao;
+
+    @BeforeMethod
+    public void before() {
+        MockitoAnnotations.initMocks(this);
+        when(mockJedisPool.getResource()).thenReturn(mockJedis);
+
+        dao = new RedisDistributedLockDao();
+        dao.setJedisPool(mockJedisPool);
+        circuitBreaker = new RedisCircuitBreaker(2, 5);
+        dao.setCircuitBreaker(circuitBreaker);
+    }
+
+    @Test
+    public void acquireLock() {
+        when(mockJedis.set(eq(LOCK_KEY), anyString(), eq("NX"), eq("EX"), eq(30))).thenReturn("OK");
+
+        String lock = dao.acquireLock(Study.class, "id", 30);
+        assertNotNull(lock);
+        verify(mockJedis).set(LOCK_KEY, lock, "NX", "EX", 30);
+        verify(mockJedis).close();
+    }
+
+    @Test
+    public void acquireLockWithDefaultExpiration() {
+        when(mockJedis.set(eq(LOCK_KEY), anyString(), eq("NX"), eq("EX"),
+                eq(RedisDistributedLockDao.DEFAULT_LOCK_EXPIRE_IN_SECONDS))).thenReturn("OK");
+
+        assertNotNull(dao.acquireLock(Study.class, "id"));
+    }
+
+    @Test(expectedExceptions = ConcurrentModificationException.class)
+    public void acquireLockAlreadyHeld() {
+        // Redis returns nil when NX is set and the key exists
+        dao.acquireLock(Study.class, "id", 30);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void acquireLockRequiresExpiration() {
+        dao.acquireLock(Study.class, "id", 0);
+    }
+
+    @Test
+    public void releaseLock() {
+        when(mockJedis.eval(RedisDistributedLockDao.RELEASE_LOCK_SCRIPT, ImmutableList.of(LOCK_KEY),
+                ImmutableList.of("lock"))).thenReturn(1L);
+
+        assertTrue(dao.releaseLock(Study.class, "id", "lock"));
+        verify(mockJedis).close();
+    }
+
+    @Test
+    public void releaseLockNotHeld() {
+        when(mockJedis.eval(eq(RedisDistributedLockDao.RELEASE_LOCK_SCRIPT), anyList(), anyList())).thenReturn(0L);
+
+        assertFalse(dao.releaseLock(Study.class, "id", "lock"));
+    }
+
+    @Test
+    public void acquireLockFailsBelowThreshold() {
+        when(mockJedisPool.getResource()).thenThrow(new JedisConnectionException("Connection refused"));
+
+        try {
+            dao.acquireLock(Study.class, "id", 30);
+            fail("Should have thrown exception");
+        } catch(JedisConnectionException e) {
+        }
+        assertFalse(circuitBreaker.isOpen());
+    }
+
+    @Test(expectedExceptions = ServiceUnavailableException.class)
+    public void acquireLockWhenFailureOpensCircuit() {
+        circuitBreaker.recordFailure(new JedisConnectionException("Connection refused"));
+        when(mockJedisPool.getResource()).thenThrow(new JedisConnectionException("Connection refused"));
+
+        dao.acquireLock(Study.class, "id", 30);
+    }
+
+    @Test
+    public void acquireLockWhileCircuitOpen() {
+        openCircuit();
+
+        try {
+            dao.acquireLock(Study.class, "id", 30);
+            fail("Should have thrown exception");
+        } catch(ServiceUnavailableException e) {
+        }
+        verify(mockJedisPool, never()).getResource();
+    }
+
+    @Test
+    public void releaseLockWhileCircuitOpen() {
+        openCircuit();
+
+        assertFalse(dao.releaseLock(Study.class, "id", "lock"));
+        verify(mockJedisPool, never()).getResource();
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        circuitBreaker.recordFailure(new JedisConnectionException("Connection refused"));
+        when(mockJedis.set(eq(LOCK_KEY), anyString(), eq("NX"), eq("EX"), eq(30))).thenReturn("OK");
+        dao.acquireLock(Study.class, "id", 30);
+
+        // One more failure does not open the circuit
+        circuitBreaker.recordFailure(new JedisConnectionException("Connection refused"));
+        assertFalse(circuitBreaker.isOpen());
+    }
+
+    private void openCircuit() {
+        JedisConnectionException e = new JedisConnectionException("Connection refused");
+        circuitBreaker.recordFailure(e);
+        circuitBreaker.recordFailure(e);
+        assertTrue(circuitBreaker.isOpen());
+    }
+
+    @Test
+    public void lockKeyIsPublic() {
+        assertEquals(LOCK_KEY, "id:" + Study.class.getCanonicalName() + ":lock");
+        assertTrue(CacheKey.isPublic(LOCK_KEY));
+    }
+}
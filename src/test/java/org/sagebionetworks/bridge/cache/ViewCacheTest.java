@@ -1,21 +1,42 @@
 package org.sagebionetworks.bridge.cache;
 
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.BridgeConstants;
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.TestUtils;
 import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.dao.DistributedLockDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoStudy;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.surveys.Survey;
@@ -24,7 +45,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ser.FilterProvider;
 import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class ViewCacheTest {
     
@@ -167,6 +190,302 @@ public class ViewCacheTest {
         verify(provider).setObject(cacheKey, mapper.writeValueAsString(survey), 1000);
     }
     
+    @Test
+    public void concurrentMissesCallSupplierOnce() throws Exception {
+        ViewCache cache = new ViewCache();
+        cache.setObjectMapper(BridgeObjectMapper.get());
+        cache.setCachePeriod(BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS);
+        
+        CacheKey cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
+        CountDownLatch missed = new CountDownLatch(4);
+        CacheProvider provider = mock(CacheProvider.class);
+        when(provider.getObject(cacheKey, String.class)).thenAnswer(invocation -> {
+            missed.countDown();
+            return null;
+        });
+        cache.setCacheProvider(provider);
+        
+        AtomicInteger supplierCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<Study> supplier = () -> {
+            supplierCalls.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return study;
+        };
+        
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = Lists.newArrayList();
+            for (int i=0; i < 4; i++) {
+                results.add(executor.submit(() -> cache.getView(cacheKey, supplier)));
+            }
+            // Let every caller miss the cache and queue up behind the first before the view is built
+            missed.await();
+            Thread.sleep(200);
+            release.countDown();
+            
+            String expectedJson = mapper.writeValueAsString(study);
+            for (Future<String> result : results) {
+                assertEquals(result.get(), expectedJson);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(supplierCalls.get(), 1);
+        verify(provider, times(1)).setObject(eq(cacheKey), any(), eq(BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS));
+    }
+    
+    @Test
+    public void lockIsAcquiredAndReleased() throws Exception {
+        ViewCache cache = new ViewCache();
+        cache.setObjectMapper(BridgeObjectMapper.get());
+        cache.setCachePeriod(BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS);
+        
+        CacheKey cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
+        CacheProvider provider = mock(CacheProvider.class);
+        cache.setCacheProvider(provider);
+        DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(ViewCache.class, cacheKey.toString(), 10)).thenReturn("lock");
+        cache.setLockDao(lockDao, 10);
+        
+        String json = cache.getView(cacheKey, () -> study);
+        
+        assertEquals(json, mapper.writeValueAsString(study));
+        verify(provider).setObject(cacheKey, json, BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS);
+        verify(lockDao).releaseLock(ViewCache.class, cacheKey.toString(), "lock");
+    }
+    
+    @Test
+    public void lockIsAcquiredAfterAnotherNodeCachedView() throws Exception {
+        String originalStudyJson = mapper.writeValueAsString(study);
+        
+        ViewCache cache = new ViewCache();
+        cache.setObjectMapper(BridgeObjectMapper.get());
+        cache.setCachePeriod(BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS);
+        
+        CacheKey cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
+        CacheProvider provider = mock(CacheProvider.class);
+        when(provider.getObject(cacheKey, String.class)).thenReturn(null, originalStudyJson);
+        cache.setCacheProvider(provider);
+        DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(ViewCache.class, cacheKey.toString(), 10)).thenReturn("lock");
+        cache.setLockDao(lockDao, 10);
+        
+        String json = cache.getView(cacheKey, () -> {
+            fail("This should not be called");
+            return null;
+        });
+        
+        assertEquals(json, originalStudyJson);
+        verify(provider, never()).setObject(any(), any(), anyInt());
+        verify(lockDao).releaseLock(ViewCache.class, cacheKey.toString(), "lock");
+    }
+    
+    @Test
+    public void lockHeldByAnotherNodeWaitsForView() throws Exception {
+        String originalStudyJson = mapper.writeValueAsString(study);
+        
+        ViewCache cache = new ViewCache();
+        cache.setObjectMapper(BridgeObjectMapper.get());
+        cache.setCachePeriod(BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS);
+        
+        CacheKey cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
+        CacheProvider provider = mock(CacheProvider.class);
+        when(provider.getObject(cacheKey, String.class)).thenReturn(null, null, originalStudyJson);
+        cache.setCacheProvider(provider);
+        DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(ViewCache.class, cacheKey.toString(), 10))
+                .thenThrow(new ConcurrentModificationException("Lock already set."));
+        cache.setLockDao(lockDao, 10);
+        
+        String json = cache.getView(cacheKey, () -> {
+            fail("This should not be called");
+            return null;
+        });
+        
+        assertEquals(json, originalStudyJson);
+        verify(provider, never()).setObject(any(), any(), anyInt());
+        verify(lockDao, never()).releaseLock(any(), any(), any());
+    }
+    
+    @Test
+    public void viewIsLoadedWithoutLockWhileRedisUnavailable() throws Exception {
+        ViewCache cache = new ViewCache();
+        cache.setObjectMapper(BridgeObjectMapper.get());
+        cache.setCachePeriod(BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS);
+        
+        CacheKey cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
+        CacheProvider provider = mock(CacheProvider.class);
+        cache.setCacheProvider(provider);
+        DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(ViewCache.class, cacheKey.toString(), 10))
+                .thenThrow(new ServiceUnavailableException("Redis is unavailable"));
+        cache.setLockDao(lockDao, 10);
+        
+        String json = cache.getView(cacheKey, () -> study);
+        
+        assertEquals(json, mapper.writeValueAsString(study));
+        verify(provider).setObject(cacheKey, json, BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS);
+        verify(lockDao, never()).releaseLock(any(), any(), any());
+    }
+    
+    @Test
+    public void freshViewIsNotRefreshed() throws Exception {
+        String originalStudyJson = mapper.writeValueAsString(study);
+        ExecutorService executor = mock(ExecutorService.class);
+        ViewCache cache = createSoftExpiringCache(executor);
+        
+        CacheKey cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
+        CacheProvider provider = mock(CacheProvider.class);
+        when(provider.getObjectWithExpiration(cacheKey, String.class)).thenReturn(
+                new CachedObject<>(originalStudyJson, BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS - 10));
+        cache.setCacheProvider(provider);
+        
+        String json = cache.getView(cacheKey, () -> {
+            fail("This should not be called");
+            return null;
+        });
+        
+        assertEquals(json, originalStudyJson);
+        verify(executor, never()).execute(any());
+    }
+    
+    @Test
+    public void staleViewIsReturnedAndRefreshed() throws Exception {
+        String originalStudyJson = mapper.writeValueAsString(study);
+        ViewCache cache = createSoftExpiringCache(MoreExecutors.newDirectExecutorService());
+        
+        CacheKey cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
+        CacheProvider provider = mock(CacheProvider.class);
+        when(provider.getObjectWithExpiration(cacheKey, String.class)).thenReturn(
+                new CachedObject<>(originalStudyJson, BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS - 200));
+        cache.setCacheProvider(provider);
+        
+        Study updatedStudy = TestUtils.getValidStudy(ViewCacheTest.class);
+        updatedStudy.setName("Test Study 2");
+        String json = cache.getView(cacheKey, () -> updatedStudy);
+        
+        assertEquals(json, originalStudyJson);
+        verify(provider).setObject(cacheKey, mapper.writeValueAsString(updatedStudy),
+                BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS);
+    }
+    
+    @Test
+    public void staleViewIsRefreshedWithCallersRequestContext() throws Exception {
+        String originalStudyJson = mapper.writeValueAsString(study);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ViewCache cache = createSoftExpiringCache(executor);
+        
+        CacheKey cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
+        CacheProvider provider = mock(CacheProvider.class);
+        when(provider.getObjectWithExpiration(cacheKey, String.class)).thenReturn(
+                new CachedObject<>(originalStudyJson, BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS - 200));
+        cache.setCacheProvider(provider);
+        
+        RequestContext context = new RequestContext.Builder().withRequestId("requestId").build();
+        AtomicReference<RequestContext> refreshContext = new AtomicReference<>();
+        BridgeUtils.setRequestContext(context);
+        try {
+            cache.getView(cacheKey, () -> {
+                refreshContext.set(BridgeUtils.getRequestContext());
+                return study;
+            });
+        } finally {
+            BridgeUtils.setRequestContext(null);
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(refreshContext.get(), context);
+    }
+    
+    @Test
+    public void staleViewIsReturnedWhenRefreshFails() throws Exception {
+        String originalStudyJson = mapper.writeValueAsString(study);
+        ViewCache cache = createSoftExpiringCache(MoreExecutors.newDirectExecutorService());
+        
+        CacheKey cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
+        CacheProvider provider = mock(CacheProvider.class);
+        when(provider.getObjectWithExpiration(cacheKey, String.class)).thenReturn(
+                new CachedObject<>(originalStudyJson, BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS - 200));
+        cache.setCacheProvider(provider);
+        
+        String json = cache.getView(cacheKey, () -> {
+            throw new BridgeServiceException("There has been a problem retrieving the study");
+        });
+        
+        assertEquals(json, originalStudyJson);
+        verify(provider, never()).setObject(any(), any(), anyInt());
+    }
+    
+    @Test
+    public void staleViewIsReturnedWhenRefreshIsRejected() throws Exception {
+        String originalStudyJson = mapper.writeValueAsString(study);
+        ExecutorService executor = mock(ExecutorService.class);
+        doThrow(new RejectedExecutionException()).when(executor).execute(any());
+        ViewCache cache = createSoftExpiringCache(executor);
+        
+        CacheKey cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
+        CacheProvider provider = mock(CacheProvider.class);
+        when(provider.getObjectWithExpiration(cacheKey, String.class)).thenReturn(
+                new CachedObject<>(originalStudyJson, BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS - 200));
+        cache.setCacheProvider(provider);
+        
+        assertEquals(cache.getView(cacheKey, () -> study), originalStudyJson);
+        // The next read tries to refresh again
+        assertEquals(cache.getView(cacheKey, () -> study), originalStudyJson);
+        verify(executor, times(2)).execute(any());
+    }
+    
+    @Test
+    public void staleViewIsNotRefreshedWhileAnotherNodeHoldsLock() throws Exception {
+        String originalStudyJson = mapper.writeValueAsString(study);
+        ViewCache cache = createSoftExpiringCache(MoreExecutors.newDirectExecutorService());
+        
+        CacheKey cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
+        CacheProvider provider = mock(CacheProvider.class);
+        when(provider.getObjectWithExpiration(cacheKey, String.class)).thenReturn(
+                new CachedObject<>(originalStudyJson, BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS - 200));
+        cache.setCacheProvider(provider);
+        DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(ViewCache.class, cacheKey.toString(), 10))
+                .thenThrow(new ConcurrentModificationException("Lock already set."));
+        cache.setLockDao(lockDao, 10);
+        
+        String json = cache.getView(cacheKey, () -> {
+            fail("This should not be called");
+            return null;
+        });
+        
+        assertEquals(json, originalStudyJson);
+        verify(provider, never()).setObject(any(), any(), anyInt());
+    }
+    
+    @Test
+    public void missingViewIsBuiltWithSoftExpiration() throws Exception {
+        ViewCache cache = createSoftExpiringCache(mock(ExecutorService.class));
+        
+        CacheKey cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
+        CacheProvider provider = mock(CacheProvider.class);
+        cache.setCacheProvider(provider);
+        
+        String json = cache.getView(cacheKey, () -> study);
+        
+        assertEquals(json, mapper.writeValueAsString(study));
+        verify(provider).setObject(cacheKey, json, BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS);
+    }
+    
+    private ViewCache createSoftExpiringCache(ExecutorService executor) {
+        ViewCache cache = new ViewCache();
+        cache.setObjectMapper(BridgeObjectMapper.get());
+        cache.setCachePeriod(BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS);
+        cache.setSoftExpiration(100, executor);
+        return cache;
+    }
+    
     private CacheProvider getSimpleCacheProvider(final CacheKey cacheKey, final String originalStudyJson) {
         return new CacheProvider() {
             private Map<CacheKey,String> map = Maps.newHashMap();
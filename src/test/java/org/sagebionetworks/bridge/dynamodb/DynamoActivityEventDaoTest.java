@@ -9,6 +9,7 @@ import static org.sagebionetworks.bridge.models.activities.ActivityEventType.ANS
 import static org.sagebionetworks.bridge.models.activities.ActivityEventType.FINISHED;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
@@ -17,8 +18,15 @@ import java.util.Map;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBSaveExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedQueryList;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ConditionalOperator;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -70,6 +78,9 @@ public class DynamoActivityEventDaoTest extends Mockito {
     @Captor
     ArgumentCaptor<List<DynamoActivityEvent>> listCaptor;
     
+    @Captor
+    ArgumentCaptor<DynamoDBSaveExpression> saveExpressionCaptor;
+    
     @BeforeMethod
     public void before() {
         MockitoAnnotations.initMocks(this);
@@ -80,32 +91,34 @@ public class DynamoActivityEventDaoTest extends Mockito {
         boolean result = dao.publishEvent(SURVEY_FINISHED_EVENT);
         assertTrue(result);
         
-        verify(mockMapper).load(eventCaptor.capture());
-        DynamoActivityEvent loadKey = eventCaptor.getValue();
-        assertEquals(loadKey.getHealthCode(), HEALTH_CODE);
-        assertEquals(loadKey.getEventId(), "survey:AAA-BBB-CCC:finished");
-        
-        verify(mockMapper).save(eventCaptor.capture());
+        verify(mockMapper).save(eventCaptor.capture(), saveExpressionCaptor.capture());
         assertSame(eventCaptor.getValue(), SURVEY_FINISHED_EVENT);
+        verify(mockMapper, never()).load(any());
+        
+        // The event is saved if it doesn't exist, or if the existing event is earlier
+        DynamoDBSaveExpression expression = saveExpressionCaptor.getValue();
+        assertEquals(expression.getConditionalOperator(), ConditionalOperator.OR.toString());
+        assertEquals(expression.getExpected().size(), 2);
+        assertFalse(expression.getExpected().get("healthCode").getExists());
+        ExpectedAttributeValue timestampExpected = expression.getExpected().get("timestamp");
+        assertEquals(timestampExpected.getComparisonOperator(), ComparisonOperator.LT.toString());
+        assertEquals(timestampExpected.getAttributeValueList(),
+                ImmutableList.of(new AttributeValue().withN(String.valueOf(TIMESTAMP.getMillis()))));
     }
     
     @Test
     public void publishEventIsMutableAndLater() {
-        DynamoActivityEvent earlierEvent = new DynamoActivityEvent.Builder().withHealthCode(HEALTH_CODE)
-                .withObjectType(SURVEY).withEventType(FINISHED).withTimestamp(TIMESTAMP.minusHours(1))
-                .withObjectId("AAA-BBB-CCC").build();
-        when(mockMapper.load(any())).thenReturn(earlierEvent);
-        
         boolean result = dao.publishEvent(SURVEY_FINISHED_EVENT);
         assertTrue(result);
         
-        verify(mockMapper).save(eventCaptor.capture());
+        verify(mockMapper).save(eventCaptor.capture(), any(DynamoDBSaveExpression.class));
         assertSame(eventCaptor.getValue(), SURVEY_FINISHED_EVENT);
     }
     
     @Test
     public void publishEventIsImmutableFails() {
-        when(mockMapper.load(any())).thenReturn(ENROLLMENT_EVENT);
+        doThrow(new ConditionalCheckFailedException("Failed")).when(mockMapper).save(any(),
+                any(DynamoDBSaveExpression.class));
         
         DynamoActivityEvent laterEvent = new DynamoActivityEvent.Builder().withHealthCode(HEALTH_CODE)
                 .withObjectType(ENROLLMENT).withTimestamp(TIMESTAMP.plusHours(1)).build();
@@ -113,22 +126,23 @@ public class DynamoActivityEventDaoTest extends Mockito {
         boolean result = dao.publishEvent(laterEvent);
         assertFalse(result);
         
-        verify(mockMapper, never()).save(any());
+        // The event is only saved if it doesn't exist
+        verify(mockMapper).save(eventCaptor.capture(), saveExpressionCaptor.capture());
+        DynamoDBSaveExpression expression = saveExpressionCaptor.getValue();
+        assertNull(expression.getConditionalOperator());
+        assertEquals(expression.getExpected().keySet(), ImmutableSet.of("healthCode"));
+        assertFalse(expression.getExpected().get("healthCode").getExists());
     }
     
     @Test
     public void publishEventIsEarlierFails() {
-        DynamoActivityEvent laterEvent = new DynamoActivityEvent.Builder().withHealthCode(HEALTH_CODE)
-                .withObjectType(SURVEY).withEventType(FINISHED).withTimestamp(TIMESTAMP.plusHours(1))
-                .withObjectId("AAA-BBB-CCC").build();
-        when(mockMapper.load(any())).thenReturn(laterEvent);
+        doThrow(new ConditionalCheckFailedException("Failed")).when(mockMapper).save(any(),
+                any(DynamoDBSaveExpression.class));
         
         boolean result = dao.publishEvent(SURVEY_FINISHED_EVENT);
         assertFalse(result);
-        
-        verify(mockMapper, never()).save(any());
     }
-
+    
     @Test
     public void getActivityEventMap() {
         List<DynamoActivityEvent> savedEvents = ImmutableList.of(ENROLLMENT_EVENT, SURVEY_FINISHED_EVENT,
@@ -3,8 +3,15 @@ package org.sagebionetworks.bridge.dynamodb;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
@@ -65,6 +72,30 @@ public class DynamoCriteriaDaoTest extends Mockito {
         assertNull( dao.getCriteria(CRITERIA_KEY) );
     }
     
+    @SuppressWarnings("unchecked")
+    @Test
+    public void batchGetCriteria() {
+        Criteria saved = Criteria.create();
+        saved.setKey(CRITERIA_KEY);
+        when(mockMapper.batchLoad(any(List.class))).thenReturn(ImmutableMap.of("Criteria", ImmutableList.of(saved)));
+        
+        Map<String, Criteria> result = dao.batchGetCriteria(ImmutableSet.of(CRITERIA_KEY, "criteria:missing"));
+        assertEquals(result, ImmutableMap.of(CRITERIA_KEY, saved));
+        
+        ArgumentCaptor<List<DynamoCriteria>> keysCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockMapper).batchLoad(keysCaptor.capture());
+        assertEquals(keysCaptor.getValue().size(), 2);
+        assertEquals(keysCaptor.getValue().get(0).getKey(), CRITERIA_KEY);
+        assertEquals(keysCaptor.getValue().get(1).getKey(), "criteria:missing");
+    }
+    
+    @Test
+    public void batchGetCriteriaWithNoKeys() {
+        assertTrue(dao.batchGetCriteria(ImmutableSet.of()).isEmpty());
+        
+        verify(mockMapper, never()).batchLoad(any(List.class));
+    }
+    
     @Test
     public void deleteCriteria() {
         Criteria saved = Criteria.create();
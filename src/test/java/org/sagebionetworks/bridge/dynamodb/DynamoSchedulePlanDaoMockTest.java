@@ -45,6 +45,7 @@ import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
@@ -92,6 +93,8 @@ public class DynamoSchedulePlanDaoMockTest extends Mockito {
         Criteria criteria = scheduleCriteria.getCriteria();
         
         when(mockCriteriaDao.getCriteria(SCHEDULE_CRITERIA_KEY)).thenReturn(criteria);
+        when(mockCriteriaDao.batchGetCriteria(ImmutableSet.of(SCHEDULE_CRITERIA_KEY)))
+                .thenReturn(ImmutableMap.of(SCHEDULE_CRITERIA_KEY, criteria));
     }
     
     @AfterMethod
@@ -146,13 +149,15 @@ public class DynamoSchedulePlanDaoMockTest extends Mockito {
         assertCriteria(criteria);
         
         String key = criteria.getKey();
-        verify(mockCriteriaDao).getCriteria(key);
+        verify(mockCriteriaDao).batchGetCriteria(ImmutableSet.of(key));
+        verify(mockCriteriaDao, never()).getCriteria(any());
         
         // now have criteriaDao return a different criteria object, that should update the plan
         Criteria persistedCriteria = Criteria.create();
+        persistedCriteria.setKey(key);
         persistedCriteria.setMinAppVersion(IOS, 1);
         persistedCriteria.setMaxAppVersion(IOS, 65);
-        when(mockCriteriaDao.getCriteria(key)).thenReturn(persistedCriteria);
+        when(mockCriteriaDao.batchGetCriteria(ImmutableSet.of(key))).thenReturn(ImmutableMap.of(key, persistedCriteria));
         
         plans = dao.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false);
         plan = plans.get(0);
@@ -164,6 +169,33 @@ public class DynamoSchedulePlanDaoMockTest extends Mockito {
         assertTrue(criteria.getNoneOfGroups().isEmpty());
     }
     
+    @Test
+    public void getSchedulePlansLoadsCriteriaOfAllPlansInOneBatch() {
+        DynamoSchedulePlan otherPlan = (DynamoSchedulePlan)constructSchedulePlan();
+        otherPlan.setGuid("otherGuid");
+        String otherKey = "scheduleCriteria:otherGuid:0";
+        Criteria otherCriteria = TestUtils.createCriteria(1, 5, ALL_OF_GROUPS, NONE_OF_GROUPS);
+        otherCriteria.setKey(otherKey);
+        
+        when(queryResultsPage.getResults()).thenReturn(Lists.newArrayList(schedulePlan, otherPlan));
+        when(mockMapper.queryPage(eq(DynamoSchedulePlan.class), any())).thenReturn(queryResultsPage);
+        when(mockCriteriaDao.batchGetCriteria(ImmutableSet.of(SCHEDULE_CRITERIA_KEY, otherKey)))
+                .thenReturn(ImmutableMap.of(otherKey, otherCriteria));
+        
+        List<SchedulePlan> plans = dao.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false);
+        
+        verify(mockCriteriaDao).batchGetCriteria(ImmutableSet.of(SCHEDULE_CRITERIA_KEY, otherKey));
+        verify(mockCriteriaDao, never()).getCriteria(any());
+        
+        // The criteria that wasn't found is left as it was
+        Criteria criteria = ((CriteriaScheduleStrategy)plans.get(0).getStrategy()).getScheduleCriteria().get(0)
+                .getCriteria();
+        assertCriteria(criteria);
+        assertEquals(criteria.getKey(), SCHEDULE_CRITERIA_KEY);
+        criteria = ((CriteriaScheduleStrategy)plans.get(1).getStrategy()).getScheduleCriteria().get(0).getCriteria();
+        assertSame(criteria, otherCriteria);
+    }
+    
     @Test
     public void getSchedulePlanRetrievesCriteria() {
         mockSchedulePlanQuery();
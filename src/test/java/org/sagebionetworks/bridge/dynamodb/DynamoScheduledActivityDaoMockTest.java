@@ -52,8 +52,10 @@ import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class DynamoScheduledActivityDaoMockTest {
 
@@ -597,4 +599,119 @@ public class DynamoScheduledActivityDaoMockTest {
         assertEquals(capturedActivities.get(0).getGuid(), "CCC:foo");
         assertEquals(capturedActivities.get(4).getGuid(), "GGG:foo");
     }
-}
\ No newline at end of file
+    
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getPersistedActivities() {
+        activityDao.setQueryExecutorService(MoreExecutors.newDirectExecutorService());
+        
+        // AAA has an activity in the time window, BBB has none
+        DynamoScheduledActivity inWindow = new DynamoScheduledActivity();
+        inWindow.setGuid("AAA:2015-04-12T13:00:00.000");
+        when(mapper.queryPage(eq(DynamoScheduledActivity.class), any())).thenAnswer(invocation -> {
+            DynamoDBQueryExpression<DynamoScheduledActivity> query = invocation.getArgument(1);
+            String start = query.getRangeKeyConditions().get("guid").getAttributeValueList().get(0).getS();
+            QueryResultPage<DynamoScheduledActivity> page = new QueryResultPage<>();
+            page.setResults(start.startsWith("AAA:") ? ImmutableList.of(inWindow) : ImmutableList.of());
+            return page;
+        });
+        DynamoScheduledActivity outsideWindow = new DynamoScheduledActivity();
+        outsideWindow.setGuid("BBB:2015-04-01T13:00:00.000");
+        when(mapper.batchLoad(any(List.class))).thenReturn(ImmutableMap.of("table", ImmutableList.of(outsideWindow)));
+        
+        List<ScheduledActivity> scheduled = ImmutableList.of(activity("AAA:2015-04-12T13:00:00.000"),
+                activity("BBB:2015-04-01T13:00:00.000"), activity("BBB:2015-04-02T13:00:00.000"));
+        
+        List<ScheduledActivity> results = activityDao.getPersistedActivities(HEALTH_CODE, SCHEDULED_ON_START,
+                SCHEDULED_ON_END, scheduled);
+        
+        assertEquals(results.size(), 2);
+        assertTrue(results.contains(inWindow));
+        assertTrue(results.contains(outsideWindow));
+        assertEquals(outsideWindow.getTimeZone(), SCHEDULED_ON_START.getZone());
+        
+        // One query per activity GUID
+        verify(mapper, times(2)).queryPage(eq(DynamoScheduledActivity.class), any());
+        
+        // Only the scheduled activities not found by the queries are loaded
+        ArgumentCaptor<List<DynamoScheduledActivity>> keysCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mapper).batchLoad(keysCaptor.capture());
+        List<DynamoScheduledActivity> keys = keysCaptor.getValue();
+        assertEquals(keys.size(), 2);
+        assertEquals(keys.get(0).getHealthCode(), HEALTH_CODE);
+        assertEquals(keys.get(0).getGuid(), "BBB:2015-04-01T13:00:00.000");
+        assertEquals(keys.get(1).getGuid(), "BBB:2015-04-02T13:00:00.000");
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getPersistedActivitiesLoadsInBatches() {
+        activityDao.setQueryExecutorService(MoreExecutors.newDirectExecutorService());
+        
+        QueryResultPage<DynamoScheduledActivity> page = new QueryResultPage<>();
+        page.setResults(ImmutableList.of());
+        when(mapper.queryPage(eq(DynamoScheduledActivity.class), any())).thenReturn(page);
+        when(mapper.batchLoad(any(List.class))).thenReturn(ImmutableMap.of());
+        
+        List<ScheduledActivity> scheduled = Lists.newArrayList();
+        for (int i=0; i < DynamoScheduledActivityDao.BATCH_LOAD_SIZE + 1; i++) {
+            scheduled.add(activity("AAA:" + NOW.plusDays(i).toLocalDateTime()));
+        }
+        
+        List<ScheduledActivity> results = activityDao.getPersistedActivities(HEALTH_CODE, SCHEDULED_ON_START,
+                SCHEDULED_ON_END, scheduled);
+        assertTrue(results.isEmpty());
+        
+        verify(mapper).queryPage(eq(DynamoScheduledActivity.class), any());
+        ArgumentCaptor<List<DynamoScheduledActivity>> keysCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mapper, times(2)).batchLoad(keysCaptor.capture());
+        assertEquals(keysCaptor.getAllValues().get(0).size(), DynamoScheduledActivityDao.BATCH_LOAD_SIZE);
+        assertEquals(keysCaptor.getAllValues().get(1).size(), 1);
+    }
+    
+    @Test
+    public void getPersistedActivitiesWithEmptyListReturnsEmptyList() {
+        List<ScheduledActivity> results = activityDao.getPersistedActivities(HEALTH_CODE, SCHEDULED_ON_START,
+                SCHEDULED_ON_END, ImmutableList.of());
+        assertTrue(results.isEmpty());
+        
+        verifyNoMoreInteractions(mapper);
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getActivitiesByGuid() {
+        DynamoScheduledActivity loaded = new DynamoScheduledActivity();
+        loaded.setGuid("AAA:2015-04-12T13:00:00.000");
+        when(mapper.batchLoad(any(List.class))).thenReturn(ImmutableMap.of("table", ImmutableList.of(loaded)));
+        
+        List<ScheduledActivity> results = activityDao.getActivities(HEALTH_CODE,
+                ImmutableSet.of("AAA:2015-04-12T13:00:00.000", "BBB:2015-04-12T13:00:00.000"));
+        assertEquals(results, ImmutableList.of(loaded));
+        assertEquals(loaded.getTimeZone(), DateTimeZone.UTC);
+        
+        ArgumentCaptor<List<DynamoScheduledActivity>> keysCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mapper).batchLoad(keysCaptor.capture());
+        List<DynamoScheduledActivity> keys = keysCaptor.getValue();
+        assertEquals(keys.size(), 2);
+        assertEquals(keys.get(0).getHealthCode(), HEALTH_CODE);
+        assertEquals(keys.get(0).getGuid(), "AAA:2015-04-12T13:00:00.000");
+        assertEquals(keys.get(1).getHealthCode(), HEALTH_CODE);
+        assertEquals(keys.get(1).getGuid(), "BBB:2015-04-12T13:00:00.000");
+    }
+    
+    @Test
+    public void getActivitiesByGuidWithEmptySetReturnsEmptyList() {
+        List<ScheduledActivity> results = activityDao.getActivities(HEALTH_CODE, ImmutableSet.of());
+        assertTrue(results.isEmpty());
+        
+        verifyNoMoreInteractions(mapper);
+    }
+    
+    private ScheduledActivity activity(String guid) {
+        ScheduledActivity activity = ScheduledActivity.create();
+        activity.setHealthCode(HEALTH_CODE);
+        activity.setGuid(guid);
+        return activity;
+    }
+}
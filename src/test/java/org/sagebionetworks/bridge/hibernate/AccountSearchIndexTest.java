@@ -0,0 +1,110 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableSet;
+
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.accounts.Phone;
+
+public class AccountSearchIndexTest {
+
+    @Test
+    public void getTrigrams() {
+        Account account = Account.create();
+        account.setEmail("Bob@A.org");
+        account.setPhone(new Phone("+12065881469", "US"));
+
+        assertEquals(AccountSearchIndex.getTrigrams(account), new ImmutableSet.Builder<String>()
+                .add("e:bob", "e:ob@", "e:b@a", "e:@a.", "e:a.o", "e:.or", "e:org")
+                .add("p:+12", "p:120", "p:206", "p:065", "p:658", "p:588", "p:881", "p:814", "p:146", "p:469")
+                .build());
+    }
+
+    @Test
+    public void getSearchTrigrams() {
+        Account account = Account.create();
+        account.setStudyId("study");
+        account.setEmail("Bob@A");
+
+        assertEquals(AccountSearchIndex.getSearchTrigrams(account), ImmutableSet.of(
+                new HibernateAccountSearchTrigram("study", "e:bob"), new HibernateAccountSearchTrigram("study", "e:ob@"),
+                new HibernateAccountSearchTrigram("study", "e:b@a")));
+    }
+
+    @Test
+    public void getTrigramsWithoutEmailOrPhone() {
+        assertTrue(AccountSearchIndex.getTrigrams(Account.create()).isEmpty());
+    }
+
+    @Test
+    public void getTrigramsOfShortEmail() {
+        Account account = Account.create();
+        account.setEmail("ab");
+
+        assertTrue(AccountSearchIndex.getTrigrams(account).isEmpty());
+    }
+
+    @Test
+    public void getTrigramsRemovesDuplicates() {
+        Account account = Account.create();
+        account.setEmail("aaaaa");
+
+        assertEquals(AccountSearchIndex.getTrigrams(account), ImmutableSet.of("e:aaa"));
+    }
+
+    @Test
+    public void getTrigramsRemovesAccents() {
+        Account account = Account.create();
+        account.setEmail("Jos\u00C9e@a");
+
+        assertEquals(AccountSearchIndex.getTrigrams(account), ImmutableSet.of("e:jos", "e:ose", "e:see", "e:ee@",
+                "e:e@a"));
+    }
+
+    @Test
+    public void getTrigramsRemovesTrigramsEqualExceptForAccents() {
+        Account account = Account.create();
+        account.setEmail("r\u00E9sume-resume");
+
+        assertEquals(AccountSearchIndex.getTrigrams(account), ImmutableSet.of("e:res", "e:esu", "e:sum", "e:ume",
+                "e:me-", "e:e-r", "e:-re"));
+    }
+
+    @Test
+    public void getEmailFilterTrigramsRemovesAccents() {
+        assertEquals(AccountSearchIndex.getEmailFilterTrigrams("R\u00C9S"), ImmutableSet.of("e:res"));
+    }
+
+    @Test
+    public void foldLeavesValuesThatChangeLength() {
+        // A Hangul syllable decomposes into three letters
+        assertEquals(AccountSearchIndex.fold("A\uD55C"), "a\uD55C");
+        // An accent that is already a separate character would shorten the value
+        assertEquals(AccountSearchIndex.fold("Re\u0301s"), "re\u0301s");
+    }
+
+    @Test
+    public void getEmailFilterTrigrams() {
+        assertEquals(AccountSearchIndex.getEmailFilterTrigrams("BOB@"), ImmutableSet.of("e:bob", "e:ob@"));
+    }
+
+    @Test
+    public void getEmailFilterTrigramsSkipsWildcards() {
+        // An account matching this LIKE pattern need not contain the trigrams with a wildcard or escape character.
+        assertEquals(AccountSearchIndex.getEmailFilterTrigrams("b_bob%exa\\_x"), ImmutableSet.of("e:bob", "e:exa"));
+    }
+
+    @Test
+    public void getEmailFilterTrigramsOfShortFilter() {
+        assertTrue(AccountSearchIndex.getEmailFilterTrigrams("bo").isEmpty());
+    }
+
+    @Test
+    public void getPhoneFilterTrigrams() {
+        assertEquals(AccountSearchIndex.getPhoneFilterTrigrams("20658"), ImmutableSet.of("p:206", "p:065", "p:658"));
+    }
+}
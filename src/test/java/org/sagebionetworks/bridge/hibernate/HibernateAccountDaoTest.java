@@ -11,6 +11,7 @@ import static org.sagebionetworks.bridge.models.accounts.PasswordAlgorithm.DEFAU
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 import java.util.HashMap;
@@ -40,7 +41,9 @@ import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.ResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
@@ -71,6 +74,14 @@ public class HibernateAccountDaoTest extends Mockito {
     private static final AccountId ACCOUNT_ID_WITH_SYNID = AccountId.forSynapseUserId(TEST_STUDY_IDENTIFIER,
             SYNAPSE_USER_ID);
 
+    private static final String EMAIL_TRIGRAM_QUERY = "AND acct.id IN (SELECT emailTrigramAcct.id FROM "
+            + "HibernateAccount AS emailTrigramAcct JOIN emailTrigramAcct.searchTrigrams AS emailTrigram WHERE "
+            + "emailTrigram.studyId = :studyId AND emailTrigram.trigram IN (:emailTrigrams) GROUP BY "
+            + "emailTrigramAcct.id HAVING COUNT(emailTrigram.trigram) = :emailTrigramCount)";
+    private static final String PHONE_TRIGRAM_QUERY = "AND acct.id IN (SELECT phoneTrigramAcct.id FROM "
+            + "HibernateAccount AS phoneTrigramAcct JOIN phoneTrigramAcct.searchTrigrams AS phoneTrigram WHERE "
+            + "phoneTrigram.studyId = :studyId AND phoneTrigram.trigram IN (:phoneTrigrams) GROUP BY "
+            + "phoneTrigramAcct.id HAVING COUNT(phoneTrigram.trigram) = :phoneTrigramCount)";
     private static final String SUBSTUDY_A = "substudyA";
     private static final String SUBSTUDY_B = "substudyB";
     private static final Map<String, Object> STUDY_QUERY_PARAMS = new ImmutableMap.Builder<String, Object>()
@@ -154,6 +165,8 @@ public class HibernateAccountDaoTest extends Mockito {
         dao.createAccount(study, account, null);
         
         verify(mockHibernateHelper).create(eq(account), any());
+        assertEquals(((HibernateAccount) account).getSearchTrigrams(),
+                AccountSearchIndex.getSearchTrigrams(account));
     }
 
     @Test
@@ -166,6 +179,24 @@ public class HibernateAccountDaoTest extends Mockito {
         verify(mockHibernateHelper).update(account, consumer);
     }
 
+    @Test
+    public void updateAccountReplacesSearchTrigrams() {
+        HibernateAccount account = new HibernateAccount();
+        account.setStudyId(TEST_STUDY_IDENTIFIER);
+        account.setEmail(OTHER_EMAIL);
+        account.setSearchTrigrams(ImmutableSet.of(new HibernateAccountSearchTrigram(TEST_STUDY_IDENTIFIER, "e:egg"),
+                new HibernateAccountSearchTrigram(TEST_STUDY_IDENTIFIER, "e:ggp")));
+        
+        dao.updateAccount(account, null);
+        
+        // The trigrams of the previous email are gone
+        assertEquals(account.getSearchTrigrams(), AccountSearchIndex.getSearchTrigrams(account));
+        assertTrue(account.getSearchTrigrams().contains(
+                new HibernateAccountSearchTrigram(TEST_STUDY_IDENTIFIER, "e:oth")));
+        assertFalse(account.getSearchTrigrams().contains(
+                new HibernateAccountSearchTrigram(TEST_STUDY_IDENTIFIER, "e:egg")));
+    }
+
     @Test
     public void updateAccountAllowsIdentifierUpdate() {
         // This call will allow identifiers/verification status to be updated.
@@ -455,9 +486,9 @@ public class HibernateAccountDaoTest extends Mockito {
         hibernateAccount2.setId("account-2");
         hibernateAccount2.setEmail("email2@example.com");
 
-        when(mockHibernateHelper.queryGet(eq(expQuery), any(), any(), any(), any()))
+        when(mockHibernateHelper.queryGetFromReplica(eq(expQuery), any(), any(), any(), any()))
                 .thenReturn(ImmutableList.of(hibernateAccount1, hibernateAccount2));
-        when(mockHibernateHelper.queryCount(eq(expCountQuery), any())).thenReturn(12);
+        when(mockHibernateHelper.queryCountFromReplica(eq(expCountQuery), any())).thenReturn(12);
 
         // Finally, mock the retrieval of substudies to verify this is called to populate the substudies
         List<HibernateAccountSubstudy> list = ImmutableList.of(
@@ -465,8 +496,8 @@ public class HibernateAccountDaoTest extends Mockito {
                         ACCOUNT_ID),
                 (HibernateAccountSubstudy) AccountSubstudy.create(TEST_STUDY_IDENTIFIER, SUBSTUDY_B,
                         ACCOUNT_ID));
-        when(mockHibernateHelper.queryGet(eq("FROM HibernateAccountSubstudy WHERE accountId=:accountId"), any(), any(),
-                any(), eq(HibernateAccountSubstudy.class))).thenReturn(list);
+        when(mockHibernateHelper.queryGetFromReplica(eq("FROM HibernateAccountSubstudy WHERE accountId=:accountId"),
+                any(), any(), any(), eq(HibernateAccountSubstudy.class))).thenReturn(list);
 
         // execute and validate
         AccountSummarySearch search = new AccountSummarySearch.Builder().withOffsetBy(10).withPageSize(5).build();
@@ -495,8 +526,8 @@ public class HibernateAccountDaoTest extends Mockito {
         assertEquals(accountSummaryList.get(1).getSubstudyIds(), ImmutableSet.of(SUBSTUDY_A, SUBSTUDY_B));
 
         // verify hibernate calls
-        verify(mockHibernateHelper).queryGet(expQuery, STUDY_QUERY_PARAMS, 10, 5, HibernateAccount.class);
-        verify(mockHibernateHelper).queryCount(expCountQuery, STUDY_QUERY_PARAMS);
+        verify(mockHibernateHelper).queryGetFromReplica(expQuery, STUDY_QUERY_PARAMS, 10, 5, HibernateAccount.class);
+        verify(mockHibernateHelper).queryCountFromReplica(expCountQuery, STUDY_QUERY_PARAMS);
     }
 
     @Test
@@ -506,7 +537,7 @@ public class HibernateAccountDaoTest extends Mockito {
 
         HibernateAccount hibernateAccount1 = makeValidHibernateAccount(false);
         HibernateAccount hibernateAccount2 = makeValidHibernateAccount(false);
-        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), any()))
+        when(mockHibernateHelper.queryGetFromReplica(any(), any(), any(), any(), any()))
                 .thenReturn(ImmutableList.of(hibernateAccount1, hibernateAccount2));
 
         // Finally, mock the retrieval of substudies to verify this is called to populate the substudies
@@ -515,8 +546,8 @@ public class HibernateAccountDaoTest extends Mockito {
                         ACCOUNT_ID),
                 (HibernateAccountSubstudy) AccountSubstudy.create(TEST_STUDY_IDENTIFIER, SUBSTUDY_B,
                         ACCOUNT_ID));
-        when(mockHibernateHelper.queryGet(eq("FROM HibernateAccountSubstudy WHERE accountId=:accountId"), any(), any(),
-                any(), eq(HibernateAccountSubstudy.class))).thenReturn(list);
+        when(mockHibernateHelper.queryGetFromReplica(eq("FROM HibernateAccountSubstudy WHERE accountId=:accountId"),
+                any(), any(), any(), eq(HibernateAccountSubstudy.class))).thenReturn(list);
 
         AccountSummarySearch search = new AccountSummarySearch.Builder().build();
         PagedResourceList<AccountSummary> accountSummaryResourceList = dao.getPagedAccountSummaries(study, search);
@@ -532,16 +563,17 @@ public class HibernateAccountDaoTest extends Mockito {
         String expQuery = "SELECT new HibernateAccount(acct.createdOn, acct.studyId, acct.firstName, "
                 + "acct.lastName, acct.email, acct.phone, acct.id, acct.status, acct.synapseUserId) FROM "
                 + "HibernateAccount AS acct LEFT JOIN acct.accountSubstudies AS acctSubstudy WITH "
-                + "acct.id = acctSubstudy.accountId WHERE acct.studyId = :studyId AND acct.email LIKE "
-                + ":email AND acct.phone.number LIKE :number AND acct.createdOn >= :startTime AND acct.createdOn "
+                + "acct.id = acctSubstudy.accountId WHERE acct.studyId = :studyId " + EMAIL_TRIGRAM_QUERY
+                + " AND acct.email LIKE :email " + PHONE_TRIGRAM_QUERY + " AND acct.phone.number LIKE :number "
+                + "AND acct.createdOn >= :startTime AND acct.createdOn "
                 + "<= :endTime AND :language IN ELEMENTS(acct.languages) AND (:IN1 IN elements(acct.dataGroups) "
                 + "AND :IN2 IN elements(acct.dataGroups)) AND (:NOTIN1 NOT IN elements(acct.dataGroups) AND "
                 + ":NOTIN2 NOT IN elements(acct.dataGroups)) GROUP BY acct.id";
 
         String expCountQuery = "SELECT COUNT(DISTINCT acct.id) FROM HibernateAccount AS acct LEFT JOIN "
                 + "acct.accountSubstudies AS acctSubstudy WITH acct.id = acctSubstudy.accountId WHERE "
-                + "acct.studyId = :studyId AND acct.email LIKE :email AND acct.phone.number LIKE :number AND "
-                + "acct.createdOn >= :startTime AND acct.createdOn <= :endTime AND :language IN "
+                + "acct.studyId = :studyId " + EMAIL_TRIGRAM_QUERY + " AND acct.email LIKE :email "
+                + PHONE_TRIGRAM_QUERY + " AND acct.phone.number LIKE :number AND acct.createdOn >= :startTime AND acct.createdOn <= :endTime AND :language IN "
                 + "ELEMENTS(acct.languages) AND (:IN1 IN elements(acct.dataGroups) AND :IN2 IN "
                 + "elements(acct.dataGroups)) AND (:NOTIN1 NOT IN elements(acct.dataGroups) AND :NOTIN2 NOT "
                 + "IN elements(acct.dataGroups))";
@@ -551,9 +583,9 @@ public class HibernateAccountDaoTest extends Mockito {
         DateTime endDate = DateTime.parse("2017-05-19T18:32:03.434-0700");
 
         // mock hibernate
-        when(mockHibernateHelper.queryGet(eq(expQuery), any(), any(), any(), any()))
+        when(mockHibernateHelper.queryGetFromReplica(eq(expQuery), any(), any(), any(), any()))
                 .thenReturn(ImmutableList.of(makeValidHibernateAccount(false)));
-        when(mockHibernateHelper.queryCount(eq(expCountQuery), any())).thenReturn(11);
+        when(mockHibernateHelper.queryCountFromReplica(eq(expCountQuery), any())).thenReturn(11);
 
         // execute and validate - Just validate filters and query, since everything else is tested in getPaged().
         AccountSummarySearch search = new AccountSummarySearch.Builder().withOffsetBy(10).withPageSize(5)
@@ -591,9 +623,9 @@ public class HibernateAccountDaoTest extends Mockito {
         params.put("notin2", "d");
         params.put("language", "de");
 
-        verify(mockHibernateHelper).queryGet(eq(expQuery), paramCaptor.capture(), eq(10), eq(5),
+        verify(mockHibernateHelper).queryGetFromReplica(eq(expQuery), paramCaptor.capture(), eq(10), eq(5),
                 eq(HibernateAccount.class));
-        verify(mockHibernateHelper).queryCount(eq(expCountQuery), paramCaptor.capture());
+        verify(mockHibernateHelper).queryCountFromReplica(eq(expCountQuery), paramCaptor.capture());
 
         Map<String, Object> capturedParams = paramCaptor.getAllValues().get(0);
         assertEquals(capturedParams.get("studyId"), TEST_STUDY_IDENTIFIER);
@@ -606,6 +638,9 @@ public class HibernateAccountDaoTest extends Mockito {
         assertEquals(capturedParams.get("NOTIN1"), "d");
         assertEquals(capturedParams.get("NOTIN2"), "c");
         assertEquals(capturedParams.get("language"), "de");
+        assertEquals(capturedParams.get("emailTrigrams"), AccountSearchIndex.getEmailFilterTrigrams(EMAIL));
+        assertEquals(capturedParams.get("emailTrigramCount"), 18L);
+        assertEquals(capturedParams.get("phoneTrigrams"), AccountSearchIndex.getPhoneFilterTrigrams(phoneString));
 
         capturedParams = paramCaptor.getAllValues().get(1);
         assertEquals(capturedParams.get("studyId"), TEST_STUDY_IDENTIFIER);
@@ -633,7 +668,7 @@ public class HibernateAccountDaoTest extends Mockito {
             AccountSummarySearch search = new AccountSummarySearch.Builder().build();
             dao.getPagedAccountSummaries(study, search);
 
-            verify(mockHibernateHelper).queryCount(eq(expCountQuery), paramCaptor.capture());
+            verify(mockHibernateHelper).queryCountFromReplica(eq(expCountQuery), paramCaptor.capture());
             Map<String, Object> params = paramCaptor.getValue();
             assertEquals(params.get("substudies"), substudyIds);
             assertEquals(params.get("studyId"), TEST_STUDY_IDENTIFIER);
@@ -647,14 +682,15 @@ public class HibernateAccountDaoTest extends Mockito {
         String expQuery = "SELECT new HibernateAccount(acct.createdOn, acct.studyId, acct.firstName, "
                 + "acct.lastName, acct.email, acct.phone, acct.id, acct.status, acct.synapseUserId) FROM "
                 + "HibernateAccount AS acct LEFT JOIN acct.accountSubstudies AS acctSubstudy WITH "
-                + "acct.id = acctSubstudy.accountId WHERE acct.studyId = :studyId AND acct.email LIKE "
-                + ":email AND acct.phone.number LIKE :number AND acct.createdOn >= :startTime AND "
+                + "acct.id = acctSubstudy.accountId WHERE acct.studyId = :studyId " + EMAIL_TRIGRAM_QUERY
+                + " AND acct.email LIKE :email " + PHONE_TRIGRAM_QUERY + " AND acct.phone.number LIKE :number "
+                + "AND acct.createdOn >= :startTime AND "
                 + "acct.createdOn <= :endTime AND :language IN ELEMENTS(acct.languages) GROUP BY acct.id";
 
         String expCountQuery = "SELECT COUNT(DISTINCT acct.id) FROM HibernateAccount AS acct LEFT JOIN "
                 + "acct.accountSubstudies AS acctSubstudy WITH acct.id = acctSubstudy.accountId WHERE "
-                + "acct.studyId = :studyId AND acct.email LIKE :email AND acct.phone.number LIKE "
-                + ":number AND acct.createdOn >= :startTime AND acct.createdOn <= :endTime AND :language "
+                + "acct.studyId = :studyId " + EMAIL_TRIGRAM_QUERY + " AND acct.email LIKE :email "
+                + PHONE_TRIGRAM_QUERY + " AND acct.phone.number LIKE :number AND acct.createdOn >= :startTime AND acct.createdOn <= :endTime AND :language "
                 + "IN ELEMENTS(acct.languages)";
 
         // Setup start and end dates.
@@ -662,9 +698,9 @@ public class HibernateAccountDaoTest extends Mockito {
         DateTime endDate = DateTime.parse("2017-05-19T18:32:03.434-0700");
 
         // mock hibernate
-        when(mockHibernateHelper.queryGet(eq(expQuery), any(), any(), any(), any()))
+        when(mockHibernateHelper.queryGetFromReplica(eq(expQuery), any(), any(), any(), any()))
                 .thenReturn(ImmutableList.of(makeValidHibernateAccount(false)));
-        when(mockHibernateHelper.queryCount(any(), any())).thenReturn(11);
+        when(mockHibernateHelper.queryCountFromReplica(any(), any())).thenReturn(11);
 
         // execute and validate - Just validate filters and query, since everything else is tested in getPaged().
         AccountSummarySearch search = new AccountSummarySearch.Builder().withOffsetBy(10).withPageSize(5)
@@ -696,9 +732,9 @@ public class HibernateAccountDaoTest extends Mockito {
         params.put("endTime", endDate);
         params.put("language", "de");
 
-        verify(mockHibernateHelper).queryGet(eq(expQuery), paramCaptor.capture(), eq(10), eq(5),
+        verify(mockHibernateHelper).queryGetFromReplica(eq(expQuery), paramCaptor.capture(), eq(10), eq(5),
                 eq(HibernateAccount.class));
-        verify(mockHibernateHelper).queryCount(eq(expCountQuery), paramCaptor.capture());
+        verify(mockHibernateHelper).queryCountFromReplica(eq(expCountQuery), paramCaptor.capture());
 
         Map<String, Object> capturedParams = paramCaptor.getAllValues().get(0);
         assertEquals(capturedParams.get("studyId"), TEST_STUDY_IDENTIFIER);
@@ -717,6 +753,88 @@ public class HibernateAccountDaoTest extends Mockito {
         assertEquals(capturedParams.get("language"), "de");
     }
 
+    @Test
+    public void getAccountSummariesByCursor() throws Exception {
+        String expQuery = "SELECT new HibernateAccount(acct.createdOn, acct.studyId, "
+                + "acct.firstName, acct.lastName, acct.email, acct.phone, "
+                + "acct.id, acct.status, acct.synapseUserId) FROM HibernateAccount AS acct LEFT JOIN "
+                + "acct.accountSubstudies AS acctSubstudy WITH acct.id = acctSubstudy.accountId "
+                + "WHERE acct.studyId = :studyId GROUP BY acct.id ORDER BY acct.createdOn, acct.id";
+
+        // One more account than the page size is returned, so there is another page.
+        HibernateAccount hibernateAccount1 = makeValidHibernateAccount(false);
+        hibernateAccount1.setId("account-1");
+        hibernateAccount1.setCreatedOn(CREATED_ON);
+        HibernateAccount hibernateAccount2 = makeValidHibernateAccount(false);
+        hibernateAccount2.setId("account-2");
+        hibernateAccount2.setCreatedOn(CREATED_ON);
+        HibernateAccount hibernateAccount3 = makeValidHibernateAccount(false);
+        hibernateAccount3.setId("account-3");
+        hibernateAccount3.setCreatedOn(CREATED_ON.plusDays(1));
+        when(mockHibernateHelper.queryGetFromReplica(eq(expQuery), any(), any(), any(), any()))
+                .thenReturn(ImmutableList.of(hibernateAccount1, hibernateAccount2, hibernateAccount3));
+
+        AccountSummarySearch search = new AccountSummarySearch.Builder().withPageSize(2).build();
+        ForwardCursorPagedResourceList<AccountSummary> page = dao.getAccountSummariesByCursor(study, search);
+
+        assertEquals(page.getItems().size(), 2);
+        assertEquals(page.getItems().get(0).getId(), "account-1");
+        assertEquals(page.getItems().get(1).getId(), "account-2");
+        assertEquals(page.getNextPageOffsetKey(), CREATED_ON.getMillis() + ":account-2");
+        assertEquals(page.getRequestParams().get("pageSize"), 2);
+        assertNull(page.getRequestParams().get("offsetKey"));
+
+        // The total is never counted.
+        verify(mockHibernateHelper).queryGetFromReplica(expQuery, STUDY_QUERY_PARAMS, null, 3, HibernateAccount.class);
+        verify(mockHibernateHelper, never()).queryCountFromReplica(any(), any());
+    }
+
+    @Test
+    public void getAccountSummariesByCursorWithOffsetKey() throws Exception {
+        String expQuery = "SELECT new HibernateAccount(acct.createdOn, acct.studyId, "
+                + "acct.firstName, acct.lastName, acct.email, acct.phone, "
+                + "acct.id, acct.status, acct.synapseUserId) FROM HibernateAccount AS acct LEFT JOIN "
+                + "acct.accountSubstudies AS acctSubstudy WITH acct.id = acctSubstudy.accountId "
+                + "WHERE acct.studyId = :studyId " + EMAIL_TRIGRAM_QUERY + " AND acct.email LIKE :email AND "
+                + "(acct.createdOn > :offsetCreatedOn "
+                + "OR (acct.createdOn = :offsetCreatedOn AND acct.id > :offsetId)) GROUP BY acct.id "
+                + "ORDER BY acct.createdOn, acct.id";
+
+        // The last page has no next page.
+        when(mockHibernateHelper.queryGetFromReplica(eq(expQuery), any(), any(), any(), any()))
+                .thenReturn(ImmutableList.of(makeValidHibernateAccount(false)));
+
+        String offsetKey = CREATED_ON.getMillis() + ":account:2";
+        AccountSummarySearch search = new AccountSummarySearch.Builder().withPageSize(5).withEmailFilter(EMAIL)
+                .withOffsetKey(offsetKey).build();
+        ForwardCursorPagedResourceList<AccountSummary> page = dao.getAccountSummariesByCursor(study, search);
+
+        assertEquals(page.getItems().size(), 1);
+        assertNull(page.getNextPageOffsetKey());
+        assertEquals(page.getRequestParams().get("offsetKey"), offsetKey);
+        assertEquals(page.getRequestParams().get("emailFilter"), EMAIL);
+
+        verify(mockHibernateHelper).queryGetFromReplica(eq(expQuery), paramCaptor.capture(), eq(null), eq(6),
+                eq(HibernateAccount.class));
+        Map<String, Object> params = paramCaptor.getValue();
+        assertEquals(params.get("studyId"), TEST_STUDY_IDENTIFIER);
+        assertEquals(params.get("email"), "%" + EMAIL + "%");
+        assertEquals(((DateTime) params.get("offsetCreatedOn")).getMillis(), CREATED_ON.getMillis());
+        assertEquals(params.get("offsetId"), "account:2");
+    }
+
+    @Test(expectedExceptions = BadRequestException.class, expectedExceptionsMessageRegExp = "Invalid offsetKey: abc")
+    public void getAccountSummariesByCursorWithInvalidOffsetKey() throws Exception {
+        AccountSummarySearch search = new AccountSummarySearch.Builder().withOffsetKey("abc").build();
+        dao.getAccountSummariesByCursor(study, search);
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void getAccountSummariesByCursorWithOffsetKeyMissingId() throws Exception {
+        AccountSummarySearch search = new AccountSummarySearch.Builder().withOffsetKey("1234").build();
+        dao.getAccountSummariesByCursor(study, search);
+    }
+
     @Test
     public void unmarshallAccountSummarySuccess() {
         // Create HibernateAccount. Only fill in values needed for AccountSummary.
@@ -737,7 +855,7 @@ public class HibernateAccountDaoTest extends Mockito {
                 .create(TEST_STUDY_IDENTIFIER, "substudyB", ACCOUNT_ID);
         as2.setExternalId("externalIdB");
 
-        when(mockHibernateHelper.queryGet("FROM HibernateAccountSubstudy WHERE accountId=:accountId",
+        when(mockHibernateHelper.queryGetFromReplica("FROM HibernateAccountSubstudy WHERE accountId=:accountId",
                 ImmutableMap.of("accountId", hibernateAccount.getId()), null, null, HibernateAccountSubstudy.class))
                         .thenReturn(ImmutableList.of(as1, as2));
 
@@ -781,7 +899,7 @@ public class HibernateAccountDaoTest extends Mockito {
                 .create(TEST_STUDY_IDENTIFIER, "substudyB", ACCOUNT_ID);
         as2.setExternalId("externalIdB");
 
-        when(mockHibernateHelper.queryGet("FROM HibernateAccountSubstudy WHERE accountId=:accountId",
+        when(mockHibernateHelper.queryGetFromReplica("FROM HibernateAccountSubstudy WHERE accountId=:accountId",
                 ImmutableMap.of("accountId", hibernateAccount.getId()), null, null, HibernateAccountSubstudy.class))
                         .thenReturn(ImmutableList.of(as1, as2));
 
@@ -0,0 +1,14 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import org.testng.annotations.Test;
+
+import nl.jqno.equalsverifier.EqualsVerifier;
+import nl.jqno.equalsverifier.Warning;
+
+public class HibernateAccountSearchTrigramTest {
+    @Test
+    public void equalsVerified() {
+        EqualsVerifier.forClass(HibernateAccountSearchTrigram.class).allFieldsShouldBeUsed()
+                .suppress(Warning.NONFINAL_FIELDS).verify();
+    }
+}
@@ -13,12 +13,19 @@ import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
+import java.lang.reflect.Method;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.persistence.ElementCollection;
+import javax.persistence.OneToMany;
+
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.joda.time.DateTime;
 import org.testng.annotations.Test;
 
@@ -31,6 +38,21 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 public class HibernateAccountTest {
+    @Test
+    public void collectionsAreNotJoinFetched() {
+        int collectionCount = 0;
+        for (Method method : HibernateAccount.class.getMethods()) {
+            if (method.isAnnotationPresent(ElementCollection.class) || method.isAnnotationPresent(OneToMany.class)) {
+                assertEquals(method.getAnnotation(Fetch.class).value(), FetchMode.SELECT, method.getName());
+                assertEquals(method.getAnnotation(BatchSize.class).size(), HibernateAccount.COLLECTION_BATCH_SIZE,
+                        method.getName());
+                collectionCount++;
+            }
+        }
+        // attributes, consents, roles, data groups, languages, account substudies, and search trigrams
+        assertEquals(collectionCount, 7);
+    }
+    
     @Test
     public void attributes() {
         HibernateAccount account = new HibernateAccount();
@@ -14,6 +14,8 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.fail;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -26,6 +28,7 @@ import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededExce
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import org.hibernate.MultiIdentifierLoadAccess;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
@@ -38,6 +41,8 @@ import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.models.accounts.Account;
@@ -70,6 +75,10 @@ public class HibernateHelperTest {
             Function<Session, ?> function = invocation.getArgument(0);
             return function.apply(mockSession);
         }).when(helper).execute(any());
+        doAnswer(invocation -> {
+            Function<Session, ?> function = invocation.getArgument(0);
+            return function.apply(mockSession);
+        }).when(helper).executeOnReplica(any());
     }
 
     @Test
@@ -199,6 +208,22 @@ public class HibernateHelperTest {
         verify(mockQuery).setParameter("id", 10L);
     }
 
+    @Test
+    public void queryCountFromReplica() {
+        Query<Long> mockQuery = mock(Query.class);
+        when(mockQuery.uniqueResult()).thenReturn(42L);
+
+        when(mockSession.createQuery(QUERY, Long.class)).thenReturn(mockQuery);
+
+        int count = helper.queryCountFromReplica(QUERY, PARAMETERS);
+        assertEquals(count, 42);
+        
+        verify(mockQuery).setParameter("studyId", "study-test");
+        verify(mockQuery).setParameter("id", 10L);
+        verify(helper).executeOnReplica(any());
+        verify(helper, never()).execute(any());
+    }
+
     @Test
     public void queryGetSuccess() {
         // mock query
@@ -244,6 +269,25 @@ public class HibernateHelperTest {
         verify(mockQuery).setParameter("id", 10L);
     }
 
+    @Test
+    public void queryGetFromReplica() {
+        List<Object> hibernateOutputList = ImmutableList.of();
+        Query<Object> mockQuery = mock(Query.class);
+        when(mockQuery.list()).thenReturn(hibernateOutputList);
+
+        when(mockSession.createQuery(QUERY, Object.class)).thenReturn(mockQuery);
+
+        List<Object> helperOutputList = helper.queryGetFromReplica(QUERY, PARAMETERS, 100, 25, Object.class);
+        assertSame(helperOutputList, hibernateOutputList);
+        
+        verify(mockQuery).setParameter("studyId", "study-test");
+        verify(mockQuery).setParameter("id", 10L);
+        verify(mockQuery).setFirstResult(100);
+        verify(mockQuery).setMaxResults(25);
+        verify(helper).executeOnReplica(any());
+        verify(helper, never()).execute(any());
+    }
+
     @Test
     public void queryUpdate() {
         // mock query
@@ -294,6 +338,30 @@ public class HibernateHelperTest {
         verify(mockSession).update(testObj);
     }
 
+    @Test
+    public void createOrUpdateAll() {
+        MultiIdentifierLoadAccess<String> mockLoadAccess = mock(MultiIdentifierLoadAccess.class);
+        when(mockSession.byMultipleIds(String.class)).thenReturn(mockLoadAccess);
+        // "b" exists, "a" does not.
+        when(mockLoadAccess.multiLoad(ImmutableList.of("a", "b"))).thenReturn(Arrays.asList(null, "b-existing"));
+        
+        Map<String, String> objs = new LinkedHashMap<>();
+        objs.put("a", "a-new");
+        objs.put("b", "b-new");
+        helper.createOrUpdateAll(String.class, objs, (existing, obj) -> existing + "+" + obj);
+        
+        verify(mockSession).save("a-new");
+        verify(mockSession).merge("b-existing+b-new");
+        verify(helper).execute(any());
+    }
+
+    @Test
+    public void createOrUpdateAllNothingToDo() {
+        helper.createOrUpdateAll(String.class, ImmutableMap.of(), (existing, obj) -> obj);
+        
+        verify(helper, never()).execute(any());
+    }
+
     @Test
     public void updateCallsConsumer() { 
         reset(helper); // clear @Before setup
@@ -364,6 +432,65 @@ public class HibernateHelperTest {
         inOrder.verify(mockSession).close();
     }
     
+    @Test
+    public void executeOnReplica() {
+        when(mockSession.beginTransaction()).thenReturn(mockTransaction);
+        SessionFactory mockReplicaSessionFactory = mock(SessionFactory.class);
+        when(mockReplicaSessionFactory.openSession()).thenReturn(mockSession);
+
+        helper = new HibernateHelper(mockSessionFactory, mockReplicaSessionFactory, mockExceptionConverter);
+
+        Object functionOutput = new Object();
+        Function<Session, Object> mockFunction = mock(Function.class);
+        when(mockFunction.apply(any())).thenReturn(functionOutput);
+
+        InOrder inOrder = inOrder(mockReplicaSessionFactory, mockSession, mockTransaction, mockFunction);
+
+        Object helperOutput = helper.executeOnReplicaWithExceptionHandling(mockFunction);
+        assertSame(helperOutput, functionOutput);
+
+        inOrder.verify(mockReplicaSessionFactory).openSession();
+        inOrder.verify(mockSession).setDefaultReadOnly(true);
+        inOrder.verify(mockSession).beginTransaction();
+        inOrder.verify(mockFunction).apply(mockSession);
+        inOrder.verify(mockTransaction).commit();
+        inOrder.verify(mockSession).close();
+        verify(mockSessionFactory, never()).openSession();
+    }
+
+    @Test
+    public void executeOnReplicaWhenPrimaryReadRequired() {
+        when(mockSession.beginTransaction()).thenReturn(mockTransaction);
+        when(mockSessionFactory.openSession()).thenReturn(mockSession);
+        SessionFactory mockReplicaSessionFactory = mock(SessionFactory.class);
+
+        helper = new HibernateHelper(mockSessionFactory, mockReplicaSessionFactory, mockExceptionConverter);
+
+        BridgeUtils.setRequestContext(new RequestContext.Builder().withPrimaryReadRequired(true).build());
+        try {
+            helper.executeOnReplicaWithExceptionHandling(session -> null);
+        } finally {
+            BridgeUtils.setRequestContext(null);
+        }
+        verify(mockSessionFactory).openSession();
+        verify(mockSession).setDefaultReadOnly(true);
+        verify(mockReplicaSessionFactory, never()).openSession();
+    }
+
+    @Test
+    public void executeOnReplicaConvertsExceptions() {
+        PersistenceException ex = new PersistenceException();
+        when(mockSession.createQuery(QUERY, Object.class)).thenThrow(ex);
+        when(mockExceptionConverter.convert(ex, null)).thenReturn(TEST_EXCEPTION);
+
+        try {
+            helper.queryGetFromReplica(QUERY, null, null, null, Object.class);
+            fail("Should have thrown exception");
+        } catch(Exception e) {
+            assertSame(e, TEST_EXCEPTION);
+        }
+    }
+
     // These methods verify that the helper is using the exception converter. The exact behavior of the
     // converter is tested separately.
     
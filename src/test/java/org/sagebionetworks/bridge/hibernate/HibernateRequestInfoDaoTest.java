@@ -1,8 +1,18 @@
 package org.sagebionetworks.bridge.hibernate;
 
 import static org.sagebionetworks.bridge.TestConstants.USER_ID;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.fail;
 
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+
+import javax.persistence.PersistenceException;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import org.joda.time.DateTime;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
@@ -13,6 +23,8 @@ import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.exceptions.ConstraintViolationException;
 import org.sagebionetworks.bridge.models.RequestInfo;
 
 public class HibernateRequestInfoDaoTest extends Mockito {
@@ -26,6 +38,12 @@ public class HibernateRequestInfoDaoTest extends Mockito {
     @Captor
     ArgumentCaptor<RequestInfo> requestInfoCaptor;
     
+    @Captor
+    ArgumentCaptor<Map<String, RequestInfo>> requestInfoMapCaptor;
+    
+    @Captor
+    ArgumentCaptor<BinaryOperator<RequestInfo>> mergeFunctionCaptor;
+    
     @BeforeMethod
     public void beforeMethod() { 
         MockitoAnnotations.initMocks(this);
@@ -58,6 +76,83 @@ public class HibernateRequestInfoDaoTest extends Mockito {
         assertNotNull(captured.getSignedInOn());
     }
 
+    @Test(expectedExceptions = ConstraintViolationException.class)
+    public void updateRequestInfoOfDeletedAccount() {
+        RequestInfo newInfo = new RequestInfo.Builder().withUserId(USER_ID).build();
+        doThrow(constraintViolation("Cannot add or update a child row", 1452, "RequestInfo-UserId-Constraint"))
+                .when(mockHelper).create(newInfo, null);
+        
+        dao.updateRequestInfo(newInfo);
+    }
+    
+    @Test
+    public void updateRequestInfoCreatedByAnotherServer() {
+        RequestInfo newInfo = new RequestInfo.Builder().withUserId(USER_ID)
+                .withActivitiesAccessedOn(DateTime.now()).build();
+        RequestInfo createdInfo = new RequestInfo.Builder().withUserId(USER_ID)
+                .withSignedInOn(DateTime.now()).build();
+        when(mockHelper.getById(RequestInfo.class, USER_ID)).thenReturn(null, createdInfo);
+        doThrow(constraintViolation("Duplicate entry for key 'PRIMARY'", 1062, "PRIMARY")).when(mockHelper)
+                .create(newInfo, null);
+        
+        dao.updateRequestInfo(newInfo);
+        
+        // The insert failed, so the request info is updated instead
+        verify(mockHelper).update(requestInfoCaptor.capture(), isNull());
+        RequestInfo captured = requestInfoCaptor.getValue();
+        assertNotNull(captured.getActivitiesAccessedOn());
+        assertNotNull(captured.getSignedInOn());
+    }
+    
+    @Test(expectedExceptions = BridgeServiceException.class)
+    public void updateRequestInfoRethrowsOtherConstraintViolations() {
+        RequestInfo newInfo = new RequestInfo.Builder().withUserId(USER_ID).build();
+        RequestInfo existingInfo = new RequestInfo.Builder().withUserId(USER_ID).build();
+        when(mockHelper.getById(RequestInfo.class, USER_ID)).thenReturn(existingInfo);
+        doThrow(constraintViolation("Data truncated", 1265, null)).when(mockHelper).update(any(), isNull());
+        
+        try {
+            dao.updateRequestInfo(newInfo);
+        } catch (ConstraintViolationException e) {
+            fail("Only a missing account is reported as a constraint violation");
+        }
+    }
+    
+    private static BridgeServiceException constraintViolation(String message, int errorCode, String constraintName) {
+        return new BridgeServiceException(new PersistenceException(
+                new org.hibernate.exception.ConstraintViolationException(message,
+                        new SQLException(message, "23000", errorCode), constraintName)));
+    }
+    
+    @Test(expectedExceptions = BridgeServiceException.class, expectedExceptionsMessageRegExp = "Database unavailable")
+    public void updateRequestInfoRethrowsOtherErrors() {
+        RequestInfo newInfo = new RequestInfo.Builder().withUserId(USER_ID).build();
+        doThrow(new BridgeServiceException("Database unavailable")).when(mockHelper).create(newInfo, null);
+        
+        dao.updateRequestInfo(newInfo);
+    }
+    
+    @Test
+    public void updateRequestInfos() {
+        RequestInfo newInfo = new RequestInfo.Builder().withUserId(USER_ID)
+                .withActivitiesAccessedOn(DateTime.now()).build();
+        RequestInfo otherInfo = new RequestInfo.Builder().withUserId("otherUserId").build();
+        
+        dao.updateRequestInfos(ImmutableList.of(newInfo, otherInfo));
+        
+        verify(mockHelper).createOrUpdateAll(eq(RequestInfo.class), requestInfoMapCaptor.capture(),
+                mergeFunctionCaptor.capture());
+        assertEquals(requestInfoMapCaptor.getValue(), ImmutableMap.of(USER_ID, newInfo, "otherUserId", otherInfo));
+        
+        // Existing values are kept, unless the new request info has a value.
+        RequestInfo existingInfo = new RequestInfo.Builder().withUserId(USER_ID).withUserAgent("userAgent")
+                .withSignedInOn(DateTime.now()).build();
+        RequestInfo merged = mergeFunctionCaptor.getValue().apply(existingInfo, newInfo);
+        assertEquals(merged.getUserAgent(), "userAgent");
+        assertEquals(merged.getSignedInOn(), existingInfo.getSignedInOn());
+        assertEquals(merged.getActivitiesAccessedOn(), newInfo.getActivitiesAccessedOn());
+    }
+    
     @Test
     public void getRequestInfo() {
         dao.getRequestInfo(USER_ID);
@@ -35,4 +35,19 @@ public class QueryBuilderTest {
         assertEquals(builder.getParameters().get("NOTIN1"), "C");
         assertEquals(builder.getParameters().get("NOTIN2"), "D");
     }
+    
+    @Test
+    public void testSearchTrigrams() {
+        QueryBuilder builder = new QueryBuilder();
+        builder.searchTrigrams(ImmutableSet.of("e:abc", "e:bcd"), "emailTrigram");
+        builder.searchTrigrams(ImmutableSet.of(), "phoneTrigram");
+        
+        assertEquals(builder.getQuery(), "AND acct.id IN (SELECT emailTrigramAcct.id FROM HibernateAccount AS " + 
+                "emailTrigramAcct JOIN emailTrigramAcct.searchTrigrams AS emailTrigram WHERE " + 
+                "emailTrigram.studyId = :studyId AND emailTrigram.trigram IN (:emailTrigrams) GROUP BY " + 
+                "emailTrigramAcct.id HAVING COUNT(emailTrigram.trigram) = :emailTrigramCount)");
+        assertEquals(builder.getParameters().get("emailTrigrams"), ImmutableSet.of("e:abc", "e:bcd"));
+        assertEquals(builder.getParameters().get("emailTrigramCount"), 2L);
+        assertEquals(builder.getParameters().size(), 2);
+    }
 }
@@ -63,6 +63,7 @@ public class AccountSummarySearchTest {
         
         AccountSummarySearch search = new AccountSummarySearch.Builder()
             .withOffsetBy(10)
+            .withOffsetKey("offsetKey")
             .withPageSize(100)
             .withEmailFilter("email")
             .withPhoneFilter("phone")
@@ -81,6 +82,7 @@ public class AccountSummarySearchTest {
         AccountSummarySearch deser = BridgeObjectMapper.get().readValue(json, AccountSummarySearch.class);
         
         assertEquals(deser.getOffsetBy(), 10);
+        assertEquals(deser.getOffsetKey(), "offsetKey");
         assertEquals(deser.getPageSize(), 100);
         assertEquals(deser.getEmailFilter(), "email");
         assertEquals(deser.getPhoneFilter(), "phone");
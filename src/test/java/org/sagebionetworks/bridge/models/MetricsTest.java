@@ -115,6 +115,27 @@ public class MetricsTest {
         assertTrue(json.contains("\"session_id\":\"d839fe\""));
     }
 
+    @Test
+    public void testRecordCacheAccess() {
+        Metrics metrics = new Metrics("12345");
+        metrics.recordCacheRead("study", true, 100, 10L);
+        metrics.recordCacheRead("study", false, 0, 5L);
+        metrics.recordCacheWrite("study", 200, 20L);
+        metrics.recordCacheRead("session", true, 50, 1L);
+
+        JsonNode study = metrics.getJson().get("cache").get("study");
+        assertEquals(study.get("hits").asLong(), 1L);
+        assertEquals(study.get("misses").asLong(), 1L);
+        assertEquals(study.get("writes").asLong(), 1L);
+        assertEquals(study.get("bytes_read").asLong(), 100L);
+        assertEquals(study.get("bytes_written").asLong(), 200L);
+        assertEquals(study.get("micros").asLong(), 35L);
+
+        JsonNode session = metrics.getJson().get("cache").get("session");
+        assertEquals(session.get("hits").asLong(), 1L);
+        assertFalse(session.has("misses"));
+    }
+
     @Test(expectedExceptions = IllegalArgumentException.class)
     public void testConstructorRequestIdMustNotBeNull() {
         new Metrics(null);
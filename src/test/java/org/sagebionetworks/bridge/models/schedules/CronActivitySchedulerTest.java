@@ -5,6 +5,7 @@ import static org.sagebionetworks.bridge.models.schedules.ScheduleTestUtils.asse
 import static org.sagebionetworks.bridge.models.schedules.ScheduleType.ONCE;
 import static org.sagebionetworks.bridge.models.schedules.ScheduleType.RECURRING;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertTrue;
 import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY;
 
@@ -323,6 +324,33 @@ public class CronActivitySchedulerTest {
         assertEquals(scheduleDates.get(2).toString(), "2016-05-13T22:00:00.000-07:00");
     }
     
+    @Test
+    public void reusedSchedulerCanBeCalledRepeatedly() {
+        Schedule schedule = createScheduleWith(RECURRING);
+        schedule.reuseScheduler();
+        
+        for (int i=0; i < 2; i++) {
+            scheduledActivities = schedule.getScheduler().getScheduledActivities(plan,
+                    getContext(ENROLLMENT.plusWeeks(1)));
+            assertDates(scheduledActivities, "2015-03-25 09:15", "2015-03-28 09:15");
+        }
+    }
+    
+    @Test
+    public void schedulerIsCreatedForEachCallByDefault() {
+        Schedule schedule = createScheduleWith(RECURRING);
+        
+        assertNotSame(schedule.getScheduler(), schedule.getScheduler());
+    }
+    
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = ".*is invalid.*")
+    public void invalidCronTriggerThrowsException() {
+        Schedule schedule = createScheduleWith(RECURRING);
+        schedule.setCronTrigger("not a cron expression");
+        
+        schedule.getScheduler();
+    }
+    
     private ScheduleContext getContext(DateTime endsOn) {
         return new ScheduleContext.Builder()
             .withStudyIdentifier(TEST_STUDY)
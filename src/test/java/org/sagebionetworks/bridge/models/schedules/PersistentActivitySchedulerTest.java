@@ -4,6 +4,7 @@ import static org.sagebionetworks.bridge.models.schedules.ScheduleTestUtils.asDT
 import static org.sagebionetworks.bridge.models.schedules.ScheduleTestUtils.assertDates;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY;
 
@@ -116,6 +117,15 @@ public class PersistentActivitySchedulerTest {
         assertDates(scheduledActivities, MSK, "2015-04-12 09:40");
     }
     @Test
+    public void scheduleWithoutEventIdSchedulesFromEnrollment() {
+        schedule.setEventId(null);
+        
+        scheduledActivities = schedule.getScheduler().getScheduledActivities(plan, getContext(ENROLLMENT.plusDays(1)));
+        assertDates(scheduledActivities, MSK, "2015-03-23 10:00");
+        // The schedule may be shared with other requests, so it isn't changed
+        assertNull(schedule.getEventId());
+    }
+    @Test
     public void originalPersistentScheduleStructureStillWorks() {
         schedule.setEventId("activity:AAA:finished,enrollment");
         schedule.setScheduleType(ScheduleType.ONCE);
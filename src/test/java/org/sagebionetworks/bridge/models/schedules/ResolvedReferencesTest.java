@@ -0,0 +1,50 @@
+package org.sagebionetworks.bridge.models.schedules;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import org.joda.time.DateTime;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+public class ResolvedReferencesTest {
+    private static final SurveyReference SURVEY_REF = new SurveyReference("survey", "survey-guid",
+            DateTime.parse("2019-03-05T10:00:00.000Z"));
+    private static final SchemaReference SCHEMA_REF = new SchemaReference("schema", 3);
+    private static final CompoundActivity COMPOUND_ACTIVITY = new CompoundActivity.Builder()
+            .withTaskIdentifier("task").withSchemaList(ImmutableList.of(new SchemaReference("schema", null)))
+            .withSurveyList(ImmutableList.of(new SurveyReference(null, "survey-guid", null))).build();
+
+    @Test
+    public void emptyByDefault() {
+        ResolvedReferences references = new ResolvedReferences();
+        assertTrue(references.getSurveys().isEmpty());
+        assertTrue(references.getSchemas().isEmpty());
+        assertTrue(references.getCompoundActivities().isEmpty());
+
+        // References are added as they are resolved.
+        references.getSurveys().put("survey-guid", SURVEY_REF);
+        assertEquals(references.getSurveys().get("survey-guid"), SURVEY_REF);
+    }
+
+    @Test
+    public void canSerialize() throws Exception {
+        ResolvedReferences references = new ResolvedReferences();
+        references.getSurveys().put("survey-guid", SURVEY_REF);
+        references.getSchemas().put("schema", SCHEMA_REF);
+        references.getCompoundActivities().put("task", COMPOUND_ACTIVITY);
+
+        String json = BridgeObjectMapper.get().writeValueAsString(references);
+        ResolvedReferences deser = BridgeObjectMapper.get().readValue(json, ResolvedReferences.class);
+
+        assertEquals(deser.getSurveys().get("survey-guid"), SURVEY_REF);
+        assertEquals(deser.getSchemas().get("schema"), SCHEMA_REF);
+        assertEquals(deser.getCompoundActivities().get("task"), COMPOUND_ACTIVITY);
+
+        // Deserialized references can have more references added
+        deser.getSchemas().put("other-schema", SCHEMA_REF);
+        assertEquals(deser.getSchemas().size(), 2);
+    }
+}
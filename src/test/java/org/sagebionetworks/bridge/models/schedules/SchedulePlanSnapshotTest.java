@@ -0,0 +1,88 @@
+package org.sagebionetworks.bridge.models.schedules;
+
+import static org.sagebionetworks.bridge.models.OperatingSystem.IOS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.Criteria;
+
+public class SchedulePlanSnapshotTest {
+
+    @Test
+    public void canSerialize() throws Exception {
+        SchedulePlan simplePlan = TestUtils.getSimpleSchedulePlan(TestConstants.TEST_STUDY);
+        
+        CriteriaScheduleStrategy strategy = new CriteriaScheduleStrategy();
+        Criteria criteria = TestUtils.createCriteria(2, 10, ImmutableSet.of("a"), ImmutableSet.of("b"));
+        strategy.addCriteria(new ScheduleCriteria(TestUtils.getSchedule("Schedule"), criteria));
+        SchedulePlan criteriaPlan = SchedulePlan.create();
+        criteriaPlan.setGuid("criteriaPlanGuid");
+        criteriaPlan.setStrategy(strategy);
+        
+        SchedulePlanSnapshot snapshot = new SchedulePlanSnapshot("version",
+                Lists.newArrayList(simplePlan, criteriaPlan));
+        
+        String json = BridgeObjectMapper.get().writeValueAsString(snapshot);
+        SchedulePlanSnapshot deser = BridgeObjectMapper.get().readValue(json, SchedulePlanSnapshot.class);
+        
+        assertEquals(deser.getVersion(), "version");
+        List<SchedulePlan> plans = deser.getSchedulePlans();
+        assertEquals(plans.size(), 2);
+        assertEquals(plans.get(0).getGuid(), simplePlan.getGuid());
+        assertEquals(plans.get(0).getStrategy().getAllPossibleSchedules(),
+                simplePlan.getStrategy().getAllPossibleSchedules());
+        
+        Criteria deserCriteria = ((CriteriaScheduleStrategy)plans.get(1).getStrategy()).getScheduleCriteria().get(0)
+                .getCriteria();
+        assertEquals(deserCriteria.getMinAppVersion(IOS), Integer.valueOf(2));
+        assertEquals(deserCriteria.getMaxAppVersion(IOS), Integer.valueOf(10));
+        assertEquals(deserCriteria.getAllOfGroups(), ImmutableSet.of("a"));
+        assertEquals(deserCriteria.getNoneOfGroups(), ImmutableSet.of("b"));
+    }
+    
+    @Test
+    public void schedulersAreReused() {
+        SchedulePlan simplePlan = TestUtils.getSimpleSchedulePlan(TestConstants.TEST_STUDY);
+        SchedulePlan criteriaPlan = SchedulePlan.create();
+        CriteriaScheduleStrategy strategy = new CriteriaScheduleStrategy();
+        strategy.addCriteria(new ScheduleCriteria(TestUtils.getSchedule("A schedule"), Criteria.create()));
+        criteriaPlan.setStrategy(strategy);
+        
+        new SchedulePlanSnapshot("version", ImmutableList.of(simplePlan, criteriaPlan, SchedulePlan.create()));
+        
+        for (SchedulePlan plan : ImmutableList.of(simplePlan, criteriaPlan)) {
+            Schedule schedule = plan.getStrategy().getAllPossibleSchedules().get(0);
+            assertSame(schedule.getScheduler(), schedule.getScheduler());
+        }
+    }
+    
+    @Test
+    public void copiesPlans() {
+        List<SchedulePlan> plans = Lists.newArrayList(SchedulePlan.create());
+        SchedulePlanSnapshot snapshot = new SchedulePlanSnapshot("version", plans);
+        
+        plans.clear();
+        assertEquals(snapshot.getSchedulePlans().size(), 1);
+    }
+    
+    @Test
+    public void nullPlansAreEmpty() {
+        assertTrue(new SchedulePlanSnapshot("version", null).getSchedulePlans().isEmpty());
+    }
+    
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void plansCannotBeChanged() {
+        new SchedulePlanSnapshot("version", null).getSchedulePlans().add(SchedulePlan.create());
+    }
+}
@@ -14,6 +14,8 @@ import org.sagebionetworks.bridge.models.surveys.TestSurvey;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -144,6 +146,28 @@ public class ScheduleTest {
         assertTrue(schedule.getPersistent());
     }
     
+    @Test
+    public void getScheduler() {
+        Schedule schedule = new Schedule();
+        assertTrue(schedule.getScheduler() instanceof IntervalActivityScheduler);
+        
+        schedule.setScheduleType(ScheduleType.PERSISTENT);
+        assertTrue(schedule.getScheduler() instanceof PersistentActivityScheduler);
+        
+        schedule.setCronTrigger("0 0 14 1/1 * ? *");
+        assertTrue(schedule.getScheduler() instanceof CronActivityScheduler);
+        assertNotSame(schedule.getScheduler(), schedule.getScheduler());
+    }
+    
+    @Test
+    public void reuseScheduler() {
+        Schedule schedule = new Schedule();
+        schedule.reuseScheduler();
+        
+        ActivityScheduler scheduler = schedule.getScheduler();
+        assertSame(schedule.getScheduler(), scheduler);
+    }
+    
     @Test
     public void scheduleWithDelayNotPersistent() {
         Schedule schedule = new Schedule();
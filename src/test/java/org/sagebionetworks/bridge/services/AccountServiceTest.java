@@ -55,6 +55,7 @@ import org.sagebionetworks.bridge.dao.AccountSecretDao;
 import org.sagebionetworks.bridge.exceptions.AccountDisabledException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
@@ -101,6 +102,9 @@ public class AccountServiceTest extends Mockito {
     @Mock
     PagedResourceList<AccountSummary> mockAccountSummaries;
 
+    @Mock
+    ForwardCursorPagedResourceList<AccountSummary> mockAccountSummaryPage;
+
     @Mock
     AccountSecret mockSecret;
 
@@ -296,6 +300,17 @@ public class AccountServiceTest extends Mockito {
         verify(mockAccountDao).getPagedAccountSummaries(study, EMPTY_SEARCH);
     }
 
+    @Test
+    public void getAccountSummariesByCursor() {
+        Study study = Study.create();
+        when(mockAccountDao.getAccountSummariesByCursor(study, EMPTY_SEARCH)).thenReturn(mockAccountSummaryPage);
+
+        ForwardCursorPagedResourceList<AccountSummary> returnVal = service.getAccountSummariesByCursor(study,
+                EMPTY_SEARCH);
+        assertEquals(returnVal, mockAccountSummaryPage);
+        verify(mockAccountDao).getAccountSummariesByCursor(study, EMPTY_SEARCH);
+    }
+
     @Test
     public void getHealthCodeForAccount() throws Exception {
         Account account = mockGetAccountById(ACCOUNT_ID, false);
@@ -27,9 +27,11 @@ import org.mockito.Spy;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.dao.ActivityEventDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoActivityEvent.Builder;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.time.DateUtils;
 import org.sagebionetworks.bridge.models.activities.ActivityEvent;
 import org.sagebionetworks.bridge.models.activities.ActivityEventObjectType;
@@ -55,6 +57,9 @@ public class ActivityEventServiceTest {
     @Mock
     private ActivityEventDao activityEventDao;
     
+    @Mock
+    private CacheProvider mockCacheProvider;
+    
     @Mock
     private StudyService mockStudyService;
     
@@ -67,6 +72,9 @@ public class ActivityEventServiceTest {
         activityEventService = new ActivityEventService();
         
         activityEventService.setActivityEventDao(activityEventDao);
+        activityEventService.setCacheProvider(mockCacheProvider);
+        // Mockito would otherwise return an empty map, rather than a cache miss
+        when(mockCacheProvider.getActivityEventMap(any())).thenReturn(null);
         activityEventService.setStudyService(mockStudyService);
         activityEventService.setParticipantService(mockParticipantService);
     }
@@ -462,6 +470,100 @@ public class ActivityEventServiceTest {
         assertEquals(publishedEventList.get(3).getHealthCode(), "AAA-BBB-CCC");
     }
     
+    @Test
+    public void activitiesRetrievedEventIsOnlyPublishedOnce() {
+        when(activityEventDao.publishEvent(any())).thenReturn(false);
+        
+        activityEventService.publishActivitiesRetrieved(Study.create(), HEALTH_CODE, DateTime.now());
+        activityEventService.publishActivitiesRetrieved(Study.create(), HEALTH_CODE, DateTime.now());
+        activityEventService.publishActivitiesRetrieved(Study.create(), "otherHealthCode", DateTime.now());
+        
+        ArgumentCaptor<ActivityEvent> eventCaptor = ArgumentCaptor.forClass(ActivityEvent.class);
+        verify(activityEventDao, times(2)).publishEvent(eventCaptor.capture());
+        assertEquals(eventCaptor.getAllValues().get(0).getHealthCode(), HEALTH_CODE);
+        assertEquals(eventCaptor.getAllValues().get(1).getHealthCode(), "otherHealthCode");
+    }
+    
+    @Test
+    public void activitiesRetrievedEventIsPublishedAfterEventsAreDeleted() {
+        when(activityEventDao.publishEvent(any())).thenReturn(true);
+        
+        activityEventService.publishActivitiesRetrieved(Study.create(), HEALTH_CODE, DateTime.now());
+        activityEventService.deleteActivityEvents(HEALTH_CODE);
+        activityEventService.publishActivitiesRetrieved(Study.create(), HEALTH_CODE, DateTime.now());
+        
+        verify(activityEventDao, times(2)).publishEvent(any());
+    }
+    
+    @Test
+    public void activitiesRetrievedEventIsPublishedAgainAfterFailure() {
+        when(activityEventDao.publishEvent(any())).thenThrow(new BridgeServiceException("Failed")).thenReturn(true);
+        
+        try {
+            activityEventService.publishActivitiesRetrieved(Study.create(), HEALTH_CODE, DateTime.now());
+            fail("Should have thrown exception");
+        } catch(BridgeServiceException e) {
+            // expected
+        }
+        activityEventService.publishActivitiesRetrieved(Study.create(), HEALTH_CODE, DateTime.now());
+        
+        verify(activityEventDao, times(2)).publishEvent(any());
+    }
+    
+    @Test
+    public void getActivityEventMapUsesCachedEvents() {
+        Map<String, DateTime> cachedMap = ImmutableMap.of("enrollment", ENROLLMENT, "created_on", CREATED_ON);
+        when(mockCacheProvider.getActivityEventMap(HEALTH_CODE)).thenReturn(cachedMap);
+        
+        Map<String, DateTime> results = activityEventService.getActivityEventMap(STUDY_ID, HEALTH_CODE);
+        assertEquals(results.get("enrollment"), ENROLLMENT);
+        assertEquals(results.get("study_start_date"), ENROLLMENT);
+        
+        verify(activityEventDao, never()).getActivityEventMap(any());
+        verify(mockCacheProvider, never()).setActivityEventMap(any(), any());
+    }
+    
+    @Test
+    public void getActivityEventMapCachesEventsOnMiss() {
+        Map<String, DateTime> map = ImmutableMap.of("enrollment", ENROLLMENT, "created_on", CREATED_ON);
+        when(activityEventDao.getActivityEventMap(HEALTH_CODE)).thenReturn(map);
+        
+        Map<String, DateTime> results = activityEventService.getActivityEventMap(STUDY_ID, HEALTH_CODE);
+        assertEquals(results.get("enrollment"), ENROLLMENT);
+        
+        verify(mockCacheProvider).setActivityEventMap(HEALTH_CODE, map);
+    }
+    
+    @Test
+    public void publishingEventRemovesCachedEvents() {
+        when(activityEventDao.publishEvent(any())).thenReturn(true);
+        
+        ActivityEvent event = new Builder().withHealthCode(HEALTH_CODE)
+                .withObjectType(ActivityEventObjectType.ENROLLMENT).withTimestamp(ENROLLMENT).build();
+        activityEventService.publishActivityEvent(event);
+        
+        verify(mockCacheProvider).removeActivityEventMap(HEALTH_CODE);
+    }
+    
+    @Test
+    public void eventThatIsNotPublishedDoesNotRemoveCachedEvents() {
+        when(activityEventDao.publishEvent(any())).thenReturn(false);
+        
+        ConsentSignature signature = new ConsentSignature.Builder().withBirthdate("1980-01-01").withName("A Name")
+                .withSignedOn(ENROLLMENT.getMillis()).build();
+        activityEventService.publishEnrollmentEvent(Study.create(), HEALTH_CODE, signature);
+        
+        verify(mockCacheProvider, never()).removeActivityEventMap(any());
+    }
+    
+    @Test
+    public void deleteActivityEventsRemovesCachedEvents() {
+        activityEventService.deleteActivityEvents(HEALTH_CODE);
+        
+        verify(activityEventDao).deleteActivityEvents(HEALTH_CODE);
+        verify(mockCacheProvider).removeActivityEventMap(HEALTH_CODE);
+    }
+    
     @Test
     public void canPublishCustomEventWithAutomaticCustomEvents() {
         // This also verifies the correct parsing of the custom event key, which contains a colon.
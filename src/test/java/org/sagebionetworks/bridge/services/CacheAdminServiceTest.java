@@ -2,23 +2,35 @@ package org.sagebionetworks.bridge.services;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.sagebionetworks.bridge.BridgeConstants.API_MAXIMUM_PAGE_SIZE;
+import static org.sagebionetworks.bridge.BridgeConstants.API_MINIMUM_PAGE_SIZE;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
+import java.util.List;
 import java.util.Set;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheMetrics;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
+import org.sagebionetworks.bridge.models.ResourceList;
 import org.sagebionetworks.bridge.models.surveys.Survey;
 
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.util.SafeEncoder;
 
 public class CacheAdminServiceTest {
 
@@ -26,8 +38,15 @@ public class CacheAdminServiceTest {
     
     private CacheAdminService adminService;
     
+    private List<String> keys;
+    
+    private List<String> scanPatterns;
+    
     @BeforeMethod
     public void before() {
+        keys = Lists.newArrayList(CacheKey.study("foo").toString(), "bar:session", REQUEST_INFO_KEY,
+                CacheKey.viewKey(Survey.class, "baz").toString());
+        scanPatterns = Lists.newArrayList();
         adminService = new CacheAdminService();
         
         JedisPool pool = mock(JedisPool.class);
@@ -82,17 +101,106 @@ public class CacheAdminServiceTest {
         adminService.removeItem(REQUEST_INFO_KEY);
     }
     
+    @Test
+    public void getCacheStats() {
+        CacheMetrics metrics = new CacheMetrics();
+        CacheProvider cacheProvider = mock(CacheProvider.class);
+        when(cacheProvider.getCacheMetrics()).thenReturn(metrics);
+        adminService.setCacheProvider(cacheProvider);
+        
+        assertEquals(adminService.getCacheStats(), metrics.getStats());
+    }
+    
+    @Test
+    public void listItemsPage() {
+        ForwardCursorPagedResourceList<String> page = adminService.listItems(null, "*:study", 5);
+        
+        // All keys have been scanned before the page is full (the stub does not filter by pattern)
+        assertEquals(page.getItems(), ImmutableList.of("foo:study", "baz:Survey:view"));
+        assertNull(page.getNextPageOffsetKey());
+        assertEquals(page.getRequestParams().get(ResourceList.PATTERN), "*:study");
+        assertEquals(page.getRequestParams().get(ResourceList.PAGE_SIZE), 5);
+        assertTrue(scanPatterns.stream().allMatch("*:study"::equals));
+    }
+    
+    @Test
+    public void listItemsPageFromOffsetKey() {
+        ForwardCursorPagedResourceList<String> page = adminService.listItems("2", null, 5);
+        
+        assertEquals(page.getItems(), ImmutableList.of("baz:Survey:view"));
+        assertNull(page.getNextPageOffsetKey());
+        assertTrue(scanPatterns.stream().allMatch("*"::equals));
+    }
+    
+    @Test
+    public void listItemsPageReturnsCursorWhenPageIsFull() {
+        for (int i=0; i < 10; i++) {
+            keys.add(CacheKey.study("study"+i).toString());
+        }
+        ForwardCursorPagedResourceList<String> page = adminService.listItems(null, null, 5);
+        
+        assertEquals(page.getItems().size(), 5);
+        assertEquals(page.getNextPageOffsetKey(), "7");
+        
+        page = adminService.listItems(page.getNextPageOffsetKey(), null, 5);
+        assertEquals(page.getItems().size(), 5);
+        assertEquals(page.getNextPageOffsetKey(), "12");
+        
+        page = adminService.listItems(page.getNextPageOffsetKey(), null, 5);
+        assertEquals(page.getItems().size(), 2);
+        assertNull(page.getNextPageOffsetKey());
+    }
+    
+    @Test(expectedExceptions = BadRequestException.class)
+    public void listItemsPageSizeTooSmall() {
+        adminService.listItems(null, null, API_MINIMUM_PAGE_SIZE-1);
+    }
+    
+    @Test(expectedExceptions = BadRequestException.class)
+    public void listItemsPageSizeTooLarge() {
+        adminService.listItems(null, null, API_MAXIMUM_PAGE_SIZE+1);
+    }
+    
+    @Test
+    public void removeItems() {
+        long removed = adminService.removeItems("*");
+        
+        assertEquals(removed, 2L);
+        // Sessions and request info are not removed
+        assertEquals(keys, ImmutableList.of("bar:session", REQUEST_INFO_KEY));
+    }
+    
+    @Test(expectedExceptions = BadRequestException.class)
+    public void removeItemsRequiresPattern() {
+        adminService.removeItems(" ");
+    }
+    
+    /**
+     * Scans one key per call, ignoring the pattern (which is recorded), so paging can be verified. The 
+     * cursor is the index of the next key to scan.
+     */
     private Jedis createStubJedis() {
-        Set<String> KEYS = Sets.newHashSet(CacheKey.study("foo").toString(),
-                CacheKey.viewKey(Survey.class, "baz").toString());
         return new Jedis("") {
             @Override
-            public Set<String> keys(String pattern) {
-                return ImmutableSet.copyOf(KEYS);
+            public ScanResult<String> scan(String cursor, ScanParams params) {
+                List<byte[]> scanParams = ImmutableList.copyOf(params.getParams());
+                scanPatterns.add(SafeEncoder.encode(scanParams.get(1)));
+                
+                int index = Integer.parseInt(cursor);
+                String next = (index + 1 < keys.size()) ? Integer.toString(index + 1) : ScanParams.SCAN_POINTER_START;
+                return new ScanResult<>(next, ImmutableList.of(keys.get(index)));
             }
             @Override
             public Long del(String key) {
-                return (KEYS.remove(key)) ? 1L : 0L;
+                return (keys.remove(key)) ? 1L : 0L;
+            }
+            @Override
+            public Long del(String... keysToRemove) {
+                long count = 0L;
+                for (String key : keysToRemove) {
+                    count += del(key);
+                }
+                return count;
             }
         };
     }
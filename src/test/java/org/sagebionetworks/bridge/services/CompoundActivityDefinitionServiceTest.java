@@ -40,6 +40,7 @@ public class CompoundActivityDefinitionServiceTest {
 
     private SchedulePlanService schedulePlanService;
     private CompoundActivityDefinitionDao dao;
+    private ResolvedReferenceCache resolvedReferenceCache;
     private CompoundActivityDefinitionService service;
 
     @BeforeMethod
@@ -48,6 +49,8 @@ public class CompoundActivityDefinitionServiceTest {
         schedulePlanService = mock(SchedulePlanService.class);
         service = new CompoundActivityDefinitionService();
         service.setSchedulePlanService(schedulePlanService);
+        resolvedReferenceCache = mock(ResolvedReferenceCache.class);
+        service.setResolvedReferenceCache(resolvedReferenceCache);
         service.setCompoundActivityDefDao(dao);
     }
 
@@ -106,6 +109,16 @@ public class CompoundActivityDefinitionServiceTest {
         verify(dao).deleteCompoundActivityDefinition(TestConstants.TEST_STUDY, TASK_ID);
     }
 
+    @Test
+    public void deleteRemovesResolvedReferences() {
+        // execute
+        service.deleteCompoundActivityDefinition(TestConstants.TEST_STUDY, TASK_ID);
+
+        // verify dao and cache
+        verify(dao).deleteCompoundActivityDefinition(TestConstants.TEST_STUDY, TASK_ID);
+        verify(resolvedReferenceCache).removeResolvedReferences(TestConstants.TEST_STUDY);
+    }
+
     @Test
     public void deleteNullTaskId() {
         deleteBadRequest(null);
@@ -251,6 +264,9 @@ public class CompoundActivityDefinitionServiceTest {
 
         // Validate that the service result is the same as the dao result.
         assertSame(serviceResult, daoResult);
+
+        // References to the definition are resolved again.
+        verify(resolvedReferenceCache).removeResolvedReferences(TestConstants.TEST_STUDY);
     }
 
     @Test
@@ -27,6 +27,7 @@ import java.util.stream.Collectors;
 import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
@@ -463,7 +464,8 @@ public class ConsentServiceMockTest {
         account.setDataGroups(dataGroups);
 
         when(subpopulation.getDataGroupsAssignedWhileConsented()).thenReturn(TestConstants.USER_DATA_GROUPS);
-        when(subpopService.getSubpopulation(study.getStudyIdentifier(), SUBPOP_GUID)).thenReturn(subpopulation);
+        when(subpopService.getSubpopulations(study.getStudyIdentifier(), ImmutableSet.of(SUBPOP_GUID)))
+                .thenReturn(ImmutableMap.of(SUBPOP_GUID, subpopulation));
         when(accountService.getAccount(any())).thenReturn(account);
 
         consentService.withdrawFromStudy(study, PARTICIPANT, WITHDRAWAL, WITHDREW_ON);
@@ -678,10 +680,13 @@ public class ConsentServiceMockTest {
         setupWithdrawTest(true, true);
         study.setConsentNotificationEmail(null);
 
-        when(subpopService.getSubpopulation(study.getStudyIdentifier(), SECOND_SUBPOP)).thenReturn(subpopulation);
+        when(subpopService.getSubpopulations(study.getStudyIdentifier(), ImmutableSet.of(SUBPOP_GUID, SECOND_SUBPOP)))
+                .thenReturn(ImmutableMap.of(SUBPOP_GUID, subpopulation, SECOND_SUBPOP, subpopulation));
 
         consentService.withdrawFromStudy(study, PARTICIPANT, WITHDRAWAL, WITHDREW_ON);
 
+        // Both subpopulations are retrieved together
+        verify(subpopService).getSubpopulations(study.getStudyIdentifier(), ImmutableSet.of(SUBPOP_GUID, SECOND_SUBPOP));
         verify(sendMailService, never()).sendEmail(any());
     }
 
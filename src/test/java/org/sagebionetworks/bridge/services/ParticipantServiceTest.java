@@ -812,6 +812,24 @@ public class ParticipantServiceTest extends Mockito {
         verify(accountService).getPagedAccountSummaries(STUDY, search); 
     }
     
+    @Test
+    public void getAccountSummariesByCursor() {
+        AccountSummarySearch search = new AccountSummarySearch.Builder()
+                .withOffsetKey("1495216930224:account-id")
+                .withPageSize(50)
+                .withEmailFilter("foo").build();
+        
+        participantService.getAccountSummariesByCursor(STUDY, search);
+        
+        verify(accountService).getAccountSummariesByCursor(STUDY, search); 
+    }
+    
+    @Test(expectedExceptions = InvalidEntityException.class)
+    public void getAccountSummariesByCursorWithTooLargePageSize() {
+        AccountSummarySearch search = new AccountSummarySearch.Builder().withPageSize(251).build();
+        participantService.getAccountSummariesByCursor(STUDY, search);
+    }
+    
     @Test(expectedExceptions = NullPointerException.class)
     public void getPagedAccountSummariesWithBadStudy() {
         participantService.getPagedAccountSummaries(null, AccountSummarySearch.EMPTY_SEARCH);
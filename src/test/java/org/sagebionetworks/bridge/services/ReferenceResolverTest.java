@@ -6,6 +6,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
@@ -25,6 +26,7 @@ import org.sagebionetworks.bridge.models.ClientInfo;
 import org.sagebionetworks.bridge.models.schedules.Activity;
 import org.sagebionetworks.bridge.models.schedules.CompoundActivity;
 import org.sagebionetworks.bridge.models.schedules.CompoundActivityDefinition;
+import org.sagebionetworks.bridge.models.schedules.ResolvedReferences;
 import org.sagebionetworks.bridge.models.schedules.ScheduledActivity;
 import org.sagebionetworks.bridge.models.schedules.SchemaReference;
 import org.sagebionetworks.bridge.models.schedules.SurveyReference;
@@ -97,6 +99,8 @@ public class ReferenceResolverTest {
     @Spy
     private HashMap<String,SchemaReference> schemaReferences;
     
+    private ResolvedReferences resolvedReferences;
+    
     private ReferenceResolver resolver;
     
     private ScheduledActivity scheduledActivity;
@@ -108,8 +112,9 @@ public class ReferenceResolverTest {
         MockitoAnnotations.initMocks(this);
         
         // All the dependencies are mocks or mutable maps, and can be adjusted per test
+        resolvedReferences = new ResolvedReferences();
         resolver = new ReferenceResolver(compoundActivityDefinitionService, schemaService, surveyService,
-                surveyReferences, schemaReferences, CLIENT_INFO, STUDY_ID);
+                surveyReferences, schemaReferences, resolvedReferences, CLIENT_INFO, STUDY_ID);
         
         scheduledActivity = ScheduledActivity.create();
         
@@ -345,6 +350,90 @@ public class ReferenceResolverTest {
         verify(schemaService, times(1)).getLatestUploadSchemaRevisionForAppVersion(STUDY_ID, SCHEMA_ID, CLIENT_INFO);
     }
     
+    @Test
+    public void surveyResolvedFromSharedReferences() {
+        resolvedReferences.getSurveys().put(SURVEY_GUID, RESOLVED_SURVEY_REF);
+        scheduledActivity.setActivity(activityBuilder.withSurvey(UNRESOLVED_SURVEY_REF).build());
+        
+        resolver.resolve(scheduledActivity);
+        
+        assertEquals(RESOLVED_SURVEY_REF, scheduledActivity.getActivity().getSurvey());
+        assertFalse(resolver.hasNewResolvedReferences());
+        verifyNoMoreInteractions(surveyService);
+    }
+    
+    @Test
+    public void schemaResolvedFromSharedReferences() {
+        resolvedReferences.getSchemas().put(SCHEMA_ID, RESOLVED_SCHEMA_REF);
+        scheduledActivity.setActivity(activityBuilder.withTask(UNRESOLVED_TASK_REF).build());
+        
+        resolver.resolve(scheduledActivity);
+        
+        assertEquals(RESOLVED_SCHEMA_REF, scheduledActivity.getActivity().getTask().getSchema());
+        assertFalse(resolver.hasNewResolvedReferences());
+        verifyNoMoreInteractions(schemaService);
+    }
+    
+    @Test
+    public void compoundActivityResolvedFromSharedReferences() {
+        resolvedReferences.getCompoundActivities().put(TASK_ID, UNRESOLVED_COMPOUND_ACTIVITY_DEF.getCompoundActivity());
+        resolvedReferences.getSurveys().put(SURVEY_GUID, RESOLVED_SURVEY_REF);
+        resolvedReferences.getSchemas().put(SCHEMA_ID, RESOLVED_SCHEMA_REF);
+        scheduledActivity.setActivity(activityBuilder.withCompoundActivity(COMPOUND_ACTIVITY_SKINNY_REF).build());
+        
+        resolver.resolve(scheduledActivity);
+        
+        CompoundActivity compoundActivity = scheduledActivity.getActivity().getCompoundActivity();
+        assertEquals(RESOLVED_SCHEMA_REF, compoundActivity.getSchemaList().get(0));
+        assertEquals(RESOLVED_SURVEY_REF, compoundActivity.getSurveyList().get(0));
+        assertFalse(resolver.hasNewResolvedReferences());
+        verifyNoMoreInteractions(compoundActivityDefinitionService);
+        verifyNoMoreInteractions(surveyService);
+        verifyNoMoreInteractions(schemaService);
+    }
+    
+    @Test
+    public void appConfigTakesPrecedenceOverSharedReferences() {
+        SurveyReference appConfigSurveyRef = new SurveyReference(SURVEY_ID, SURVEY_GUID, SURVEY_CREATED_ON.plusDays(1));
+        surveyReferences.put(SURVEY_GUID, appConfigSurveyRef);
+        resolvedReferences.getSurveys().put(SURVEY_GUID, RESOLVED_SURVEY_REF);
+        scheduledActivity.setActivity(activityBuilder.withSurvey(UNRESOLVED_SURVEY_REF).build());
+        
+        resolver.resolve(scheduledActivity);
+        
+        assertEquals(appConfigSurveyRef, scheduledActivity.getActivity().getSurvey());
+    }
+    
+    @Test
+    public void referencesFromServicesAreShared() {
+        scheduledActivity.setActivity(activityBuilder.withCompoundActivity(COMPOUND_ACTIVITY_SKINNY_REF).build());
+        when(compoundActivityDefinitionService.getCompoundActivityDefinition(STUDY_ID, TASK_ID))
+                .thenReturn(UNRESOLVED_COMPOUND_ACTIVITY_DEF);
+        when(surveyService.getSurveyMostRecentlyPublishedVersion(STUDY_ID, SURVEY_GUID, false)).thenReturn(SURVEY);
+        when(schemaService.getLatestUploadSchemaRevisionForAppVersion(STUDY_ID, SCHEMA_ID, CLIENT_INFO)).thenReturn(SCHEMA);
+        
+        resolver.resolve(scheduledActivity);
+        
+        assertTrue(resolver.hasNewResolvedReferences());
+        ResolvedReferences shared = resolver.getResolvedReferences();
+        assertEquals(shared.getSurveys().get(SURVEY_GUID), RESOLVED_SURVEY_REF);
+        assertEquals(shared.getSchemas().get(SCHEMA_ID), RESOLVED_SCHEMA_REF);
+        // The definition is shared before its references are resolved, so they're resolved for each client
+        assertEquals(shared.getCompoundActivities().get(TASK_ID), UNRESOLVED_COMPOUND_ACTIVITY_DEF.getCompoundActivity());
+    }
+    
+    @Test
+    public void unresolvableReferencesAreNotShared() {
+        scheduledActivity.setActivity(activityBuilder.withSurvey(UNRESOLVED_SURVEY_REF).build());
+        when(surveyService.getSurveyMostRecentlyPublishedVersion(STUDY_ID, SURVEY_GUID, false))
+                .thenThrow(new EntityNotFoundException(Survey.class));
+        
+        resolver.resolve(scheduledActivity);
+        
+        assertFalse(resolver.hasNewResolvedReferences());
+        assertTrue(resolvedReferences.getSurveys().isEmpty());
+    }
+    
     @Test
     public void unresolvableSurveyReturnedAsIs() {
         scheduledActivity.setActivity(activityBuilder.withSurvey(UNRESOLVED_SURVEY_REF).build());
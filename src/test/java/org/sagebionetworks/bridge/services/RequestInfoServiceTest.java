@@ -1,21 +1,35 @@
 package org.sagebionetworks.bridge.services;
 
 import static org.sagebionetworks.bridge.TestConstants.USER_ID;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 
+import java.util.Collection;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import org.joda.time.DateTime;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.RequestInfoDao;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.exceptions.ConstraintViolationException;
 import org.sagebionetworks.bridge.models.RequestInfo;
 
 public class RequestInfoServiceTest extends Mockito {
+    private static final DateTime SIGNED_IN_ON = DateTime.parse("2019-08-01T10:00:00.000Z");
+    private static final DateTime ACTIVITIES_ACCESSED_ON = DateTime.parse("2019-08-01T10:05:00.000Z");
     
     @InjectMocks
     RequestInfoService service;
@@ -26,10 +40,27 @@ public class RequestInfoServiceTest extends Mockito {
     @Mock
     RequestInfoDao mockRequestInfoDao;
     
+    @Mock
+    BridgeConfig mockConfig;
+    
+    @Captor
+    ArgumentCaptor<Collection<RequestInfo>> requestInfosCaptor;
+    
     @BeforeMethod
     public void beforeMethod() {
         MockitoAnnotations.initMocks(this);
     }
+    
+    @AfterMethod
+    public void afterMethod() {
+        service.stopFlush();
+    }
+    
+    private void startWriteBehind() {
+        when(mockConfig.getPropertyAsInt(RequestInfoService.CONFIG_KEY_FLUSH_INTERVAL_SECONDS)).thenReturn(60);
+        service.setBridgeConfig(mockConfig);
+        service.startFlush();
+    }
 
     @Test
     public void updateRequestInfo() {
@@ -71,6 +102,194 @@ public class RequestInfoServiceTest extends Mockito {
         verify(mockRequestInfoDao, never()).updateRequestInfo(any());
     }
     
+    @Test
+    public void updateRequestInfoIsBuffered() {
+        startWriteBehind();
+        
+        RequestInfo info1 = new RequestInfo.Builder().withUserId(USER_ID).withUserAgent("userAgent")
+                .withSignedInOn(SIGNED_IN_ON).build();
+        RequestInfo info2 = new RequestInfo.Builder().withUserId(USER_ID)
+                .withActivitiesAccessedOn(ACTIVITIES_ACCESSED_ON).build();
+        service.updateRequestInfo(info1);
+        service.updateRequestInfo(info2);
+        
+        verify(mockRequestInfoDao, never()).updateRequestInfo(any());
+        verify(mockRequestInfoDao, never()).updateRequestInfos(any());
+        
+        // Both updates are merged, and can be read before they are written.
+        RequestInfo retrieved = service.getRequestInfo(USER_ID);
+        assertEquals(retrieved.getUserAgent(), "userAgent");
+        assertEquals(retrieved.getSignedInOn(), SIGNED_IN_ON);
+        assertEquals(retrieved.getActivitiesAccessedOn(), ACTIVITIES_ACCESSED_ON);
+        
+        service.flush();
+        
+        verify(mockRequestInfoDao).updateRequestInfos(requestInfosCaptor.capture());
+        RequestInfo written = Iterables.getOnlyElement(requestInfosCaptor.getValue());
+        assertEquals(written.getUserAgent(), "userAgent");
+        assertEquals(written.getSignedInOn(), SIGNED_IN_ON);
+        assertEquals(written.getActivitiesAccessedOn(), ACTIVITIES_ACCESSED_ON);
+        
+        // Nothing is written twice
+        service.flush();
+        verify(mockRequestInfoDao).updateRequestInfos(any());
+    }
+    
+    @Test
+    public void getRequestInfoMergesBufferedUpdate() {
+        startWriteBehind();
+        
+        RequestInfo persisted = new RequestInfo.Builder().withUserId(USER_ID).withUserAgent("userAgent")
+                .withSignedInOn(SIGNED_IN_ON).build();
+        when(mockRequestInfoDao.getRequestInfo(USER_ID)).thenReturn(persisted);
+        
+        DateTime laterSignedInOn = SIGNED_IN_ON.plusHours(1);
+        service.updateRequestInfo(new RequestInfo.Builder().withUserId(USER_ID).withSignedInOn(laterSignedInOn)
+                .build());
+        
+        RequestInfo retrieved = service.getRequestInfo(USER_ID);
+        assertEquals(retrieved.getUserAgent(), "userAgent");
+        assertEquals(retrieved.getSignedInOn(), laterSignedInOn);
+    }
+    
+    @Test
+    public void flushWritesInBatches() {
+        startWriteBehind();
+        
+        for (int i=0; i <= RequestInfoService.FLUSH_BATCH_SIZE; i++) {
+            service.updateRequestInfo(new RequestInfo.Builder().withUserId("user" + i).build());
+        }
+        service.flush();
+        
+        verify(mockRequestInfoDao, times(2)).updateRequestInfos(requestInfosCaptor.capture());
+        assertEquals(requestInfosCaptor.getAllValues().get(0).size(), RequestInfoService.FLUSH_BATCH_SIZE);
+        assertEquals(requestInfosCaptor.getAllValues().get(1).size(), 1);
+    }
+    
+    @Test
+    public void flushRetriesFailedBatch() {
+        startWriteBehind();
+        
+        service.updateRequestInfo(new RequestInfo.Builder().withUserId(USER_ID).withUserAgent("userAgent")
+                .withSignedInOn(SIGNED_IN_ON).build());
+        doThrow(new BridgeServiceException("Database unavailable")).doNothing().when(mockRequestInfoDao)
+                .updateRequestInfos(any());
+        doThrow(new BridgeServiceException("Database unavailable")).when(mockRequestInfoDao)
+                .updateRequestInfo(any());
+        service.flush();
+        
+        // A later update is merged over the failed one
+        DateTime laterSignedInOn = SIGNED_IN_ON.plusHours(1);
+        service.updateRequestInfo(new RequestInfo.Builder().withUserId(USER_ID).withSignedInOn(laterSignedInOn)
+                .build());
+        service.flush();
+        
+        verify(mockRequestInfoDao, times(2)).updateRequestInfos(requestInfosCaptor.capture());
+        RequestInfo written = Iterables.getOnlyElement(requestInfosCaptor.getAllValues().get(1));
+        assertEquals(written.getUserAgent(), "userAgent");
+        assertEquals(written.getSignedInOn(), laterSignedInOn);
+    }
+    
+    @Test
+    public void flushWritesFailedBatchOneAtATime() {
+        startWriteBehind();
+        
+        RequestInfo info1 = new RequestInfo.Builder().withUserId("user1").build();
+        RequestInfo info2 = new RequestInfo.Builder().withUserId("user2").build();
+        service.updateRequestInfo(info1);
+        service.updateRequestInfo(info2);
+        doThrow(new BridgeServiceException("Bad row")).when(mockRequestInfoDao).updateRequestInfos(any());
+        service.flush();
+        
+        verify(mockRequestInfoDao).updateRequestInfo(info1);
+        verify(mockRequestInfoDao).updateRequestInfo(info2);
+        
+        // Nothing is left to write
+        service.flush();
+        verify(mockRequestInfoDao).updateRequestInfos(any());
+    }
+    
+    @Test
+    public void flushDropsUpdateOfDeletedAccount() {
+        startWriteBehind();
+        
+        RequestInfo info = new RequestInfo.Builder().withUserId(USER_ID).build();
+        service.updateRequestInfo(info);
+        doThrow(new BridgeServiceException("Bad row")).when(mockRequestInfoDao).updateRequestInfos(any());
+        doThrow(new ConstraintViolationException.Builder().withMessage("Account no longer exists.").build())
+                .when(mockRequestInfoDao).updateRequestInfo(info);
+        service.flush();
+        
+        // The update is not tried again
+        service.flush();
+        verify(mockRequestInfoDao).updateRequestInfos(any());
+        verify(mockRequestInfoDao).updateRequestInfo(any());
+    }
+    
+    @Test
+    public void flushKeepsRestOfBatchAfterFailedWrite() {
+        startWriteBehind();
+        
+        service.updateRequestInfo(new RequestInfo.Builder().withUserId("user1").build());
+        service.updateRequestInfo(new RequestInfo.Builder().withUserId("user2").build());
+        doThrow(new BridgeServiceException("Database unavailable")).doNothing().when(mockRequestInfoDao)
+                .updateRequestInfos(any());
+        doThrow(new BridgeServiceException("Database unavailable")).when(mockRequestInfoDao)
+                .updateRequestInfo(any());
+        service.flush();
+        
+        // The database is unavailable, so only the first update is tried
+        verify(mockRequestInfoDao).updateRequestInfo(any());
+        
+        service.flush();
+        verify(mockRequestInfoDao, times(2)).updateRequestInfos(requestInfosCaptor.capture());
+        assertEquals(requestInfosCaptor.getAllValues().get(1).size(), 2);
+    }
+    
+    @Test
+    public void flushDropsUpdateAfterMaxAttempts() {
+        startWriteBehind();
+        
+        service.updateRequestInfo(new RequestInfo.Builder().withUserId(USER_ID).build());
+        doThrow(new BridgeServiceException("Bad row")).when(mockRequestInfoDao).updateRequestInfos(any());
+        doThrow(new BridgeServiceException("Bad row")).when(mockRequestInfoDao).updateRequestInfo(any());
+        for (int i=0; i < RequestInfoService.MAX_FLUSH_ATTEMPTS; i++) {
+            service.flush();
+        }
+        verify(mockRequestInfoDao, times(RequestInfoService.MAX_FLUSH_ATTEMPTS)).updateRequestInfo(any());
+        
+        // The update has been dropped
+        service.flush();
+        verify(mockRequestInfoDao, times(RequestInfoService.MAX_FLUSH_ATTEMPTS)).updateRequestInfos(any());
+    }
+    
+    @Test
+    public void stopFlushWritesBufferedUpdates() {
+        startWriteBehind();
+        
+        RequestInfo info = new RequestInfo.Builder().withUserId(USER_ID).build();
+        service.updateRequestInfo(info);
+        service.stopFlush();
+        
+        verify(mockRequestInfoDao).updateRequestInfos(ImmutableList.of(info));
+        
+        // Once stopped, updates are written immediately
+        service.updateRequestInfo(info);
+        verify(mockRequestInfoDao).updateRequestInfo(info);
+    }
+    
+    @Test
+    public void removeRequestInfoRemovesBufferedUpdate() {
+        startWriteBehind();
+        
+        service.updateRequestInfo(new RequestInfo.Builder().withUserId(USER_ID).build());
+        service.removeRequestInfo(USER_ID);
+        
+        assertNull(service.getRequestInfo(USER_ID));
+        service.flush();
+        verify(mockRequestInfoDao, never()).updateRequestInfos(any());
+    }
+    
     @Test
     public void removeRequestInfo() {
         service.removeRequestInfo(USER_ID);
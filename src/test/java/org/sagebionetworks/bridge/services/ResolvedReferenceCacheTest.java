@@ -0,0 +1,87 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.models.ClientInfo;
+import org.sagebionetworks.bridge.models.schedules.ResolvedReferences;
+
+public class ResolvedReferenceCacheTest {
+    private static final ClientInfo CLIENT_INFO = ClientInfo.fromUserAgentCache(
+            "Lilly/25 (iPhone Simulator; iPhone OS/9.3) BridgeSDK/12");
+    private static final CacheKey CACHE_KEY = CacheKey.resolvedReferences(TestConstants.TEST_STUDY, CLIENT_INFO);
+    private static final CacheKey LIST_KEY = CacheKey.resolvedReferencesList(TestConstants.TEST_STUDY);
+    
+    @Mock
+    private CacheProvider mockCacheProvider;
+    
+    @Mock
+    private BridgeConfig mockConfig;
+    
+    private ResolvedReferenceCache cache;
+    
+    @BeforeMethod
+    public void before() {
+        MockitoAnnotations.initMocks(this);
+        when(mockConfig.getPropertyAsInt(ResolvedReferenceCache.CONFIG_KEY_EXPIRE_SECONDS)).thenReturn(300);
+        
+        cache = new ResolvedReferenceCache();
+        cache.setCacheProvider(mockCacheProvider);
+        cache.setBridgeConfig(mockConfig);
+    }
+    
+    @Test
+    public void getResolvedReferences() {
+        ResolvedReferences references = new ResolvedReferences();
+        when(mockCacheProvider.getObject(CACHE_KEY, ResolvedReferences.class)).thenReturn(references);
+        
+        assertSame(cache.getResolvedReferences(TestConstants.TEST_STUDY, CLIENT_INFO), references);
+        verify(mockCacheProvider, never()).addCacheKeyToSet(any(), any());
+    }
+    
+    @Test
+    public void getResolvedReferencesNotCached() {
+        ResolvedReferences references = cache.getResolvedReferences(TestConstants.TEST_STUDY, CLIENT_INFO);
+        
+        assertTrue(references.getSurveys().isEmpty());
+        assertTrue(references.getSchemas().isEmpty());
+        assertTrue(references.getCompoundActivities().isEmpty());
+        // Tracked so that the references are not cached if they change while they are being resolved
+        verify(mockCacheProvider).addCacheKeyToSet(LIST_KEY, CACHE_KEY.toString());
+    }
+    
+    @Test
+    public void setResolvedReferences() {
+        ResolvedReferences references = new ResolvedReferences();
+        
+        cache.setResolvedReferences(TestConstants.TEST_STUDY, CLIENT_INFO, references);
+        
+        verify(mockCacheProvider).addCacheKeyToSet(LIST_KEY, CACHE_KEY.toString());
+        verify(mockCacheProvider).setObjectIfAbsent(CACHE_KEY, references, 300);
+    }
+    
+    @Test
+    public void removeResolvedReferences() {
+        cache.removeResolvedReferences(TestConstants.TEST_STUDY);
+        
+        verify(mockCacheProvider).removeSetOfCacheKeys(LIST_KEY, ResolvedReferenceCache.TOMBSTONE_EXPIRE_SECONDS);
+    }
+    
+    @Test(expectedExceptions = NullPointerException.class)
+    public void getResolvedReferencesNullStudy() {
+        cache.getResolvedReferences(null, CLIENT_INFO);
+    }
+}
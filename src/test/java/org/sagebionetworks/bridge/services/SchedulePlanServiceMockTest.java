@@ -3,7 +3,10 @@ package org.sagebionetworks.bridge.services;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY;
@@ -13,6 +16,7 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.util.List;
@@ -25,6 +29,9 @@ import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.SchedulePlanDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoSchedulePlan;
 import org.sagebionetworks.bridge.dynamodb.DynamoStudy;
@@ -36,6 +43,7 @@ import org.sagebionetworks.bridge.models.schedules.CriteriaScheduleStrategy;
 import org.sagebionetworks.bridge.models.schedules.Schedule;
 import org.sagebionetworks.bridge.models.schedules.ScheduleCriteria;
 import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
+import org.sagebionetworks.bridge.models.schedules.SchedulePlanSnapshot;
 import org.sagebionetworks.bridge.models.schedules.ScheduleType;
 import org.sagebionetworks.bridge.models.schedules.SimpleScheduleStrategy;
 import org.sagebionetworks.bridge.models.studies.Study;
@@ -47,6 +55,8 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 public class SchedulePlanServiceMockTest {
+    private static final CacheKey VERSION_KEY = CacheKey.schedulePlanVersion(TEST_STUDY);
+    private static final CacheKey SNAPSHOT_KEY = CacheKey.schedulePlanSnapshot(TEST_STUDY);
 
     private Study study;
     private String surveyGuid1;
@@ -56,6 +66,7 @@ public class SchedulePlanServiceMockTest {
     private SchedulePlanDao mockSchedulePlanDao;
     private SurveyService mockSurveyService;
     private SubstudyService mockSubstudyService;
+    private CacheProvider mockCacheProvider;
     
     @BeforeMethod
     public void before() {
@@ -73,6 +84,12 @@ public class SchedulePlanServiceMockTest {
         service.setSurveyService(mockSurveyService);
         service.setSubstudyService(mockSubstudyService);
         
+        mockCacheProvider = mock(CacheProvider.class);
+        service.setCacheProvider(mockCacheProvider);
+        BridgeConfig mockConfig = mock(BridgeConfig.class);
+        when(mockConfig.getPropertyAsInt(SchedulePlanService.CONFIG_KEY_SNAPSHOT_EXPIRE_SECONDS)).thenReturn(3600);
+        service.setBridgeConfig(mockConfig);
+        
         Survey survey1 = new TestSurvey(SchedulePlanServiceMockTest.class, false);
         survey1.setIdentifier("identifier1");
         Survey survey2 = new TestSurvey(SchedulePlanServiceMockTest.class, false);
@@ -291,6 +308,99 @@ public class SchedulePlanServiceMockTest {
         assertEquals(returned, plans);
         
         verify(mockSchedulePlanDao).getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TestConstants.TEST_STUDY, true);
+        // Deleted plans are not cached
+        verify(mockCacheProvider, never()).getObject(any(), any(Class.class));
+    }
+    
+    @Test
+    public void getSchedulePlansSavesSnapshotWhenThereIsNoVersion() {
+        List<SchedulePlan> plans = Lists.newArrayList(SchedulePlan.create());
+        when(mockSchedulePlanDao.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false)).thenReturn(plans);
+        
+        service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false);
+        
+        ArgumentCaptor<String> versionCaptor = ArgumentCaptor.forClass(String.class);
+        verify(mockCacheProvider).setObject(eq(VERSION_KEY), versionCaptor.capture());
+        ArgumentCaptor<SchedulePlanSnapshot> snapshotCaptor = ArgumentCaptor.forClass(SchedulePlanSnapshot.class);
+        verify(mockCacheProvider).setObject(eq(SNAPSHOT_KEY), snapshotCaptor.capture(), eq(3600));
+        assertEquals(snapshotCaptor.getValue().getVersion(), versionCaptor.getValue());
+        assertEquals(snapshotCaptor.getValue().getSchedulePlans(), plans);
+    }
+    
+    @Test
+    public void getSchedulePlansFromLocalSnapshot() {
+        when(mockCacheProvider.getObject(VERSION_KEY, String.class)).thenReturn("version1");
+        List<SchedulePlan> plans = Lists.newArrayList(SchedulePlan.create());
+        when(mockSchedulePlanDao.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false)).thenReturn(plans);
+        
+        List<SchedulePlan> first = service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false);
+        List<SchedulePlan> second = service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false);
+        assertSame(second, first);
+        
+        // Plans are loaded once, and the snapshot in Redis is only read the first time
+        verify(mockSchedulePlanDao).getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false);
+        verify(mockCacheProvider).getObject(SNAPSHOT_KEY, SchedulePlanSnapshot.class);
+        verify(mockCacheProvider, times(2)).getObject(VERSION_KEY, String.class);
+    }
+    
+    @Test
+    public void getSchedulePlansFromRedisSnapshot() {
+        SchedulePlan plan = SchedulePlan.create();
+        when(mockCacheProvider.getObject(VERSION_KEY, String.class)).thenReturn("version1");
+        when(mockCacheProvider.getObject(SNAPSHOT_KEY, SchedulePlanSnapshot.class))
+                .thenReturn(new SchedulePlanSnapshot("version1", Lists.newArrayList(plan)));
+        
+        List<SchedulePlan> returned = service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false);
+        assertEquals(returned.size(), 1);
+        assertEquals(returned.get(0).getStudyKey(), TEST_STUDY_IDENTIFIER);
+        
+        verify(mockSchedulePlanDao, never()).getSchedulePlans(any(), any(), anyBoolean());
+    }
+    
+    @Test
+    public void getSchedulePlansReplacesOutOfDateSnapshot() {
+        when(mockCacheProvider.getObject(VERSION_KEY, String.class)).thenReturn("version2");
+        when(mockCacheProvider.getObject(SNAPSHOT_KEY, SchedulePlanSnapshot.class))
+                .thenReturn(new SchedulePlanSnapshot("version1", Lists.newArrayList(SchedulePlan.create())));
+        List<SchedulePlan> plans = Lists.newArrayList();
+        when(mockSchedulePlanDao.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false)).thenReturn(plans);
+        
+        List<SchedulePlan> returned = service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false);
+        assertTrue(returned.isEmpty());
+        
+        ArgumentCaptor<SchedulePlanSnapshot> snapshotCaptor = ArgumentCaptor.forClass(SchedulePlanSnapshot.class);
+        verify(mockCacheProvider).setObject(eq(SNAPSHOT_KEY), snapshotCaptor.capture(), eq(3600));
+        assertEquals(snapshotCaptor.getValue().getVersion(), "version2");
+        verify(mockCacheProvider, never()).setObject(eq(VERSION_KEY), any());
+    }
+    
+    @Test
+    public void changedVersionReplacesLocalSnapshot() {
+        when(mockCacheProvider.getObject(VERSION_KEY, String.class)).thenReturn("version1", "version2");
+        when(mockSchedulePlanDao.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false))
+                .thenReturn(Lists.newArrayList());
+        
+        service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false);
+        service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false);
+        
+        verify(mockSchedulePlanDao, times(2)).getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false);
+    }
+    
+    @Test
+    public void createSchedulePlanInvalidatesSnapshots() {
+        service.createSchedulePlan(study, constructSchedulePlan());
+        
+        verify(mockCacheProvider).setObject(eq(VERSION_KEY), anyString());
+    }
+    
+    @Test
+    public void updateSchedulePlanInvalidatesSnapshots() {
+        SchedulePlan plan = constructSchedulePlan();
+        when(mockSchedulePlanDao.getSchedulePlan(study, plan.getGuid())).thenReturn(plan);
+        
+        service.updateSchedulePlan(study, plan);
+        
+        verify(mockCacheProvider).setObject(eq(VERSION_KEY), anyString());
     }
     
     @Test
@@ -298,6 +408,7 @@ public class SchedulePlanServiceMockTest {
         service.deleteSchedulePlan(TEST_STUDY, "planGuid");
         
         verify(mockSchedulePlanDao).deleteSchedulePlan(TEST_STUDY, "planGuid");
+        verify(mockCacheProvider).setObject(eq(VERSION_KEY), anyString());
     }
     
     @Test
@@ -305,6 +416,7 @@ public class SchedulePlanServiceMockTest {
         service.deleteSchedulePlanPermanently(TEST_STUDY, "planGuid");
         
         verify(mockSchedulePlanDao).deleteSchedulePlanPermanently(TEST_STUDY, "planGuid");
+        verify(mockCacheProvider).setObject(eq(VERSION_KEY), anyString());
     }
     
     private SchedulePlan constructorInvalidSchedulePlan() {
@@ -4,6 +4,7 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
@@ -28,6 +29,7 @@ import org.sagebionetworks.bridge.dynamodb.DynamoSchedulePlan;
 import org.sagebionetworks.bridge.dynamodb.DynamoScheduledActivity;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.ClientInfo;
+import org.sagebionetworks.bridge.models.schedules.ResolvedReferences;
 import org.sagebionetworks.bridge.models.schedules.Schedule;
 import org.sagebionetworks.bridge.models.schedules.ScheduleContext;
 import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
@@ -151,6 +153,9 @@ public class ScheduledActivityServiceDuplicateTest {
     @Mock
     AppConfigService appConfigService;
     
+    @Mock
+    ResolvedReferenceCache resolvedReferenceCache;
+    
     @Mock
     Study study;
     
@@ -169,6 +174,8 @@ public class ScheduledActivityServiceDuplicateTest {
         service.setActivityEventService(activityEventService);
         service.setSchedulePlanService(schedulePlanService);
         service.setAppConfigService(appConfigService);
+        service.setResolvedReferenceCache(resolvedReferenceCache);
+        when(resolvedReferenceCache.getResolvedReferences(any(), any())).thenReturn(new ResolvedReferences());
         
         contextBuilder = new ScheduleContext.Builder()
                 .withClientInfo(ClientInfo.fromUserAgentCache("Lilly/25 (iPhone Simulator; iPhone OS/9.3) BridgeSDK/12"))
@@ -265,14 +272,14 @@ public class ScheduledActivityServiceDuplicateTest {
 
         // Duplicated persisted activities.
         List<ScheduledActivity> dbActivities = makeResultSet(PST);
-        doReturn(dbActivities).when(activityDao).getActivities(any(), any());
+        doReturn(dbActivities).when(activityDao).getActivities(any(DateTimeZone.class), any());
         
         // Correctly scheduled one-time tasks coming from scheduler
         doReturn(makeSchedulePlans()).when(schedulePlanService).getSchedulePlans(any(), any(), eq(false));
         
         List<ScheduledActivity> activities = service.getScheduledActivities(study, context);
         
-        verify(activityDao).getActivities(any(), any());
+        verify(activityDao).getActivities(any(DateTimeZone.class), any());
         verify(schedulePlanService).getSchedulePlans(any(), any(), eq(false));
         
         allWithinQueryWindow(activities, context);
@@ -293,7 +300,7 @@ public class ScheduledActivityServiceDuplicateTest {
         
         // Duplicated persisted activities.
         List<ScheduledActivity> dbActivities = makeResultSet(PST);
-        doReturn(dbActivities).when(activityDao).getActivities(any(), any());
+        doReturn(dbActivities).when(activityDao).getActivities(any(DateTimeZone.class), any());
         
         // Correctly scheduled one-time tasks coming from scheduler
         doReturn(makeSchedulePlans()).when(schedulePlanService).getSchedulePlans(any(), any(), eq(false));
@@ -301,7 +308,7 @@ public class ScheduledActivityServiceDuplicateTest {
         List<ScheduledActivity> activities = service.getScheduledActivities(study, context);
         
         // There's only one of these and they are set to midnight UTC.
-        verify(activityDao).getActivities(any(), any());
+        verify(activityDao).getActivities(any(DateTimeZone.class), any());
         verify(schedulePlanService).getSchedulePlans(any(), any(), eq(false));
         
         allWithinQueryWindow(activities, context);
@@ -325,7 +332,7 @@ public class ScheduledActivityServiceDuplicateTest {
         List<ScheduledActivity> activities = service.getScheduledActivities(study, context);
         
         // There's only one of these and they are set to midnight UTC.
-        verify(activityDao).getActivities(any(), any());
+        verify(activityDao).getActivities(any(DateTimeZone.class), any());
         verify(schedulePlanService).getSchedulePlans(any(), any(), eq(false));
         // This one is there...
         assertEquals(filterByGuid(activities, "bea8fd5d-7622-451f-a727-f9e37f00e1be").size(), 1);
@@ -349,7 +356,7 @@ public class ScheduledActivityServiceDuplicateTest {
         List<ScheduledActivity> activities = service.getScheduledActivities(study, context);
         
         // There's only one of these and they are set to midnight UTC.
-        verify(activityDao).getActivities(any(), any());
+        verify(activityDao).getActivities(any(DateTimeZone.class), any());
         verify(schedulePlanService).getSchedulePlans(any(), any(), eq(false));
         assertEquals(filterByGuid(activities, "bea8fd5d-7622-451f-a727-f9e37f00e1be").size(), 1);
         assertEquals(filterByGuid(activities, "6966c3d7-0949-43a8-804e-efc25d0f83e2").size(), 1);
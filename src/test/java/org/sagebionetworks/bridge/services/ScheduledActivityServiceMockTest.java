@@ -1,18 +1,18 @@
 package org.sagebionetworks.bridge.services;
 
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static org.mockito.Mockito.any;
-import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
-import static org.sagebionetworks.bridge.BridgeConstants.API_MAXIMUM_PAGE_SIZE;
 import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY;
 import static org.sagebionetworks.bridge.services.ScheduledActivityService.V3_FILTER;
 import static org.sagebionetworks.bridge.validators.ScheduleContextValidator.MAX_DATE_RANGE_IN_DAYS;
@@ -20,11 +20,14 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeUtils;
@@ -40,23 +43,26 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
-import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.ScheduledActivityDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoSchedulePlan;
 import org.sagebionetworks.bridge.dynamodb.DynamoScheduledActivity;
 import org.sagebionetworks.bridge.dynamodb.DynamoSurvey;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.time.DateUtils;
 import org.sagebionetworks.bridge.models.ClientInfo;
-import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.schedules.Activity;
 import org.sagebionetworks.bridge.models.schedules.ActivityType;
+import org.sagebionetworks.bridge.models.schedules.ResolvedReferences;
 import org.sagebionetworks.bridge.models.schedules.Schedule;
 import org.sagebionetworks.bridge.models.schedules.ScheduleContext;
 import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
+import org.sagebionetworks.bridge.models.schedules.ScheduleStrategy;
 import org.sagebionetworks.bridge.models.schedules.ScheduleType;
 import org.sagebionetworks.bridge.models.schedules.ScheduledActivity;
 import org.sagebionetworks.bridge.models.schedules.ScheduledActivityStatus;
@@ -72,6 +78,7 @@ import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -88,6 +95,8 @@ public class ScheduledActivityServiceMockTest {
     
     private static final String ACTIVITY_GUID = "activityGuid";
     
+    private static final String REQUEST_ID = "requestId";
+    
     private static final DateTime SURVEY_CREATED_ON = DateTime.parse("2015-04-03T10:40:34.000-07:00");
     
     /** Note that the time zone has changed at the time of the request */
@@ -116,6 +125,9 @@ public class ScheduledActivityServiceMockTest {
     @Mock
     private AppConfigService appConfigService;
     
+    @Mock
+    private ResolvedReferenceCache resolvedReferenceCache;
+    
     @Mock
     private Survey survey;
     
@@ -139,13 +151,18 @@ public class ScheduledActivityServiceMockTest {
         Map<String,DateTime> map = ImmutableMap.of();
         when(activityEventService.getActivityEventMap(eq(TEST_STUDY.getIdentifier()), anyString())).thenReturn(map);
         
-        when(activityDao.getActivity(any(), anyString(), anyString(), eq(true))).thenAnswer(invocation -> {
-            Object[] args = invocation.getArguments();
-            DynamoScheduledActivity schActivity = new DynamoScheduledActivity();
-            schActivity.setTimeZone((DateTimeZone)args[0]);
-            schActivity.setHealthCode((String)args[1]);
-            schActivity.setGuid((String)args[2]);
-            return schActivity;
+        when(activityDao.getActivities(anyString(), any())).thenAnswer(invocation -> {
+            String healthCode = invocation.getArgument(0);
+            Set<String> guids = invocation.getArgument(1);
+            List<ScheduledActivity> dbActivities = Lists.newArrayList();
+            for (String guid : guids) {
+                DynamoScheduledActivity schActivity = new DynamoScheduledActivity();
+                schActivity.setTimeZone(DateTimeZone.UTC);
+                schActivity.setHealthCode(healthCode);
+                schActivity.setGuid(guid);
+                dbActivities.add(schActivity);
+            }
+            return dbActivities;
         });
         
         doReturn(SURVEY_CREATED_ON.getMillis()).when(survey).getCreatedOn();
@@ -158,6 +175,8 @@ public class ScheduledActivityServiceMockTest {
         service.setActivityEventService(activityEventService);
         service.setSurveyService(surveyService);
         service.setAppConfigService(appConfigService);
+        service.setResolvedReferenceCache(resolvedReferenceCache);
+        when(resolvedReferenceCache.getResolvedReferences(any(), any())).thenAnswer(i -> new ResolvedReferences());
     }
     
     @AfterMethod
@@ -292,6 +311,23 @@ public class ScheduledActivityServiceMockTest {
         assertEquals(scheduledActivityListCaptor.getValue().size(), size);
     }
     
+    @Test
+    public void updateActivitiesNotFound() {
+        ScheduleContext context = createScheduleContext(ENDS_ON).build();
+        List<ScheduledActivity> scheduledActivities = TestUtils.runSchedulerForActivities(context);
+        scheduledActivities.get(0).setFinishedOn(NOW.getMillis());
+        doReturn(ImmutableList.of()).when(activityDao).getActivities(anyString(), any());
+        
+        try {
+            service.updateScheduledActivities("AAA", scheduledActivities);
+            fail("Should have thrown exception");
+        } catch(EntityNotFoundException e) {
+            // expected
+        }
+        verify(activityDao, never()).updateActivities(any(), any());
+        verify(activityEventService, never()).publishActivityFinishedEvent(any());
+    }
+    
     @Test
     public void missingEnrollmentEventIsSuppliedFromAccountCreatedOn() {
         ScheduleContext context = new ScheduleContext.Builder()
@@ -332,7 +368,6 @@ public class ScheduledActivityServiceMockTest {
         ScheduleContext context = createScheduleContext(ENDS_ON).build();
         List<ScheduledActivity> scheduledActivities = TestUtils.runSchedulerForActivities(context);
         
-        int count = scheduledActivities.size();
         scheduledActivities.get(0).setStartedOn(NOW.getMillis());
         scheduledActivities.get(1).setFinishedOn(NOW.getMillis());
         scheduledActivities.get(2).setFinishedOn(NOW.getMillis());
@@ -344,8 +379,8 @@ public class ScheduledActivityServiceMockTest {
         service.updateScheduledActivities("BBB", scheduledActivities);
         
         verify(activityDao).updateActivities(anyString(), updateCapture.capture());
-        // Three activities have timestamp updates and need to be persisted
-        verify(activityDao, times(count)).getActivity(any(), anyString(), anyString(), eq(true));
+        // All the activities are loaded in one call
+        verify(activityDao).getActivities(eq("BBB"), eq(toGuids(scheduledActivities)));
         // Two activities have been finished and generate activity finished events
         verify(activityEventService, times(2)).publishActivityFinishedEvent(publishCapture.capture());
         
@@ -445,9 +480,8 @@ public class ScheduledActivityServiceMockTest {
         
         when(schedulePlanService.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false)).thenReturn(Lists.newArrayList(aaa,bbb));
         
-        ForwardCursorPagedResourceList<ScheduledActivity> list = new ForwardCursorPagedResourceList<>(createStartedActivities("BBB"+TIME_PORTION), null);
-        when(activityDao.getActivityHistoryV2(HEALTH_CODE, "BBB", NOW, NOW, null, API_MAXIMUM_PAGE_SIZE))
-                .thenReturn(list);        
+        when(activityDao.getPersistedActivities(eq(HEALTH_CODE), any(), any(), any()))
+                .thenReturn(createStartedActivities("BBB"+TIME_PORTION));
         
         List<ScheduledActivity> returnedActivities = service.getScheduledActivitiesV4(study, createScheduleContext(NOW).build());
         assertActivityGuids(returnedActivities, "AAA", "BBB");
@@ -523,8 +557,7 @@ public class ScheduledActivityServiceMockTest {
         
         List<ScheduledActivity> db = Lists.newArrayList(createExpiredActivities("AAA"+TIME_PORTION).get(0),
                 createFinishedActivities("BBB"+TIME_PORTION).get(0));
-        when(activityDao.getActivityHistoryV2(HEALTH_CODE, "BBB", NOW, NOW, null, API_MAXIMUM_PAGE_SIZE))
-                .thenReturn(new ForwardCursorPagedResourceList<>(db, null));
+        when(activityDao.getPersistedActivities(eq(HEALTH_CODE), any(), any(), any())).thenReturn(db);
         
         List<ScheduledActivity> returnedActivities = service.getScheduledActivitiesV4(study, createScheduleContext(NOW).build());
         assertActivityGuids(returnedActivities, "AAA", "BBB", "CCC");
@@ -566,8 +599,7 @@ public class ScheduledActivityServiceMockTest {
         when(schedulePlanService.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false)).thenReturn(Lists.newArrayList(aaa,bbb,ccc));
         
         List<ScheduledActivity> db = createStartedActivities("AAA"+TIME_PORTION,"CCC"+TIME_PORTION);
-        when(activityDao.getActivityHistoryV2(HEALTH_CODE, "BBB", NOW, NOW, null, API_MAXIMUM_PAGE_SIZE))
-                .thenReturn(new ForwardCursorPagedResourceList<>(db, null));
+        when(activityDao.getPersistedActivities(eq(HEALTH_CODE), any(), any(), any())).thenReturn(db);
         
         List<ScheduledActivity> returnedActivities = service.getScheduledActivitiesV4(study, createScheduleContext(NOW).build());
         assertActivityGuids(returnedActivities, "AAA", "BBB", "CCC");
@@ -636,14 +668,13 @@ public class ScheduledActivityServiceMockTest {
         List<ScheduledActivity> db = createNewActivities("CCC"+TIME_PORTION);
         db.get(0).setActivity(oldActivity);
         
-        ForwardCursorPagedResourceList<ScheduledActivity> page = new ForwardCursorPagedResourceList<>(db, null);
-        when(activityDao.getActivityHistoryV2(any(), any(), any(), any(), any(), anyInt())).thenReturn(page);
+        when(activityDao.getPersistedActivities(any(), any(), any(), any())).thenReturn(db);
         
         List<ScheduledActivity> returnedActivities = service.getScheduledActivitiesV4(study, createScheduleContext(NOW).build());
         assertEquals(returnedActivities.size(), 1);
         assertEquals(returnedActivities.get(0).getActivity().getSurvey().getCreatedOn().getMillis(), 5678);
         
-        verify(activityDao).getActivityHistoryV2(any(), any(), any(), any(), any(), anyInt());
+        verify(activityDao).getPersistedActivities(any(), any(), any(), any());
     }
     
     @Test
@@ -701,15 +732,14 @@ public class ScheduledActivityServiceMockTest {
         }
         db.get(0).setActivity(oldActivity);
         
-        ForwardCursorPagedResourceList<ScheduledActivity> page = new ForwardCursorPagedResourceList<>(db, null);
-        when(activityDao.getActivityHistoryV2(any(), any(), any(), any(), any(), anyInt())).thenReturn(page);
+        when(activityDao.getPersistedActivities(any(), any(), any(), any())).thenReturn(db);
         
         List<ScheduledActivity> returnedActivities = service.getScheduledActivitiesV4(study, createScheduleContext(NOW).build());
         assertEquals(returnedActivities.size(), 1);
         assertEquals(returnedActivities.get(0).getActivity().getSurvey().getCreatedOn().getMillis(), 1234);
         assertNotNull(returnedActivities.get(0).getClientData());
         
-        verify(activityDao).getActivityHistoryV2(any(), any(), any(), any(), any(), anyInt());
+        verify(activityDao).getPersistedActivities(any(), any(), any(), any());
     }
     
     @Test
@@ -803,9 +833,7 @@ public class ScheduledActivityServiceMockTest {
         oneTimeActivity.setStartedOn(NOW.plusMinutes(5).getMillis());
         oneTimeActivity.setFinishedOn(NOW.plusMinutes(5).getMillis());
         
-        mockAllCallsForDbActivities(ImmutableList.of());
-        when(activityDao.getActivity(context.getStartsOn().getZone(), HEALTH_CODE, guid, false))
-                .thenReturn(oneTimeActivity);
+        mockAllCallsForDbActivities(ImmutableList.of(oneTimeActivity));
         
         List<ScheduledActivity> scheduledActivities = service.getScheduledActivitiesV4(study, context);
         assertEquals(scheduledActivities.size(), 1);
@@ -813,10 +841,10 @@ public class ScheduledActivityServiceMockTest {
         assertNotNull(scheduledActivities.get(0).getStartedOn());
         assertNotNull(scheduledActivities.get(0).getFinishedOn());
         
-        verify(activityDao, times(1)).getActivityHistoryV2(HEALTH_CODE, "guidForCCC", context.getStartsOn(), context.getEndsOn(),
-                null, BridgeConstants.API_MAXIMUM_PAGE_SIZE);
         // Retrieve any remaining scheduled activity from the DB to ensure state is maintained. 
-        verify(activityDao, times(1)).getActivity(context.getStartsOn().getZone(), HEALTH_CODE, guid, false);
+        verify(activityDao).getPersistedActivities(eq(HEALTH_CODE), eq(context.getStartsOn()),
+                eq(context.getEndsOn()), scheduledActivityListCaptor.capture());
+        assertEquals(scheduledActivityListCaptor.getValue().get(0).getGuid(), guid);
         
         verify(activityDao).saveActivities(scheduledActivityListCaptor.capture());
         
@@ -1146,6 +1174,134 @@ public class ScheduledActivityServiceMockTest {
         assertFalse(service.hasUpdatedClientData(activity, dbActivity));
     }
     
+    @Test
+    public void unchangedPersistedActivitiesNotSavedV4() throws Exception {
+        ScheduleContext context = createScheduleContext(ENDS_ON).build();
+        
+        List<ScheduledActivity> dbActivities = service.scheduleActivitiesForPlans(context);
+        assertFalse(dbActivities.isEmpty());
+        mockAllCallsForDbActivities(dbActivities);
+        
+        List<ScheduledActivity> activities = service.getScheduledActivitiesV4(study, context);
+        assertEquals(toGuids(activities), toGuids(dbActivities));
+        
+        verify(activityDao).saveActivities(scheduledActivityListCaptor.capture());
+        assertTrue(scheduledActivityListCaptor.getValue().isEmpty());
+    }
+    
+    @Test
+    public void changedPersistedActivitiesSavedV4() throws Exception {
+        ScheduleContext context = createScheduleContext(ENDS_ON).build();
+        
+        List<ScheduledActivity> dbActivities = service.scheduleActivitiesForPlans(context);
+        ScheduledActivity changed = dbActivities.get(0);
+        changed.setActivity(new Activity.Builder().withActivity(changed.getActivity()).withLabel("Old label").build());
+        mockAllCallsForDbActivities(dbActivities);
+        
+        service.getScheduledActivitiesV4(study, context);
+        
+        verify(activityDao).saveActivities(scheduledActivityListCaptor.capture());
+        assertEquals(toGuids(scheduledActivityListCaptor.getValue()), ImmutableSet.of(changed.getGuid()));
+    }
+    
+    @Test
+    public void plansScheduledInParallelInPlanOrder() throws Exception {
+        ScheduleContext context = createScheduleContext(ENDS_ON).build();
+        List<String> sequentialGuids = service.scheduleActivitiesForPlans(context).stream()
+                .map(ScheduledActivity::getGuid).collect(toList());
+        
+        BridgeConfig config = mock(BridgeConfig.class);
+        when(config.getPropertyAsInt(ScheduledActivityService.CONFIG_KEY_PARALLEL_PLAN_THRESHOLD)).thenReturn(1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            service.setBridgeConfig(config);
+            service.setSchedulePlanPool(pool);
+            
+            List<String> parallelGuids = service.scheduleActivitiesForPlans(context).stream()
+                    .map(ScheduledActivity::getGuid).collect(toList());
+            assertFalse(parallelGuids.isEmpty());
+            assertEquals(parallelGuids, sequentialGuids);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void plansScheduledInParallelUseCallerRequestContext() throws Exception {
+        Set<String> requestIds = ConcurrentHashMap.newKeySet();
+        ScheduleStrategy strategy = mock(ScheduleStrategy.class);
+        when(strategy.getScheduleForUser(any(), any())).thenAnswer(invocation -> {
+            requestIds.add(BridgeUtils.getRequestContext().getId());
+            return null;
+        });
+        List<SchedulePlan> plans = Lists.newArrayList();
+        for (int i = 0; i < 8; i++) {
+            SchedulePlan plan = new DynamoSchedulePlan();
+            plan.setGuid("plan" + i);
+            plan.setStrategy(strategy);
+            plans.add(plan);
+        }
+        when(schedulePlanService.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_STUDY, false)).thenReturn(plans);
+
+        BridgeConfig config = mock(BridgeConfig.class);
+        when(config.getPropertyAsInt(ScheduledActivityService.CONFIG_KEY_PARALLEL_PLAN_THRESHOLD)).thenReturn(1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        BridgeUtils.setRequestContext(new RequestContext.Builder().withRequestId(REQUEST_ID).build());
+        try {
+            service.setBridgeConfig(config);
+            service.setSchedulePlanPool(pool);
+
+            service.scheduleActivitiesForPlans(createScheduleContext(ENDS_ON).build());
+
+            verify(strategy, times(8)).getScheduleForUser(any(), any());
+            assertEquals(requestIds, ImmutableSet.of(REQUEST_ID));
+        } finally {
+            BridgeUtils.setRequestContext(null);
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void detectScheduleRemainsSame() {
+        assertFalse(service.hasUpdatedSchedule(scheduledActivity(), scheduledActivity()));
+    }
+    
+    @Test
+    public void detectScheduleChanged() {
+        ScheduledActivity dbActivity = scheduledActivity();
+        dbActivity.setLocalExpiresOn(LocalDateTime.parse("2017-02-24T10:00:00.000"));
+        assertTrue(service.hasUpdatedSchedule(scheduledActivity(), dbActivity));
+        
+        dbActivity = scheduledActivity();
+        dbActivity.setSchedulePlanGuid("otherSchedulePlanGuid");
+        assertTrue(service.hasUpdatedSchedule(scheduledActivity(), dbActivity));
+        
+        dbActivity = scheduledActivity();
+        dbActivity.setPersistent(true);
+        assertTrue(service.hasUpdatedSchedule(scheduledActivity(), dbActivity));
+        
+        dbActivity = scheduledActivity();
+        dbActivity.setActivity(TestUtils.getActivity2());
+        assertTrue(service.hasUpdatedSchedule(scheduledActivity(), dbActivity));
+    }
+    
+    @Test
+    public void detectScheduleSameInDifferentTimeZone() {
+        ScheduledActivity dbActivity = scheduledActivity();
+        dbActivity.setTimeZone(DateTimeZone.UTC);
+        assertFalse(service.hasUpdatedSchedule(scheduledActivity(), dbActivity));
+    }
+    
+    private ScheduledActivity scheduledActivity() {
+        ScheduledActivity activity = ScheduledActivity.create();
+        activity.setTimeZone(TIME_ZONE);
+        activity.setActivity(TestUtils.getActivity1());
+        activity.setLocalScheduledOn(LocalDateTime.parse("2017-02-23T10:00:00.000"));
+        activity.setSchedulePlanGuid("schedulePlanGuid");
+        activity.setReferentGuid("referentGuid");
+        return activity;
+    }
+    
     @Test
     public void getActivitiesV4ReturnsAllScheduledActivities() throws Exception {
         DateTime endsOn = DateTime.now().plusDays(3);
@@ -1156,8 +1312,8 @@ public class ScheduledActivityServiceMockTest {
         List<ScheduledActivity> activities = service.getScheduledActivitiesV4(study, context);
         assertTrue(activities.size() > 0);
         
-        verify(activityDao, times(1)).getActivityHistoryV2(HEALTH_CODE, "AAA", context.getStartsOn(), context.getEndsOn(),
-                null, BridgeConstants.API_MAXIMUM_PAGE_SIZE);
+        verify(activityDao).getPersistedActivities(eq(HEALTH_CODE), eq(context.getStartsOn()), eq(context.getEndsOn()),
+                any());
         
         verify(activityDao).saveActivities(scheduledActivityListCaptor.capture());
         List<ScheduledActivity> activitiesOnSave = scheduledActivityListCaptor.getValue();
@@ -1283,32 +1439,17 @@ public class ScheduledActivityServiceMockTest {
         dbActivity.setLocalScheduledOn(LocalDateTime.parse("2017-02-23T13:00:00.000"));
         // This is the critical line. Without this, the service fails. Also tested in DAO code.
         dbActivity.setTimeZone(context.getStartsOn().getZone());
-        when(mockedActivityDao.getActivity(context.getStartsOn().getZone(), HEALTH_CODE, "AAA:2017-02-23T13:00:00.000", false)).thenReturn(dbActivity);
+        when(mockedActivityDao.getPersistedActivities(eq(HEALTH_CODE), eq(context.getStartsOn()),
+                eq(context.getEndsOn()), any())).thenReturn(ImmutableList.of(dbActivity));
         
         service.getScheduledActivitiesV4(study, context);
-        verify(mockedActivityDao).getActivity(context.getStartsOn().getZone(), HEALTH_CODE, "AAA:2017-02-23T13:00:00.000", false);
+        verify(mockedActivityDao).getPersistedActivities(eq(HEALTH_CODE), eq(context.getStartsOn()),
+                eq(context.getEndsOn()), any());
     }
     
     private void mockAllCallsForDbActivities(List<ScheduledActivity> dbActivities) {
         reset(activityDao);
-        Map<String,List<ScheduledActivity>> map = Maps.newHashMap();
-        for (ScheduledActivity oneActivity : dbActivities) {
-            String guid = oneActivity.getGuid().split(":")[0];
-            if (!map.containsKey(guid)) {
-                map.put(guid, Lists.newArrayList());
-            }
-            map.get(guid).add(oneActivity);
-        }
-        for (String guid : map.keySet()) {
-            mockGetActivitiesV2(guid, map.get(guid));
-        }
-    }
-    
-    private void mockGetActivitiesV2(String activityGuid, List<ScheduledActivity> activities) {
-        ForwardCursorPagedResourceList<ScheduledActivity> list = new ForwardCursorPagedResourceList<>(activities, null);
-
-        when(activityDao.getActivityHistoryV2(eq(HEALTH_CODE), eq(activityGuid), any(), any(), 
-                eq(null), eq(BridgeConstants.API_MAXIMUM_PAGE_SIZE))).thenReturn(list);
+        when(activityDao.getPersistedActivities(eq(HEALTH_CODE), any(), any(), any())).thenReturn(dbActivities);
     }
     
     private String firstTimeStampFor(int initialTZOffset, int requestTZOffset, Schedule schedule) {
@@ -19,6 +19,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
 import org.joda.time.DateTime;
+import org.mockito.ArgumentCaptor;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -30,6 +31,7 @@ import org.sagebionetworks.bridge.models.schedules.Activity;
 import org.sagebionetworks.bridge.models.schedules.ActivityScheduler;
 import org.sagebionetworks.bridge.models.schedules.CompoundActivity;
 import org.sagebionetworks.bridge.models.schedules.CompoundActivityDefinition;
+import org.sagebionetworks.bridge.models.schedules.ResolvedReferences;
 import org.sagebionetworks.bridge.models.schedules.Schedule;
 import org.sagebionetworks.bridge.models.schedules.ScheduleContext;
 import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
@@ -64,6 +66,7 @@ public class ScheduledActivityServiceResolveLinksTest {
     private SurveyService mockSurveyService;
     private ScheduledActivityService scheduledActivityService;
     private AppConfigService appConfigService;
+    private ResolvedReferenceCache mockResolvedReferenceCache;
 
     @BeforeMethod
     public void setup() {
@@ -112,6 +115,10 @@ public class ScheduledActivityServiceResolveLinksTest {
         scheduledActivityService.setSchemaService(mockSchemaService);
         scheduledActivityService.setSurveyService(mockSurveyService);
         scheduledActivityService.setAppConfigService(appConfigService);
+        
+        mockResolvedReferenceCache = mock(ResolvedReferenceCache.class);
+        when(mockResolvedReferenceCache.getResolvedReferences(any(), any())).thenAnswer(i -> new ResolvedReferences());
+        scheduledActivityService.setResolvedReferenceCache(mockResolvedReferenceCache);
     }
 
     private void setupSchedulePlanServiceWithActivity(Activity activity) {
@@ -403,6 +410,43 @@ public class ScheduledActivityServiceResolveLinksTest {
         verify(mockSchemaService, never()).getLatestUploadSchemaRevisionForAppVersion(any(), any(), any());
     }
 
+    @Test
+    public void resolvePublishedSurveyFromSharedReferences() {
+        ResolvedReferences references = new ResolvedReferences();
+        references.getSurveys().put(SURVEY_GUID, new SurveyReference(SURVEY_ID, SURVEY_GUID,
+                SURVEY_CREATED_ON_DATE_TIME));
+        when(mockResolvedReferenceCache.getResolvedReferences(TestConstants.TEST_STUDY, ClientInfo.UNKNOWN_CLIENT))
+                .thenReturn(references);
+        
+        Activity activity = new Activity.Builder().withPublishedSurvey(SURVEY_ID, SURVEY_GUID).build();
+        setupSchedulePlanServiceWithActivity(activity);
+
+        // Execute.
+        List<ScheduledActivity> scheduledActivityList = scheduledActivityService.scheduleActivitiesForPlans(
+                SCHEDULE_CONTEXT);
+        verifySurveys(scheduledActivityList);
+
+        // The survey service isn't called, and there's nothing new to share.
+        verify(mockSurveyService, never()).getSurveyMostRecentlyPublishedVersion(any(), any(), anyBoolean());
+        verify(mockResolvedReferenceCache, never()).setResolvedReferences(any(), any(), any());
+    }
+    
+    @Test
+    public void resolvedSurveySharedWithLaterRequests() {
+        Activity activity = new Activity.Builder().withPublishedSurvey(SURVEY_ID, SURVEY_GUID).build();
+        setupSchedulePlanServiceWithActivity(activity);
+
+        // Execute.
+        scheduledActivityService.scheduleActivitiesForPlans(SCHEDULE_CONTEXT);
+        
+        ArgumentCaptor<ResolvedReferences> referencesCaptor = ArgumentCaptor.forClass(ResolvedReferences.class);
+        verify(mockResolvedReferenceCache).setResolvedReferences(eq(TestConstants.TEST_STUDY),
+                eq(ClientInfo.UNKNOWN_CLIENT), referencesCaptor.capture());
+        SurveyReference surveyRef = referencesCaptor.getValue().getSurveys().get(SURVEY_GUID);
+        assertEquals(surveyRef.getIdentifier(), SURVEY_ID);
+        assertEquals(surveyRef.getCreatedOn().getMillis(), SURVEY_CREATED_ON_MILLIS);
+    }
+
     private static void verifySurveys(List<ScheduledActivity> scheduledActivityList) {
         verifyActivityListSizeAndLabels(scheduledActivityList);
         for (ScheduledActivity oneScheduledActivity : scheduledActivityList) {
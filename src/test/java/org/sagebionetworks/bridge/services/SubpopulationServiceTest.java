@@ -2,6 +2,8 @@ package org.sagebionetworks.bridge.services;
 
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyCollection;
 import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
@@ -19,6 +21,7 @@ import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.joda.time.DateTime;
@@ -50,7 +53,9 @@ import org.sagebionetworks.bridge.models.subpopulations.StudyConsentView;
 import org.sagebionetworks.bridge.models.subpopulations.Subpopulation;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
@@ -267,8 +272,10 @@ public class SubpopulationServiceTest {
     public void getSubpopulations() {
         Subpopulation subpop1 = Subpopulation.create();
         subpop1.setName("Name 1");
+        subpop1.setGuidString("guid1");
         Subpopulation subpop2 = Subpopulation.create();
         subpop2.setName("Name 2");
+        subpop2.setGuidString("guid2");
 
         when(subpopDao.getSubpopulations(TEST_STUDY, true, false)).thenReturn(ImmutableList.of(subpop1, subpop2));
         
@@ -277,6 +284,54 @@ public class SubpopulationServiceTest {
         assertEquals(results.get(0), subpop1);
         assertEquals(results.get(1), subpop2);
         verify(subpopDao).getSubpopulations(TEST_STUDY, true, false);
+        
+        // The list and the individual subpopulations are all cached together
+        verify(cacheProvider).setObjects(ImmutableMap.of(CacheKey.subpopList(TEST_STUDY), results,
+                CacheKey.subpop(subpop1.getGuid(), TEST_STUDY), subpop1,
+                CacheKey.subpop(subpop2.getGuid(), TEST_STUDY), subpop2));
+    }
+    
+    @Test
+    public void getSubpopulationsFromCache() {
+        Subpopulation subpop = Subpopulation.create();
+        subpop.setGuidString("guid1");
+        when(cacheProvider.getObject(eq(CacheKey.subpopList(TEST_STUDY)), any(TypeReference.class)))
+                .thenReturn(ImmutableList.of(subpop));
+        
+        List<Subpopulation> results = service.getSubpopulations(TEST_STUDY, false);
+        assertEquals(results, ImmutableList.of(subpop));
+        verify(subpopDao, never()).getSubpopulations(any(), anyBoolean(), anyBoolean());
+        verify(cacheProvider, never()).setObjects(any());
+    }
+    
+    @Test
+    public void getSubpopulationsByGuid() {
+        SubpopulationGuid guid1 = SubpopulationGuid.create("guid1");
+        SubpopulationGuid guid2 = SubpopulationGuid.create("guid2");
+        Subpopulation subpop1 = Subpopulation.create();
+        subpop1.setGuid(guid1);
+        Subpopulation subpop2 = Subpopulation.create();
+        subpop2.setGuid(guid2);
+        
+        // The first is cached, the second is not
+        when(cacheProvider.getObjects(anyCollection(), eq(Subpopulation.class)))
+                .thenReturn(ImmutableMap.of(CacheKey.subpop(guid1, TEST_STUDY), subpop1));
+        when(subpopDao.getSubpopulation(TEST_STUDY, guid2)).thenReturn(subpop2);
+        
+        Map<SubpopulationGuid, Subpopulation> results = service.getSubpopulations(TEST_STUDY,
+                ImmutableSet.of(guid1, guid2));
+        assertEquals(results, ImmutableMap.of(guid1, subpop1, guid2, subpop2));
+        
+        verify(subpopDao, never()).getSubpopulation(TEST_STUDY, guid1);
+        verify(cacheProvider).setObjects(ImmutableMap.of(CacheKey.subpop(guid2, TEST_STUDY), subpop2));
+    }
+    
+    @Test(expectedExceptions = EntityNotFoundException.class)
+    public void getSubpopulationsByGuidNotFound() {
+        when(subpopDao.getSubpopulation(TEST_STUDY, SUBPOP_GUID))
+                .thenThrow(new EntityNotFoundException(Subpopulation.class));
+        
+        service.getSubpopulations(TEST_STUDY, ImmutableSet.of(SUBPOP_GUID));
     }
     
     @Test
@@ -313,6 +368,7 @@ public class SubpopulationServiceTest {
     @Test
     public void getSubpopulationsForUserRetrievesCriteria() {
         Subpopulation subpop = Subpopulation.create();
+        subpop.setGuidString(BridgeUtils.generateGuid());
         subpop.setCriteria(CRITERIA);
         
         when(subpopDao.getSubpopulations(TEST_STUDY, true, false)).thenReturn(ImmutableList.of(subpop));
@@ -94,6 +94,9 @@ public class SurveyServiceMockTest {
     @Mock
     StudyService mockStudyService;
     
+    @Mock
+    ResolvedReferenceCache mockResolvedReferenceCache;
+    
     @Captor
     ArgumentCaptor<GuidCreatedOnVersionHolder> keysCaptor;
     
@@ -126,6 +129,7 @@ public class SurveyServiceMockTest {
         service.setSchedulePlanService(mockSchedulePlanService);
         service.setSharedModuleMetadataService(mockSharedModuleMetadataService);
         service.setPublishValidator(mockSurveyPublishValidator);
+        service.setResolvedReferenceCache(mockResolvedReferenceCache);
     }
 
     @Test
@@ -265,6 +269,7 @@ public class SurveyServiceMockTest {
         // execute and validate
         Survey retval = service.publishSurvey(TEST_STUDY, SURVEY_KEYS, true);
         assertSame(retval, survey);
+        verify(mockResolvedReferenceCache).removeResolvedReferences(TEST_STUDY);
     }
     
     @Test(expectedExceptions = EntityNotFoundException.class)
@@ -310,6 +315,7 @@ public class SurveyServiceMockTest {
         
         verify(mockSurveyDao).deleteSurvey(surveyCaptor.capture());
         assertEquals(surveyCaptor.getValue(), survey);
+        verify(mockResolvedReferenceCache).removeResolvedReferences(TestConstants.TEST_STUDY);
     }
     
     @Test
@@ -338,6 +344,7 @@ public class SurveyServiceMockTest {
         
         verify(mockSurveyDao).deleteSurveyPermanently(eq(TEST_STUDY), keysCaptor.capture());
         assertEquals(keysCaptor.getValue(), survey);
+        verify(mockResolvedReferenceCache).removeResolvedReferences(TEST_STUDY);
     }
 
     @Test(expectedExceptions = BadRequestException.class)
@@ -629,6 +636,7 @@ public class SurveyServiceMockTest {
         
         verify(mockSurveyDao).updateSurvey(eq(TEST_STUDY), surveyCaptor.capture());
         assertFalse(surveyCaptor.getValue().isDeleted());
+        verify(mockResolvedReferenceCache).removeResolvedReferences(TEST_STUDY);
     }
     
     @Test
@@ -45,6 +45,7 @@ public class UploadSchemaServiceFromSurveyTest {
         dao = mock(UploadSchemaDao.class);
         svc = new UploadSchemaService();
         svc.setUploadSchemaDao(dao);
+        svc.setResolvedReferenceCache(mock(ResolvedReferenceCache.class));
     }
 
     @Test
@@ -6,6 +6,7 @@ import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.services.SharedModuleMetadataServiceTest.makeValidMetadata;
@@ -53,6 +54,7 @@ public class UploadSchemaServiceTest {
     private UploadSchemaDao dao;
     private UploadSchemaService svc;
     private SharedModuleMetadataService mockSharedModuleMetadataService;
+    private ResolvedReferenceCache mockResolvedReferenceCache;
 
     @Captor
     ArgumentCaptor<String> queryCaptor;
@@ -70,6 +72,8 @@ public class UploadSchemaServiceTest {
         svc = new UploadSchemaService();
         svc.setUploadSchemaDao(dao);
         svc.setSharedModuleMetadataService(mockSharedModuleMetadataService);
+        mockResolvedReferenceCache = mock(ResolvedReferenceCache.class);
+        svc.setResolvedReferenceCache(mockResolvedReferenceCache);
     }
 
     @Test(expectedExceptions = BadRequestException.class)
@@ -113,6 +117,9 @@ public class UploadSchemaServiceTest {
 
         // old schema rev 1, create with rev 3
         createV4TestHelper(3, 3, 1);
+
+        // References to the schema are resolved again after each revision is created
+        verify(mockResolvedReferenceCache, times(4)).removeResolvedReferences(TestConstants.TEST_STUDY);
     }
 
     private void createV4TestHelper(int expectedRev, int inputRev, Integer oldRev) {
@@ -315,6 +322,7 @@ public class UploadSchemaServiceTest {
         // execute and verify delete call
         svc.deleteUploadSchemaByIdPermanently(TestConstants.TEST_STUDY, SCHEMA_ID);
         verify(dao).deleteUploadSchemasPermanently(schemaListToDelete);
+        verify(mockResolvedReferenceCache).removeResolvedReferences(TestConstants.TEST_STUDY);
 
         // verify query args
         verify(mockSharedModuleMetadataService).queryAllMetadata(eq(false), eq(false), queryCaptor.capture(),
@@ -438,6 +446,7 @@ public class UploadSchemaServiceTest {
         // execute and verify delete call
         svc.deleteUploadSchemaByIdAndRevision(TestConstants.TEST_STUDY, SCHEMA_ID, SCHEMA_REV);
         verify(dao).deleteUploadSchemas(ImmutableList.of(schemaToDelete));
+        verify(mockResolvedReferenceCache).removeResolvedReferences(TestConstants.TEST_STUDY);
 
         // verify query args
         verify(mockSharedModuleMetadataService).queryAllMetadata(eq(false), eq(false), queryCaptor.capture(),
@@ -459,6 +468,7 @@ public class UploadSchemaServiceTest {
         // execute and verify delete call
         svc.deleteUploadSchemaByIdAndRevisionPermanently(TestConstants.TEST_STUDY, SCHEMA_ID, SCHEMA_REV);
         verify(dao).deleteUploadSchemasPermanently(ImmutableList.of(schemaToDelete));
+        verify(mockResolvedReferenceCache).removeResolvedReferences(TestConstants.TEST_STUDY);
 
         // verify query args
         verify(mockSharedModuleMetadataService).queryAllMetadata(eq(false), eq(false), queryCaptor.capture(),
@@ -981,6 +991,7 @@ public class UploadSchemaServiceTest {
 
         // Validate DAO input is also svcOutput.
         assertSame(svcOutputSchema, daoOutputSchema);
+        verify(mockResolvedReferenceCache).removeResolvedReferences(TestConstants.TEST_STUDY);
     }
 
     private static UploadSchema makeSimpleSchema() {
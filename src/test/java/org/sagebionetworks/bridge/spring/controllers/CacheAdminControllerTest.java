@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.spring.controllers;
 
+import static org.sagebionetworks.bridge.BridgeConstants.API_DEFAULT_PAGE_SIZE;
 import static org.sagebionetworks.bridge.Roles.ADMIN;
 import static org.sagebionetworks.bridge.Roles.SUPERADMIN;
 import static org.sagebionetworks.bridge.TestConstants.ACCOUNT_ID;
@@ -9,12 +10,16 @@ import static org.sagebionetworks.bridge.TestUtils.assertCrossOrigin;
 import static org.sagebionetworks.bridge.TestUtils.assertDelete;
 import static org.sagebionetworks.bridge.TestUtils.assertGet;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 
+import java.util.Map;
 import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
 import org.mockito.InjectMocks;
@@ -25,7 +30,9 @@ import org.mockito.Spy;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import org.sagebionetworks.bridge.cache.CacheNamespaceStats;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.StatusMessage;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
@@ -76,6 +83,9 @@ public class CacheAdminControllerTest extends Mockito {
         assertCrossOrigin(CacheAdminController.class);
         assertGet(CacheAdminController.class, "listItems");
         assertDelete(CacheAdminController.class, "removeItem");
+        assertGet(CacheAdminController.class, "listItemsPage");
+        assertDelete(CacheAdminController.class, "removeItems");
+        assertGet(CacheAdminController.class, "getCacheStats");
     }    
     
     @Test
@@ -105,6 +115,64 @@ public class CacheAdminControllerTest extends Mockito {
         controller.listItems();
     }
     
+    @Test
+    public void listItemsPage() throws Exception {
+        ForwardCursorPagedResourceList<String> page = new ForwardCursorPagedResourceList<>(
+                ImmutableList.of("A", "B"), "nextCursor");
+        when(mockCacheAdminService.listItems("cursor", "*:view", 20)).thenReturn(page);
+        
+        ForwardCursorPagedResourceList<String> result = controller.listItemsPage("cursor", "*:view", "20");
+        assertEquals(result.getNextPageOffsetKey(), "nextCursor");
+        assertEquals(result.getItems(), ImmutableList.of("A", "B"));
+    }
+    
+    @Test
+    public void listItemsPageDefaultsPageSize() throws Exception {
+        controller.listItemsPage(null, null, null);
+        
+        verify(mockCacheAdminService).listItems(null, null, API_DEFAULT_PAGE_SIZE);
+    }
+    
+    @Test(expectedExceptions = UnauthorizedException.class)
+    public void listItemsPageRejectsStudyAdmin() throws Exception {
+        session.setParticipant(new StudyParticipant.Builder()
+                .withRoles(ImmutableSet.of(ADMIN)).withId(USER_ID).build());
+        
+        controller.listItemsPage(null, null, null);
+    }
+    
+    @Test
+    public void getCacheStats() throws Exception {
+        Map<String, CacheNamespaceStats> stats = ImmutableMap.of();
+        when(mockCacheAdminService.getCacheStats()).thenReturn(stats);
+        
+        assertSame(controller.getCacheStats(), stats);
+    }
+    
+    @Test(expectedExceptions = UnauthorizedException.class)
+    public void getCacheStatsRejectsStudyAdmin() throws Exception {
+        session.setParticipant(new StudyParticipant.Builder()
+                .withRoles(ImmutableSet.of(ADMIN)).withId(USER_ID).build());
+        
+        controller.getCacheStats();
+    }
+    
+    @Test
+    public void removeItems() throws Exception {
+        when(mockCacheAdminService.removeItems("*:view")).thenReturn(3L);
+        
+        StatusMessage result = controller.removeItems("*:view");
+        assertEquals(result.getMessage(), "3 items removed from cache.");
+    }
+    
+    @Test(expectedExceptions = UnauthorizedException.class)
+    public void removeItemsRejectsStudyAdmin() throws Exception {
+        session.setParticipant(new StudyParticipant.Builder()
+                .withRoles(ImmutableSet.of(ADMIN)).withId(USER_ID).build());
+        
+        controller.removeItems("*:view");
+    }
+    
     @Test
     public void removeItem() throws Exception {
         session.setStudyIdentifier(TEST_STUDY);
@@ -295,6 +295,8 @@ public class ParticipantControllerTest extends Mockito {
         assertPost(ParticipantController.class, "searchForAccountSummaries");
         assertGet(ParticipantController.class, "getParticipantsForWorker");
         assertPost(ParticipantController.class, "searchForAccountSummariesForWorker");
+        assertPost(ParticipantController.class, "searchForAccountSummariesByCursor");
+        assertPost(ParticipantController.class, "searchForAccountSummariesByCursorForWorker");
         assertCreate(ParticipantController.class, "createParticipant");
         assertGet(ParticipantController.class, "getParticipant");
         assertGet(ParticipantController.class, "getParticipantForWorker");
@@ -1481,6 +1483,45 @@ public class ParticipantControllerTest extends Mockito {
         assertEquals(search, payload);
     }
 
+    @Test
+    public void searchForAccountSummariesByCursor() throws Exception {
+        AccountSummarySearch payload = setAccountSummarySearch();
+        ForwardCursorPagedResourceList<AccountSummary> page = new ForwardCursorPagedResourceList<>(
+                ImmutableList.of(SUMMARY, SUMMARY), "nextPageOffsetKey");
+        when(mockParticipantService.getAccountSummariesByCursor(eq(study), any())).thenReturn(page);
+
+        ForwardCursorPagedResourceList<AccountSummary> result = controller.searchForAccountSummariesByCursor();
+
+        assertEquals(result.getItems().size(), 2);
+        assertEquals(result.getNextPageOffsetKey(), "nextPageOffsetKey");
+
+        verify(mockParticipantService).getAccountSummariesByCursor(eq(study), searchCaptor.capture());
+
+        AccountSummarySearch search = searchCaptor.getValue();
+        assertEquals(search, payload);
+    }
+
+    @Test
+    public void searchForAccountSummariesByCursorForWorker() throws Exception {
+        session.setParticipant(new StudyParticipant.Builder().copyOf(session.getParticipant())
+                .withRoles(ImmutableSet.of(Roles.WORKER)).build());
+
+        AccountSummarySearch payload = setAccountSummarySearch();
+        ForwardCursorPagedResourceList<AccountSummary> page = new ForwardCursorPagedResourceList<>(
+                ImmutableList.of(SUMMARY, SUMMARY), null);
+        when(mockParticipantService.getAccountSummariesByCursor(eq(study), any())).thenReturn(page);
+
+        ForwardCursorPagedResourceList<AccountSummary> result = controller
+                .searchForAccountSummariesByCursorForWorker(study.getIdentifier());
+
+        assertEquals(result.getItems().size(), 2);
+
+        verify(mockParticipantService).getAccountSummariesByCursor(eq(study), searchCaptor.capture());
+
+        AccountSummarySearch search = searchCaptor.getValue();
+        assertEquals(search, payload);
+    }
+
     private AccountSummarySearch setAccountSummarySearch() throws Exception {
         AccountSummarySearch search = new AccountSummarySearch.Builder().withOffsetBy(10).withPageSize(100)
                 .withEmailFilter("email").withPhoneFilter("phone").withAllOfGroups(ImmutableSet.of("group1"))
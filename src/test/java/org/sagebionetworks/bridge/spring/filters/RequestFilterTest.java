@@ -9,6 +9,7 @@ import static org.sagebionetworks.bridge.TestConstants.UA;
 import static org.springframework.http.HttpHeaders.ACCEPT_LANGUAGE;
 import static org.springframework.http.HttpHeaders.USER_AGENT;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
@@ -120,10 +121,24 @@ public class RequestFilterTest extends Mockito {
         
         RequestContext context = contextCaptor.getAllValues().get(0);
         assertEquals(context.getId(), "AAABAAA");
+        assertFalse(context.isPrimaryReadRequired());
         
         assertNull(contextCaptor.getAllValues().get(1));
     }
     
+    @Test
+    public void primaryReadHeaderSetsPrimaryReadRequired() throws Exception {
+        when(mockRequest.getHeader(BridgeConstants.PRIMARY_READ_HEADER)).thenReturn("true");
+        when(mockRequest.getHeaderNames()).thenReturn(new Vector<String>().elements());
+        
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+        
+        verify(filter, times(2)).setRequestContext(contextCaptor.capture());
+        
+        RequestContext context = contextCaptor.getAllValues().get(0);
+        assertTrue(context.isPrimaryReadRequired());
+    }
+    
     @Test
     public void getLanguagesFromAcceptLanguageHeader() {
         when(mockRequest.getHeader(ACCEPT_LANGUAGE))